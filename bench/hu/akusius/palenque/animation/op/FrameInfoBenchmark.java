@@ -0,0 +1,37 @@
+package hu.akusius.palenque.animation.op;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * A képkocka információk lekérdezésének mérése.
+ * @author Bujdosó Ákos
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FrameInfoBenchmark {
+
+  private int frame;
+
+  private int step;
+
+  @Benchmark
+  public FrameInfo getFrameInfo() {
+    if (++frame > FrameInfo.getMaxFrameNum()) {
+      frame = 0;
+    }
+    return FrameInfo.getFrameInfo(frame);
+  }
+
+  @Benchmark
+  public FrameInfo getFrameInfoStep() {
+    if (++step > FrameInfo.getMaxStepNum()) {
+      step = 0;
+    }
+    return FrameInfo.getFrameInfo(step, 50.0);
+  }
+}
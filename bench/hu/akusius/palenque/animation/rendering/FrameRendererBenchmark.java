@@ -0,0 +1,120 @@
+package hu.akusius.palenque.animation.rendering;
+
+import hu.akusius.palenque.animation.op.FrameInfo;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.other.Matrix;
+
+/**
+ * A képkockák kirajzolásának mérése lépésenként.
+ * Egy mérés a lépés összes képkockáján sorban végigmegy.
+ * A "null" és a "counting" cél csak a geometriai részt (transzformáció, projekció) méri (a Java2D hívásaival, illetve azok nélkül),
+ * az "image" cél a tényleges raszterizálást is, a "raster" cél pedig a Java2D nélküli, egyszerű raszterizálást.
+ * @author Bujdosó Ákos
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FrameRendererBenchmark {
+
+  @Param({"0", "1", "2", "3", "4", "5", "6", "7", "8", "9", "10",
+    "11", "12", "13", "14", "15", "16", "17", "18", "19", "20", "21"})
+  public int step;
+
+  @Param({"null", "image", "counting", "raster"})
+  public String target;
+
+  @Param({"600"})
+  public int size;
+
+  @Param({"false"})
+  public boolean rotated;
+
+  private FrameInfo[] frames;
+
+  private int index;
+
+  private BufferedImage image;
+
+  private Graphics2D graphics;
+
+  private RasterSink raster;
+
+  private LineSink sink;
+
+  private Matrix camera;
+
+  private Viewport viewport;
+
+  @Setup
+  public void setup() {
+    FrameInfo first = FrameInfo.getFrameInfo(step, 0.0);
+    frames = new FrameInfo[first.getStepLength()];
+    for (int i = 0; i < frames.length; i++) {
+      frames[i] = FrameInfo.getFrameInfo(first.getStepFirstFrame() + i);
+    }
+    index = 0;
+
+    switch (target) {
+      case "null":
+        graphics = new NullGraphics2D();
+        break;
+      case "image":
+        image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        graphics = image.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        break;
+      case "counting":
+        sink = new CountingSink();
+        break;
+      case "raster":
+        raster = new RasterSink(size, size);
+        sink = raster;
+        break;
+      default:
+        throw new IllegalArgumentException(target);
+    }
+    if (graphics != null) {
+      sink = new Graphics2DSink(graphics);
+    }
+
+    camera = new Matrix();
+    Matrix.identity(camera);
+    if (rotated) {
+      camera.rotateY(0.4);
+      camera.rotateX(0.3);
+    }
+    viewport = new Viewport(new Dimension(size, size), 1.0);
+  }
+
+  @TearDown
+  public void tearDown() {
+    if (graphics != null) {
+      graphics.dispose();
+    }
+  }
+
+  @Benchmark
+  public void renderFrame() {
+    FrameInfo fi = frames[index];
+    if (++index == frames.length) {
+      index = 0;
+    }
+    if (graphics != null) {
+      graphics.setColor(Color.WHITE);
+      graphics.fillRect(0, 0, size, size);
+    } else if (raster != null) {
+      raster.clear(0xffffffff);
+    }
+    sink.setColor(Color.BLACK.getRGB());
+    FrameRenderer.renderFrame(fi, sink, camera, viewport);
+  }
+}
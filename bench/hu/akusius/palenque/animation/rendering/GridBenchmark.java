@@ -0,0 +1,60 @@
+package hu.akusius.palenque.animation.rendering;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * A négyzetrács műveleteinek mérése (51x51-es rácson).
+ * A műveletek módosítják a rácsot, ezért mindegyik egy klónon dolgozik; a klónozás külön is mérve van.
+ * @author Bujdosó Ákos
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GridBenchmark {
+
+  /**
+   * Az alap négyzetrács (0. lépés).
+   */
+  private Grid base;
+
+  /**
+   * A nyolcszorozott négyzetrács (6. lépés).
+   */
+  private Grid full;
+
+  @Setup
+  public void setup() {
+    base = StepScene.forStep(0).getGrid(0);
+    full = StepScene.forStep(6).getGrid(0);
+  }
+
+  @Benchmark
+  public Grid cloneGrid() {
+    return full.cloneGrid();
+  }
+
+  @Benchmark
+  public Grid rotate() {
+    Grid grid = base.cloneGrid();
+    grid.rotate(3, true);
+    return grid;
+  }
+
+  @Benchmark
+  public Grid octuple() {
+    Grid grid = base.cloneGrid();
+    grid.octuple();
+    return grid;
+  }
+
+  @Benchmark
+  public Grid merge() {
+    Grid grid = full.cloneGrid();
+    grid.merge(base);
+    return grid;
+  }
+}
@@ -0,0 +1,102 @@
+package hu.akusius.palenque.animation.rendering;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.other.Matrix;
+
+/**
+ * Egy teljes (51x51-es, nyolcszorozott) négyzetrács kirajzolásának mérése.
+ * @author Bujdosó Ákos
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GridRendererBenchmark {
+
+  @Param({"null", "image", "counting", "raster"})
+  public String target;
+
+  @Param({"600"})
+  public int size;
+
+  @Param({"false", "true"})
+  public boolean rotated;
+
+  private Grid grid;
+
+  private BufferedImage image;
+
+  private Graphics2D graphics;
+
+  private RasterSink raster;
+
+  private LineSink sink;
+
+  private Matrix camera;
+
+  private Viewport viewport;
+
+  @Setup
+  public void setup() {
+    grid = StepScene.forStep(6).getGrid(0);
+    assert grid.getSize() == 51;
+
+    switch (target) {
+      case "null":
+        graphics = new NullGraphics2D();
+        break;
+      case "image":
+        image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        graphics = image.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        break;
+      case "counting":
+        sink = new CountingSink();
+        break;
+      case "raster":
+        raster = new RasterSink(size, size);
+        sink = raster;
+        break;
+      default:
+        throw new IllegalArgumentException(target);
+    }
+    if (graphics != null) {
+      sink = new Graphics2DSink(graphics);
+    }
+
+    camera = new Matrix();
+    Matrix.identity(camera);
+    if (rotated) {
+      camera.rotateY(0.4);
+      camera.rotateX(0.3);
+    }
+    viewport = new Viewport(new Dimension(size, size), 1.0);
+  }
+
+  @TearDown
+  public void tearDown() {
+    if (graphics != null) {
+      graphics.dispose();
+    }
+  }
+
+  @Benchmark
+  public void render() {
+    if (graphics != null) {
+      graphics.setColor(Color.WHITE);
+      graphics.fillRect(0, 0, size, size);
+    } else if (raster != null) {
+      raster.clear(0xffffffff);
+    }
+    sink.setColor(Color.BLACK.getRGB());
+    GridRenderer.render(grid, camera, sink, viewport);
+  }
+}
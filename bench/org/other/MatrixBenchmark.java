@@ -0,0 +1,66 @@
+package org.other;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * A mátrixműveletek mérése.
+ * @author Bujdosó Ákos
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MatrixBenchmark {
+
+  private static final int POINTS = 104 * 2;
+
+  private final Matrix a = new Matrix();
+
+  private final Matrix b = new Matrix();
+
+  private final Matrix result = new Matrix();
+
+  private final double[] point = new double[3];
+
+  private final double[] src = new double[POINTS * 3];
+
+  private final double[] dst = new double[POINTS * 3];
+
+  private double x;
+
+  @Setup
+  public void setup() {
+    Matrix.identity(a);
+    a.translate(0.5, -2, 30);
+    a.rotateX(0.7);
+    Matrix.identity(b);
+    b.rotateZ(-0.3);
+    b.rotateY(0.2);
+    for (int i = 0; i < src.length; i++) {
+      src[i] = (i % 51) - 25;
+    }
+    x = 1.5;
+  }
+
+  @Benchmark
+  public Matrix postMultiply() {
+    result.copy(a);
+    result.postMultiply(b);
+    return result;
+  }
+
+  @Benchmark
+  public double[] transformPoint() {
+    a.transformPoint(x, -x, 0.0, point);
+    return point;
+  }
+
+  @Benchmark
+  public double[] transformPoints() {
+    a.transformPoints(src, dst, POINTS);
+    return dst;
+  }
+}
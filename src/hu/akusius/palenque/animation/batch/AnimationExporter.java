@@ -0,0 +1,439 @@
+package hu.akusius.palenque.animation.batch;
+
+import hu.akusius.palenque.animation.op.FrameInfo;
+import hu.akusius.palenque.animation.rendering.LidRenderer;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.*;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+import org.other.Matrix;
+
+/**
+ * Képkocka-tartomány kirajzolása egyetlen animált GIF fájlba, külső eszközök nélkül.
+ * A kamera az automatikus megjelenítésnek megfelelő.
+ * <p>
+ * A képkockákat több szál rajzolja ki (termelők), a kódolás pedig sorrendben, a hívó szálon történik (fogyasztó).
+ * A kettő között korlátos sor van, a képek pedig egy rögzített készletből származnak és újrahasznosulnak,
+ * így a memóriaigény a képkockák számától független.
+ * <p>
+ * Parancssori használat:
+ * <pre>
+ * java -Djava.awt.headless=true -cp PalenqueAnimation.jar hu.akusius.palenque.animation.batch.AnimationExporter
+ *      [-from N] [-to N] [-stride N] [-size N] [-fps N] [-loop N] [-out FILE] [-threads N]
+ * </pre>
+ * @author Bujdosó Ákos
+ */
+public final class AnimationExporter {
+
+  public static final int MIN_SIZE = BatchRenderer.MIN_SIZE;
+
+  public static final int MAX_SIZE = 2000;
+
+  public static final int MIN_FPS = 1;
+
+  public static final int MAX_FPS = 50;
+
+  private static final String GIF_METADATA_FORMAT = "javax_imageio_gif_image_1.0";
+
+  /**
+   * A képek palettája: 6x6x6-os színkocka és a vonalak élsimításához egy finom szürkeskála.
+   */
+  private static final IndexColorModel PALETTE = createPalette();
+
+  /**
+   * A szürke árnyalatokhoz (0-255) legközelebb eső palettaelemek.
+   */
+  private static final byte[] GRAY_INDICES = createGrayIndices();
+
+  /**
+   * Ennél kisebb színcsatorna-eltérésnél a képpont szürkének számít.
+   */
+  private static final int GRAY_TOLERANCE = 8;
+
+  private final int from;
+
+  private final int to;
+
+  private final int stride;
+
+  private final int size;
+
+  private final int fps;
+
+  private final int loopCount;
+
+  private final File outFile;
+
+  private final int threads;
+
+  private final AtomicInteger exportedFrames = new AtomicInteger();
+
+  /**
+   * Új exportáló létrehozása.
+   * @param from Az első kirajzolandó képkocka.
+   * @param to Az utolsó kirajzolandó képkocka (bezárólag).
+   * @param stride A lépésköz a képkockák között (ritkítás).
+   * @param size A képek mérete (szélesség és magasság) pixelben.
+   * @param fps Az animáció sebessége (képkocka/másodperc).
+   * @param loopCount Az ismétlések száma (0: végtelen, 1: egyszer játszódik le).
+   * @param outFile A kimeneti fájl.
+   * @param threads A kirajzoláshoz használt szálak száma.
+   */
+  public AnimationExporter(int from, int to, int stride, int size, int fps, int loopCount, File outFile, int threads) {
+    if (from < 0 || to > FrameInfo.getMaxFrameNum() || from > to) {
+      throw new IllegalArgumentException("Invalid frame range: " + from + "-" + to);
+    }
+    if (stride < 1) {
+      throw new IllegalArgumentException("Invalid stride: " + stride);
+    }
+    if (size < MIN_SIZE || size > MAX_SIZE) {
+      throw new IllegalArgumentException("Invalid size: " + size);
+    }
+    if (fps < MIN_FPS || fps > MAX_FPS) {
+      throw new IllegalArgumentException("Invalid fps: " + fps);
+    }
+    if (loopCount < 0 || loopCount > 0xFFFF) {
+      throw new IllegalArgumentException("Invalid loop count: " + loopCount);
+    }
+    if (threads < 1) {
+      throw new IllegalArgumentException("Invalid number of threads: " + threads);
+    }
+    if (outFile == null) {
+      throw new IllegalArgumentException();
+    }
+    this.from = from;
+    this.to = to;
+    this.stride = stride;
+    this.size = size;
+    this.fps = fps;
+    this.loopCount = loopCount;
+    this.outFile = outFile;
+    this.threads = threads;
+  }
+
+  /**
+   * @return Az exportálandó képkockák száma.
+   */
+  public int getFrameCount() {
+    return (to - from) / stride + 1;
+  }
+
+  /**
+   * @return Az eddig kódolt képkockák száma.
+   */
+  public int getExportedFrames() {
+    return exportedFrames.get();
+  }
+
+  /**
+   * @return A képkockák közötti késleltetés a GIF formátum egységében (1/100 másodperc).
+   */
+  int getFrameDelay() {
+    // A böngészők a 2-nél kisebb értéket lassúnak veszik
+    return Math.max(2, Math.round(100f / fps));
+  }
+
+  /**
+   * A képkockák kirajzolása és kódolása. A hívás a teljes befejezésig blokkol.
+   * @throws IOException Hiba történt a kimenet írásakor.
+   * @throws InterruptedException A várakozás megszakadt.
+   */
+  public void export() throws IOException, InterruptedException {
+    File parent = outFile.getAbsoluteFile().getParentFile();
+    if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+      throw new IOException("Cannot create directory: " + parent);
+    }
+
+    Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("gif");
+    if (!writers.hasNext()) {
+      throw new IOException("No GIF writer available");
+    }
+    ImageWriter writer = writers.next();
+
+    LidRenderer.preload();
+
+    int workerNum = Math.min(threads, getFrameCount());
+    // Legfeljebb ennyi képkocka lehet egyszerre úton (kirajzolás alatt vagy kódolásra várva)
+    int capacity = workerNum * 2;
+    final BlockingQueue<BufferedImage> freeImages = new ArrayBlockingQueue<>(capacity);
+    for (int i = 0; i < capacity; i++) {
+      freeImages.add(new BufferedImage(size, size, BufferedImage.TYPE_BYTE_INDEXED, PALETTE));
+    }
+    ArrayDeque<Future<BufferedImage>> pending = new ArrayDeque<>(capacity);
+
+    ExecutorService executor = Executors.newFixedThreadPool(workerNum);
+    try (ImageOutputStream ios = ImageIO.createImageOutputStream(outFile)) {
+      if (ios == null) {
+        throw new IOException("Cannot write file: " + outFile);
+      }
+      writer.setOutput(ios);
+      writer.prepareWriteSequence(null);
+
+      boolean first = true;
+      for (int frame = from; frame <= to || !pending.isEmpty();) {
+        // A sor tele van (vagy már nincs több képkocka): a legrégebbi kódolása
+        if (pending.size() == capacity || frame > to) {
+          BufferedImage image = getResult(pending.removeFirst());
+          writeFrame(writer, image, first);
+          first = false;
+          freeImages.add(image);
+          exportedFrames.incrementAndGet();
+          continue;
+        }
+        pending.addLast(executor.submit(new FrameTask(frame, freeImages)));
+        frame += stride;
+      }
+
+      writer.endWriteSequence();
+    } finally {
+      for (Future<BufferedImage> future : pending) {
+        future.cancel(true);
+      }
+      executor.shutdownNow();
+      writer.dispose();
+    }
+  }
+
+  private static IndexColorModel createPalette() {
+    byte[] r = new byte[256], g = new byte[256], b = new byte[256];
+    int i = 0;
+    for (int ri = 0; ri < 6; ri++) {
+      for (int gi = 0; gi < 6; gi++) {
+        for (int bi = 0; bi < 6; bi++) {
+          r[i] = (byte) (ri * 51);
+          g[i] = (byte) (gi * 51);
+          b[i] = (byte) (bi * 51);
+          i++;
+        }
+      }
+    }
+    // A maradék helyen egyenletes szürkeskála a színkocka szürkéi között
+    for (int j = 1; i < 256; j++, i++) {
+      int v = j * 255 / 41;
+      r[i] = g[i] = b[i] = (byte) v;
+    }
+    return new IndexColorModel(8, 256, r, g, b);
+  }
+
+  private static byte[] createGrayIndices() {
+    byte[] indices = new byte[256];
+    for (int v = 0; v < 256; v++) {
+      int best = 0, bestDiff = Integer.MAX_VALUE;
+      for (int i = 0; i < 256; i++) {
+        int pr = PALETTE.getRed(i);
+        if (pr != PALETTE.getGreen(i) || pr != PALETTE.getBlue(i)) {
+          continue;
+        }
+        int diff = Math.abs(pr - v);
+        if (diff < bestDiff) {
+          best = i;
+          bestDiff = diff;
+        }
+      }
+      indices[v] = (byte) best;
+    }
+    return indices;
+  }
+
+  /**
+   * Truecolor képpontok átalakítása a paletta indexeire (árnyalás nélkül).
+   * A szürke képpontok (élsimított vonalak) a szürkeskálára, a többiek a színkockára kerülnek.
+   * @param src A képpontok (RGB).
+   * @param dst A palettaindexek.
+   */
+  static void quantize(int[] src, byte[] dst) {
+    for (int i = 0; i < src.length; i++) {
+      int rgb = src[i];
+      int r = (rgb >> 16) & 0xFF, g = (rgb >> 8) & 0xFF, b = rgb & 0xFF;
+      int max = Math.max(r, Math.max(g, b)), min = Math.min(r, Math.min(g, b));
+      if (max - min < GRAY_TOLERANCE) {
+        dst[i] = GRAY_INDICES[(r + g + b) / 3];
+      } else {
+        dst[i] = (byte) (((r + 25) / 51) * 36 + ((g + 25) / 51) * 6 + (b + 25) / 51);
+      }
+    }
+  }
+
+  private static BufferedImage getResult(Future<BufferedImage> future) throws IOException, InterruptedException {
+    try {
+      return future.get();
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new RuntimeException(cause);
+    }
+  }
+
+  private void writeFrame(ImageWriter writer, BufferedImage image, boolean first) throws IOException {
+    ImageWriteParam param = writer.getDefaultWriteParam();
+    IIOMetadata metadata = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(image), param);
+
+    IIOMetadataNode root = new IIOMetadataNode(GIF_METADATA_FORMAT);
+
+    IIOMetadataNode gce = new IIOMetadataNode("GraphicControlExtension");
+    gce.setAttribute("disposalMethod", "none");
+    gce.setAttribute("userInputFlag", "FALSE");
+    gce.setAttribute("transparentColorFlag", "FALSE");
+    gce.setAttribute("delayTime", Integer.toString(getFrameDelay()));
+    gce.setAttribute("transparentColorIndex", "0");
+    root.appendChild(gce);
+
+    if (first && loopCount != 1) {
+      // NETSCAPE2.0 kiterjesztés az ismétléshez (0: végtelen)
+      int loops = loopCount == 0 ? 0 : loopCount - 1;
+      IIOMetadataNode appExts = new IIOMetadataNode("ApplicationExtensions");
+      IIOMetadataNode appExt = new IIOMetadataNode("ApplicationExtension");
+      appExt.setAttribute("applicationID", "NETSCAPE");
+      appExt.setAttribute("authenticationCode", "2.0");
+      appExt.setUserObject(new byte[]{1, (byte) (loops & 0xFF), (byte) ((loops >> 8) & 0xFF)});
+      appExts.appendChild(appExt);
+      root.appendChild(appExts);
+    }
+
+    metadata.mergeTree(GIF_METADATA_FORMAT, root);
+    writer.writeToSequence(new IIOImage(image, null, metadata), param);
+  }
+
+  /**
+   * Egy képkocka kirajzolása egy szabad (palettás) képbe.
+   */
+  private final class FrameTask implements Callable<BufferedImage> {
+
+    private final int frame;
+
+    private final BlockingQueue<BufferedImage> freeImages;
+
+    FrameTask(int frame, BlockingQueue<BufferedImage> freeImages) {
+      this.frame = frame;
+      this.freeImages = freeImages;
+    }
+
+    @Override
+    public BufferedImage call() throws Exception {
+      Canvas canvas = canvases.get();
+      BatchRenderer.renderFrame(canvas.image, frame, canvas.camera);
+
+      // A sor korlátja miatt mindig van szabad kép
+      BufferedImage target = freeImages.remove();
+      quantize(((DataBufferInt) canvas.image.getRaster().getDataBuffer()).getData(),
+              ((DataBufferByte) target.getRaster().getDataBuffer()).getData());
+      return target;
+    }
+  }
+
+  /**
+   * Szálanként a kirajzolás (truecolor) célja.
+   */
+  private static final class Canvas {
+
+    final BufferedImage image;
+
+    final Matrix camera = new Matrix();
+
+    Canvas(int size) {
+      image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+    }
+  }
+
+  private final ThreadLocal<Canvas> canvases = new ThreadLocal<Canvas>() {
+    @Override
+    protected Canvas initialValue() {
+      return new Canvas(size);
+    }
+  };
+
+  private static void printUsage() {
+    System.err.println("Usage: AnimationExporter [-from N] [-to N] [-stride N] [-size N] [-fps N] [-loop N] [-out FILE] [-threads N]");
+    System.err.println("  -from     first frame (default: 0)");
+    System.err.println("  -to       last frame, inclusive (default: " + FrameInfo.getMaxFrameNum() + ")");
+    System.err.println("  -stride   frame step (default: 25)");
+    System.err.println("  -size     image size in pixels (default: 400)");
+    System.err.println("  -fps      frames per second (default: 25)");
+    System.err.println("  -loop     number of plays, 0 = forever (default: 0)");
+    System.err.println("  -out      output GIF file (default: animation.gif)");
+    System.err.println("  -threads  number of threads (default: number of processors)");
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (System.getProperty("java.awt.headless") == null) {
+      System.setProperty("java.awt.headless", "true");
+    }
+
+    int from = 0;
+    int to = FrameInfo.getMaxFrameNum();
+    int stride = 25;
+    int size = 400;
+    int fps = 25;
+    int loop = 0;
+    File out = new File("animation.gif");
+    int threads = Runtime.getRuntime().availableProcessors();
+
+    final AnimationExporter ae;
+    try {
+      for (int i = 0; i < args.length; i++) {
+        String arg = args[i];
+        if (i == args.length - 1) {
+          throw new IllegalArgumentException("Missing value: " + arg);
+        }
+        String value = args[++i];
+        switch (arg) {
+          case "-from":
+            from = Integer.parseInt(value);
+            break;
+          case "-to":
+            to = Integer.parseInt(value);
+            break;
+          case "-stride":
+            stride = Integer.parseInt(value);
+            break;
+          case "-size":
+            size = Integer.parseInt(value);
+            break;
+          case "-fps":
+            fps = Integer.parseInt(value);
+            break;
+          case "-loop":
+            loop = Integer.parseInt(value);
+            break;
+          case "-out":
+            out = new File(value);
+            break;
+          case "-threads":
+            threads = Integer.parseInt(value);
+            break;
+          default:
+            throw new IllegalArgumentException("Unknown option: " + arg);
+        }
+      }
+      ae = new AnimationExporter(from, to, stride, size, fps, loop, out, threads);
+    } catch (IllegalArgumentException ex) {
+      System.err.println(ex.getMessage());
+      printUsage();
+      System.exit(2);
+      return;
+    }
+
+    System.out.println(String.format("Exporting %d frames (%d-%d, stride %d) at %dx%d, %d fps into %s using %d threads...",
+            ae.getFrameCount(), from, to, stride, size, size, fps, out.getAbsolutePath(), threads));
+    long start = System.nanoTime();
+    ae.export();
+    double secs = (System.nanoTime() - start) / 1e9;
+    int frames = ae.getExportedFrames();
+    System.out.println(String.format("Exported %d frames in %.2f s (%.1f frames/s)", frames, secs, frames / secs));
+  }
+}
@@ -0,0 +1,297 @@
+package hu.akusius.palenque.animation.batch;
+
+import hu.akusius.palenque.animation.op.DisplayManager;
+import hu.akusius.palenque.animation.op.FrameInfo;
+import hu.akusius.palenque.animation.op.PlayManager;
+import hu.akusius.palenque.animation.rendering.FrameRenderer;
+import hu.akusius.palenque.animation.rendering.LidRenderer;
+import hu.akusius.palenque.animation.rendering.Viewport;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.ImageIO;
+import org.other.Matrix;
+
+/**
+ * A képkockák kötegelt (felület nélküli) kirajzolása PNG fájlokba, több szálon.
+ * A kamera az automatikus megjelenítésnek megfelelő ({@link DisplayManager}).
+ * <p>
+ * Parancssori használat:
+ * <pre>
+ * java -Djava.awt.headless=true -cp PalenqueAnimation.jar hu.akusius.palenque.animation.batch.BatchRenderer
+ *      [-from N] [-to N] [-stride N] [-size N] [-out DIR] [-threads N]
+ * </pre>
+ * @author Bujdosó Ákos
+ */
+public final class BatchRenderer {
+
+  public static final int MIN_SIZE = 60;
+
+  public static final int MAX_SIZE = 10000;
+
+  private final int from;
+
+  private final int to;
+
+  private final int stride;
+
+  private final int size;
+
+  private final File outDir;
+
+  private final int threads;
+
+  private final AtomicInteger renderedFrames = new AtomicInteger();
+
+  /**
+   * Új kötegelt kirajzoló létrehozása.
+   * @param from Az első kirajzolandó képkocka.
+   * @param to Az utolsó kirajzolandó képkocka (bezárólag).
+   * @param stride A lépésköz a képkockák között.
+   * @param size A képek mérete (szélesség és magasság) pixelben.
+   * @param outDir A kimeneti könyvtár.
+   * @param threads A használt szálak száma.
+   */
+  public BatchRenderer(int from, int to, int stride, int size, File outDir, int threads) {
+    if (from < 0 || to > FrameInfo.getMaxFrameNum() || from > to) {
+      throw new IllegalArgumentException("Invalid frame range: " + from + "-" + to);
+    }
+    if (stride < 1) {
+      throw new IllegalArgumentException("Invalid stride: " + stride);
+    }
+    if (size < MIN_SIZE || size > MAX_SIZE) {
+      throw new IllegalArgumentException("Invalid size: " + size);
+    }
+    if (threads < 1) {
+      throw new IllegalArgumentException("Invalid number of threads: " + threads);
+    }
+    if (outDir == null) {
+      throw new IllegalArgumentException();
+    }
+    this.from = from;
+    this.to = to;
+    this.stride = stride;
+    this.size = size;
+    this.outDir = outDir;
+    this.threads = threads;
+  }
+
+  /**
+   * @return A kirajzolandó képkockák száma.
+   */
+  public int getFrameCount() {
+    return (to - from) / stride + 1;
+  }
+
+  /**
+   * @return Az eddig kirajzolt (és elmentett) képkockák száma.
+   */
+  public int getRenderedFrames() {
+    return renderedFrames.get();
+  }
+
+  /**
+   * A képkockák kirajzolása és elmentése. A hívás a teljes befejezésig blokkol.
+   * @throws IOException Hiba történt a kimenet írásakor.
+   * @throws InterruptedException A várakozás megszakadt.
+   */
+  public void render() throws IOException, InterruptedException {
+    if (!outDir.isDirectory() && !outDir.mkdirs()) {
+      throw new IOException("Cannot create directory: " + outDir);
+    }
+
+    LidRenderer.preload();
+
+    int workerNum = Math.min(threads, getFrameCount());
+    Dimension dim = new Dimension(size, size);
+    ExecutorService executor = Executors.newFixedThreadPool(workerNum);
+    try {
+      // Minden szál a képkockák egy "fésűjét" kapja, hogy egyenletes legyen a terhelés
+      List<Future<Void>> futures = new ArrayList<>(workerNum);
+      for (int i = 0; i < workerNum; i++) {
+        futures.add(executor.submit(new Worker(from + i * stride, stride * workerNum, dim)));
+      }
+      for (Future<Void> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException ex) {
+          Throwable cause = ex.getCause();
+          if (cause instanceof IOException) {
+            throw (IOException) cause;
+          }
+          if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+          }
+          throw new RuntimeException(cause);
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * @param frame A képkocka.
+   * @return A képkockához tartozó kimeneti fájl.
+   */
+  public File getFile(int frame) {
+    return new File(outDir, String.format("frame%05d.png", frame));
+  }
+
+  /**
+   * Egy képkocka kirajzolása a megadott képbe.
+   * @param image A cél kép.
+   * @param fi A képkocka.
+   * @param dm A kamerát szolgáltató megjelenítéskezelő.
+   * @param camera Munkamátrix a kamerához.
+   */
+  static void renderFrame(BufferedImage image, FrameInfo fi, DisplayManager dm, Matrix camera) {
+    dm.getCameraMatrix(camera);
+    renderFrame(image, fi, camera, dm.getZoom());
+  }
+
+  /**
+   * Egy képkocka kirajzolása a megadott képbe, az automatikus kamerával.
+   * @param image A cél kép.
+   * @param frame A képkocka száma.
+   * @param camera Munkamátrix a kamerához.
+   */
+  static void renderFrame(BufferedImage image, int frame, Matrix camera) {
+    DisplayManager.getAutoCameraMatrix(frame, camera);
+    renderFrame(image, FrameInfo.getFrameInfo(frame), camera, DisplayManager.getAutoZoom(frame));
+  }
+
+  private static void renderFrame(BufferedImage image, FrameInfo fi, Matrix camera, double zoom) {
+    Dimension dim = new Dimension(image.getWidth(), image.getHeight());
+    Graphics2D g = image.createGraphics();
+    try {
+      g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+      g.setColor(Color.WHITE);
+      g.fillRect(0, 0, dim.width, dim.height);
+      g.setColor(Color.BLACK);
+      FrameRenderer.renderFrame(fi, g, camera, new Viewport(dim, zoom));
+    } finally {
+      g.dispose();
+    }
+  }
+
+  private final class Worker implements Callable<Void> {
+
+    private final int first;
+
+    private final int step;
+
+    private final Dimension dim;
+
+    Worker(int first, int step, Dimension dim) {
+      this.first = first;
+      this.step = step;
+      this.dim = dim;
+    }
+
+    @Override
+    public Void call() throws Exception {
+      // Saját lejátszás- és megjelenítéskezelő az automatikus kamerához
+      PlayManager pm = new PlayManager();
+      DisplayManager dm = new DisplayManager(pm);
+      BufferedImage image = new BufferedImage(dim.width, dim.height, BufferedImage.TYPE_INT_ARGB);
+      Matrix camera = new Matrix();
+
+      for (int frame = first; frame <= to; frame += step) {
+        if (Thread.currentThread().isInterrupted()) {
+          throw new InterruptedException();
+        }
+        pm.getFrameSlider().setValue(frame);
+        renderFrame(image, pm.getFrameSlider().getCurrentFrameInfo(), dm, camera);
+        File file = getFile(frame);
+        if (!ImageIO.write(image, "png", file)) {
+          throw new IOException("Cannot write file: " + file);
+        }
+        renderedFrames.incrementAndGet();
+      }
+      return null;
+    }
+  }
+
+  private static void printUsage() {
+    System.err.println("Usage: BatchRenderer [-from N] [-to N] [-stride N] [-size N] [-out DIR] [-threads N]");
+    System.err.println("  -from     first frame (default: 0)");
+    System.err.println("  -to       last frame, inclusive (default: " + FrameInfo.getMaxFrameNum() + ")");
+    System.err.println("  -stride   frame step (default: 1)");
+    System.err.println("  -size     image size in pixels (default: 600)");
+    System.err.println("  -out      output directory (default: frames)");
+    System.err.println("  -threads  number of threads (default: number of processors)");
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (System.getProperty("java.awt.headless") == null) {
+      System.setProperty("java.awt.headless", "true");
+    }
+
+    int from = 0;
+    int to = FrameInfo.getMaxFrameNum();
+    int stride = 1;
+    int size = 600;
+    File out = new File("frames");
+    int threads = Runtime.getRuntime().availableProcessors();
+
+    final BatchRenderer br;
+    try {
+      for (int i = 0; i < args.length; i++) {
+        String arg = args[i];
+        if (i == args.length - 1) {
+          throw new IllegalArgumentException("Missing value: " + arg);
+        }
+        String value = args[++i];
+        switch (arg) {
+          case "-from":
+            from = Integer.parseInt(value);
+            break;
+          case "-to":
+            to = Integer.parseInt(value);
+            break;
+          case "-stride":
+            stride = Integer.parseInt(value);
+            break;
+          case "-size":
+            size = Integer.parseInt(value);
+            break;
+          case "-out":
+            out = new File(value);
+            break;
+          case "-threads":
+            threads = Integer.parseInt(value);
+            break;
+          default:
+            throw new IllegalArgumentException("Unknown option: " + arg);
+        }
+      }
+      br = new BatchRenderer(from, to, stride, size, out, threads);
+    } catch (IllegalArgumentException ex) {
+      System.err.println(ex.getMessage());
+      printUsage();
+      System.exit(2);
+      return;
+    }
+
+    System.out.println(String.format("Rendering %d frames (%d-%d, stride %d) at %dx%d into %s using %d threads...",
+            br.getFrameCount(), from, to, stride, size, size, out.getAbsolutePath(), threads));
+    long start = System.nanoTime();
+    br.render();
+    double secs = (System.nanoTime() - start) / 1e9;
+    int frames = br.getRenderedFrames();
+    System.out.println(String.format("Rendered %d frames in %.2f s (%.1f frames/s)", frames, secs, frames / secs));
+  }
+}
@@ -1,5 +1,6 @@
 package hu.akusius.palenque.animation.op;
 
+import hu.akusius.palenque.animation.util.IntValueListener;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.util.Arrays;
@@ -54,19 +55,28 @@ public class DisplayManager {
 
   private final Matrix rotationMatrix = new Matrix();
 
+  private final Matrix translationMatrix = new Matrix();
+
   private double translateX = 0d;
 
   private double translateY = 0d;
 
   private double zoom = 1d;
 
+  /**
+   * Ha a megjelenítés egy képkocka automatikus kamerája (ld. {@link CameraTrack}), akkor annak száma, egyébként -1.
+   * Ekkor a forgatási mátrix és az eltolások nincsenek kiszámolva, csak szükség esetén ({@link #materializeAuto()}).
+   */
+  private volatile int autoFrame = -1;
+
   public DisplayManager(PlayManager pm) {
     Matrix.identity(this.rotationMatrix);
+    Matrix.identity(this.translationMatrix);
     this.pm = pm;
-    pm.getFrameSlider().addPropertyChangeListener(new PropertyChangeListener() {
+    pm.getFrameSlider().addIntValueListener(new IntValueListener() {
       @Override
-      public void propertyChange(PropertyChangeEvent evt) {
-        if (PropSliderFrame.PROP_VALUE.equals(evt.getPropertyName()) && autoToggle.isSelected()) {
+      public void valueChanged(Object source, int oldValue, int newValue) {
+        if (autoToggle.isSelected()) {
           refreshAuto();
         }
       }
@@ -75,8 +85,13 @@ public class DisplayManager {
     autoToggle.addPropertyChangeListener(new PropertyChangeListener() {
       @Override
       public void propertyChange(PropertyChangeEvent evt) {
-        if (PropToggle.PROP_SELECTED.equals(evt.getPropertyName()) && (boolean) evt.getNewValue()) {
-          refreshAuto();
+        if (PropToggle.PROP_SELECTED.equals(evt.getPropertyName())) {
+          if ((boolean) evt.getNewValue()) {
+            refreshAuto();
+          } else {
+            // Innentől a kézi kamera érvényes (az aktuális automatikus kamerából folytatva)
+            materializeAuto();
+          }
         }
       }
     });
@@ -95,14 +110,55 @@ public class DisplayManager {
    */
   public Matrix getCameraMatrix() {
     Matrix cam = new Matrix();
-    cam.copy(this.rotationMatrix);
-    Matrix trans = new Matrix();
-    Matrix.identity(trans);
-    trans.translate(this.translateX, this.translateY, 0.0);
-    cam.postMultiply(trans);
+    getCameraMatrix(cam);
     return cam;
   }
 
+  /**
+   * Az aktuális megjelenítéshez tartozó kameramátrix lekérdezése memóriafoglalás nélkül.
+   * Automatikus megjelenítésnél ez egy egyszerű másolás az előre kiszámolt táblázatból.
+   * @param dst A mátrix, amelybe a kameramátrix kerül.
+   */
+  public void getCameraMatrix(Matrix dst) {
+    int frame = autoFrame;
+    if (frame >= 0) {
+      dst.set(CameraTrack.track, frame * CameraTrack.STRIDE);
+    } else {
+      composeCamera(rotationMatrix, translationMatrix, dst);
+    }
+  }
+
+  /**
+   * @return Az automatikus kamera szerinti-e az aktuális megjelenítés (nincs kézi módosítás).
+   */
+  public boolean isAutoCamera() {
+    return autoFrame >= 0;
+  }
+
+  /**
+   * Egy képkocka automatikus kamerájának lekérdezése (az aktuális állapottól függetlenül).
+   * @param frame A képkocka száma.
+   * @param dst A mátrix, amelybe a kameramátrix kerül.
+   */
+  public static void getAutoCameraMatrix(int frame, Matrix dst) {
+    dst.set(CameraTrack.track, checkFrame(frame) * CameraTrack.STRIDE);
+  }
+
+  /**
+   * @param frame A képkocka száma.
+   * @return Az adott képkocka automatikus kamerájához tartozó nagyítás.
+   */
+  public static double getAutoZoom(int frame) {
+    return CameraTrack.track[checkFrame(frame) * CameraTrack.STRIDE + 16];
+  }
+
+  private static int checkFrame(int frame) {
+    if (frame < 0 || frame > FrameInfo.getMaxFrameNum()) {
+      throw new IllegalArgumentException();
+    }
+    return frame;
+  }
+
   /**
    * @return A nagyítás aktuális mértéke.
    */
@@ -119,8 +175,8 @@ public class DisplayManager {
     if (factorX == 0d && factorY == 0d) {
       return;
     }
-    translateX += factorX / zoom;
-    translateY += factorY / zoom;
+    materializeAuto();
+    setTranslation(translateX + factorX / zoom, translateY + factorY / zoom);
     autoToggle.setSelected(false);
     changeSupport.fireChange();
   }
@@ -129,11 +185,11 @@ public class DisplayManager {
    * Az eltolások alaphelyzetbe állítása.
    */
   public void resetTranslate() {
+    materializeAuto();
     if (translateX == 0 && translateY == 0) {
       return;
     }
-    translateX = 0;
-    translateY = 0;
+    setTranslation(0, 0);
     autoToggle.setSelected(false);
     changeSupport.fireChange();
   }
@@ -147,6 +203,7 @@ public class DisplayManager {
     if (theta == 0d && phi == 0d) {
       return;
     }
+    materializeAuto();
     Matrix tmp = new Matrix();
     Matrix.identity(tmp);
     tmp.rotateY(theta);
@@ -162,6 +219,7 @@ public class DisplayManager {
    * Az elforgatások alaphelyzetbe állítása.
    */
   public void resetRotate() {
+    materializeAuto();
     if (rotationMatrix.isIdentity()) {
       return;
     }
@@ -180,6 +238,7 @@ public class DisplayManager {
     }
     double nz = zoom * factor;
     if (nz > 0 && nz < 20) {
+      materializeAuto();
       zoom = nz;
       autoToggle.setSelected(false);
       changeSupport.fireChange();
@@ -193,6 +252,7 @@ public class DisplayManager {
     if (zoom == 1.0) {
       return;
     }
+    materializeAuto();
     zoom = 1.0;
     autoToggle.setSelected(false);
     changeSupport.fireChange();
@@ -212,23 +272,57 @@ public class DisplayManager {
     FrameInfo fi = pm.getFrameSlider().getCurrentFrameInfo();
     int frame = fi.getFrameNum();
 
+    zoom = CameraTrack.track[frame * CameraTrack.STRIDE + 16];
+    autoFrame = frame;
+
+    changeSupport.fireChange();
+  }
+
+  /**
+   * Ha az automatikus kamera az érvényes, akkor a forgatási mátrix és az eltolások kiszámolása belőle,
+   * hogy a kézi módosítások onnan folytatódhassanak.
+   */
+  private void materializeAuto() {
+    int frame = autoFrame;
+    if (frame < 0) {
+      return;
+    }
     CamPoint cp = findCamPoint(frame).interpolate(frame);
+    composeRotation(cp.theta, cp.phi, rotationMatrix, new Matrix());
+    setTranslation(cp.translateX, cp.translateY);
+    autoFrame = -1;
+  }
 
-    translateX = cp.translateX;
-    translateY = cp.translateY;
+  private void setTranslation(double translateX, double translateY) {
+    this.translateX = translateX;
+    this.translateY = translateY;
+    Matrix.identity(translationMatrix);
+    translationMatrix.translate(translateX, translateY, 0.0);
+  }
 
-    rotationMatrix.identity();
-    Matrix tmp = new Matrix();
+  /**
+   * A forgatási mátrix összeállítása.
+   * @param theta A vízszintes forgatás mértéke.
+   * @param phi A függőleges forgatás mértéke.
+   * @param dst A cél mátrix.
+   * @param tmp Munkamátrix.
+   */
+  private static void composeRotation(double theta, double phi, Matrix dst, Matrix tmp) {
+    dst.identity();
     Matrix.identity(tmp);
-    tmp.rotateY(cp.theta);
-    rotationMatrix.postMultiply(tmp);
+    tmp.rotateY(theta);
+    dst.postMultiply(tmp);
     Matrix.identity(tmp);
-    tmp.rotateX(cp.phi);
-    rotationMatrix.postMultiply(tmp);
-
-    zoom = cp.zoom;
+    tmp.rotateX(phi);
+    dst.postMultiply(tmp);
+  }
 
-    changeSupport.fireChange();
+  /**
+   * A kameramátrix összeállítása a forgatásból és az eltolásból.
+   */
+  private static void composeCamera(Matrix rotation, Matrix translation, Matrix dst) {
+    dst.copy(rotation);
+    dst.postMultiply(translation);
   }
 
   private static CamPoint findCamPoint(int frame) {
@@ -249,6 +343,37 @@ public class DisplayManager {
     return null;
   }
 
+  /**
+   * Az automatikus kamera képkockánként előre kiszámolva.
+   * Képkockánként a kameramátrix 16 értéke és a nagyítás egymás után egy tömbben.
+   * Az első használatkor jön létre.
+   */
+  private static final class CameraTrack {
+
+    static final int STRIDE = 17;
+
+    static final double[] track = build();
+
+    private static double[] build() {
+      int maxFrameNum = FrameInfo.getMaxFrameNum();
+      double[] track = new double[(maxFrameNum + 1) * STRIDE];
+      Matrix rotation = new Matrix();
+      Matrix translation = new Matrix();
+      Matrix camera = new Matrix();
+      Matrix tmp = new Matrix();
+      for (int frame = 0; frame <= maxFrameNum; frame++) {
+        CamPoint cp = findCamPoint(frame).interpolate(frame);
+        composeRotation(cp.theta, cp.phi, rotation, tmp);
+        Matrix.identity(translation);
+        translation.translate(cp.translateX, cp.translateY, 0.0);
+        composeCamera(rotation, translation, camera);
+        camera.get(track, frame * STRIDE);
+        track[frame * STRIDE + 16] = cp.zoom;
+      }
+      return track;
+    }
+  }
+
   private static class CamPoint {
 
     final int frame;
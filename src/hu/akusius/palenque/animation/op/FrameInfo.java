@@ -38,13 +38,52 @@ public class FrameInfo {
 
   private final static int maxFrameNum;
 
+  /**
+   * Az egyes lépések első képkockái.
+   */
+  private static final int[] stepFirstFrames;
+
+  /**
+   * Az egyes lépések utolsó képkockái (a lépések hosszainak prefix összegei).
+   */
+  private static final int[] stepEndFrames;
+
+  /**
+   * Az összes képkocka információi, a képkocka száma szerint indexelve.
+   * Az objektumok nem módosíthatók, így bárhol (bármelyik szálon) megoszthatók.
+   */
+  private static final FrameInfo[] frameInfos;
+
   static {
-    int mfn = 0;
     int maxStep = getMaxStepNum();
-    for (int i = 0; i <= maxStep; i++) {
-      mfn += stepFramesLength[i];
+    stepFirstFrames = new int[maxStep + 1];
+    stepEndFrames = new int[maxStep + 1];
+    int currentStepEndFrame = 0;
+    int prevStepEndFrame = -1;
+    for (int step = 0; step <= maxStep; step++) {
+      currentStepEndFrame += stepFramesLength[step];
+      stepFirstFrames[step] = prevStepEndFrame + 1;
+      stepEndFrames[step] = currentStepEndFrame;
+      prevStepEndFrame = currentStepEndFrame;
     }
-    maxFrameNum = mfn + 1;
+    maxFrameNum = currentStepEndFrame + 1;
+
+    frameInfos = new FrameInfo[maxFrameNum + 1];
+    int frame = 0;
+    for (int step = 0; step <= maxStep; step++) {
+      int stepFirstFrame = stepFirstFrames[step];
+      int stepEndFrame = stepEndFrames[step];
+      double stepLength = stepEndFrame - stepFirstFrame + 1;
+      for (; frame <= stepEndFrame; frame++) {
+        double percent = ((double) (frame - stepFirstFrame)) / stepLength * 100.0;
+        frameInfos[frame] = new FrameInfo(frame, step, percent, stepFirstFrame, stepEndFrame, false);
+      }
+    }
+
+    // Túl vagyunk már a teljes programon, az utolsó lépés 100%-kal
+    int stepEndFrame = stepEndFrames[maxStep];
+    frameInfos[maxFrameNum] = new FrameInfo(maxFrameNum, maxStep, 100.0,
+            stepEndFrame - stepFramesLength[maxStep] + 1, stepEndFrame, true);
   }
 
   /**
@@ -61,19 +100,25 @@ public class FrameInfo {
     return stepFramesLength.length - 1;
   }
 
-  private int frameNum;
+  private final int frameNum;
 
-  private int stepNum;
+  private final int stepNum;
 
-  private double percent;
+  private final double percent;
 
-  private int stepFirstFrame;
+  private final int stepFirstFrame;
 
-  private int stepEndFrame;
+  private final int stepEndFrame;
 
-  private boolean lastFrame;
+  private final boolean lastFrame;
 
-  private FrameInfo() {
+  private FrameInfo(int frameNum, int stepNum, double percent, int stepFirstFrame, int stepEndFrame, boolean lastFrame) {
+    this.frameNum = frameNum;
+    this.stepNum = stepNum;
+    this.percent = percent;
+    this.stepFirstFrame = stepFirstFrame;
+    this.stepEndFrame = stepEndFrame;
+    this.lastFrame = lastFrame;
   }
 
   /**
@@ -83,6 +128,13 @@ public class FrameInfo {
     return this.getStepEndFrame() - this.getStepFirstFrame() + 1;
   }
 
+  /**
+   * A megadott lépés adott százalékához tartozó képkocka információi.
+   * Nem foglal memóriát: a visszaadott objektum közös (nem módosítható) példány.
+   * @param step A lépés.
+   * @param percent A lépésen belüli százalék.
+   * @return A képkocka információi.
+   */
   public static FrameInfo getFrameInfo(int step, double percent) {
     int maxStep = stepFramesLength.length - 1;
 
@@ -90,60 +142,21 @@ public class FrameInfo {
       throw new IllegalArgumentException();
     }
 
-    int currentStepEndFrame = 0;
-    int prevStepEndFrame = -1;
-    for (int st = 0; st <= maxStep; st++) {
-      int stepLength = stepFramesLength[st];
-      currentStepEndFrame += stepLength;
-      if (st == step) {
-        int stepFirstFrame = prevStepEndFrame + 1;
-        int frame = (int) Math.round(percent * (currentStepEndFrame - stepFirstFrame + 1) / 100.0 + stepFirstFrame);
-        assert frame >= stepFirstFrame && frame <= currentStepEndFrame;
-        return getFrameInfo(frame);
-      }
-      prevStepEndFrame = currentStepEndFrame;
-    }
-
-    return null;
+    int stepFirstFrame = stepFirstFrames[step];
+    int stepEndFrame = stepEndFrames[step];
+    int frame = (int) Math.round(percent * (stepEndFrame - stepFirstFrame + 1) / 100.0 + stepFirstFrame);
+    assert frame >= stepFirstFrame && frame <= stepEndFrame;
+    return frameInfos[frame];
   }
 
   /**
-   * A megadott képkockához az információk összeállítása.
+   * A megadott képkockához tartozó információk.
+   * Nem foglal memóriát: a visszaadott objektum közös (nem módosítható) példány.
    * @param frame A képkocka.
-   * @return Az összeállított információk.
+   * @return A képkocka információi.
    */
   public static FrameInfo getFrameInfo(int frame) {
-    frame = Math.min(getMaxFrameNum(), Math.max(0, frame));
-
-    FrameInfo fi = new FrameInfo();
-    fi.frameNum = frame;
-
-    int maxStep = stepFramesLength.length - 1;
-    int currentStepEndFrame = 0;
-    int prevStepEndFrame = -1;
-    for (int step = 0; step <= maxStep; step++) {
-      int stepLength = stepFramesLength[step];
-      currentStepEndFrame += stepLength;
-      if (frame <= currentStepEndFrame) {
-        // Megtaláltuk a lépést
-        fi.stepNum = step;
-        fi.stepEndFrame = currentStepEndFrame;
-        fi.stepFirstFrame = prevStepEndFrame + 1;
-        fi.percent = ((double) (frame - fi.getStepFirstFrame())) / (double) fi.getStepLength() * 100.0;
-        fi.lastFrame = false;
-        return fi;
-      }
-      prevStepEndFrame = currentStepEndFrame;
-    }
-
-    // Túl vagyunk már a teljes programon, az utolsó lépést adjuk vissza 100%-kal
-    fi.stepNum = maxStep;
-    fi.stepEndFrame = currentStepEndFrame;
-    int stepLength = stepFramesLength[fi.getStepNum()];
-    fi.stepFirstFrame = fi.getStepEndFrame() - stepLength + 1;
-    fi.percent = 100.0;
-    fi.lastFrame = true;
-    return fi;
+    return frameInfos[Math.min(maxFrameNum, Math.max(0, frame))];
   }
 
   /**
@@ -212,6 +225,6 @@ public class FrameInfo {
    * @return A klónozott új objektum.
    */
   public FrameInfo createClone() {
-    return getFrameInfo(this.frameNum);
+    return new FrameInfo(frameNum, stepNum, percent, stepFirstFrame, stepEndFrame, lastFrame);
   }
 }
@@ -0,0 +1,54 @@
+package hu.akusius.palenque.animation.op;
+
+/**
+ * A lejátszás órája, amely alapján az aktuális képkocka számolódik.
+ * @author Bujdosó Ákos
+ */
+abstract class PlayClock {
+
+  /**
+   * @return Az aktuális idő (nsec), tetszőleges kezdőponttól.
+   */
+  abstract long nanoTime();
+
+  /**
+   * Az időzítő ütemének jelzése (a lejátszás minden lépése előtt meghívódik).
+   */
+  void tick() {
+  }
+
+  /**
+   * @return A valós időt ({@link System#nanoTime()}) használó óra.
+   */
+  static PlayClock system() {
+    return new PlayClock() {
+      @Override
+      long nanoTime() {
+        return System.nanoTime();
+      }
+    };
+  }
+
+  /**
+   * Az ütemekkel lépő óra, főleg tesztelési célból.
+   * Minden ütemnél pontosan a megadott idővel lép előre, így a lejátszás determinisztikus.
+   * @param tickNanos Az egy ütemre jutó idő (nsec).
+   * @return A létrehozott óra.
+   */
+  static PlayClock ticking(final long tickNanos) {
+    return new PlayClock() {
+
+      private long time = 0;
+
+      @Override
+      long nanoTime() {
+        return time;
+      }
+
+      @Override
+      void tick() {
+        time += tickNanos;
+      }
+    };
+  }
+}
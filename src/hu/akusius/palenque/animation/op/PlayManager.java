@@ -1,13 +1,17 @@
 package hu.akusius.palenque.animation.op;
 
+import hu.akusius.palenque.animation.util.IntValueListener;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.beans.PropertyChangeSupport;
 import javax.swing.Timer;
 
 /**
  * A lejátszást kezelő osztály.
+ * Az aktuális képkocka a lejátszás kezdete (ill. az utolsó ugrás, sebességváltás) óta eltelt időből számolódik,
+ * így lassú kirajzolás esetén a lejátszás nem lassul le, hanem képkockák maradnak ki.
  * @author Bujdosó Ákos
  */
 public class PlayManager {
@@ -38,15 +42,80 @@ public class PlayManager {
 
   private Integer oldSpeedValue;
 
+  /**
+   * Az időzítő ütemeinek névleges ideje (msec).
+   */
+  private static final int TICK_MSEC = 25;
+
+  /**
+   * A 0. sebességfokozathoz tartozó képkocka/másodperc érték (ütemenként egy képkocka).
+   * Minden további fokozat megduplázza.
+   */
+  private static final int BASE_FRAME_RATE = 1000 / TICK_MSEC;
+
+  private final PlayClock clock;
+
+  /**
+   * A lejátszás viszonyítási pontja (képkocka és időpont).
+   */
+  private int anchorFrame;
+
+  private long anchorTime;
+
+  /**
+   * A legutóbb megjelenített képkocka (a kimaradt képkockák számolásához).
+   */
+  private int lastFrame;
+
+  /**
+   * A legutóbbi ütem időpontja.
+   */
+  private long lastTickTime;
+
+  /**
+   * Az ütemek között mért (átlagolt) idő (nsec).
+   */
+  private long tickInterval = TICK_MSEC * 1000000L;
+
+  /**
+   * A legutóbbi ütemben beállított képkocka (a megjelenítés késleltetésének méréséhez).
+   */
+  private int tickFrame;
+
+  /**
+   * A legutóbb megjelenített képkocka ({@link #framePresented(int)}), -1, ha még nem volt ilyen.
+   */
+  private int presentedFrame = -1;
+
+  private long fpsWindowStart;
+
+  private int fpsWindowFrames;
+
+  /**
+   * A lejátszás éppen lépteti-e a képkockát (ilyenkor nem kell új viszonyítási pont).
+   */
+  private boolean advancing = false;
+
   /**
    * Létrehozás egyedi {@link Timer}-rel, főleg tesztelési célból.
+   * Az idő az időzítő ütemeivel lép, így minden ütem pontosan egy névleges ütemnyi lejátszást jelent.
    * @param timer Az egyedi {@link Timer} az időzítésekhez.
    */
   PlayManager(Timer timer) {
-    if (timer == null) {
+    this(timer, PlayClock.ticking(TICK_MSEC * 1000000L));
+  }
+
+  /**
+   * Létrehozás egyedi {@link Timer}-rel és órával, főleg tesztelési célból.
+   * @param timer Az egyedi {@link Timer} az időzítésekhez.
+   * @param clock Az egyedi óra az eltelt idő méréséhez.
+   */
+  PlayManager(Timer timer, PlayClock clock) {
+    if (timer == null || clock == null) {
       throw new IllegalArgumentException();
     }
     this.playTimer = timer;
+    this.clock = clock;
     this.playTimer.addActionListener(new ActionListener() {
       @Override
       public void actionPerformed(ActionEvent e) {
@@ -54,15 +123,22 @@ public class PlayManager {
       }
     });
     this.frameSlider = new PropSliderFrame();
-    this.frameSlider.addPropertyChangeListener(new PropertyChangeListener() {
+    this.frameSlider.addIntValueListener(new IntValueListener() {
       @Override
-      public void propertyChange(PropertyChangeEvent evt) {
-        if (PropSliderFrame.PROP_VALUE.equals(evt.getPropertyName())) {
-          refreshStates();
+      public void valueChanged(Object source, int oldValue, int newValue) {
+        if (!advancing) {
+          resetAnchor();
         }
+        refreshStates();
       }
     });
     this.speedSlider = new PropSlider(0, 6, 3);
+    this.speedSlider.addIntValueListener(new IntValueListener() {
+      @Override
+      public void valueChanged(Object source, int oldValue, int newValue) {
+        resetAnchor();
+      }
+    });
     this.playingToggle = new PropToggle(false);
     this.playingToggle.addPropertyChangeListener(new PropertyChangeListener() {
       @Override
@@ -72,9 +148,11 @@ public class PlayManager {
             if (frameSlider.isLastFrame()) {
               frameSlider.setValueInternal(0);
             }
+            startClock();
             playTimer.start();
           } else {
             playTimer.stop();
+            setMeasuredFps(0.0);
           }
         }
       }
@@ -175,7 +253,7 @@ public class PlayManager {
   }
 
   public PlayManager() {
-    this(new Timer(25, null));
+    this(new Timer(TICK_MSEC, null), PlayClock.system());
   }
 
   /**
@@ -192,6 +270,139 @@ public class PlayManager {
     return speedSlider;
   }
 
+  /**
+   * @return A beállított sebességhez tartozó lejátszási sebesség (képkocka/másodperc).
+   */
+  public int getFrameRate() {
+    return BASE_FRAME_RATE << speedSlider.getValue();
+  }
+
+  /**
+   * @return Az ütemek között mért átlagos idő (nsec), a következő ütemek időpontjának becsléséhez.
+   */
+  public long getTickInterval() {
+    return tickInterval;
+  }
+
+  /**
+   * Egy későbbi időpontban lejátszandó képkocka előrejelzése (pl. az előre betöltéshez).
+   * Ugyanúgy a viszonyítási pontból és az eltelt időből számol, mint a lejátszás, így a legutóbbi ütemhez képest
+   * az ütemidő többszöröseivel megadott időpontokra pontosan az ott megjelenő képkockákat adja.
+   * @param nanosAhead Az idő a legutóbbi ütemhez képest (nsec).
+   * @return A várható képkocka; ha nincs lejátszás, akkor az aktuális.
+   */
+  public int predictFrame(long nanosAhead) {
+    if (!playingToggle.isSelected()) {
+      return frameSlider.getValue();
+    }
+    long elapsed = Math.max(lastTickTime + nanosAhead - anchorTime, 0L);
+    long frame = anchorFrame + elapsed * getFrameRate() / 1000000000L;
+    return (int) Math.min(frame, frameSlider.getMax());
+  }
+
+  public static final String PROP_MEASURED_FPS = "measuredFps";
+
+  private double measuredFps = 0.0;
+
+  /**
+   * A lejátszás közben mért, ténylegesen megjelenített képkocka/másodperc érték.
+   * Csak a {@link #framePresented(int)} által jelzett, egymástól különböző képkockák számítanak,
+   * így a kirajzolás lassulása itt is látszik (az ütemek száma ettől nem változik).
+   * @return A mért érték (0, ha nincs lejátszás).
+   */
+  public double getMeasuredFps() {
+    return measuredFps;
+  }
+
+  private void setMeasuredFps(double measuredFps) {
+    double oldMeasuredFps = this.measuredFps;
+    this.measuredFps = measuredFps;
+    if (propertyChangeSupport.hasListeners(PROP_MEASURED_FPS)) {
+      propertyChangeSupport.firePropertyChange(PROP_MEASURED_FPS, oldMeasuredFps, measuredFps);
+    }
+  }
+
+  public static final String PROP_DROPPED_FRAMES = "droppedFrames";
+
+  private long droppedFrames = 0;
+
+  /**
+   * @return A lejátszás során kimaradt képkockák száma: ütemenként az ugrás annyival, amennyivel nagyobb
+   * az egy ütemre (a sebesség szerint) jutó képkockák számánál.
+   */
+  public long getDroppedFrames() {
+    return droppedFrames;
+  }
+
+  private void setDroppedFrames(long droppedFrames) {
+    long oldDroppedFrames = this.droppedFrames;
+    this.droppedFrames = droppedFrames;
+    if (propertyChangeSupport.hasListeners(PROP_DROPPED_FRAMES)) {
+      propertyChangeSupport.firePropertyChange(PROP_DROPPED_FRAMES, oldDroppedFrames, droppedFrames);
+    }
+  }
+
+  public static final String PROP_DISPATCH_TIME = "dispatchTime";
+
+  private double dispatchTime = 0.0;
+
+  /**
+   * A legutóbbi képkocka-váltás kiértesítésének ideje (msec), azaz a képkocka figyelőinek futási ideje.
+   * A háttérben történő kirajzolás ideje ebben nincs benne, így ez nem a képkocka megjelenítésének késleltetése (ld. {@link #getRenderLatency()}).
+   * @return A kiértesítés ideje.
+   */
+  public double getDispatchTime() {
+    return dispatchTime;
+  }
+
+  private void setDispatchTime(double dispatchTime) {
+    double oldDispatchTime = this.dispatchTime;
+    this.dispatchTime = dispatchTime;
+    if (propertyChangeSupport.hasListeners(PROP_DISPATCH_TIME)) {
+      propertyChangeSupport.firePropertyChange(PROP_DISPATCH_TIME, oldDispatchTime, dispatchTime);
+    }
+  }
+
+  public static final String PROP_RENDER_LATENCY = "renderLatency";
+
+  private double renderLatency = 0.0;
+
+  /**
+   * A legutóbbi képkocka megjelenítésének késleltetése (msec): a képkockát beállító ütemtől
+   * a megjelenítéséig ({@link #framePresented(int)}) eltelt idő, a háttérben történő kirajzolással együtt.
+   * @return A késleltetés.
+   */
+  public double getRenderLatency() {
+    return renderLatency;
+  }
+
+  private void setRenderLatency(double renderLatency) {
+    double oldRenderLatency = this.renderLatency;
+    this.renderLatency = renderLatency;
+    if (propertyChangeSupport.hasListeners(PROP_RENDER_LATENCY)) {
+      propertyChangeSupport.firePropertyChange(PROP_RENDER_LATENCY, oldRenderLatency, renderLatency);
+    }
+  }
+
+  /**
+   * Egy képkocka megjelenítésének jelzése (a kirajzolást végző felülettől, az eseménykezelő szálon).
+   * Lejátszás közben ebből számolódik a mért képkocka/másodperc érték és a megjelenítés késleltetése;
+   * ugyanannak a képkockának az ismételt megjelenítése nem számít.
+   * @param frame A megjelenített képkocka.
+   */
+  public void framePresented(int frame) {
+    if (!playingToggle.isSelected() || frame == presentedFrame) {
+      return;
+    }
+    presentedFrame = frame;
+    long now = clock.nanoTime();
+    if (frame == tickFrame) {
+      setRenderLatency((now - lastTickTime) / 1000000.0);
+    }
+    fpsWindowFrames++;
+    updateMeasuredFps(now);
+  }
+
   /**
    * @return A lejátszási állapotot kezelő tulajdonság.
    */
@@ -277,14 +488,75 @@ public class PlayManager {
     refreshStates();
   }
 
+  private void resetAnchor() {
+    anchorFrame = frameSlider.getValue();
+    anchorTime = clock.nanoTime();
+    lastFrame = anchorFrame;
+  }
+
+  private void startClock() {
+    resetAnchor();
+    lastTickTime = anchorTime;
+    if (playTimer.getDelay() > 0) {
+      tickInterval = playTimer.getDelay() * 1000000L;
+    }
+    tickFrame = anchorFrame;
+    presentedFrame = -1;
+    fpsWindowStart = anchorTime;
+    fpsWindowFrames = 0;
+  }
+
+  /**
+   * A mért képkocka/másodperc érték frissítése, ha letelt a mérési ablak (kb. 1 másodperc).
+   */
+  private void updateMeasuredFps(long now) {
+    if (!playingToggle.isSelected()) {
+      return;
+    }
+    long window = now - fpsWindowStart;
+    if (window >= 1000000000L) {
+      setMeasuredFps(fpsWindowFrames * 1000000000.0 / window);
+      fpsWindowStart = now;
+      fpsWindowFrames = 0;
+    }
+  }
+
   private void timerTick() {
-    int frame = frameSlider.getValue();
-    frame += (int) Math.pow(2, speedSlider.getValue());
+    clock.tick();
+    long now = clock.nanoTime();
+
+    // Az ütemidő mozgó átlaga (a késő vagy túl korai ütemek csak kis mértékben módosítják)
+    if (now > lastTickTime) {
+      tickInterval += (now - lastTickTime - tickInterval) / 8;
+    }
+    lastTickTime = now;
+
+    // A cél képkocka az eltelt időből
+    long target = anchorFrame + (now - anchorTime) * getFrameRate() / 1000000000L;
+    int frame = (int) Math.min(target, frameSlider.getMax());
     if (frame >= frameSlider.getMax()) {
       frame = frameSlider.getMax();
       playingToggle.setSelectedInternal(false);
     }
-    frameSlider.setValueInternal(frame);
+
+    // Az ütemenként várhatónál nagyobb ugrás kimaradt képkockákat jelent
+    long expected = (long) getFrameRate() * playTimer.getDelay() / 1000L;
+    long skipped = frame - lastFrame - expected;
+    if (skipped > 0) {
+      setDroppedFrames(droppedFrames + skipped);
+    }
+    lastFrame = frame;
+    tickFrame = frame;
+    advancing = true;
+    try {
+      frameSlider.setValueInternal(frame);
+    } finally {
+      advancing = false;
+    }
+    setDispatchTime((clock.nanoTime() - now) / 1000000.0);
+
+    // Megjelenítés nélkül is frissül, hogy a leálló kirajzolás is látsszon
+    updateMeasuredFps(now);
   }
 
   private void refreshStates() {
@@ -300,14 +572,46 @@ public class PlayManager {
     speedUpAction.setEnabledInternal(this.enabled && speedSlider.getValue() < speedSlider.getMax());
   }
 
+  private static final int SMALL_SKIP_STEP = 100;
+
+  private static final int NORMAL_SKIP_STEP = 1000;
+
+  private static final int LARGE_SKIP_STEP = 2500;
+
+  /**
+   * @return Az előre- és visszaugrások lehetséges lépésközei (képkockában), növekvő sorrendben.
+   */
+  public static int[] getSkipSteps() {
+    return new int[]{SMALL_SKIP_STEP, NORMAL_SKIP_STEP, LARGE_SKIP_STEP};
+  }
+
   private static int getSkipStep(Object param) {
     if (param instanceof String) {
       if ("small".equalsIgnoreCase((String) param)) {
-        return 100;
+        return SMALL_SKIP_STEP;
       } else if ("large".equalsIgnoreCase((String) param)) {
-        return 2500;
+        return LARGE_SKIP_STEP;
       }
     }
-    return 1000;
+    return NORMAL_SKIP_STEP;
+  }
+
+  private transient final PropertyChangeSupport propertyChangeSupport = new PropertyChangeSupport(this);
+
+  public void addPropertyChangeListener(PropertyChangeListener listener) {
+    propertyChangeSupport.addPropertyChangeListener(listener);
+  }
+
+  public void removePropertyChangeListener(PropertyChangeListener listener) {
+    propertyChangeSupport.removePropertyChangeListener(listener);
+  }
+
+  public void addPropertyChangeListener(String propertyName, PropertyChangeListener listener) {
+    propertyChangeSupport.addPropertyChangeListener(propertyName, listener);
+  }
+
+  public void removePropertyChangeListener(String propertyName, PropertyChangeListener listener) {
+    propertyChangeSupport.removePropertyChangeListener(propertyName, listener);
   }
+
 }
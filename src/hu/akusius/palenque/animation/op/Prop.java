@@ -47,4 +47,12 @@ public abstract class Prop {
     propertyChangeSupport.removePropertyChangeListener(listener);
   }
 
+  public void addPropertyChangeListener(String propertyName, PropertyChangeListener listener) {
+    propertyChangeSupport.addPropertyChangeListener(propertyName, listener);
+  }
+
+  public void removePropertyChangeListener(String propertyName, PropertyChangeListener listener) {
+    propertyChangeSupport.removePropertyChangeListener(propertyName, listener);
+  }
+
 }
@@ -1,7 +1,12 @@
 package hu.akusius.palenque.animation.op;
 
+import hu.akusius.palenque.animation.util.IntValueListener;
+import hu.akusius.palenque.animation.util.IntValueSupport;
+
 /**
  * Egy csúszka típusú tulajdonság.
+ * Az érték változása {@link IntValueListener}-rel memóriafoglalás nélkül is figyelhető; a {@link #PROP_VALUE}
+ * tulajdonságváltozás csak akkor jön létre, ha van rá eseménykezelő.
  * @author Bujdosó Ákos
  */
 public class PropSlider extends Prop {
@@ -74,8 +79,32 @@ public class PropSlider extends Prop {
       throw new IllegalArgumentException();
     }
     int oldValue = this.value;
+    if (oldValue == value) {
+      return;
+    }
     this.value = value;
-    propertyChangeSupport.firePropertyChange(PROP_VALUE, oldValue, value);
+    intValueSupport.fireValueChanged(oldValue, value);
+    if (propertyChangeSupport.hasListeners(PROP_VALUE)) {
+      propertyChangeSupport.firePropertyChange(PROP_VALUE, oldValue, value);
+    }
+  }
+
+  private final IntValueSupport intValueSupport = new IntValueSupport(this);
+
+  /**
+   * Eseménykezelő hozzáadása az érték változásához.
+   * @param listener A hozzáadandó eseménykezelő.
+   */
+  public void addIntValueListener(IntValueListener listener) {
+    intValueSupport.addIntValueListener(listener);
+  }
+
+  /**
+   * Az érték változásához rendelt eseménykezelő eltávolítása.
+   * @param listener Az eltávolítandó eseménykezelő.
+   */
+  public void removeIntValueListener(IntValueListener listener) {
+    intValueSupport.removeIntValueListener(listener);
   }
 
 }
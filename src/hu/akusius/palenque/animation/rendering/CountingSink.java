@@ -0,0 +1,110 @@
+package hu.akusius.palenque.animation.rendering;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Semmit sem rajzoló, csak a műveleteket számoló {@link LineSink}.
+ * Mérésekhez (a geometriai rész költsége a raszterizálás nélkül) és tesztekhez.
+ * @author Bujdosó Ákos
+ */
+public final class CountingSink implements LineSink {
+
+  private int color = 0xff000000;
+
+  private float alpha = 1f;
+
+  private long callCount;
+
+  private long lineCount;
+
+  private long imageCount;
+
+  private long imagePixelCount;
+
+  @Override
+  public void setColor(int argb) {
+    color = argb;
+    callCount++;
+  }
+
+  @Override
+  public int getColor() {
+    return color;
+  }
+
+  @Override
+  public void setAlpha(float alpha) {
+    this.alpha = alpha;
+    callCount++;
+  }
+
+  @Override
+  public float getAlpha() {
+    return alpha;
+  }
+
+  @Override
+  public void drawLine(int x1, int y1, int x2, int y2) {
+    callCount++;
+    lineCount++;
+  }
+
+  @Override
+  public void drawPolyline(int[] xs, int[] ys, int n) {
+    callCount++;
+    if (n > 1) {
+      lineCount += n - 1;
+    }
+  }
+
+  @Override
+  public void drawSegments(int[] coords, int count) {
+    callCount++;
+    lineCount += count;
+  }
+
+  @Override
+  public void drawImage(BufferedImage image, int sw, int sh, int x, int y, int w, int h) {
+    callCount++;
+    imageCount++;
+    imagePixelCount += (long) w * h;
+  }
+
+  /**
+   * A számlálók nullázása.
+   */
+  public void reset() {
+    callCount = 0;
+    lineCount = 0;
+    imageCount = 0;
+    imagePixelCount = 0;
+  }
+
+  /**
+   * @return Az összes hívás száma.
+   */
+  public long getCallCount() {
+    return callCount;
+  }
+
+  /**
+   * @return A kirajzolt vonalszakaszok száma (a töröttvonalak szakaszaival együtt).
+   */
+  public long getLineCount() {
+    return lineCount;
+  }
+
+  /**
+   * @return A kirajzolt képek száma.
+   */
+  public long getImageCount() {
+    return imageCount;
+  }
+
+  /**
+   * @return A kirajzolt képek összterülete (képpont).
+   */
+  public long getImagePixelCount() {
+    return imagePixelCount;
+  }
+}
@@ -0,0 +1,106 @@
+package hu.akusius.palenque.animation.rendering;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+
+/**
+ * {@link Graphics2D} célra rajzoló {@link LineSink}.
+ * Nem tárol saját állapotot (a szín és az átlátszóság a {@link Graphics2D} objektumé),
+ * így a célba közvetlenül is lehet rajzolni.
+ * @author Bujdosó Ákos
+ */
+public final class Graphics2DSink implements LineSink {
+
+  private final Graphics2D g;
+
+  /**
+   * A legutóbb beállított szín (hogy ugyanazt a színt ne kelljen újra létrehozni).
+   */
+  private Color color;
+
+  /**
+   * Létrehozás.
+   * @param g A kirajzolás célja.
+   */
+  public Graphics2DSink(Graphics2D g) {
+    if (g == null) {
+      throw new IllegalArgumentException();
+    }
+    this.g = g;
+  }
+
+  /**
+   * @return A kirajzolás célja.
+   */
+  public Graphics2D getGraphics() {
+    return g;
+  }
+
+  @Override
+  public void setColor(int argb) {
+    if (color == null || color.getRGB() != argb) {
+      color = new Color(argb, true);
+    }
+    g.setColor(color);
+  }
+
+  @Override
+  public int getColor() {
+    return g.getColor().getRGB();
+  }
+
+  @Override
+  public void setAlpha(float alpha) {
+    g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alpha));
+  }
+
+  @Override
+  public float getAlpha() {
+    Composite c = g.getComposite();
+    return c instanceof AlphaComposite ? ((AlphaComposite) c).getAlpha() : 1f;
+  }
+
+  @Override
+  public void drawLine(int x1, int y1, int x2, int y2) {
+    g.drawLine(x1, y1, x2, y2);
+  }
+
+  @Override
+  public void drawPolyline(int[] xs, int[] ys, int n) {
+    g.drawPolyline(xs, ys, n);
+  }
+
+  @Override
+  public void drawSegments(int[] coords, int count) {
+    for (int i = 0, ci = 0; i < count; i++, ci += 4) {
+      g.drawLine(coords[ci], coords[ci + 1], coords[ci + 2], coords[ci + 3]);
+    }
+  }
+
+  @Override
+  public void drawImage(BufferedImage image, int sw, int sh, int x, int y, int w, int h) {
+    if (sw == w && sh == h) {
+      if (sw == image.getWidth() && sh == image.getHeight()) {
+        g.drawImage(image, x, y, null);
+      } else {
+        g.drawImage(image, x, y, x + w, y + h, 0, 0, sw, sh, null);
+      }
+      return;
+    }
+
+    // Átméretezés bilineáris interpolációval
+    Graphics2D sg = (Graphics2D) g.create();
+    sg.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+    sg.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+    if (sw == image.getWidth() && sh == image.getHeight()) {
+      sg.drawImage(image, x, y, w, h, null);
+    } else {
+      sg.drawImage(image, x, y, x + w, y + h, 0, 0, sw, sh, null);
+    }
+    sg.dispose();
+  }
+}
@@ -3,7 +3,8 @@ package hu.akusius.palenque.animation.rendering;
 /**
  * Egy négyzetrácsot reprezentáló osztály.
  * A koordináták jobbra és felfelé nőnek.
- * Az elemeket a tömbben soronként tároljuk, lentről felfelé.
+ * Az elemek tárolása a mérettől függ: a kisebb négyzetrácsok bitsíkokban ({@link PackedGridStorage}),
+ * a nagyobbak ritkán, csak az elemeket tárolva ({@link SparseGridStorage}).
  * @author Bujdosó Ákos
  */
 final class Grid {
@@ -20,9 +21,14 @@ final class Grid {
 
   public static final byte ITEM_LAST = 3;
 
+  /**
+   * Az a legnagyobb méret, amelyig a négyzetrács alapértelmezésben bitsíkokban tárolódik (egy sor egy szó).
+   */
+  static final int MAX_PACKED_SIZE = 63;
+
   private final int size;
 
-  private final byte[][] items;
+  private final GridStorage storage;
 
   private final int ci;
 
@@ -30,6 +36,17 @@ final class Grid {
 
   private int centerY;
 
+  private boolean locked;
+
+  private int version;
+
+  private volatile GridMesh mesh;
+
+  /**
+   * A tartalom szerinti hasítókód (csak lezárt négyzetrácsnál tárolva, 0: még nincs kiszámolva).
+   */
+  private int hash;
+
   /**
    * Új négyzetháló létrehozása a megadott mérettel és (0, 0) középső cellával.
    * @param size A négyzetháló mérete.
@@ -45,9 +62,25 @@ final class Grid {
    * @param centerY A középső cella (abszolút) Y koordinátája.
    */
   Grid(int size, int centerX, int centerY) {
+    this(size, centerX, centerY, size > MAX_PACKED_SIZE);
+  }
+
+  /**
+   * Új négyzetháló létrehozása a megadott mérettel, bal alsó cellával és tárolási móddal.
+   * @param size A négyzetháló mérete. Csak páratlan és 1-nél nagyobb szám lehet.
+   * @param centerX A középső cella (abszolút) X koordinátája.
+   * @param centerY A középső cella (abszolút) Y koordinátája.
+   * @param sparse {@code true} esetén ritka, egyébként bitsíkos tárolással.
+   */
+  Grid(int size, int centerX, int centerY, boolean sparse) {
+    this(sparse ? new SparseGridStorage(size) : new PackedGridStorage(size), centerX, centerY);
+  }
+
+  private Grid(GridStorage storage, int centerX, int centerY) {
+    int size = storage.size;
     assert size > 1 && size % 2 == 1;
     this.size = size;
-    this.items = new byte[size][size];
+    this.storage = storage;
     this.centerX = centerX;
     this.centerY = centerY;
     this.ci = (size - 1) / 2;
@@ -58,13 +91,47 @@ final class Grid {
   }
 
   /**
-   * @return A négyzethálót alkotó elemek.
+   * @return A négyzethálót alkotó elemek másolata (soronként, lentről felfelé).
    */
-  @SuppressWarnings("ReturnOfCollectionOrArrayField")
   byte[][] getItems() {
+    byte[][] items = new byte[size][size];
+    for (ItemCursor c = items(); c.next();) {
+      items[c.getY()][c.getX()] = c.getType();
+    }
     return items;
   }
 
+  /**
+   * @param ix A cella X indexe (0 és méret-1 között).
+   * @param iy A cella Y indexe (0 és méret-1 között).
+   * @return Az elem típusa a megadott cellában.
+   */
+  byte getItem(int ix, int iy) {
+    return storage.get(ix, iy);
+  }
+
+  /**
+   * @return Az elemek száma.
+   */
+  int getItemCount() {
+    return storage.getItemCount();
+  }
+
+  /**
+   * @return Új bejáró a négyzetrács elemeihez (sorfolytonosan, lentről felfelé, balról jobbra).
+   *         A bejárás ideje az elemek számával (és nem a cellák számával) arányos.
+   */
+  ItemCursor items() {
+    return new ItemCursor(size, storage.getItemCodes());
+  }
+
+  /**
+   * @return {@code true}, ha az elemek ritkán (és nem bitsíkokban) vannak tárolva.
+   */
+  boolean isSparse() {
+    return storage instanceof SparseGridStorage;
+  }
+
   /**
    * @return A középső cella abszolút X koordinátája: elemek hozzáadásakor és összefűzéskor van szerepe.
    */
@@ -85,6 +152,7 @@ final class Grid {
    * @param centerY A középső cella (abszolút) Y koordinátája.
    */
   public void setCenter(int centerX, int centerY) {
+    beforeModify();
     this.centerX = centerX;
     this.centerY = centerY;
   }
@@ -96,13 +164,14 @@ final class Grid {
    * @param y Az elem abszolút Y koordinátája.
    */
   public void addItem(byte type, int x, int y) {
+    beforeModify();
     assert !(type < ITEM_FIRST || type > ITEM_LAST);
     int ix = x - centerX + ci;
     int iy = y - centerY + ci;
     assert !(ix < 0 || ix >= size || iy < 0 || iy >= size);
     assert !(type != ITEM_SQUARE && (ix < 1 || ix >= size - 1 || iy < 1 || iy >= size - 1));
-    assert !(items[iy][ix] != ITEM_EMPTY && items[iy][ix] != type);
-    items[iy][ix] = type;
+    assert !(getItem(ix, iy) != ITEM_EMPTY && getItem(ix, iy) != type);
+    storage.set(ix, iy, type);
   }
 
   /**
@@ -151,66 +220,14 @@ final class Grid {
 
   /**
    * A négyzetrács elemeinek elforgatása 90 fokkal óramutató járása szerinti irányban a megadott számban.
+   * A középső cella mindig a helyén marad.
    * @param num A forgatások száma.
    * @param keep {@code true} esetén megtartja az eredeti elemeket, egyébként azokat törli.
    */
   public void rotate(int num, boolean keep) {
     assert num >= 1 && num <= 3;
-    for (int iy = 0; iy < size; iy++) {
-      for (int ix = 0; ix < size; ix++) {
-        byte it = (byte) (items[iy][ix] & 0x0F);
-        if (it >= ITEM_FIRST && it <= ITEM_LAST) {
-          if (ix == ci && iy == ci) {
-            // Középső elem mindig marad a helyén
-            continue;
-          }
-          for (int n = 1; n <= num; n++) {
-            if (!keep && n < num) {
-              continue;
-            }
-            final int niy;
-            final int nix;
-            switch (n) {
-              case 1:
-                // y, -x
-                nix = iy;
-                niy = (ci << 1) - ix;
-                break;
-              case 2:
-                // -x, -y
-                nix = (ci << 1) - ix;
-                niy = (ci << 1) - iy;
-                break;
-              case 3:
-                // -y, x
-                nix = (ci << 1) - iy;
-                niy = ix;
-                break;
-              default:
-                throw new AssertionError();
-            }
-            if (!keep) {
-              items[iy][ix] &= 0xF0;
-            }
-            items[niy][nix] |= (byte) (it << 4);
-          }
-        }
-      }
-    }
-
-    // A felső nibble-be tettük bele az új elemeket
-    // Végigmegyünk másodjára és beletesszük alulra
-    for (int i = 0; i < size; i++) {
-      for (int j = 0; j < size; j++) {
-        byte b = items[i][j];
-        if (b > 0x0F) {
-          byte it = (byte) (b & 0x0F);
-          byte nit = (byte) (b >> 4);
-          assert it == ITEM_EMPTY || nit == it;
-          items[i][j] = nit;
-        }
-      }
-    }
+    beforeModify();
+    storage.rotate(num, keep);
   }
 
   /**
@@ -218,18 +235,8 @@ final class Grid {
    * Az eredeti elemeket a helyükön hagyja.
    */
   public void octuple() {
-    rotate(3, true);
-    for (int iy = 0; iy < size; iy++) {
-      for (int ix = 0; ix < size; ix++) {
-        byte it = (byte) (items[iy][ix] & 0x0F);
-        if (it >= ITEM_FIRST && it <= ITEM_LAST) {
-          int nix = (ci << 1) - ix;
-          int niy = iy;
-          assert items[niy][nix] == ITEM_EMPTY || items[niy][nix] == it;
-          items[niy][nix] = it;
-        }
-      }
-    }
+    beforeModify();
+    storage.octuple();
   }
 
   /**
@@ -237,35 +244,175 @@ final class Grid {
    * @param o A másik négyzetrács.
    */
   public void merge(Grid o) {
-    for (int iy = 0; iy < o.size; iy++) {
-      for (int ix = 0; ix < o.size; ix++) {
-        byte b = o.items[iy][ix];
-        if (b != ITEM_EMPTY) {
-          int nix = ix + o.centerX - o.ci - this.centerX + this.ci;
-          int niy = iy + o.centerY - o.ci - this.centerY + this.ci;
-          assert nix >= 0 && nix < size && niy >= 0 && niy < size;
-          assert !(b != ITEM_SQUARE && (nix < 1 || nix >= size - 1 || niy < 1 || niy >= size - 1));
-          assert items[niy][nix] == ITEM_EMPTY || items[niy][nix] == b;
-          items[niy][nix] = b;
-        }
-      }
-    }
+    beforeModify();
+    int dx = o.centerX - o.ci - this.centerX + this.ci;
+    int dy = o.centerY - o.ci - this.centerY + this.ci;
+    storage.merge(o.storage, dx, dy);
   }
 
   /**
    * A négyzetháló klónozása.
+   * A klón mindig módosítható, akkor is, ha az eredeti le van zárva.
    * @return Az új klónozott négyzetrács.
    */
   public Grid cloneGrid() {
-    Grid g = new Grid(this.size, this.centerX, this.centerY);
-    for (int i = 0; i < size; i++) {
-      for (int j = 0; j < size; j++) {
-        byte b = items[i][j];
-        if (b != ITEM_EMPTY) {
-          g.items[i][j] = b;
-        }
+    return cloneGrid(this.centerX, this.centerY);
+  }
+
+  /**
+   * A négyzetháló klónozása új abszolút középponttal.
+   * A klón mindig módosítható, akkor is, ha az eredeti le van zárva.
+   * @param centerX A klón középső cellájának (abszolút) X koordinátája.
+   * @param centerY A klón középső cellájának (abszolút) Y koordinátája.
+   * @return Az új klónozott négyzetrács.
+   */
+  public Grid cloneGrid(int centerX, int centerY) {
+    return new Grid(storage.copy(), centerX, centerY);
+  }
+
+  /**
+   * @return A négyzetrács tartalom szerinti hasítókódja (méret, középpont, elemek).
+   *         Lezárt négyzetrácsnál csak egyszer számolódik ki.
+   * @see #contentEquals(Grid)
+   */
+  int contentHash() {
+    int h = hash;
+    if (h == 0) {
+      h = size;
+      h = 31 * h + centerX;
+      h = 31 * h + centerY;
+      h = 31 * h + storage.contentHash();
+      if (h == 0) {
+        h = 1;
       }
+      if (locked) {
+        hash = h;
+      }
+    }
+    return h;
+  }
+
+  /**
+   * @param o A másik négyzetrács.
+   * @return {@code true}, ha a két négyzetrács mérete, középpontja és elemei megegyeznek.
+   */
+  boolean contentEquals(Grid o) {
+    if (o == this) {
+      return true;
+    }
+    return o != null && size == o.size && centerX == o.centerX && centerY == o.centerY
+            && storage.contentEquals(o.storage);
+  }
+
+  /**
+   * A négyzetrács lezárása: ezután már nem módosítható (sem az elemei, sem a középpontja).
+   * A lezárt négyzetrács szálak között is biztonságosan megosztható.
+   * @return Maga a négyzetrács.
+   */
+  Grid lock() {
+    locked = true;
+    return this;
+  }
+
+  /**
+   * @return {@code true}, ha a négyzetrács le van zárva.
+   */
+  public boolean isLocked() {
+    return locked;
+  }
+
+  /**
+   * @return A négyzetrács verziója: minden módosítással (elemek, középpont) változik.
+   */
+  int getVersion() {
+    return version;
+  }
+
+  /**
+   * @return A négyzetrácshoz legutóbb elkészített háló (vagy {@code null}). Lehet, hogy már egy korábbi verzióhoz tartozik.
+   * @see GridMesh#of(Grid)
+   */
+  GridMesh getCachedMesh() {
+    return mesh;
+  }
+
+  void setCachedMesh(GridMesh mesh) {
+    this.mesh = mesh;
+  }
+
+  /**
+   * Módosítás előtt ellenőrzi, hogy nincs-e lezárva a négyzetrács, és lépteti a verziót.
+   */
+  private void beforeModify() {
+    if (locked) {
+      throw new IllegalStateException();
+    }
+    version++;
+  }
+
+  /**
+   * Bejáró a négyzetrács elemeihez.
+   * Használata: {@code for (ItemCursor c = grid.items(); c.next();) { ... }}
+   */
+  static final class ItemCursor {
+
+    private final int size;
+
+    private final int[] codes;
+
+    private int index = -1;
+
+    private int x, y;
+
+    private byte type;
+
+    private ItemCursor(int size, int[] codes) {
+      this.size = size;
+      this.codes = codes;
+    }
+
+    /**
+     * Továbblépés a következő elemre.
+     * @return {@code false}, ha már nincs több elem.
+     */
+    boolean next() {
+      if (++index >= codes.length) {
+        return false;
+      }
+      int code = codes[index];
+      int cell = code >>> 2;
+      x = cell % size;
+      y = cell / size;
+      type = (byte) (code & 3);
+      return true;
+    }
+
+    /**
+     * Visszaállás a bejárás elejére.
+     */
+    void reset() {
+      index = -1;
+    }
+
+    /**
+     * @return Az aktuális elem X indexe (0 és méret-1 között).
+     */
+    int getX() {
+      return x;
+    }
+
+    /**
+     * @return Az aktuális elem Y indexe (0 és méret-1 között).
+     */
+    int getY() {
+      return y;
+    }
+
+    /**
+     * @return Az aktuális elem típusa.
+     */
+    byte getType() {
+      return type;
     }
-    return g;
   }
 }
@@ -0,0 +1,209 @@
+package hu.akusius.palenque.animation.rendering;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A négyzetrácsok tartalom szerinti egységesítése (interning) és a rajtuk végzett műveletek eredményeinek
+ * gyorsítótára.
+ * Minden művelet lezárt négyzetráccsal tér vissza, amelyet a bemenetek tartalma és a művelet paraméterei
+ * azonosítanak: ugyanazzal a tartalommal végzett ugyanazon művelet ugyanazt a példányt adja vissza, így a
+ * származtatott négyzetrácsok (és a hozzájuk tartozó hálók) megosztódnak a képkockák és szálak között.
+ * A tárolt elemek száma korlátozott, a legrégebben használtak kiesnek. Szálbiztos.
+ * @author Bujdosó Ákos
+ */
+final class GridCache {
+
+  /**
+   * A tárolt elemek (egységesített négyzetrácsok és eredmények) legnagyobb száma.
+   */
+  static final int MAX_ENTRIES = 512;
+
+  private static final int OP_INTERN = 0, OP_ROTATE = 1, OP_OCTUPLE = 2, OP_MERGE = 3, OP_MOVE = 4;
+
+  @SuppressWarnings("serial")
+  private static final Map<Key, Grid> entries = new LinkedHashMap<Key, Grid>(64, .75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Key, Grid> eldest) {
+      return size() > MAX_ENTRIES;
+    }
+  };
+
+  private GridCache() {
+  }
+
+  /**
+   * A megadott tartalmú négyzetrács egységes példánya.
+   * Ha még nincs ilyen tartalmú, akkor a megadott négyzetrács lesz az (és le lesz zárva),
+   * egyébként a megadott négyzetrács változatlan (nem lesz lezárva).
+   * @param grid A négyzetrács.
+   * @return A megadott tartalmú lezárt négyzetrács.
+   */
+  static Grid intern(Grid grid) {
+    Key key = new Key(OP_INTERN, grid, null, 0, 0);
+    synchronized (entries) {
+      Grid g = entries.get(key);
+      if (g != null) {
+        return g;
+      }
+      grid.lock();
+      entries.put(key, grid);
+      return grid;
+    }
+  }
+
+  /**
+   * @param grid A négyzetrács.
+   * @param num A forgatások száma.
+   * @param keep {@code true} esetén az eredeti elemek megmaradnak.
+   * @return A négyzetrács elforgatottja.
+   * @see Grid#rotate(int, boolean)
+   */
+  static Grid rotate(Grid grid, int num, boolean keep) {
+    grid = intern(grid);
+    Key key = new Key(OP_ROTATE, grid, null, num, keep ? 1 : 0);
+    Grid g = lookup(key);
+    if (g == null) {
+      g = grid.cloneGrid();
+      g.rotate(num, keep);
+      g = store(key, g);
+    }
+    return g;
+  }
+
+  /**
+   * @param grid A négyzetrács.
+   * @return A négyzetrács nyolcszorozottja.
+   * @see Grid#octuple()
+   */
+  static Grid octuple(Grid grid) {
+    grid = intern(grid);
+    Key key = new Key(OP_OCTUPLE, grid, null, 0, 0);
+    Grid g = lookup(key);
+    if (g == null) {
+      g = grid.cloneGrid();
+      g.octuple();
+      g = store(key, g);
+    }
+    return g;
+  }
+
+  /**
+   * @param grid A négyzetrács.
+   * @param o A hozzáadandó másik négyzetrács.
+   * @return A két négyzetrács összefűzése (az első méretével és középpontjával).
+   * @see Grid#merge(Grid)
+   */
+  static Grid merge(Grid grid, Grid o) {
+    grid = intern(grid);
+    o = intern(o);
+    Key key = new Key(OP_MERGE, grid, o, 0, 0);
+    Grid g = lookup(key);
+    if (g == null) {
+      g = grid.cloneGrid();
+      g.merge(o);
+      g = store(key, g);
+    }
+    return g;
+  }
+
+  /**
+   * @param grid A négyzetrács.
+   * @param centerX Az új középső cella (abszolút) X koordinátája.
+   * @param centerY Az új középső cella (abszolút) Y koordinátája.
+   * @return A négyzetrács áthelyezve az új középpontra.
+   * @see Grid#cloneGrid(int, int)
+   */
+  static Grid move(Grid grid, int centerX, int centerY) {
+    if (grid.isLocked() && grid.getCenterX() == centerX && grid.getCenterY() == centerY) {
+      return intern(grid);
+    }
+    grid = intern(grid);
+    Key key = new Key(OP_MOVE, grid, null, centerX, centerY);
+    Grid g = lookup(key);
+    if (g == null) {
+      g = store(key, grid.cloneGrid(centerX, centerY));
+    }
+    return g;
+  }
+
+  /**
+   * @return A jelenleg tárolt elemek száma.
+   */
+  static int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  private static Grid lookup(Key key) {
+    synchronized (entries) {
+      return entries.get(key);
+    }
+  }
+
+  /**
+   * Egy kiszámolt eredmény eltárolása (egységesítve). Ha közben egy másik szál már eltárolta, akkor azt adja vissza.
+   */
+  private static Grid store(Key key, Grid result) {
+    result = intern(result);
+    synchronized (entries) {
+      Grid g = entries.get(key);
+      if (g != null) {
+        return g;
+      }
+      entries.put(key, result);
+      return result;
+    }
+  }
+
+  /**
+   * Egy művelet azonosítója: a művelet, a bemenetek tartalma és a paraméterek.
+   */
+  private static final class Key {
+
+    private final int op;
+
+    private final Grid grid;
+
+    private final Grid other;
+
+    private final int arg1;
+
+    private final int arg2;
+
+    private final int hash;
+
+    Key(int op, Grid grid, Grid other, int arg1, int arg2) {
+      this.op = op;
+      this.grid = grid;
+      this.other = other;
+      this.arg1 = arg1;
+      this.arg2 = arg2;
+      int h = op;
+      h = 31 * h + grid.contentHash();
+      h = 31 * h + (other != null ? other.contentHash() : 0);
+      h = 31 * h + arg1;
+      h = 31 * h + arg2;
+      this.hash = h;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key k = (Key) obj;
+      return hash == k.hash && op == k.op && arg1 == k.arg1 && arg2 == k.arg2
+              && grid.contentEquals(k.grid) && (other == null ? k.other == null : other.contentEquals(k.other));
+    }
+  }
+}
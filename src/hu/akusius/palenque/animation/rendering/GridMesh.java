@@ -0,0 +1,250 @@
+package hu.akusius.palenque.animation.rendering;
+
+import java.util.Arrays;
+
+/**
+ * Egy {@link Grid} kirajzolandó geometriája ("vonalháló").
+ * A négyzeteket összevont vízszintes és függőleges vonalakra bontjuk, a napokat és csillagokat pedig a sarokpontjaikkal
+ * tároljuk. Minden pont egy lapos {@code double[]} tömbben van X, Y, Z sorrendben, abszolút koordinátákkal.
+ * A háló a négyzetrács adott verziójához tartozik, a négyzetrács változatlansága esetén újra felhasználható.
+ * Az objektum nem módosítható.
+ * @author Bujdosó Ákos
+ */
+final class GridMesh {
+
+  /**
+   * Egy nap pontjainak száma: a 3x3-as téglalap 4 sarka (BF, JF, JA, BA).
+   */
+  static final int SUN_VERTICES = 4;
+
+  /**
+   * Egy csillag pontjainak száma: a 3x3-as téglalap 4 sarka, majd a középső cella 4 sarka (BF, JF, JA, BA).
+   */
+  static final int STAR_VERTICES = 8;
+
+  /**
+   * A négyzetrácshoz tartozó (esetleg korábban már elkészített) háló lekérdezése.
+   * @param grid A négyzetrács.
+   * @return A négyzetrács aktuális állapotához tartozó háló.
+   */
+  static GridMesh of(Grid grid) {
+    GridMesh mesh = grid.getCachedMesh();
+    int version = grid.getVersion();
+    if (mesh == null || mesh.version != version) {
+      mesh = new GridMesh(grid, version);
+      grid.setCachedMesh(mesh);
+    }
+    return mesh;
+  }
+
+  private final int version;
+
+  private final double[] vertices;
+
+  private final byte[] symbols;
+
+  private final int symbolVertexCount;
+
+  private final int lineCount;
+
+  private GridMesh(Grid grid, int version) {
+    this.version = version;
+
+    int size = grid.getSize();
+    int ci = (size - 1) / 2;
+    int iax = grid.getCenterX() - ci;
+    int iay = grid.getCenterY() - ci;
+
+    // Először megszámoljuk az elemeket, hogy pontosan akkora tömböket foglaljunk
+    // A bejárás csak az elemeken megy végig, így a költség a négyzetrács méretétől független
+    Grid.ItemCursor cursor = grid.items();
+    int symbolNum = 0;
+    int svc = 0;
+    int squareNum = 0;
+    while (cursor.next()) {
+      byte b = cursor.getType();
+      assert b == Grid.ITEM_SQUARE || b == Grid.ITEM_SUN || b == Grid.ITEM_STAR;
+      if (b == Grid.ITEM_SQUARE) {
+        squareNum++;
+      } else {
+        symbolNum++;
+        svc += b == Grid.ITEM_SUN ? SUN_VERTICES : STAR_VERTICES;
+      }
+    }
+
+    // A négyzeteket élekre bontjuk: vízszintesen (sor, oszlop), függőlegesen (oszlop, sor) szerint rendezve
+    // Egy él kulcsa: sor * (méret + 1) + oszlop, illetve oszlop * (méret + 1) + sor
+    int stride = size + 1;
+    int[] hEdges = new int[squareNum * 2];
+    int[] vEdges = new int[squareNum * 2];
+    int ei = 0;
+    cursor.reset();
+    while (cursor.next()) {
+      if (cursor.getType() == Grid.ITEM_SQUARE) {
+        int ix = cursor.getX();
+        int iy = cursor.getY();
+        hEdges[ei] = iy * stride + ix;    // alsó
+        hEdges[ei + 1] = (iy + 1) * stride + ix;    // felső
+        vEdges[ei] = ix * stride + iy;    // bal
+        vEdges[ei + 1] = (ix + 1) * stride + iy;    // jobb
+        ei += 2;
+      }
+    }
+    int hNum = sortUnique(hEdges);
+    int vNum = sortUnique(vEdges);
+    int lines = countRuns(hEdges, hNum, stride) + countRuns(vEdges, vNum, stride);
+
+    this.symbols = new byte[symbolNum];
+    this.symbolVertexCount = svc;
+    this.lineCount = lines;
+    this.vertices = new double[(svc + lines * 2) * 3];
+
+    // Napok és csillagok a bejárás sorrendjében
+    int si = 0;
+    int vi = 0;
+    cursor.reset();
+    while (si < symbolNum && cursor.next()) {
+      byte b = cursor.getType();
+      if (b != Grid.ITEM_SUN && b != Grid.ITEM_STAR) {
+        continue;
+      }
+      int x = cursor.getX() + iax;
+      int y = cursor.getY() + iay;
+      symbols[si++] = b;
+      vi = putRect(vi, x - 1, y - 1, x + 1, y + 1);
+      if (b == Grid.ITEM_STAR) {
+        vi = putRect(vi, x, y, x, y);
+      }
+    }
+    assert vi == svc * 3;
+
+    // Vízszintes szegmensek: az egy sorban szomszédos élek egy vonalat alkotnak
+    for (int i = 0; i < hNum;) {
+      int j = runEnd(hEdges, hNum, stride, i);
+      int row = hEdges[i] / stride;
+      vi = putHorizontal(vi, hEdges[i] % stride + iax, hEdges[j] % stride + iax, row + iay);
+      i = j + 1;
+    }
+
+    // Függőleges szegmensek
+    for (int i = 0; i < vNum;) {
+      int j = runEnd(vEdges, vNum, stride, i);
+      int col = vEdges[i] / stride;
+      vi = putVertical(vi, col + iax, vEdges[i] % stride + iay, vEdges[j] % stride + iay);
+      i = j + 1;
+    }
+    assert vi == vertices.length;
+  }
+
+  /**
+   * Rendezés és az ismétlődések elhagyása helyben.
+   * @return A különböző elemek száma.
+   */
+  private static int sortUnique(int[] a) {
+    Arrays.sort(a);
+    int n = 0;
+    for (int i = 0; i < a.length; i++) {
+      if (n == 0 || a[i] != a[n - 1]) {
+        a[n++] = a[i];
+      }
+    }
+    return n;
+  }
+
+  /**
+   * @return Az {@code i}. éllel kezdődő, egy sorban (oszlopban) folytonos élsorozat utolsó élének indexe.
+   */
+  private static int runEnd(int[] edges, int num, int stride, int i) {
+    int j = i;
+    while (j + 1 < num && edges[j + 1] == edges[j] + 1 && edges[j + 1] % stride != 0) {
+      j++;
+    }
+    return j;
+  }
+
+  private static int countRuns(int[] edges, int num, int stride) {
+    int runs = 0;
+    for (int i = 0; i < num; i = runEnd(edges, num, stride, i) + 1) {
+      runs++;
+    }
+    return runs;
+  }
+
+  /**
+   * A cellatéglalap sarkainak eltárolása BF, JF, JA, BA sorrendben (mint {@link Transformer#getPoints(int, int, int, int)}).
+   */
+  private int putRect(int vi, int x1, int y1, int x2, int y2) {
+    double l = x1 - .5;
+    double r = x2 + .5;
+    double t = y2 + .5;
+    double b = y1 - .5;
+    vi = put(vi, l, t);
+    vi = put(vi, r, t);
+    vi = put(vi, r, b);
+    return put(vi, l, b);
+  }
+
+  /**
+   * Vízszintes vonal az {@code y} sorú cellák alsó élén, az {@code x1} és {@code x2} oszlopok között (balról jobbra).
+   * A legfelső sor felső éle ugyanez a vonal a következő sorra nézve.
+   */
+  private int putHorizontal(int vi, int x1, int x2, int y) {
+    vi = put(vi, x1 - .5, y - .5);
+    return put(vi, x2 + .5, y - .5);
+  }
+
+  /**
+   * Függőleges vonal az {@code x} oszlopú cellák bal élén, az {@code y1} és {@code y2} sorok között (fentről lefelé).
+   * A jobb szélső oszlop jobb éle ugyanez a vonal a következő oszlopra nézve.
+   */
+  private int putVertical(int vi, int x, int y1, int y2) {
+    vi = put(vi, x - .5, y2 + .5);
+    return put(vi, x - .5, y1 - .5);
+  }
+
+  private int put(int vi, double x, double y) {
+    vertices[vi++] = x;
+    vertices[vi++] = y;
+    vertices[vi++] = 0.0d;
+    return vi;
+  }
+
+  /**
+   * @return A háló pontjai X, Y, Z sorrendben: előbb a napok és csillagok pontjai, utánuk a vonalak végpontjai.
+   *         A tömb nem módosítható!
+   */
+  @SuppressWarnings("ReturnOfCollectionOrArrayField")
+  double[] getVertices() {
+    return vertices;
+  }
+
+  /**
+   * @return A napok és csillagok típusai ({@link Grid#ITEM_SUN}, {@link Grid#ITEM_STAR}) a bejárás sorrendjében.
+   *         A tömb nem módosítható!
+   */
+  @SuppressWarnings("ReturnOfCollectionOrArrayField")
+  byte[] getSymbols() {
+    return symbols;
+  }
+
+  /**
+   * @return A napok és csillagok pontjainak száma, egyben az első vonal első pontjának indexe.
+   */
+  int getSymbolVertexCount() {
+    return symbolVertexCount;
+  }
+
+  /**
+   * @return A vonalak száma. Az i. vonal végpontjai a {@code getSymbolVertexCount() + 2 * i} és az azt követő pont.
+   */
+  int getLineCount() {
+    return lineCount;
+  }
+
+  /**
+   * @return Az összes pont száma.
+   */
+  int getVertexCount() {
+    return vertices.length / 3;
+  }
+}
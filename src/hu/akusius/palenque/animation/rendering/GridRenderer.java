@@ -1,7 +1,5 @@
 package hu.akusius.palenque.animation.rendering;
 
-import java.awt.Dimension;
-import java.awt.Graphics2D;
 import org.other.Matrix;
 
 /**
@@ -10,153 +8,60 @@ import org.other.Matrix;
  */
 final class GridRenderer {
 
-  private static final byte HORZ = 1;
-
-  private static final byte VERT = 2;
-
-  private static final byte BOTH = HORZ | VERT;
-
   /**
    * A megadott négyzetrács kirajzolása.
+   * A négyzetrács hálóját ({@link GridMesh}) csak a négyzetrács megváltozása esetén kell újra előállítani,
+   * egyébként csak a háló pontjait transzformáljuk és projektáljuk.
    * @param grid A kirajzolandó négyzetrács
    * @param transformMatrix Az alkalmazandó transzformációs mátrix.
-   * @param g A kirajzolás célja.
-   * @param zoom A nagyítás mértéke.
-   * @param dim A kirajzolás dimenziói.
+   * @param sink A kirajzolás célja.
+   * @param vp A nézet (FL, nagyítás, dimenziók).
    */
-  public static void render(Grid grid, final Matrix transformMatrix, final Graphics2D g, final double zoom, final Dimension dim) {
-    int size = grid.getSize();
-    int ci = (size - 1) / 2;
-    int cx = grid.getCenterX();
-    int cy = grid.getCenterY();
-    final int iax = cx - ci;
-    final int iay = cy - ci;
-    byte[][] items = grid.getItems();
-    byte[][] segs = null;
-    for (int iy = 0; iy < size; iy++) {
-      for (int ix = 0; ix < size; ix++) {
-        byte b = items[iy][ix];
-        if (b == Grid.ITEM_EMPTY) {
-          continue;
-        }
-
-        int x = ix + iax;
-        int y = iy + iay;
-
-        assert b == Grid.ITEM_SQUARE || b == Grid.ITEM_SUN || b == Grid.ITEM_STAR;
-
-        if (b == Grid.ITEM_SQUARE) {
-          // Itt csak szegmensekre bontjuk a négyzetet, és eltároljuk ezeket
-          if (segs == null) {
-            segs = new byte[size + 1][size + 1];
-          }
-          segs[iy][ix] = BOTH;   // bal és alsó
-          segs[iy][ix + 1] |= VERT;   // jobb
-          segs[iy + 1][ix] |= HORZ;   // felső
-        } else if (b == Grid.ITEM_SUN) {
-          int[][] ps = Transformer.project(x - 1, y - 1, x + 1, y + 1, transformMatrix, zoom, dim);
-          if (ps != null) {
-            g.drawLine(ps[0][0], ps[0][1], ps[2][0], ps[2][1]);
-            g.drawLine(ps[1][0], ps[1][1], ps[3][0], ps[3][1]);
-          }
-        } else if (b == Grid.ITEM_STAR) {
-          int[][] ps1 = Transformer.project(x - 1, y - 1, x + 1, y + 1, transformMatrix, zoom, dim);
-          int[][] ps2 = Transformer.project(x, y, transformMatrix, zoom, dim);
-          if (ps1 != null && ps2 != null) {
-            g.drawLine(ps1[0][0], ps1[0][1], ps1[2][0], ps1[2][1]);
-            g.drawLine(ps1[1][0], ps1[1][1], ps1[3][0], ps1[3][1]);
-            g.drawPolyline(
-                    new int[]{ps2[0][0], ps2[1][0], ps2[2][0], ps2[3][0], ps2[0][0]},
-                    new int[]{ps2[0][1], ps2[1][1], ps2[2][1], ps2[3][1], ps2[0][1]},
-                    5);
-          }
-        }
-      }
-    }
-
-    if (segs == null) {
-      // Készen vagyunk
+  public static void render(Grid grid, Matrix transformMatrix, LineSink sink, Viewport vp) {
+    GridMesh mesh = GridMesh.of(grid);
+    if (mesh.getVertexCount() == 0) {
       return;
     }
 
-    SegmentRenderer renderer = new SegmentRenderer() {
-
-      @Override
-      public void renderSegment(int x1, int y1, int x2, int y2, int p1, int p2) {
-        // System.out.println(String.format("x1: %d, y1: %d, x2: %d, y2: %d, p1: %d, p2: %d", x1, y1, x2, y2, p1, p2));
-        double[][] points = Transformer.getPoints(x1 + iax, y1 + iay, x2 + iax, y2 + iay);
-        double[][] ps = new double[2][3];
-        ps[0] = points[p1];
-        ps[1] = points[p2];
-        ps = Transformer.transform(ps, transformMatrix);
-        int[][] pps = Transformer.projectLine(ps, zoom, dim);
-        if (pps != null) {
-          g.drawLine(pps[0][0], pps[0][1], pps[1][0], pps[1][1]);
-        }
-      }
-    };
-
-    // Vízszintes szegmensek
-    for (int row = 0; row <= size; row++) {
-      int start = -1;
-      for (int col = 0; col <= size; col++) {
-        byte s = segs[row][col];
-        if (start == -1 && (s & HORZ) != 0) {
-          // Itt kezdődik egy szegmens
-          start = col;
-        } else if (start != -1 && (s & HORZ) == 0) {
-          // Végére értünk egy szegmensnek, meghúzzuk a vonalat
-          if (row < size) {
-            renderer.renderSegment(start, row, col - 1, row, 3, 2);
-          } else {
-            renderer.renderSegment(start, row - 1, col - 1, row - 1, 0, 1);
-          }
-          start = -1;
-        }
+    // Az összes pont transzformálása egyszerre
+    RenderBuffer rb = RenderBuffer.get();
+    double[] ps = rb.getPoints(mesh.getVertexCount());
+    Transformer.transform(mesh.getVertices(), 0, ps, 0, mesh.getVertexCount(), transformMatrix);
+    int[] cs = rb.getCoords();
+
+    // Napok és csillagok
+    int pi = 0;
+    for (byte symbol : mesh.getSymbols()) {
+      assert symbol == Grid.ITEM_SUN || symbol == Grid.ITEM_STAR;
+      int num = symbol == Grid.ITEM_SUN ? GridMesh.SUN_VERTICES : GridMesh.STAR_VERTICES;
+      boolean visible = Transformer.project(ps, pi * 3, cs, 0, num, vp);
+      pi += num;
+      if (!visible) {
+        continue;
       }
-      if (start != -1) {
-        if (row < size) {
-          renderer.renderSegment(start, row, size - 1, row, 3, 2);
-        } else {
-          renderer.renderSegment(start, row - 1, size - 1, row - 1, 0, 1);
+      sink.drawLine(cs[0], cs[1], cs[4], cs[5]);
+      sink.drawLine(cs[2], cs[3], cs[6], cs[7]);
+      if (symbol == Grid.ITEM_STAR) {
+        int[] xs = rb.getPolyX();
+        int[] ys = rb.getPolyY();
+        for (int i = 0; i < 5; i++) {
+          int ci = 8 + (i & 3) * 2;
+          xs[i] = cs[ci];
+          ys[i] = cs[ci + 1];
         }
+        sink.drawPolyline(xs, ys, 5);
       }
     }
+    assert pi == mesh.getSymbolVertexCount();
 
-    // Föggőleges szegmensek
-    for (int col = 0; col <= size; col++) {
-      int start = -1;
-      for (int row = 0; row <= size; row++) {
-        byte s = segs[row][col];
-        if (start == -1 && (s & VERT) != 0) {
-          // Itt kezdődik egy szegmens
-          start = row;
-        } else if (start != -1 && (s & VERT) == 0) {
-          // Végére értünk egy szegmensnek, meghúzzuk a vonalat
-          if (col < size) {
-            renderer.renderSegment(col, start, col, row - 1, 0, 3);
-          } else {
-            renderer.renderSegment(col - 1, start, col - 1, row - 1, 1, 2);
-          }
-          start = -1;
-        }
-      }
-      if (start != -1) {
-        if (col < size) {
-          renderer.renderSegment(col, start, col, size - 1, 0, 3);
-        } else {
-          renderer.renderSegment(col - 1, start, col - 1, size - 1, 1, 2);
-        }
+    // Vonalak (előbb a vízszintesek, utána a függőlegesek)
+    for (int i = 0; i < mesh.getLineCount(); i++, pi += 2) {
+      if (Transformer.projectLine(ps, pi * 3, cs, 0, vp)) {
+        sink.drawLine(cs[0], cs[1], cs[2], cs[3]);
       }
     }
   }
 
   private GridRenderer() {
   }
-
-  private interface SegmentRenderer {
-
-    void renderSegment(int x1, int y1, int x2, int y2, int p1, int p2);
-  }
-
 }
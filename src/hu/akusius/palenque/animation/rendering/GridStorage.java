@@ -0,0 +1,111 @@
+package hu.akusius.palenque.animation.rendering;
+
+import java.util.Arrays;
+
+/**
+ * Egy négyzetrács elemeinek tárolása a cellaindexek szerint (0 és méret-1 között, a sorok lentről felfelé).
+ * Az elemek sorfolytonos, tömör listája ({@link #getItemCodes(int[])}) a tárolás módjától független,
+ * így a különböző tárolású négyzetrácsok összefűzhetők és összehasonlíthatók.
+ * Egy elem kódja: {@code (iy * méret + ix) << 2 | típus}.
+ * @author Bujdosó Ákos
+ * @see Grid
+ */
+abstract class GridStorage {
+
+  /**
+   * A négyzetrács mérete.
+   */
+  final int size;
+
+  GridStorage(int size) {
+    assert size > 1 && (long) size * size <= Integer.MAX_VALUE >> 2;
+    this.size = size;
+  }
+
+  /**
+   * @return Az elem típusa a megadott cellában.
+   */
+  abstract byte get(int ix, int iy);
+
+  /**
+   * Egy elem beállítása. A cella üres kell legyen, vagy ugyanilyen típusú elemet kell tartalmaznia.
+   */
+  abstract void set(int ix, int iy, byte type);
+
+  /**
+   * Elforgatás 90 fokkal óramutató járása szerinti irányban a középső cella körül.
+   * @param num A forgatások száma (1-3).
+   * @param keep {@code true} esetén megtartja az eredeti elemeket, egyébként azokat törli.
+   */
+  abstract void rotate(int num, boolean keep);
+
+  /**
+   * Nyolcszorozás három elforgatással és tükrözéssel (az eredeti elemek maradnak).
+   */
+  abstract void octuple();
+
+  /**
+   * Egy másik tárolás elemeinek hozzáadása eltolással.
+   * @param o A másik tárolás.
+   * @param dx Az X irányú eltolás (cellában).
+   * @param dy Az Y irányú eltolás (cellában).
+   */
+  abstract void merge(GridStorage o, int dx, int dy);
+
+  /**
+   * @return A tárolás másolata.
+   */
+  abstract GridStorage copy();
+
+  /**
+   * @return Az elemek száma.
+   */
+  abstract int getItemCount();
+
+  /**
+   * Az elemek kódjai sorfolytonosan (lentről felfelé, balról jobbra).
+   * @param dst A cél tömb (legalább {@link #getItemCount()} méretű).
+   * @return Az elemek száma.
+   */
+  abstract int getItemCodes(int[] dst);
+
+  /**
+   * @return Az elemek kódjai sorfolytonosan.
+   */
+  final int[] getItemCodes() {
+    int[] codes = new int[getItemCount()];
+    getItemCodes(codes);
+    return codes;
+  }
+
+  /**
+   * @return A tartalom szerinti (a tárolás módjától független) hasítókód.
+   */
+  int contentHash() {
+    int h = size;
+    for (int code : getItemCodes()) {
+      h = 31 * h + code;
+    }
+    return h;
+  }
+
+  /**
+   * @return {@code true}, ha a két tárolás mérete és elemei megegyeznek (a tárolás módjától függetlenül).
+   */
+  boolean contentEquals(GridStorage o) {
+    if (size != o.size || getItemCount() != o.getItemCount()) {
+      return false;
+    }
+    return Arrays.equals(getItemCodes(), o.getItemCodes());
+  }
+
+  /**
+   * @return {@code true}, ha a cella a négyzetrácson belül van, és az elem (ha nem négyzet) nem a szélén van.
+   */
+  final boolean isValidCell(int ix, int iy, byte type) {
+    if (ix < 0 || ix >= size || iy < 0 || iy >= size) {
+      return false;
+    }
+    return type == Grid.ITEM_SQUARE || ix >= 1 && ix < size - 1 && iy >= 1 && iy < size - 1;
+  }
+}
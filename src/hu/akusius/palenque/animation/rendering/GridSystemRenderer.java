@@ -1,15 +1,16 @@
 package hu.akusius.palenque.animation.rendering;
 
 import java.awt.Color;
-import java.awt.Dimension;
 import java.awt.Graphics2D;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Objects;
+import java.awt.geom.Path2D;
 import org.other.Matrix;
 
 /**
  * A koordinátarendszer kirajzolását végző osztály.
+ * Minden nézet (pl. megjelenítő panel) saját példányt használjon: a példány szálanként a legutóbbi kamerához
+ * (mátrix és nézet) tartozó projekciót tárolja, így változatlan kamera esetén nem kell újraszámolni.
+ * A példány szálbiztos: a különböző kamerával rajzoló szálak (pl. az EDT és a háttérben rajzolók)
+ * nem írják felül egymás projekcióját, a tárolt projekció pedig nem módosítható.
  * @author Bujdosó Ákos
  */
 public final class GridSystemRenderer {
@@ -22,124 +23,232 @@ public final class GridSystemRenderer {
 
   private static final Color strongColor = new Color(100, 100, 100, 90);
 
-  private static List<Line> normalLines;
-
-  private static List<Line> strongLines;
-
-  private static Matrix lastTransMatrix;
+  /**
+   * Az összes vonal végpontjai (X, Y, Z): előbb az erős vonalak, utána a normálok.
+   */
+  private static final double[] linePoints;
 
-  private static double lastZoom = -1.0;
+  private static final int strongLineCount;
 
-  private static Dimension lastDim;
+  private static final int lineCount;
 
   /**
-   * A négyzetrács kirajzolása.
-   * @param g A kirajzolás célja.
-   * @param transMatrix A transzformációs mátrix.
-   * @param zoom A nagyítás mértéke.
-   * @param dim A megjelenítés dimenziói.
+   * A középpontot jelölő kereszt két vonalának végpontjai (X, Y, Z).
    */
-  public static void render(Graphics2D g, Matrix transMatrix, double zoom, Dimension dim) {
-    g.setColor(strongColor);
-
-    drawCenter(transMatrix, zoom, dim, g);
-
-    if (normalLines == null || strongLines == null) {
-      createLines();
-    }
+  private static final double[] centerPoints;
 
-    boolean needReproject
-            = !Objects.equals(transMatrix, lastTransMatrix) || zoom != lastZoom || !Objects.equals(dim, lastDim);
+  static {
+    int num = (RANGE + 1) * 4;
+    double[] strong = new double[num * 6];
+    double[] normal = new double[num * 6];
+    int[] counts = new int[2];
 
-    for (Line line : strongLines) {
-      line.draw(g, transMatrix, zoom, dim, needReproject);
+    for (int i = 0; i <= RANGE; i++) {
+      addLine(i, -RANGE, i, RANGE, 1, 2, i, strong, normal, counts);
+      addLine(-RANGE, i, RANGE, i, 0, 1, i, strong, normal, counts);
     }
 
-    g.setColor(normalColor);
-
-    for (Line line : normalLines) {
-      line.draw(g, transMatrix, zoom, dim, needReproject);
+    for (int i = 0; i >= -RANGE; i--) {
+      addLine(i, -RANGE, i, RANGE, 0, 3, i, strong, normal, counts);
+      addLine(-RANGE, i, RANGE, i, 3, 2, i, strong, normal, counts);
     }
 
-    lastTransMatrix = transMatrix;
-    lastZoom = zoom;
-    lastDim = dim;
-  }
+    strongLineCount = counts[0];
+    lineCount = counts[0] + counts[1];
+    linePoints = new double[lineCount * 6];
+    System.arraycopy(strong, 0, linePoints, 0, counts[0] * 6);
+    System.arraycopy(normal, 0, linePoints, counts[0] * 6, counts[1] * 6);
 
-  private static void drawCenter(Matrix transMatrix, double zoom, Dimension dim, Graphics2D g) {
-    double[] c = Transformer.getCenter(0, 0);
     double d = Transformer.CELL_SIZE / 6.0;
+    centerPoints = new double[4 * 3];
+    Transformer.setPoint(centerPoints, 0, -d, d, 0d);
+    Transformer.setPoint(centerPoints, 3, d, -d, 0d);
+    Transformer.setPoint(centerPoints, 6, d, d, 0d);
+    Transformer.setPoint(centerPoints, 9, -d, -d, 0d);
+  }
 
-    double[][] lps = new double[][]{
-      {c[0] - d, c[1] + d, 0d},
-      {c[0] + d, c[1] - d, 0d},
-      {c[0] + d, c[1] + d, 0d},
-      {c[0] - d, c[1] - d, 0d},};
-
-    lps = Transformer.transform(lps, transMatrix);
-
-    int[][] ps = Transformer.project(lps, zoom, dim);
-    if (ps != null) {
-      g.drawLine(ps[0][0], ps[0][1], ps[1][0], ps[1][1]);
-      g.drawLine(ps[2][0], ps[2][1], ps[3][0], ps[3][1]);
-    }
+  private static void addLine(int x1, int y1, int x2, int y2, int p1, int p2, int num,
+          double[] strong, double[] normal, int[] counts) {
+    double[] ps = new double[4 * 3];
+    Transformer.getPoints(x1, y1, x2, y2, ps, 0);
+    int li = num % STRONG_LINE_STEP == 0 ? 0 : 1;
+    double[] dst = li == 0 ? strong : normal;
+    int off = counts[li]++ * 6;
+    System.arraycopy(ps, p1 * 3, dst, off, 3);
+    System.arraycopy(ps, p2 * 3, dst, off + 3, 3);
   }
 
-  private static void createLines() {
-    int num = RANGE * 2 + 1;
-    normalLines = new ArrayList<>(num);
-    strongLines = new ArrayList<>(num);
+  /**
+   * Az aktuális szál legutóbbi kamerájához tartozó projekció.
+   */
+  private final ThreadLocal<Projection> projection = new ThreadLocal<>();
 
-    for (int i = 0; i <= RANGE; i++) {
-      addLine(i, -RANGE, i, RANGE, 1, 2, i);
-      addLine(-RANGE, i, RANGE, i, 0, 1, i);
-    }
+  /**
+   * Új koordinátarendszer-kirajzoló létrehozása (saját projekciós gyorsítótárral).
+   */
+  public GridSystemRenderer() {
+  }
 
-    for (int i = 0; i >= -RANGE; i--) {
-      addLine(i, -RANGE, i, RANGE, 0, 3, i);
-      addLine(-RANGE, i, RANGE, i, 3, 2, i);
-    }
+  /**
+   * A koordinátarendszer kirajzolása.
+   * @param g A kirajzolás célja.
+   * @param transMatrix A transzformációs mátrix (vagy {@code null}, ha nincs szükség transzformálásra).
+   * @param vp A nézet (FL, nagyítás, dimenziók).
+   */
+  public void render(Graphics2D g, Matrix transMatrix, Viewport vp) {
+    getProjection(transMatrix, vp).draw(g);
   }
 
-  private static void addLine(int x1, int y1, int x2, int y2, int p1, int p2, int num) {
-    double[][] ps = Transformer.getPoints(x1, y1, x2, y2);
-    Line line = new Line(ps[p1][0], ps[p1][1], ps[p2][0], ps[p2][1]);
-    if (num % STRONG_LINE_STEP == 0) {
-      strongLines.add(line);
+  /**
+   * A koordinátarendszer kirajzolása.
+   * @param sink A kirajzolás célja.
+   * @param transMatrix A transzformációs mátrix (vagy {@code null}, ha nincs szükség transzformálásra).
+   * @param vp A nézet (FL, nagyítás, dimenziók).
+   */
+  public void render(LineSink sink, Matrix transMatrix, Viewport vp) {
+    Projection p = getProjection(transMatrix, vp);
+    if (sink instanceof Graphics2DSink) {
+      // A tárolt útvonalak egy hívással rajzolhatók ki
+      p.draw(((Graphics2DSink) sink).getGraphics());
     } else {
-      normalLines.add(line);
+      p.draw(sink);
     }
   }
 
-  private GridSystemRenderer() {
+  /**
+   * @return Az aktuális szálon a megadott kamerához tartozó projekció (a tárolt, ha az egyezik).
+   */
+  Projection getProjection(Matrix transMatrix, Viewport vp) {
+    Projection p = projection.get();
+    if (p == null || !p.matches(transMatrix, vp)) {
+      p = new Projection(transMatrix, vp);
+      projection.set(p);
+    }
+    return p;
   }
 
-  private static final class Line {
+  /**
+   * A vonalak egy adott kamerához tartozó projekciója.
+   * Létrehozás után nem módosul, így szálak között is megosztható.
+   */
+  static final class Projection {
+
+    /**
+     * A transzformációs mátrix értékei ({@code null} mátrix esetén {@code null}).
+     */
+    private final double[] matrix;
+
+    private final Viewport vp;
+
+    /**
+     * A középpontot jelölő kereszt projektált végpontjai (X1, Y1, X2, Y2, X3, Y3, X4, Y4) vagy {@code null}.
+     */
+    private final int[] center;
+
+    /**
+     * A látható erős vonalak végpontjai (X1, Y1, X2, Y2).
+     */
+    private final int[] strongSegments;
 
-    double[][] points;
+    /**
+     * A látható normál vonalak végpontjai (X1, Y1, X2, Y2).
+     */
+    private final int[] normalSegments;
 
-    int[][] ps;
+    private final Path2D strongPath;
+
+    private final Path2D normalPath;
+
+    Projection(Matrix transMatrix, Viewport vp) {
+      if (transMatrix != null) {
+        this.matrix = new double[16];
+        transMatrix.get(this.matrix);
+      } else {
+        this.matrix = null;
+      }
+      this.vp = vp;
+
+      RenderBuffer rb = RenderBuffer.get();
+      double[] tps = rb.getPoints(lineCount * 2);
+
+      int[] cs = new int[8];
+      this.center = Transformer.transformProject(centerPoints, 0, tps, cs, 0, 4, transMatrix, vp) ? cs : null;
+
+      // Az összes vonal végpontjai egy tömbben
+      int[] coords = new int[lineCount * 4];
+      boolean[] visible = new boolean[lineCount];
+      Transformer.transform(linePoints, 0, tps, 0, lineCount * 2, transMatrix);
+      for (int i = 0; i < lineCount; i++) {
+        visible[i] = Transformer.projectLine(tps, i * 6, coords, i * 4, vp);
+      }
 
-    Line() {
+      this.strongPath = createPath(coords, visible, 0, strongLineCount);
+      this.normalPath = createPath(coords, visible, strongLineCount, lineCount);
+      this.strongSegments = createSegments(coords, visible, 0, strongLineCount);
+      this.normalSegments = createSegments(coords, visible, strongLineCount, lineCount);
     }
 
-    Line(double x1, double y1, double x2, double y2) {
-      this.points = new double[][]{{x1, y1, 0.0d}, {x2, y2, 0.0d}};
+    private static Path2D createPath(int[] coords, boolean[] visible, int from, int to) {
+      Path2D path = new Path2D.Float(Path2D.WIND_NON_ZERO, (to - from) * 2);
+      for (int i = from; i < to; i++) {
+        if (visible[i]) {
+          int ci = i * 4;
+          path.moveTo(coords[ci], coords[ci + 1]);
+          path.lineTo(coords[ci + 2], coords[ci + 3]);
+        }
+      }
+      return path;
     }
 
-    void draw(Graphics2D g, Matrix transMatrix, double z, Dimension d, boolean needReproject) {
-      if (ps == null || needReproject) {
-        final double[][] tps;
-        if (transMatrix != null) {
-          tps = Transformer.transform(points, transMatrix);
-        } else {
-          tps = points;
+    private static int[] createSegments(int[] coords, boolean[] visible, int from, int to) {
+      int n = 0;
+      for (int i = from; i < to; i++) {
+        if (visible[i]) {
+          n++;
+        }
+      }
+      int[] segments = new int[n * 4];
+      for (int i = from, si = 0; i < to; i++) {
+        if (visible[i]) {
+          System.arraycopy(coords, i * 4, segments, si, 4);
+          si += 4;
         }
-        ps = Transformer.projectLine(tps, z, d);
       }
-      if (ps != null) {
-        g.drawLine(ps[0][0], ps[0][1], ps[1][0], ps[1][1]);
+      return segments;
+    }
+
+    boolean matches(Matrix transMatrix, Viewport vp) {
+      if (!this.vp.equals(vp)) {
+        return false;
       }
+      if (transMatrix == null || matrix == null) {
+        return transMatrix == null && matrix == null;
+      }
+      return transMatrix.hasValues(matrix);
+    }
+
+    void draw(Graphics2D g) {
+      g.setColor(strongColor);
+      if (center != null) {
+        g.drawLine(center[0], center[1], center[2], center[3]);
+        g.drawLine(center[4], center[5], center[6], center[7]);
+      }
+      g.draw(strongPath);
+
+      g.setColor(normalColor);
+      g.draw(normalPath);
+    }
+
+    void draw(LineSink sink) {
+      sink.setColor(strongColor.getRGB());
+      if (center != null) {
+        sink.drawLine(center[0], center[1], center[2], center[3]);
+        sink.drawLine(center[4], center[5], center[6], center[7]);
+      }
+      sink.drawSegments(strongSegments, strongSegments.length / 4);
+
+      sink.setColor(normalColor.getRGB());
+      sink.drawSegments(normalSegments, normalSegments.length / 4);
     }
   }
 }
@@ -0,0 +1,275 @@
+package hu.akusius.palenque.animation.rendering;
+
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import javax.imageio.ImageIO;
+
+/**
+ * A fedélkép és az előre kicsinyített változatai.
+ * A képet egy háttérszál tölti be (már az osztály betöltésekor), így a kirajzolást nem akasztja meg.
+ * A kép "mipmap" szintekben is rendelkezésre áll (mindegyik fele akkora, mint az előző),
+ * valamint a legutóbb kért méretekhez tartozó kicsinyített változatokat is tároljuk (LRU, korlátozott pixelszámmal).
+ * A kért méret egy oktáv 1/{@value #SCALE_STEPS} részére kerekítődik, így a folyamatosan változó nagyításnál
+ * (pl. az automatikus kamera mozgásakor) is ugyanazt a változatot kapjuk, amelyet a kirajzolás már csak
+ * kis mértékben méretez át.
+ * Szálbiztos.
+ * @author Bujdosó Ákos
+ */
+final class LidImage {
+
+  /**
+   * A legkisebb mipmap szint kisebbik mérete.
+   */
+  private static final int MIN_LEVEL_SIZE = 16;
+
+  /**
+   * A kicsinyített változatok méretének lépései oktávonként.
+   */
+  static final int SCALE_STEPS = 16;
+
+  /**
+   * Az ennél több pixelből álló kicsinyített változatokat nem tároljuk.
+   */
+  private static final int MAX_SCALED_PIXELS = 1 << 22;
+
+  /**
+   * A tárolt kicsinyített változatok összes pixelszámának felső korlátja.
+   */
+  private static final int MAX_CACHE_PIXELS = 1 << 23;
+
+  /**
+   * A tárolt kicsinyített változatok maximális száma.
+   */
+  private static final int MAX_CACHE_ENTRIES = 8;
+
+  private static final FutureTask<LidImage> loader = new FutureTask<>(new Callable<LidImage>() {
+    @Override
+    public LidImage call() throws Exception {
+      return new LidImage(ImageIO.read(LidImage.class.getResource("lid.jpg")));
+    }
+  });
+
+  static {
+    Thread t = new Thread(loader, "LidImage loader");
+    t.setDaemon(true);
+    t.start();
+  }
+
+  /**
+   * A fedélkép betöltésének elindítása (ha még nem indult el). Nem blokkol.
+   */
+  static void preload() {
+    // Az osztály betöltése már elindította
+  }
+
+  /**
+   * @return A betöltött fedélkép. Ha még nem töltődött be, akkor megvárja.
+   */
+  static LidImage get() {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          return loader.get();
+        } catch (InterruptedException ex) {
+          interrupted = true;
+        }
+      }
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      if (cause instanceof IOException) {
+        throw new RuntimeException(cause);
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new RuntimeException(cause);
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * A mipmap szintek: a 0. az eredeti méretű kép.
+   */
+  private final BufferedImage[] levels;
+
+  /**
+   * A mipmap szintek pixelei (ARGB, soronként).
+   */
+  private final int[][] pixels;
+
+  /**
+   * A kicsinyített változatok (kulcs: a méretlépés), hozzáférési sorrendben.
+   */
+  private final LinkedHashMap<Integer, BufferedImage> scaled = new LinkedHashMap<>(16, .75f, true);
+
+  private long scaledPixels;
+
+  /**
+   * Az újonnan létrehozott kicsinyített változatok száma.
+   */
+  private int scaledMisses;
+
+  private LidImage(BufferedImage source) {
+    int w = source.getWidth();
+    int h = source.getHeight();
+    int num = 1;
+    while (Math.min(w >> num, h >> num) >= MIN_LEVEL_SIZE) {
+      num++;
+    }
+    levels = new BufferedImage[num];
+    levels[0] = createCompatibleImage(w, h);
+    Graphics2D g = levels[0].createGraphics();
+    g.drawImage(source, 0, 0, null);
+    g.dispose();
+    for (int i = 1; i < num; i++) {
+      levels[i] = scale(levels[i - 1], w >> i, h >> i);
+    }
+    pixels = new int[num][];
+    for (int i = 0; i < num; i++) {
+      int lw = levels[i].getWidth();
+      pixels[i] = levels[i].getRGB(0, 0, lw, levels[i].getHeight(), null, 0, lw);
+    }
+  }
+
+  /**
+   * @return Az eredeti kép szélessége.
+   */
+  int getWidth() {
+    return levels[0].getWidth();
+  }
+
+  /**
+   * @return Az eredeti kép magassága.
+   */
+  int getHeight() {
+    return levels[0].getHeight();
+  }
+
+  /**
+   * @return A mipmap szintek száma.
+   */
+  int getLevelCount() {
+    return levels.length;
+  }
+
+  /**
+   * @param level A szint (0: eredeti méret).
+   * @return A megadott mipmap szint képe. Nem módosítható!
+   */
+  BufferedImage getLevel(int level) {
+    return levels[level];
+  }
+
+  /**
+   * @param level A szint (0: eredeti méret).
+   * @return A megadott mipmap szint pixelei (ARGB, soronként). Nem módosítható!
+   */
+  int[] getPixels(int level) {
+    return pixels[level];
+  }
+
+  /**
+   * @param w A kívánt szélesség.
+   * @param h A kívánt magasság.
+   * @return A legkisebb olyan mipmap szint, amely legalább akkora, mint a kívánt méret (vagy az eredeti kép).
+   */
+  int getLevelFor(int w, int h) {
+    int level = 0;
+    while (level < levels.length - 1 && levels[level + 1].getWidth() >= w && levels[level + 1].getHeight() >= h) {
+      level++;
+    }
+    return level;
+  }
+
+  /**
+   * @param w A kívánt szélesség.
+   * @param h A kívánt magasság.
+   * @return A kívánt mérethez legközelebbi méretlépés (0: eredeti méret, negatív: kicsinyítés).
+   */
+  int getScaleStep(int w, int h) {
+    double ratio = Math.sqrt((double) w * h / ((double) getWidth() * getHeight()));
+    return (int) Math.round(SCALE_STEPS * Math.log(ratio) / Math.log(2.0));
+  }
+
+  /**
+   * A kép kicsinyített/nagyított változata a megadott mérethez legközelebbi méretlépésben.
+   * A kép mérete legfeljebb egy fél méretlépéssel tér el a kívánttól, a kirajzoláskor a kívánt méretre
+   * kell méretezni.
+   * @param w A kívánt szélesség.
+   * @param h A kívánt magasság.
+   * @return A kép (nem módosítható!), vagy {@code null}, ha túl nagy lenne a tároláshoz.
+   */
+  synchronized BufferedImage getScaled(int w, int h) {
+    int step = getScaleStep(w, h);
+    double factor = Math.pow(2.0, (double) step / SCALE_STEPS);
+    int sw = Math.max((int) Math.round(getWidth() * factor), 1);
+    int sh = Math.max((int) Math.round(getHeight() * factor), 1);
+    if ((long) sw * sh > MAX_SCALED_PIXELS) {
+      return null;
+    }
+    BufferedImage image = scaled.get(step);
+    if (image != null) {
+      return image;
+    }
+    image = scale(levels[getLevelFor(sw, sh)], sw, sh);
+    scaled.put(step, image);
+    scaledPixels += (long) sw * sh;
+    scaledMisses++;
+
+    // A legrégebben használtak eltávolítása
+    Iterator<Map.Entry<Integer, BufferedImage>> it = scaled.entrySet().iterator();
+    while ((scaledPixels > MAX_CACHE_PIXELS || scaled.size() > MAX_CACHE_ENTRIES) && it.hasNext()) {
+      Map.Entry<Integer, BufferedImage> e = it.next();
+      if (e.getValue() == image) {
+        break;
+      }
+      scaledPixels -= (long) e.getValue().getWidth() * e.getValue().getHeight();
+      it.remove();
+    }
+    return image;
+  }
+
+  /**
+   * @return Az eddig újonnan létrehozott (a tárolóban nem talált) kicsinyített változatok száma.
+   */
+  synchronized int getScaledMisses() {
+    return scaledMisses;
+  }
+
+  private static BufferedImage scale(BufferedImage src, int w, int h) {
+    BufferedImage image = createCompatibleImage(w, h);
+    Graphics2D g = image.createGraphics();
+    g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+    g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+    g.drawImage(src, 0, 0, w, h, null);
+    g.dispose();
+    return image;
+  }
+
+  /**
+   * A megjelenítővel kompatibilis (így gyorsítható) kép létrehozása; felület nélküli környezetben egyszerű RGB kép.
+   */
+  private static BufferedImage createCompatibleImage(int w, int h) {
+    if (!GraphicsEnvironment.isHeadless()) {
+      GraphicsConfiguration gc = GraphicsEnvironment.getLocalGraphicsEnvironment()
+              .getDefaultScreenDevice().getDefaultConfiguration();
+      return gc.createCompatibleImage(w, h, Transparency.OPAQUE);
+    }
+    return new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+  }
+}
@@ -1,12 +1,7 @@
 package hu.akusius.palenque.animation.rendering;
 
-import java.awt.Color;
-import java.awt.Dimension;
 import java.awt.Graphics2D;
-import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
-import java.io.IOException;
-import javax.imageio.ImageIO;
 import org.other.Matrix;
 
 /**
@@ -21,61 +16,78 @@ public final class LidRenderer {
 
   private static final double[] center = {-.5d, -21.5d};
 
-  private static final double[][] corners;
-
-  private static BufferedImage image;
+  /**
+   * A fedélkép sarkai BF, JF, JA, BA sorrendben (X, Y, Z).
+   */
+  private static final double[] corners = new double[4 * 3];
 
   static {
     double hw = width / 2d;
     double hh = width * hwratio / 2d;
-    corners = new double[][]{
-      {center[0] - hw, center[1] + hh, 0d},
-      {center[0] + hw, center[1] + hh, 0d},
-      {center[0] + hw, center[1] - hh, 0d},
-      {center[0] - hw, center[1] - hh, 0d}
-    };
+    Transformer.setPoint(corners, 0, center[0] - hw, center[1] + hh, 0d);
+    Transformer.setPoint(corners, 3, center[0] + hw, center[1] + hh, 0d);
+    Transformer.setPoint(corners, 6, center[0] + hw, center[1] - hh, 0d);
+    Transformer.setPoint(corners, 9, center[0] - hw, center[1] - hh, 0d);
+  }
+
+  /**
+   * A fedélkép betöltésének elindítása a háttérben (ha még nem indult el), hogy az első kirajzolásnál már kész legyen.
+   * Nem blokkol.
+   */
+  public static void preload() {
+    LidImage.preload();
   }
 
   /**
    * A fedélkép kirajzolása.
    * @param transMatrix A transzformációs mátrix.
    * @param g A kirajzolás célja.
-   * @param zoom A nagyítás mértéke.
-   * @param dim A megjelenítés dimenziói.
+   * @param vp A nézet (FL, nagyítás, dimenziók).
+   */
+  public static void render(Matrix transMatrix, Graphics2D g, Viewport vp) {
+    render(transMatrix, new Graphics2DSink(g), vp);
+  }
+
+  /**
+   * A fedélkép kirajzolása.
+   * @param transMatrix A transzformációs mátrix.
+   * @param sink A kirajzolás célja.
+   * @param vp A nézet (FL, nagyítás, dimenziók).
    */
-  public static void render(Matrix transMatrix, Graphics2D g, double zoom, Dimension dim) {
-    try {
-      if (image == null) {
-        image = ImageIO.read(LidRenderer.class.getResource("lid.jpg"));
-      }
-
-      g = (Graphics2D) g.create();
-
-      if (transMatrix.hasRotation()) {
-        // Csak a körvonalakat rajzoljuk ki
-        g.setColor(Color.GRAY);
-        double[][] tps = Transformer.transform(corners, transMatrix);
-        for (int i = 0; i < 4; i++) {
-          int[][] ps = Transformer.projectLine(new double[][]{tps[i], tps[i < 3 ? i + 1 : 0]}, zoom, dim);
-          if (ps != null) {
-            g.drawLine(ps[0][0], ps[0][1], ps[1][0], ps[1][1]);
-          }
-        }
-        return;
-      }
-
-      double[][] tps = Transformer.transform(new double[][]{corners[0], corners[2]}, transMatrix);
-      int[][] ps = Transformer.project(tps, zoom, dim);
-
-      int w = ps[1][0] - ps[0][0] + 1;
-      int h = ps[1][1] - ps[0][1] + 1;
-
-//      g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
-      g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-      g.drawImage(image, ps[0][0], ps[0][1], w, h, null);
-    } catch (IOException ex) {
-      throw new RuntimeException(ex);
+  public static void render(Matrix transMatrix, LineSink sink, Viewport vp) {
+    RenderBuffer rb = RenderBuffer.get();
+    double[] tps = rb.getPoints(4);
+    int[] ps = rb.getCoords();
+    Transformer.transform(corners, 0, tps, 0, 4, transMatrix);
+
+    if (transMatrix.hasRotation()) {
+      // Forgatott kép: perspektivikus leképezés
+      LidTextureMapper.render(tps, 0, sink, vp);
+      return;
+    }
+
+    // A BF és a JA sarok
+    if (!Transformer.project(tps, 0, ps, 0, 1, vp) || !Transformer.project(tps, 6, ps, 2, 1, vp)) {
+      return;
     }
+
+    int w = ps[2] - ps[0] + 1;
+    int h = ps[3] - ps[1] + 1;
+    if (w <= 0 || h <= 0) {
+      return;
+    }
+
+    LidImage lid = LidImage.get();
+    BufferedImage scaled = lid.getScaled(w, h);
+    if (scaled != null) {
+      // A tárolt, közel azonos méretű kép átméretezése (egyező méretnél egyszerű másolás)
+      sink.drawImage(scaled, scaled.getWidth(), scaled.getHeight(), ps[0], ps[1], w, h);
+      return;
+    }
+
+    // Túl nagy a tároláshoz: nagyítás (bilineárisan) a legközelebbi szintből
+    BufferedImage level = lid.getLevel(lid.getLevelFor(w, h));
+    sink.drawImage(level, level.getWidth(), level.getHeight(), ps[0], ps[1], w, h);
   }
 
   private LidRenderer() {
@@ -0,0 +1,420 @@
+package hu.akusius.palenque.animation.rendering;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A fedélkép perspektivikusan helyes kirajzolása tetszőleges (forgatott) kamera esetén.
+ * A Java2D csak affin képtranszformációra képes, ezért a leképezést szoftveresen végezzük:
+ * a négyszöget (a közeli vágósíkkal csonkolva) soronként raszterizáljuk, minden pixelhez az inverz
+ * homográfiával kiszámoljuk a képpontot, és bilineárisan mintavételezzük a megfelelő mipmap szintet.
+ * Nagy terület esetén a sorok sávjait párhuzamosan, több szálon számoljuk.
+ * @author Bujdosó Ákos
+ */
+final class LidTextureMapper {
+
+  /**
+   * Ennél kisebb terület (pixel) esetén nem érdemes több szálat használni.
+   */
+  private static final int MIN_PARALLEL_PIXELS = 1 << 15;
+
+  /**
+   * Egy párhuzamosan számolt sáv magassága (sor).
+   */
+  private static final int BAND_HEIGHT = 32;
+
+  private static final int THREADS = Runtime.getRuntime().availableProcessors();
+
+  private static final ThreadLocal<Target> targets = new ThreadLocal<Target>() {
+
+    @Override
+    protected Target initialValue() {
+      return new Target();
+    }
+  };
+
+  /**
+   * A négyszög leképezése.
+   * @param corners A fedélkép sarkai kameratérben BF, JF, JA, BA sorrendben (X, Y, Z).
+   * @param off Az első sarok X koordinátájának indexe.
+   * @param sink A kirajzolás célja.
+   * @param vp A nézet (FL, nagyítás, dimenziók).
+   */
+  static void render(double[] corners, int off, LineSink sink, Viewport vp) {
+    Target target = targets.get();
+    double near = vp.getNear();
+    int size = vp.getSize();
+    double hw = vp.getWidth() / 2.0;
+    double hh = vp.getHeight() / 2.0;
+
+    // Csonkolás a közeli vágósíkkal, majd projekció
+    double[] poly = target.poly;
+    int n = clip(corners, off, near, poly);
+    if (n < 3) {
+      return;
+    }
+    double[] sp = target.screen;
+    double xmin = Double.MAX_VALUE, xmax = -Double.MAX_VALUE;
+    double ymin = Double.MAX_VALUE, ymax = -Double.MAX_VALUE;
+    for (int i = 0; i < n; i++) {
+      double fact = size / (near - poly[i * 3 + 2] + 1.0);
+      double x = hw + fact * poly[i * 3];
+      double y = hh - fact * poly[i * 3 + 1];
+      sp[i * 2] = x;
+      sp[i * 2 + 1] = y;
+      xmin = Math.min(xmin, x);
+      xmax = Math.max(xmax, x);
+      ymin = Math.min(ymin, y);
+      ymax = Math.max(ymax, y);
+    }
+    double area = 0.0;
+    for (int i = 0, j = n - 1; i < n; j = i++) {
+      area += (sp[j * 2] - sp[i * 2]) * (sp[j * 2 + 1] + sp[i * 2 + 1]);
+    }
+    area = Math.abs(area) / 2.0;
+    if (area < 1.0) {
+      return;
+    }
+
+    int x0 = Math.max(0, (int) Math.ceil(xmin));
+    int x1 = Math.min(vp.getWidth(), (int) Math.ceil(xmax));
+    int y0 = Math.max(0, (int) Math.ceil(ymin));
+    int y1 = Math.min(vp.getHeight(), (int) Math.ceil(ymax));
+    if (x0 >= x1 || y0 >= y1) {
+      return;
+    }
+
+    // A mipmap szint: legfeljebb kétszeres kicsinyítés maradjon a bilineáris mintavételre
+    LidImage lid = LidImage.get();
+    int level = 0;
+    double ratio = (double) lid.getWidth() * lid.getHeight() / area;
+    while (level < lid.getLevelCount() - 1 && ratio >= 4.0) {
+      ratio /= 4.0;
+      level++;
+    }
+
+    Job job = new Job(target, n, lid.getPixels(level), lid.getLevel(level).getWidth(),
+            lid.getLevel(level).getHeight(), x0, y0, x1, y1);
+    if (!job.setMapping(corners, off, near, size, hw, hh)) {
+      return;
+    }
+
+    int rows = y1 - y0;
+    int bands = (rows + BAND_HEIGHT - 1) / BAND_HEIGHT;
+    if (THREADS < 2 || bands < 2 || (long) (x1 - x0) * rows < MIN_PARALLEL_PIXELS) {
+      job.renderRows(y0, y1);
+    } else if (!renderParallel(job, bands)) {
+      return;
+    }
+
+    sink.drawImage(target.image, x1 - x0, rows, x0, y0, x1 - x0, rows);
+  }
+
+  /**
+   * A sávok párhuzamos számolása.
+   * @return {@code false}, ha a várakozás megszakadt.
+   */
+  private static boolean renderParallel(final Job job, int bands) {
+    List<Callable<Void>> tasks = new ArrayList<>(bands);
+    for (int i = 0; i < bands; i++) {
+      final int from = job.y0 + i * BAND_HEIGHT;
+      final int to = Math.min(from + BAND_HEIGHT, job.y1);
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          job.renderRows(from, to);
+          return null;
+        }
+      });
+    }
+    try {
+      for (Future<Void> future : Pool.executor.invokeAll(tasks)) {
+        future.get();
+      }
+      return true;
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      return false;
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new RuntimeException(cause);
+    }
+  }
+
+  /**
+   * A négyszög csonkolása a közeli vágósíkkal (a látható rész: Z &lt;= near).
+   * @return A csonkolt sokszög csúcsainak száma (legfeljebb 5).
+   */
+  private static int clip(double[] src, int off, double near, double[] dst) {
+    int n = 0;
+    for (int i = 0; i < 4; i++) {
+      int a = off + i * 3;
+      int b = off + (i < 3 ? i + 1 : 0) * 3;
+      double za = src[a + 2];
+      double zb = src[b + 2];
+      boolean ina = za <= near;
+      boolean inb = zb <= near;
+      if (ina) {
+        System.arraycopy(src, a, dst, n++ * 3, 3);
+      }
+      if (ina != inb) {
+        double t = (near - za) / (zb - za);
+        int d = n++ * 3;
+        dst[d] = src[a] + t * (src[b] - src[a]);
+        dst[d + 1] = src[a + 1] + t * (src[b + 1] - src[a + 1]);
+        dst[d + 2] = near;
+      }
+    }
+    return n;
+  }
+
+  /**
+   * Egy kirajzolás adatai. A sorokat egymástól függetlenül (akár párhuzamosan) lehet számolni.
+   */
+  private static final class Job {
+
+    private final double[] screen;
+
+    private final int n;
+
+    private final int[] texture;
+
+    private final int texWidth;
+
+    private final int texHeight;
+
+    private final int[] dst;
+
+    private final int stride;
+
+    private final int x0;
+
+    private final int y0;
+
+    private final int x1;
+
+    private final int y1;
+
+    /**
+     * Az inverz leképezés (képernyő X, Y, 1 -&gt; kép X * W, Y * W, W) sorfolytonosan.
+     */
+    private final double[] mapping = new double[9];
+
+    Job(Target target, int n, int[] texture, int texWidth, int texHeight, int x0, int y0, int x1, int y1) {
+      this.screen = target.screen;
+      this.n = n;
+      this.texture = texture;
+      this.texWidth = texWidth;
+      this.texHeight = texHeight;
+      this.x0 = x0;
+      this.y0 = y0;
+      this.x1 = x1;
+      this.y1 = y1;
+      target.ensureSize(x1 - x0, y1 - y0);
+      this.dst = target.data;
+      this.stride = target.image.getWidth();
+    }
+
+    /**
+     * Az inverz homográfia kiszámítása.
+     * A sík pontjai: P(u, v) = BF + u * (JF - BF) + v * (BA - BF), ennek képe
+     * (size * Px / W, size * Py / W), ahol W = near + 1 - Pz.
+     * @return {@code false}, ha a sík a nézőpontból élben látszik.
+     */
+    boolean setMapping(double[] c, int off, double near, int size, double hw, double hh) {
+      double ox = c[off], oy = c[off + 1], oz = c[off + 2];
+      double ux = c[off + 3] - ox, uy = c[off + 4] - oy, uz = c[off + 5] - oz;
+      double vx = c[off + 9] - ox, vy = c[off + 10] - oy, vz = c[off + 11] - oz;
+
+      // Előre irányú leképezés: (u, v, 1) -> (a * W, b * W, W), ahol a, b a képernyő normalizált koordinátái
+      double m00 = ux, m01 = vx, m02 = ox;
+      double m10 = uy, m11 = vy, m12 = oy;
+      double m20 = -uz, m21 = -vz, m22 = near + 1.0 - oz;
+
+      double i00 = m11 * m22 - m12 * m21;
+      double i01 = m02 * m21 - m01 * m22;
+      double i02 = m01 * m12 - m02 * m11;
+      double i10 = m12 * m20 - m10 * m22;
+      double i11 = m00 * m22 - m02 * m20;
+      double i12 = m02 * m10 - m00 * m12;
+      double i20 = m10 * m21 - m11 * m20;
+      double i21 = m01 * m20 - m00 * m21;
+      double i22 = m00 * m11 - m01 * m10;
+      double det = m00 * i00 + m01 * i10 + m02 * i20;
+      if (Math.abs(det) < 1e-12) {
+        return false;
+      }
+
+      // A képernyő koordinátái: a = (x - hw) / size, b = (hh - y) / size
+      double s = 1.0 / size;
+      double[] k = new double[9];
+      double[] inv = {i00, i01, i02, i10, i11, i12, i20, i21, i22};
+      for (int r = 0; r < 3; r++) {
+        double p = inv[r * 3] / det, q = inv[r * 3 + 1] / det, t = inv[r * 3 + 2] / det;
+        k[r * 3] = p * s;
+        k[r * 3 + 1] = -q * s;
+        k[r * 3 + 2] = t - p * hw * s + q * hh * s;
+      }
+
+      // Képpont koordináták (a pixelközéppontok miatt fél pixel eltolással)
+      for (int col = 0; col < 3; col++) {
+        mapping[col] = texWidth * k[col] - .5 * k[6 + col];
+        mapping[3 + col] = texHeight * k[3 + col] - .5 * k[6 + col];
+        mapping[6 + col] = k[6 + col];
+      }
+      return true;
+    }
+
+    /**
+     * A megadott sorok kiszámítása.
+     * @param from Az első sor (képernyő koordináta).
+     * @param to Az utolsó utáni sor.
+     */
+    void renderRows(int from, int to) {
+      final int[] tex = texture;
+      final int tw = texWidth;
+      final double maxX = tw - 1;
+      final double maxY = texHeight - 1;
+      final double[] mp = mapping;
+      final int width = x1 - x0;
+
+      for (int y = from; y < to; y++) {
+        int row = (y - y0) * stride;
+
+        // A sor metszése a sokszög éleivel
+        double smin = Double.MAX_VALUE, smax = -Double.MAX_VALUE;
+        for (int i = 0, j = n - 1; i < n; j = i++) {
+          double yi = screen[i * 2 + 1], yj = screen[j * 2 + 1];
+          if ((yi <= y && yj > y) || (yj <= y && yi > y)) {
+            double xi = screen[i * 2];
+            double x = xi + (y - yi) * (screen[j * 2] - xi) / (yj - yi);
+            smin = Math.min(smin, x);
+            smax = Math.max(smax, x);
+          }
+        }
+        int xs = x1, xe = x1;
+        if (smin <= smax) {
+          xs = Math.min(x1, Math.max(x0, (int) Math.ceil(smin)));
+          xe = Math.max(xs, Math.min(x1, (int) Math.ceil(smax)));
+        }
+
+        int di = row;
+        for (int x = x0; x < xs; x++) {
+          dst[di++] = 0;
+        }
+
+        double hx = mp[0] * xs + mp[1] * y + mp[2];
+        double hy = mp[3] * xs + mp[4] * y + mp[5];
+        double hz = mp[6] * xs + mp[7] * y + mp[8];
+        for (int x = xs; x < xe; x++) {
+          double r = 1.0 / hz;
+          double tx = hx * r;
+          double ty = hy * r;
+          hx += mp[0];
+          hy += mp[3];
+          hz += mp[6];
+
+          if (tx < 0.0) {
+            tx = 0.0;
+          } else if (tx > maxX) {
+            tx = maxX;
+          }
+          if (ty < 0.0) {
+            ty = 0.0;
+          } else if (ty > maxY) {
+            ty = maxY;
+          }
+          int ix = (int) tx;
+          int iy = (int) ty;
+          if (ix > tw - 2) {
+            ix = tw - 2;
+          }
+          if (iy > texHeight - 2) {
+            iy = texHeight - 2;
+          }
+          int fx = (int) ((tx - ix) * 256.0);
+          int fy = (int) ((ty - iy) * 256.0);
+
+          int ti = iy * tw + ix;
+          int top = lerp(tex[ti], tex[ti + 1], fx);
+          int bottom = lerp(tex[ti + tw], tex[ti + tw + 1], fx);
+          dst[di++] = lerp(top, bottom, fy) | 0xFF000000;
+        }
+
+        for (int x = xe; x < x1; x++) {
+          dst[di++] = 0;
+        }
+        assert di == row + width;
+      }
+    }
+
+    /**
+     * Két (átlátszatlan) szín lineáris interpolációja.
+     * @param f A második szín súlya (0-256).
+     */
+    private static int lerp(int c1, int c2, int f) {
+      int f1 = 256 - f;
+      int rb = (((c1 & 0xFF00FF) * f1 + (c2 & 0xFF00FF) * f) >>> 8) & 0xFF00FF;
+      int g = (((c1 & 0xFF00) * f1 + (c2 & 0xFF00) * f) >>> 8) & 0xFF00;
+      return rb | g;
+    }
+  }
+
+  /**
+   * Szálanként a célkép és a munkatömbök.
+   */
+  private static final class Target {
+
+    private final double[] poly = new double[5 * 3];
+
+    private final double[] screen = new double[5 * 2];
+
+    private BufferedImage image;
+
+    private int[] data;
+
+    void ensureSize(int w, int h) {
+      if (image == null || image.getWidth() < w || image.getHeight() < h) {
+        int nw = image == null ? w : Math.max(w, image.getWidth());
+        int nh = image == null ? h : Math.max(h, image.getHeight());
+        image = new BufferedImage(nw, nh, BufferedImage.TYPE_INT_ARGB_PRE);
+        data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+      }
+    }
+  }
+
+  /**
+   * A párhuzamos számolás (démon) szálai; csak az első használatkor jön létre.
+   */
+  private static final class Pool {
+
+    static final ExecutorService executor = Executors.newFixedThreadPool(THREADS, new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "LidTextureMapper-" + count.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+      }
+    });
+  }
+
+  private LidTextureMapper() {
+  }
+}
@@ -0,0 +1,70 @@
+package hu.akusius.palenque.animation.rendering;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * A renderelők kirajzolási célja.
+ * Csak azokat a műveleteket tartalmazza, amelyeket a renderelők ténylegesen használnak
+ * (vonalak, töröttvonalak, szín, átlátszóság, kép), így a {@link java.awt.Graphics2D} mellett
+ * más célok (számláló, rögzítő, raszterizáló, vektoros kimenet) is könnyen megvalósíthatók.
+ * A koordináták a kép koordinátái (bal felső sarok, lefelé növekvő Y).
+ * @author Bujdosó Ákos
+ * @see Graphics2DSink
+ */
+public interface LineSink {
+
+  /**
+   * A szín beállítása a további vonalakhoz.
+   * @param argb A szín (ARGB formátumban, az átlátszósággal együtt).
+   */
+  void setColor(int argb);
+
+  /**
+   * @return A beállított szín (ARGB formátumban).
+   */
+  int getColor();
+
+  /**
+   * A további rajzolások átlátszóságának beállítása (a szín átlátszóságán felül, SRC_OVER kompozícióval).
+   * @param alpha Az átlátszóság (0-1).
+   */
+  void setAlpha(float alpha);
+
+  /**
+   * @return A beállított átlátszóság (0-1).
+   */
+  float getAlpha();
+
+  /**
+   * Egy vonalszakasz kirajzolása.
+   */
+  void drawLine(int x1, int y1, int x2, int y2);
+
+  /**
+   * Egy töröttvonal kirajzolása.
+   * @param xs A pontok X koordinátái.
+   * @param ys A pontok Y koordinátái.
+   * @param n A pontok száma.
+   */
+  void drawPolyline(int[] xs, int[] ys, int n);
+
+  /**
+   * Független vonalszakaszok kirajzolása.
+   * @param coords A szakaszok végpontjai (X1, Y1, X2, Y2 szakaszonként).
+   * @param count A szakaszok száma.
+   */
+  void drawSegments(int[] coords, int count);
+
+  /**
+   * Egy kép bal felső részének kirajzolása a megadott téglalapba (szükség esetén átméretezve).
+   * A kép tartalma a hívás után módosulhat, ezért azt nem szabad eltárolni.
+   * @param image A kép.
+   * @param sw A kirajzolandó rész szélessége.
+   * @param sh A kirajzolandó rész magassága.
+   * @param x A cél bal felső sarkának X koordinátája.
+   * @param y A cél bal felső sarkának Y koordinátája.
+   * @param w A cél szélessége.
+   * @param h A cél magassága.
+   */
+  void drawImage(BufferedImage image, int sw, int sh, int x, int y, int w, int h);
+}
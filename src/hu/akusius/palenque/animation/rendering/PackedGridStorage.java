@@ -0,0 +1,355 @@
+package hu.akusius.palenque.animation.rendering;
+
+import java.util.Arrays;
+
+/**
+ * Bitsíkos tárolás: cellánként két bit (az elem típusának alsó és felső bitje) két külön {@code long[]} tömbben,
+ * soronként lentről felfelé, egy soron belül a legalacsonyabb helyiértékű bittől kezdve.
+ * Így a forgatás, tükrözés és összefűzés soronkénti (szavankénti) bitműveletekkel elvégezhető.
+ * A mérete a négyzetrács területével arányos, ezért kisebb (sűrűbb) négyzetrácsokhoz való.
+ * @author Bujdosó Ákos
+ */
+final class PackedGridStorage extends GridStorage {
+
+  /**
+   * Az egy sort alkotó szavak száma.
+   */
+  private final int words;
+
+  /**
+   * Az elemek típusának alsó bitje (négyzet és csillag).
+   */
+  private long[] low;
+
+  /**
+   * Az elemek típusának felső bitje (nap és csillag).
+   */
+  private long[] high;
+
+  PackedGridStorage(int size) {
+    super(size);
+    this.words = (size + 63) >>> 6;
+    this.low = new long[size * words];
+    this.high = new long[size * words];
+  }
+
+  @Override
+  byte get(int ix, int iy) {
+    int wi = iy * words + (ix >>> 6);
+    return (byte) ((low[wi] >>> ix & 1L) | (high[wi] >>> ix & 1L) << 1);
+  }
+
+  @Override
+  void set(int ix, int iy, byte type) {
+    int wi = iy * words + (ix >>> 6);
+    long bit = 1L << ix;
+    if ((type & 1) != 0) {
+      low[wi] |= bit;
+    }
+    if ((type & 2) != 0) {
+      high[wi] |= bit;
+    }
+  }
+
+  @Override
+  void rotate(int num, boolean keep) {
+    if (!keep) {
+      low = rotated(low, num);
+      high = rotated(high, num);
+      return;
+    }
+    long[] rl = low, rh = high;
+    for (int n = 1; n <= num; n++) {
+      // Mindig az előző elforgatottat forgatjuk tovább
+      rl = rotated(rl, 1);
+      rh = rotated(rh, 1);
+      assert compatible(low, high, rl, rh);
+      or(low, rl);
+      or(high, rh);
+    }
+  }
+
+  @Override
+  void octuple() {
+    rotate(3, true);
+    long[] ml = low.clone(), mh = high.clone();
+    mirror(ml);
+    mirror(mh);
+    assert compatible(low, high, ml, mh);
+    or(low, ml);
+    or(high, mh);
+  }
+
+  @Override
+  void merge(GridStorage o, int dx, int dy) {
+    if (!(o instanceof PackedGridStorage)) {
+      int[] codes = o.getItemCodes();
+      for (int code : codes) {
+        int cell = code >>> 2;
+        byte type = (byte) (code & 3);
+        int nix = cell % o.size + dx;
+        int niy = cell / o.size + dy;
+        assert isValidCell(nix, niy, type);
+        assert get(nix, niy) == Grid.ITEM_EMPTY || get(nix, niy) == type;
+        set(nix, niy, type);
+      }
+      return;
+    }
+    PackedGridStorage po = (PackedGridStorage) o;
+    long[] rl = new long[words], rh = new long[words];
+    for (int iy = 0; iy < po.size; iy++) {
+      int off = iy * po.words;
+      if (isEmpty(po.low, off, po.words) && isEmpty(po.high, off, po.words)) {
+        continue;
+      }
+      int niy = iy + dy;
+      assert niy >= 0 && niy < size;
+      shift(po.low, off, po.words, dx, rl, size);
+      shift(po.high, off, po.words, dx, rh, size);
+      // Egyetlen elem sem eshet a négyzetrácson kívülre, a nem négyzetek a szélére sem
+      assert bitCount(rl, 0, words) == bitCount(po.low, off, po.words);
+      assert bitCount(rh, 0, words) == bitCount(po.high, off, po.words);
+      assert isEmpty(rh, 0, words) || niy >= 1 && niy < size - 1 && !isBorder(rh);
+      int noff = niy * words;
+      for (int w = 0; w < words; w++) {
+        long l = low[noff + w], h = high[noff + w];
+        assert ((l | h) & (rl[w] | rh[w]) & ((l ^ rl[w]) | (h ^ rh[w]))) == 0;
+        low[noff + w] = l | rl[w];
+        high[noff + w] = h | rh[w];
+      }
+    }
+  }
+
+  @Override
+  GridStorage copy() {
+    PackedGridStorage s = new PackedGridStorage(size);
+    System.arraycopy(low, 0, s.low, 0, low.length);
+    System.arraycopy(high, 0, s.high, 0, high.length);
+    return s;
+  }
+
+  @Override
+  int getItemCount() {
+    int c = 0;
+    for (int i = 0; i < low.length; i++) {
+      c += Long.bitCount(low[i] | high[i]);
+    }
+    return c;
+  }
+
+  @Override
+  int getItemCodes(int[] dst) {
+    int n = 0;
+    for (int iy = 0; iy < size; iy++) {
+      int off = iy * words;
+      for (int w = 0; w < words; w++) {
+        long l = low[off + w], h = high[off + w];
+        long occ = l | h;
+        while (occ != 0L) {
+          // Csak a beállított biteken megyünk végig
+          int b = Long.numberOfTrailingZeros(occ);
+          int type = (int) (l >>> b & 1L) | (int) (h >>> b & 1L) << 1;
+          dst[n++] = (iy * size + (w << 6) + b) << 2 | type;
+          occ &= occ - 1;
+        }
+      }
+    }
+    return n;
+  }
+
+  @Override
+  boolean contentEquals(GridStorage o) {
+    if (o instanceof PackedGridStorage) {
+      PackedGridStorage po = (PackedGridStorage) o;
+      return size == po.size && Arrays.equals(low, po.low) && Arrays.equals(high, po.high);
+    }
+    return super.contentEquals(o);
+  }
+
+  /**
+   * Egy bitsík elforgatása.
+   * @param plane A bitsík.
+   * @param num A forgatások száma (1-3).
+   * @return Az új, elforgatott bitsík.
+   */
+  private long[] rotated(long[] plane, int num) {
+    long[] r;
+    switch (num) {
+      case 1:
+        // y, -x
+        r = transpose(plane);
+        flip(r);
+        break;
+      case 2:
+        // -x, -y
+        r = plane.clone();
+        flip(r);
+        mirror(r);
+        break;
+      case 3:
+        // -y, x
+        r = transpose(plane);
+        mirror(r);
+        break;
+      default:
+        throw new AssertionError();
+    }
+    return r;
+  }
+
+  /**
+   * Egy bitsík transzponálása (a sorok és oszlopok felcserélése) 64x64-es blokkonként.
+   * @param plane A bitsík.
+   * @return Az új, transzponált bitsík.
+   */
+  private long[] transpose(long[] plane) {
+    long[] r = new long[plane.length];
+    long[] block = new long[64];
+    for (int by = 0; by < words; by++) {
+      int rows = Math.min(64, size - (by << 6));
+      for (int bx = 0; bx < words; bx++) {
+        for (int k = 0; k < rows; k++) {
+          block[k] = plane[((by << 6) + k) * words + bx];
+        }
+        Arrays.fill(block, rows, 64, 0L);
+        transpose64(block);
+        int cols = Math.min(64, size - (bx << 6));
+        for (int k = 0; k < cols; k++) {
+          r[((bx << 6) + k) * words + by] = block[k];
+        }
+      }
+    }
+    return r;
+  }
+
+  /**
+   * Egy 64x64-es bitmátrix transzponálása helyben (a blokkok rekurzív cseréjével).
+   * Az i. szó j. bitje az (i, j) elem.
+   */
+  static void transpose64(long[] a) {
+    long m = 0x00000000FFFFFFFFL;
+    for (int j = 32; j != 0; j >>>= 1, m ^= m << j) {
+      for (int k = 0; k < 64; k = (k | j) + 1 & ~j) {
+        long t = (a[k] >>> j ^ a[k | j]) & m;
+        a[k | j] ^= t;
+        a[k] ^= t << j;
+      }
+    }
+  }
+
+  /**
+   * Egy bitsík sorainak megfordítása helyben (tükrözés az X tengelyre).
+   */
+  private void flip(long[] plane) {
+    for (int i = 0, j = size - 1; i < j; i++, j--) {
+      for (int w = 0; w < words; w++) {
+        long t = plane[i * words + w];
+        plane[i * words + w] = plane[j * words + w];
+        plane[j * words + w] = t;
+      }
+    }
+  }
+
+  /**
+   * Egy bitsík soronkénti megfordítása helyben (tükrözés az Y tengelyre).
+   */
+  private void mirror(long[] plane) {
+    int unused = (words << 6) - size;
+    if (words == 1) {
+      for (int iy = 0; iy < size; iy++) {
+        plane[iy] = Long.reverse(plane[iy]) >>> unused;
+      }
+      return;
+    }
+    long[] row = new long[words];
+    for (int iy = 0; iy < size; iy++) {
+      int off = iy * words;
+      for (int w = 0; w < words; w++) {
+        row[words - 1 - w] = Long.reverse(plane[off + w]);
+      }
+      shift(row, 0, words, -unused, row, size);
+      System.arraycopy(row, 0, plane, off, words);
+    }
+  }
+
+  /**
+   * Egy sor eltolása.
+   * A forrás és a cél lehet ugyanaz a tömb, ha a forrás a 0. indexen kezdődik.
+   * @param src A forrás tömb.
+   * @param off A sor kezdete a forrás tömbben.
+   * @param srcWords A forrás sor szavainak száma.
+   * @param shift Az eltolás mértéke (pozitív értékre a nagyobb indexek felé).
+   * @param dst A cél sor.
+   * @param bits A cél sor hossza bitben: az ezen túli (és a 0 alá kerülő) bitek elvesznek.
+   */
+  private static void shift(long[] src, int off, int srcWords, int shift, long[] dst, int bits) {
+    int dstWords = (bits + 63) >>> 6;
+    if (shift <= 0) {
+      for (int d = 0; d < dstWords; d++) {
+        dst[d] = shiftedWord(src, off, srcWords, shift, d);
+      }
+    } else {
+      // Visszafelé, hogy helyben is működjön
+      for (int d = dstWords - 1; d >= 0; d--) {
+        dst[d] = shiftedWord(src, off, srcWords, shift, d);
+      }
+    }
+    if ((bits & 63) != 0) {
+      dst[dstWords - 1] &= (1L << bits) - 1;
+    }
+  }
+
+  private static long shiftedWord(long[] src, int off, int srcWords, int shift, int d) {
+    int p = (d << 6) - shift;
+    int q = p >> 6;
+    int r = p & 63;
+    long v = q >= 0 && q < srcWords ? src[off + q] >>> r : 0L;
+    if (r != 0 && q + 1 >= 0 && q + 1 < srcWords) {
+      v |= src[off + q + 1] << 64 - r;
+    }
+    return v;
+  }
+
+  private static boolean isEmpty(long[] a, int off, int len) {
+    for (int i = off; i < off + len; i++) {
+      if (a[i] != 0L) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int bitCount(long[] a, int off, int len) {
+    int c = 0;
+    for (int i = off; i < off + len; i++) {
+      c += Long.bitCount(a[i]);
+    }
+    return c;
+  }
+
+  /**
+   * @return {@code true}, ha a sor első vagy utolsó bitje be van állítva.
+   */
+  private boolean isBorder(long[] row) {
+    int last = size - 1;
+    return (row[0] & 1L) != 0 || (row[last >>> 6] >>> last & 1L) != 0;
+  }
+
+  /**
+   * @return {@code true}, ha a két bitsík-pár ugyanazon a cellán nem tartalmaz eltérő elemet.
+   */
+  private static boolean compatible(long[] al, long[] ah, long[] bl, long[] bh) {
+    for (int i = 0; i < al.length; i++) {
+      if (((al[i] | ah[i]) & (bl[i] | bh[i]) & ((al[i] ^ bl[i]) | (ah[i] ^ bh[i]))) != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static void or(long[] a, long[] b) {
+    for (int i = 0; i < a.length; i++) {
+      a[i] |= b[i];
+    }
+  }
+}
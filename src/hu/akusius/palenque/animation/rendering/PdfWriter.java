@@ -0,0 +1,366 @@
+package hu.akusius.palenque.animation.rendering;
+
+import java.awt.geom.PathIterator;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Minimális, egyoldalas PDF (1.4) kimenet.
+ * A képek azonnal kiíródnak (tömörítve, átlátszóság esetén maszkkal), a lap tartalma tömörítve
+ * a memóriában gyűlik, és a lezáráskor kerül ki a szerkezeti elemekkel (lap, katalógus, hivatkozási tábla) együtt.
+ * A lap koordináta-rendszere megegyezik a képernyőével (bal felső sarok, lefelé növekvő Y).
+ * @author Bujdosó Ákos
+ */
+public final class PdfWriter extends VectorSink {
+
+  private static final Charset ASCII = Charset.forName("US-ASCII");
+
+  /**
+   * Ennyi karakter után kerül ki a puffer a tömörített tartalomba.
+   */
+  private static final int FLUSH_SIZE = 8192;
+
+  /**
+   * A rögzített objektumok száma: katalógus, lapok, lap, tartalom.
+   */
+  private static final int CATALOG = 1, PAGES = 2, PAGE = 3, CONTENT = 4;
+
+  private final OutputStream out;
+
+  /**
+   * Az eddig kiírt bájtok száma.
+   */
+  private long position;
+
+  /**
+   * Az objektumok kezdőpozíciói (az index az objektum száma - 1).
+   */
+  private final List<Long> offsets = new ArrayList<>();
+
+  private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+  private final DeflaterOutputStream contentStream = new DeflaterOutputStream(content);
+
+  private final StringBuilder sb = new StringBuilder(FLUSH_SIZE + 256);
+
+  /**
+   * A képek objektumszámai.
+   */
+  private final List<Integer> images = new ArrayList<>();
+
+  /**
+   * A használt átlátszósági szintek (0-255).
+   */
+  private final boolean[] alphas = new boolean[256];
+
+  /**
+   * A tartalom aktuális állapota (a felesleges állapotváltások elkerüléséhez).
+   */
+  private int strokeColor = 0, fillColor = 0, alpha = 255;
+
+  private float lineWidth = 1f;
+
+  /**
+   * Létrehozás. A fejléc azonnal kiíródik.
+   * @param out A kimenet. A lezáráskor ez is lezárul.
+   * @param width A lap szélessége (pont).
+   * @param height A lap magassága (pont).
+   * @throws IOException Hiba az írás közben.
+   */
+  public PdfWriter(OutputStream out, int width, int height) throws IOException {
+    super(width, height);
+    this.out = new BufferedOutputStream(out);
+    write("%PDF-1.4\n");
+    write(new byte[]{'%', (byte) 0xe2, (byte) 0xe3, (byte) 0xcf, (byte) 0xd3, '\n'});
+    // A rögzített objektumok később íródnak ki
+    for (int i = 0; i < CONTENT; i++) {
+      offsets.add(null);
+    }
+    // Képernyő-koordináták, négyzetes vonalvégek
+    sb.append("1 0 0 -1 0 ").append(height).append(" cm 2 J\n");
+  }
+
+  @Override
+  void beginPath(int argb, float lineWidth) throws IOException {
+    int rgb = argb & 0xffffff;
+    if (rgb != strokeColor) {
+      appendColor(rgb);
+      sb.append("RG\n");
+      strokeColor = rgb;
+    }
+    if (lineWidth != this.lineWidth) {
+      appendNumber(sb, lineWidth);
+      sb.append(" w\n");
+      this.lineWidth = lineWidth;
+    }
+    setAlpha(argb >>> 24);
+  }
+
+  @Override
+  void moveTo(double x, double y) throws IOException {
+    appendPoint(x, y);
+    sb.append("m ");
+  }
+
+  @Override
+  void lineTo(double x, double y) throws IOException {
+    appendPoint(x, y);
+    sb.append("l\n");
+    flushIfFull();
+  }
+
+  @Override
+  void endPath() throws IOException {
+    sb.append("S\n");
+    flushIfFull();
+  }
+
+  @Override
+  void writeFill(int argb, PathIterator path) throws IOException {
+    int rgb = argb & 0xffffff;
+    if (rgb != fillColor) {
+      appendColor(rgb);
+      sb.append("rg\n");
+      fillColor = rgb;
+    }
+    setAlpha(argb >>> 24);
+
+    double[] c = new double[6];
+    double cx = 0, cy = 0;
+    while (!path.isDone()) {
+      switch (path.currentSegment(c)) {
+        case PathIterator.SEG_MOVETO:
+          appendPoint(c[0], c[1]);
+          sb.append("m\n");
+          cx = c[0];
+          cy = c[1];
+          break;
+        case PathIterator.SEG_LINETO:
+          appendPoint(c[0], c[1]);
+          sb.append("l\n");
+          cx = c[0];
+          cy = c[1];
+          break;
+        case PathIterator.SEG_QUADTO:
+          // Másodfokú görbe harmadfokúként
+          appendPoint(cx + (c[0] - cx) * 2.0 / 3.0, cy + (c[1] - cy) * 2.0 / 3.0);
+          appendPoint(c[2] + (c[0] - c[2]) * 2.0 / 3.0, c[3] + (c[1] - c[3]) * 2.0 / 3.0);
+          appendPoint(c[2], c[3]);
+          sb.append("c\n");
+          cx = c[2];
+          cy = c[3];
+          break;
+        case PathIterator.SEG_CUBICTO:
+          appendPoint(c[0], c[1]);
+          appendPoint(c[2], c[3]);
+          appendPoint(c[4], c[5]);
+          sb.append("c\n");
+          cx = c[4];
+          cy = c[5];
+          break;
+        case PathIterator.SEG_CLOSE:
+          sb.append("h\n");
+          break;
+      }
+      path.next();
+      flushIfFull();
+    }
+    sb.append(path.getWindingRule() == PathIterator.WIND_EVEN_ODD ? "f*\n" : "f\n");
+    flushIfFull();
+  }
+
+  @Override
+  void writeImage(BufferedImage image, float opacity, double x, double y, double w, double h) throws IOException {
+    int iw = image.getWidth(), ih = image.getHeight();
+    boolean hasAlpha = image.getColorModel().hasAlpha();
+
+    ByteArrayOutputStream rgbData = new ByteArrayOutputStream();
+    ByteArrayOutputStream alphaData = hasAlpha ? new ByteArrayOutputStream() : null;
+    try (DeflaterOutputStream rgbStream = new DeflaterOutputStream(rgbData);
+            DeflaterOutputStream alphaStream = hasAlpha ? new DeflaterOutputStream(alphaData) : null) {
+      int[] row = new int[iw];
+      byte[] rgb = new byte[iw * 3];
+      byte[] a = new byte[iw];
+      for (int py = 0; py < ih; py++) {
+        image.getRGB(0, py, iw, 1, row, 0, iw);
+        for (int px = 0, i = 0; px < iw; px++) {
+          int p = row[px];
+          rgb[i++] = (byte) (p >> 16);
+          rgb[i++] = (byte) (p >> 8);
+          rgb[i++] = (byte) p;
+          a[px] = (byte) (p >>> 24);
+        }
+        rgbStream.write(rgb);
+        if (alphaStream != null) {
+          alphaStream.write(a);
+        }
+      }
+    }
+
+    int mask = 0;
+    if (hasAlpha) {
+      mask = beginObject();
+      writeImageDict(iw, ih, "/DeviceGray", 0, alphaData.size());
+      writeStream(alphaData);
+    }
+    int num = beginObject();
+    writeImageDict(iw, ih, "/DeviceRGB", mask, rgbData.size());
+    writeStream(rgbData);
+    images.add(num);
+
+    sb.append("q\n");
+    // Az állapot a Q után visszaáll, ezért a nyilvántartott átlátszóság nem változik
+    int a = Math.round(opacity * 255f);
+    if (a != alpha) {
+      sb.append("/GS").append(a).append(" gs\n");
+      alphas[a] = true;
+    }
+    appendNumber(sb, w);
+    sb.append(" 0 0 ");
+    appendNumber(sb, -h);
+    sb.append(' ');
+    appendPoint(x, y + h);
+    sb.append("cm /Im").append(num).append(" Do\nQ\n");
+    flushIfFull();
+  }
+
+  @Override
+  void finish() throws IOException {
+    flush();
+    contentStream.finish();
+
+    beginObject(CONTENT);
+    write("<< /Length " + content.size() + " /Filter /FlateDecode >>\n");
+    writeStream(content);
+
+    beginObject(PAGE);
+    StringBuilder page = new StringBuilder();
+    page.append("<< /Type /Page /Parent ").append(PAGES).append(" 0 R /MediaBox [0 0 ")
+            .append(getWidth()).append(' ').append(getHeight()).append("] /Contents ")
+            .append(CONTENT).append(" 0 R\n/Resources << /ProcSet [/PDF /ImageC]");
+    page.append("\n/ExtGState <<");
+    for (int i = 0; i < alphas.length; i++) {
+      if (alphas[i]) {
+        page.append(" /GS").append(i).append(" << /CA ");
+        appendNumber(page, i / 255.0);
+        page.append(" /ca ");
+        appendNumber(page, i / 255.0);
+        page.append(" >>");
+      }
+    }
+    page.append(" >>\n/XObject <<");
+    for (int num : images) {
+      page.append(" /Im").append(num).append(' ').append(num).append(" 0 R");
+    }
+    page.append(" >> >> >>\nendobj\n");
+    write(page.toString());
+
+    beginObject(PAGES);
+    write("<< /Type /Pages /Kids [" + PAGE + " 0 R] /Count 1 >>\nendobj\n");
+
+    beginObject(CATALOG);
+    write("<< /Type /Catalog /Pages " + PAGES + " 0 R >>\nendobj\n");
+
+    long xref = position;
+    StringBuilder xr = new StringBuilder();
+    xr.append("xref\n0 ").append(offsets.size() + 1).append("\n0000000000 65535 f \n");
+    for (Long offset : offsets) {
+      String s = Long.toString(offset);
+      for (int i = s.length(); i < 10; i++) {
+        xr.append('0');
+      }
+      xr.append(s).append(" 00000 n \n");
+    }
+    xr.append("trailer\n<< /Size ").append(offsets.size() + 1).append(" /Root ").append(CATALOG)
+            .append(" 0 R >>\nstartxref\n").append(xref).append("\n%%EOF\n");
+    write(xr.toString());
+    out.flush();
+  }
+
+  @Override
+  void release() throws IOException {
+    out.close();
+  }
+
+  private void setAlpha(int a) {
+    if (a != alpha) {
+      sb.append("/GS").append(a).append(" gs\n");
+      alphas[a] = true;
+      alpha = a;
+    }
+  }
+
+  private void appendColor(int rgb) {
+    appendNumber(sb, ((rgb >> 16) & 0xff) / 255.0);
+    sb.append(' ');
+    appendNumber(sb, ((rgb >> 8) & 0xff) / 255.0);
+    sb.append(' ');
+    appendNumber(sb, (rgb & 0xff) / 255.0);
+    sb.append(' ');
+  }
+
+  private void appendPoint(double x, double y) {
+    appendNumber(sb, x);
+    sb.append(' ');
+    appendNumber(sb, y);
+    sb.append(' ');
+  }
+
+  private void writeImageDict(int w, int h, String colorSpace, int mask, int length) throws IOException {
+    StringBuilder d = new StringBuilder();
+    d.append("<< /Type /XObject /Subtype /Image /Width ").append(w).append(" /Height ").append(h)
+            .append(" /ColorSpace ").append(colorSpace).append(" /BitsPerComponent 8");
+    if (mask != 0) {
+      d.append(" /SMask ").append(mask).append(" 0 R");
+    }
+    d.append(" /Length ").append(length).append(" /Filter /FlateDecode >>\n");
+    write(d.toString());
+  }
+
+  /**
+   * Új objektum kezdése a következő szabad számmal.
+   * @return Az objektum száma.
+   */
+  private int beginObject() throws IOException {
+    offsets.add(null);
+    int num = offsets.size();
+    beginObject(num);
+    return num;
+  }
+
+  private void beginObject(int num) throws IOException {
+    offsets.set(num - 1, position);
+    write(num + " 0 obj\n");
+  }
+
+  private void writeStream(ByteArrayOutputStream data) throws IOException {
+    write("stream\n");
+    data.writeTo(out);
+    position += data.size();
+    write("\nendstream\nendobj\n");
+  }
+
+  private void write(String s) throws IOException {
+    write(s.getBytes(ASCII));
+  }
+
+  private void write(byte[] b) throws IOException {
+    out.write(b);
+    position += b.length;
+  }
+
+  private void flushIfFull() throws IOException {
+    if (sb.length() >= FLUSH_SIZE) {
+      flush();
+    }
+  }
+
+  private void flush() throws IOException {
+    contentStream.write(sb.toString().getBytes(ASCII));
+    sb.setLength(0);
+  }
+}
@@ -0,0 +1,287 @@
+package hu.akusius.palenque.animation.rendering;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+
+/**
+ * Közvetlenül egy {@code int[]} képpont-tömbbe (ARGB) rajzoló {@link LineSink}.
+ * Egy képpont vastag, élsimítás nélküli vonalakat rajzol (Bresenham), a képeket legközelebbi szomszéd
+ * szerint méretezi; az átlátszó színeket és képeket SRC_OVER szabály szerint keveri.
+ * A Java2D hívásonkénti költsége nélkül, bármely szálon használható (de egy példány nem szálbiztos).
+ * @author Bujdosó Ákos
+ */
+public final class RasterSink implements LineSink {
+
+  private final int[] pixels;
+
+  private final int width;
+
+  private final int height;
+
+  private int color = 0xff000000;
+
+  private float alpha = 1f;
+
+  /**
+   * A rajzolás tényleges átlátszósága (0-256): a szín átlátszósága és a beállított átlátszóság szorzata.
+   */
+  private int effAlpha = 256;
+
+  /**
+   * Sorpuffer a képek olvasásához.
+   */
+  private int[] row = new int[0];
+
+  /**
+   * A vágás paramétertartománya.
+   */
+  private double t0, t1;
+
+  /**
+   * Létrehozás új képpont-tömbbel.
+   * @param width A kép szélessége.
+   * @param height A kép magassága.
+   */
+  public RasterSink(int width, int height) {
+    this(new int[width * height], width, height);
+  }
+
+  /**
+   * Létrehozás a megadott képpont-tömbbel.
+   * @param pixels A képpontok (ARGB, soronként).
+   * @param width A kép szélessége.
+   * @param height A kép magassága.
+   */
+  public RasterSink(int[] pixels, int width, int height) {
+    if (width <= 0 || height <= 0 || pixels.length < width * height) {
+      throw new IllegalArgumentException();
+    }
+    this.pixels = pixels;
+    this.width = width;
+    this.height = height;
+  }
+
+  /**
+   * @return A képpontok (ARGB, soronként).
+   */
+  public int[] getPixels() {
+    return pixels;
+  }
+
+  /**
+   * @return A kép szélessége.
+   */
+  public int getWidth() {
+    return width;
+  }
+
+  /**
+   * @return A kép magassága.
+   */
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * A teljes kép kitöltése a megadott színnel (keverés nélkül).
+   * @param argb A szín.
+   */
+  public void clear(int argb) {
+    Arrays.fill(pixels, 0, width * height, argb);
+  }
+
+  /**
+   * @return A képpontokat közvetlenül (másolás nélkül) használó kép.
+   */
+  public BufferedImage toImage() {
+    DirectColorModel cm = new DirectColorModel(32, 0xff0000, 0xff00, 0xff, 0xff000000);
+    SinglePixelPackedSampleModel sm = new SinglePixelPackedSampleModel(
+            DataBufferInt.TYPE_INT, width, height, cm.getMasks());
+    WritableRaster raster = Raster.createWritableRaster(sm, new DataBufferInt(pixels, width * height), null);
+    return new BufferedImage(cm, raster, false, null);
+  }
+
+  private void updateAlpha() {
+    effAlpha = Math.round((color >>> 24) * alpha * 256f / 255f);
+  }
+
+  @Override
+  public void setColor(int argb) {
+    color = argb;
+    updateAlpha();
+  }
+
+  @Override
+  public int getColor() {
+    return color;
+  }
+
+  @Override
+  public void setAlpha(float alpha) {
+    this.alpha = Math.min(Math.max(alpha, 0f), 1f);
+    updateAlpha();
+  }
+
+  @Override
+  public float getAlpha() {
+    return alpha;
+  }
+
+  @Override
+  public void drawLine(int x1, int y1, int x2, int y2) {
+    line(x1, y1, x2, y2, false);
+  }
+
+  @Override
+  public void drawPolyline(int[] xs, int[] ys, int n) {
+    for (int i = 1; i < n; i++) {
+      // A közös pontok csak egyszer (hogy áttetsző színnél ne sötétedjenek)
+      line(xs[i - 1], ys[i - 1], xs[i], ys[i], i > 1);
+    }
+  }
+
+  @Override
+  public void drawSegments(int[] coords, int count) {
+    for (int i = 0, ci = 0; i < count; i++, ci += 4) {
+      line(coords[ci], coords[ci + 1], coords[ci + 2], coords[ci + 3], false);
+    }
+  }
+
+  /**
+   * Egy vonal kirajzolása a képre vágva.
+   * @param skipFirst Kimaradjon-e a kezdőpont.
+   */
+  private void line(int x1, int y1, int x2, int y2, boolean skipFirst) {
+    if (effAlpha <= 0) {
+      return;
+    }
+    // Vágás (Liang-Barsky) a kép területére
+    double dx = x2 - x1, dy = y2 - y1;
+    t0 = 0.0;
+    t1 = 1.0;
+    if (!clip(-dx, x1) || !clip(dx, width - 1 - x1) || !clip(-dy, y1) || !clip(dy, height - 1 - y1)) {
+      return;
+    }
+    if (t0 > 0.0) {
+      skipFirst = false;
+    }
+    int ax = (int) Math.round(x1 + t0 * dx), ay = (int) Math.round(y1 + t0 * dy);
+    int bx = (int) Math.round(x1 + t1 * dx), by = (int) Math.round(y1 + t1 * dy);
+
+    // Bresenham
+    int adx = Math.abs(bx - ax), ady = -Math.abs(by - ay);
+    int sx = ax < bx ? 1 : -1, sy = ay < by ? 1 : -1;
+    int err = adx + ady;
+    int x = ax, y = ay;
+    while (true) {
+      if (!skipFirst) {
+        plot(y * width + x);
+      }
+      skipFirst = false;
+      if (x == bx && y == by) {
+        break;
+      }
+      int e2 = 2 * err;
+      if (e2 >= ady) {
+        err += ady;
+        x += sx;
+      }
+      if (e2 <= adx) {
+        err += adx;
+        y += sy;
+      }
+    }
+  }
+
+  private boolean clip(double p, double q) {
+    if (p == 0.0) {
+      return q >= 0.0;
+    }
+    double r = q / p;
+    if (p < 0.0) {
+      if (r > t1) {
+        return false;
+      }
+      if (r > t0) {
+        t0 = r;
+      }
+    } else {
+      if (r < t0) {
+        return false;
+      }
+      if (r < t1) {
+        t1 = r;
+      }
+    }
+    return true;
+  }
+
+  private void plot(int i) {
+    pixels[i] = effAlpha >= 256 ? color | 0xff000000 : blend(pixels[i], color, effAlpha);
+  }
+
+  /**
+   * Egy szín ráhelyezése a háttérre (SRC_OVER).
+   * @param dst A háttér.
+   * @param src A szín (az átlátszóságát nem veszi figyelembe).
+   * @param a Az átlátszóság (0-256).
+   * @return Az eredmény.
+   */
+  private static int blend(int dst, int src, int a) {
+    int na = 256 - a;
+    int rb = ((src & 0xff00ff) * a + (dst & 0xff00ff) * na) >>> 8 & 0xff00ff;
+    int g = ((src & 0xff00) * a + (dst & 0xff00) * na) >>> 8 & 0xff00;
+    int da = dst >>> 24;
+    int oa = (255 * a + da * na) >> 8;
+    return oa << 24 | rb | g;
+  }
+
+  @Override
+  public void drawImage(BufferedImage image, int sw, int sh, int x, int y, int w, int h) {
+    if (sw <= 0 || sh <= 0 || w <= 0 || h <= 0) {
+      return;
+    }
+    int ga = Math.round(alpha * 256f);
+    if (ga <= 0) {
+      return;
+    }
+    int x0 = Math.max(x, 0), x1 = Math.min(x + w, width);
+    int y0 = Math.max(y, 0), y1 = Math.min(y + h, height);
+    if (x0 >= x1 || y0 >= y1) {
+      return;
+    }
+    if (sw == w && sh == h && ga >= 256 && !image.getColorModel().hasAlpha()) {
+      // Átlátszatlan, változatlan méretű kép: egyszerű másolás
+      image.getRGB(x0 - x, y0 - y, x1 - x0, y1 - y0, pixels, y0 * width + x0, width);
+      return;
+    }
+    if (row.length < sw) {
+      row = new int[sw];
+    }
+    int lastSy = -1;
+    for (int py = y0; py < y1; py++) {
+      // Legközelebbi szomszéd (a képpontok középpontja szerint)
+      int sy = (int) (((long) (py - y) * 2 + 1) * sh / (2L * h));
+      if (sy != lastSy) {
+        image.getRGB(0, sy, sw, 1, row, 0, sw);
+        lastSy = sy;
+      }
+      int off = py * width;
+      for (int px = x0; px < x1; px++) {
+        int sx = (int) (((long) (px - x) * 2 + 1) * sw / (2L * w));
+        int s = row[sx];
+        int a = ((s >>> 24) * ga + 128) >> 8;
+        if (a >= 255) {
+          pixels[off + px] = s | 0xff000000;
+        } else if (a > 0) {
+          pixels[off + px] = blend(pixels[off + px], s, a + (a >> 7));
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,215 @@
+package hu.akusius.palenque.animation.rendering;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A műveleteket tömören rögzítő {@link LineSink}.
+ * A felvétel később tetszőleges célra visszajátszható, illetve két felvétel összehasonlítható
+ * (pl. annak ellenőrzésére, hogy két kirajzolás ugyanazt eredményezi-e).
+ * A képekről a rögzítéskor másolat készül.
+ * @author Bujdosó Ákos
+ */
+public final class RecordingSink implements LineSink {
+
+  private static final int OP_COLOR = 1, OP_ALPHA = 2, OP_LINE = 3, OP_POLYLINE = 4, OP_SEGMENTS = 5, OP_IMAGE = 6;
+
+  /**
+   * A műveletek: a kód után a paraméterek.
+   */
+  private int[] ops = new int[1024];
+
+  private int size;
+
+  private final List<BufferedImage> images = new ArrayList<>();
+
+  private int color = 0xff000000;
+
+  private float alpha = 1f;
+
+  private void ensure(int n) {
+    if (size + n > ops.length) {
+      ops = Arrays.copyOf(ops, Math.max(ops.length * 2, size + n));
+    }
+  }
+
+  @Override
+  public void setColor(int argb) {
+    ensure(2);
+    ops[size++] = OP_COLOR;
+    ops[size++] = argb;
+    color = argb;
+  }
+
+  @Override
+  public int getColor() {
+    return color;
+  }
+
+  @Override
+  public void setAlpha(float alpha) {
+    ensure(2);
+    ops[size++] = OP_ALPHA;
+    ops[size++] = Float.floatToIntBits(alpha);
+    this.alpha = alpha;
+  }
+
+  @Override
+  public float getAlpha() {
+    return alpha;
+  }
+
+  @Override
+  public void drawLine(int x1, int y1, int x2, int y2) {
+    ensure(5);
+    ops[size++] = OP_LINE;
+    ops[size++] = x1;
+    ops[size++] = y1;
+    ops[size++] = x2;
+    ops[size++] = y2;
+  }
+
+  @Override
+  public void drawPolyline(int[] xs, int[] ys, int n) {
+    ensure(2 + n * 2);
+    ops[size++] = OP_POLYLINE;
+    ops[size++] = n;
+    for (int i = 0; i < n; i++) {
+      ops[size++] = xs[i];
+      ops[size++] = ys[i];
+    }
+  }
+
+  @Override
+  public void drawSegments(int[] coords, int count) {
+    ensure(2 + count * 4);
+    ops[size++] = OP_SEGMENTS;
+    ops[size++] = count;
+    System.arraycopy(coords, 0, ops, size, count * 4);
+    size += count * 4;
+  }
+
+  @Override
+  public void drawImage(BufferedImage image, int sw, int sh, int x, int y, int w, int h) {
+    BufferedImage copy = new BufferedImage(sw, sh, BufferedImage.TYPE_INT_ARGB);
+    image.getRGB(0, 0, sw, sh, ((DataBufferInt) copy.getRaster().getDataBuffer()).getData(), 0, sw);
+    ensure(6);
+    ops[size++] = OP_IMAGE;
+    ops[size++] = images.size();
+    ops[size++] = x;
+    ops[size++] = y;
+    ops[size++] = w;
+    ops[size++] = h;
+    images.add(copy);
+  }
+
+  /**
+   * A felvétel visszajátszása.
+   * @param sink A visszajátszás célja.
+   */
+  public void replay(LineSink sink) {
+    int[] xs = null, ys = null;
+    int i = 0;
+    while (i < size) {
+      switch (ops[i++]) {
+        case OP_COLOR:
+          sink.setColor(ops[i++]);
+          break;
+        case OP_ALPHA:
+          sink.setAlpha(Float.intBitsToFloat(ops[i++]));
+          break;
+        case OP_LINE:
+          sink.drawLine(ops[i], ops[i + 1], ops[i + 2], ops[i + 3]);
+          i += 4;
+          break;
+        case OP_POLYLINE: {
+          int n = ops[i++];
+          if (xs == null || xs.length < n) {
+            xs = new int[n];
+            ys = new int[n];
+          }
+          for (int k = 0; k < n; k++) {
+            xs[k] = ops[i++];
+            ys[k] = ops[i++];
+          }
+          sink.drawPolyline(xs, ys, n);
+          break;
+        }
+        case OP_SEGMENTS: {
+          int count = ops[i++];
+          sink.drawSegments(Arrays.copyOfRange(ops, i, i + count * 4), count);
+          i += count * 4;
+          break;
+        }
+        case OP_IMAGE: {
+          BufferedImage image = images.get(ops[i]);
+          sink.drawImage(image, image.getWidth(), image.getHeight(), ops[i + 1], ops[i + 2], ops[i + 3], ops[i + 4]);
+          i += 5;
+          break;
+        }
+        default:
+          throw new AssertionError();
+      }
+    }
+  }
+
+  /**
+   * A felvétel törlése.
+   */
+  public void clear() {
+    size = 0;
+    images.clear();
+    color = 0xff000000;
+    alpha = 1f;
+  }
+
+  /**
+   * @return A felvétel mérete (a tárolt egészek száma, a képek nélkül).
+   */
+  public int getSize() {
+    return size;
+  }
+
+  @Override
+  public int hashCode() {
+    int h = 1;
+    for (int i = 0; i < size; i++) {
+      h = 31 * h + ops[i];
+    }
+    for (BufferedImage image : images) {
+      h = 31 * h + Arrays.hashCode(((DataBufferInt) image.getRaster().getDataBuffer()).getData());
+    }
+    return h;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof RecordingSink)) {
+      return false;
+    }
+    RecordingSink other = (RecordingSink) obj;
+    if (size != other.size || images.size() != other.images.size()) {
+      return false;
+    }
+    for (int i = 0; i < size; i++) {
+      if (ops[i] != other.ops[i]) {
+        return false;
+      }
+    }
+    for (int i = 0; i < images.size(); i++) {
+      BufferedImage a = images.get(i), b = other.images.get(i);
+      if (a.getWidth() != b.getWidth()
+              || !Arrays.equals(((DataBufferInt) a.getRaster().getDataBuffer()).getData(),
+                      ((DataBufferInt) b.getRaster().getDataBuffer()).getData())) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
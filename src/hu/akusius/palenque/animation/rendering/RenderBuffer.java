@@ -0,0 +1,69 @@
+package hu.akusius.palenque.animation.rendering;
+
+/**
+ * Szálanként egy példányban létező munkapufferek a kirajzoláshoz, hogy a kirajzolás ne foglaljon memóriát.
+ * A pufferek csak addig érvényesek, amíg ugyanazon a szálon valaki más el nem kéri őket, ezért
+ * egy kirajzoló metódus nem hívhat olyan másikat, amely ugyanazt a puffert használja.
+ * @author Bujdosó Ákos
+ */
+final class RenderBuffer {
+
+  private static final ThreadLocal<RenderBuffer> buffers = new ThreadLocal<RenderBuffer>() {
+
+    @Override
+    protected RenderBuffer initialValue() {
+      return new RenderBuffer();
+    }
+  };
+
+  /**
+   * @return Az aktuális szál pufferei.
+   */
+  static RenderBuffer get() {
+    return buffers.get();
+  }
+
+  private double[] points = new double[64 * 3];
+
+  private final int[] coords = new int[16];
+
+  private final int[] polyX = new int[5];
+
+  private final int[] polyY = new int[5];
+
+  private RenderBuffer() {
+  }
+
+  /**
+   * @param count A pontok száma.
+   * @return Legalább a megadott számú pont (X, Y, Z) tárolására alkalmas tömb. A tartalma határozatlan.
+   */
+  double[] getPoints(int count) {
+    int len = count * 3;
+    if (points.length < len) {
+      points = new double[Math.max(len, points.length * 2)];
+    }
+    return points;
+  }
+
+  /**
+   * @return Tömb legfeljebb 8 projektált pont (X, Y) tárolásához.
+   */
+  int[] getCoords() {
+    return coords;
+  }
+
+  /**
+   * @return A zárt négyszögek kirajzolásához (5 pont) használható X koordináták.
+   */
+  int[] getPolyX() {
+    return polyX;
+  }
+
+  /**
+   * @return A zárt négyszögek kirajzolásához (5 pont) használható Y koordináták.
+   */
+  int[] getPolyY() {
+    return polyY;
+  }
+}
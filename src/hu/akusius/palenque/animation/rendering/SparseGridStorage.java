@@ -0,0 +1,215 @@
+package hu.akusius.palenque.animation.rendering;
+
+import java.util.Arrays;
+
+/**
+ * Ritka tárolás: csak az elemek kódjai, sorfolytonosan rendezve egy {@code int[]} tömbben.
+ * A forgatás, tükrözés és összefűzés az elemek számával arányos (a rendezés miatt annál kicsit több) időt
+ * igényel, a négyzetrács méretétől függetlenül; nagy, többnyire üres négyzetrácsokhoz való.
+ * @author Bujdosó Ákos
+ * @see GridStorage
+ */
+final class SparseGridStorage extends GridStorage {
+
+  private int[] codes;
+
+  private int count;
+
+  SparseGridStorage(int size) {
+    super(size);
+    this.codes = new int[16];
+  }
+
+  private SparseGridStorage(int size, int[] codes, int count) {
+    super(size);
+    this.codes = codes;
+    this.count = count;
+  }
+
+  /**
+   * Egy cella keresése.
+   * @param cell A cella sorfolytonos indexe.
+   * @return A cellához tartozó kód indexe, vagy ha nincs ilyen, akkor {@code -(beszúrási pont) - 1}.
+   */
+  private int find(int cell) {
+    int lo = 0, hi = count - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      int c = codes[mid] >>> 2;
+      if (c < cell) {
+        lo = mid + 1;
+      } else if (c > cell) {
+        hi = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -(lo + 1);
+  }
+
+  @Override
+  byte get(int ix, int iy) {
+    int i = find(iy * size + ix);
+    return i >= 0 ? (byte) (codes[i] & 3) : Grid.ITEM_EMPTY;
+  }
+
+  @Override
+  void set(int ix, int iy, byte type) {
+    int cell = iy * size + ix;
+    int i = find(cell);
+    if (i >= 0) {
+      assert (codes[i] & 3) == type;
+      return;
+    }
+    int ins = -i - 1;
+    if (count == codes.length) {
+      codes = Arrays.copyOf(codes, Math.max(count * 2, 16));
+    }
+    System.arraycopy(codes, ins, codes, ins + 1, count - ins);
+    codes[ins] = cell << 2 | type;
+    count++;
+  }
+
+  @Override
+  void rotate(int num, boolean keep) {
+    if (!keep) {
+      codes = transformed(num);
+      return;
+    }
+    int[] orig = Arrays.copyOf(codes, count);
+    for (int n = 1; n <= num; n++) {
+      int[] r = transformed(orig, orig.length, n);
+      union(r, r.length);
+    }
+  }
+
+  @Override
+  void octuple() {
+    rotate(3, true);
+    int[] m = transformed(0);
+    union(m, m.length);
+  }
+
+  @Override
+  void merge(GridStorage o, int dx, int dy) {
+    int[] oc = o.getItemCodes();
+    for (int i = 0; i < oc.length; i++) {
+      int cell = oc[i] >>> 2;
+      byte type = (byte) (oc[i] & 3);
+      int nix = cell % o.size + dx;
+      int niy = cell / o.size + dy;
+      assert isValidCell(nix, niy, type);
+      // Az eltolás a sorfolytonos sorrendet nem változtatja meg
+      oc[i] = (niy * size + nix) << 2 | type;
+    }
+    union(oc, oc.length);
+  }
+
+  @Override
+  GridStorage copy() {
+    return new SparseGridStorage(size, Arrays.copyOf(codes, Math.max(count, 16)), count);
+  }
+
+  @Override
+  int getItemCount() {
+    return count;
+  }
+
+  @Override
+  int getItemCodes(int[] dst) {
+    System.arraycopy(codes, 0, dst, 0, count);
+    return count;
+  }
+
+  @Override
+  boolean contentEquals(GridStorage o) {
+    if (o instanceof SparseGridStorage) {
+      SparseGridStorage so = (SparseGridStorage) o;
+      if (size != so.size || count != so.count) {
+        return false;
+      }
+      for (int i = 0; i < count; i++) {
+        if (codes[i] != so.codes[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+    return super.contentEquals(o);
+  }
+
+  private int[] transformed(int num) {
+    return transformed(codes, count, num);
+  }
+
+  /**
+   * Elemek elforgatása vagy tükrözése.
+   * @param src Az elemek kódjai.
+   * @param n Az elemek száma.
+   * @param num A forgatások száma (1-3), vagy 0 az Y tengelyre való tükrözéshez.
+   * @return Az új kódok, rendezve.
+   */
+  private int[] transformed(int[] src, int n, int num) {
+    int last = size - 1;
+    int[] r = new int[n];
+    for (int i = 0; i < n; i++) {
+      int cell = src[i] >>> 2;
+      int ix = cell % size, iy = cell / size;
+      final int nix, niy;
+      switch (num) {
+        case 0:
+          nix = last - ix;
+          niy = iy;
+          break;
+        case 1:
+          // y, -x
+          nix = iy;
+          niy = last - ix;
+          break;
+        case 2:
+          // -x, -y
+          nix = last - ix;
+          niy = last - iy;
+          break;
+        case 3:
+          // -y, x
+          nix = last - iy;
+          niy = ix;
+          break;
+        default:
+          throw new AssertionError();
+      }
+      r[i] = (niy * size + nix) << 2 | src[i] & 3;
+    }
+    Arrays.sort(r);
+    return r;
+  }
+
+  /**
+   * A megadott (rendezett) elemek hozzáadása. Az azonos cellán lévő elemeknek egyezniük kell.
+   */
+  private void union(int[] add, int n) {
+    int[] r = new int[Math.max(count + n, 16)];
+    int i = 0, j = 0, k = 0;
+    while (i < count && j < n) {
+      int a = codes[i] >>> 2, b = add[j] >>> 2;
+      if (a < b) {
+        r[k++] = codes[i++];
+      } else if (a > b) {
+        r[k++] = add[j++];
+      } else {
+        assert codes[i] == add[j];
+        r[k++] = codes[i++];
+        j++;
+      }
+    }
+    while (i < count) {
+      r[k++] = codes[i++];
+    }
+    while (j < n) {
+      r[k++] = add[j++];
+    }
+    codes = r;
+    count = k;
+  }
+}
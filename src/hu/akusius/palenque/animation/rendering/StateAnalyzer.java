@@ -1,18 +1,29 @@
 package hu.akusius.palenque.animation.rendering;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.PrintWriter;
-import java.nio.charset.Charset;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
-import java.util.*;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Osztály egy {@link Grid}-(ek)ből felépülő állapot elemzéséhez.
- * Az elemzést stateXX.pqs elnevezésű fájlokba menti az aktuális alkönyvtárban (XX az állapot azonosítója).
+ * Az elemzést stateXX.pqs (szöveges) és stateXX.pqsb (bináris) elnevezésű fájlokba menti az aktuális
+ * alkönyvtárban (XX az állapot azonosítója).
  * Egy állapotot egy futtatás során csak egyszer generál le.
+ * A hívó szálon csak a négyzetrács(ok) pillanatképe készül el, az elemzés és a fájlok írása egyetlen háttérszálon,
+ * a kérések sorrendjében történik, így a kirajzolást nem lassítja.
  * @author Bujdosó Ákos
  */
 final class StateAnalyzer {
@@ -23,19 +34,18 @@ final class StateAnalyzer {
 
   public static final String EXTENSION = "pqs";
 
-  private static final Map<CellType, Character> TYPE_CHARS = new EnumMap<>(CellType.class);
+  public static final String BINARY_EXTENSION = "pqsb";
 
-  static {
-    TYPE_CHARS.put(CellType.Empty, '.');
-    TYPE_CHARS.put(CellType.Center, 'x');
-    TYPE_CHARS.put(CellType.Square, 'Q');
-    TYPE_CHARS.put(CellType.Sun, 'S');
-    TYPE_CHARS.put(CellType.SunPart, 's');
-    TYPE_CHARS.put(CellType.Star, 'R');
-    TYPE_CHARS.put(CellType.StarPart, 'r');
-  }
+  private static final char[] TYPE_CHARS = {'.', 'x', 'Q', 'S', 's', 'R', 'r'};
 
-  private static final Set<Integer> analyzedStates = new HashSet<>(20);
+  private static final byte EMPTY = 0, CENTER = 1, SQUARE = 2, SUN = 3, SUN_PART = 4, STAR = 5, STAR_PART = 6;
+
+  /**
+   * A koordinátákkal is felsorolt típusok.
+   */
+  private static final byte[] LISTED_TYPES = {SQUARE, SUN, STAR};
+
+  private static final Set<Integer> analyzedStates = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>(20));
 
   /**
    * A megadott {@link Grid}-(ek)ből felépülő állapot elemzése.
@@ -52,21 +62,21 @@ final class StateAnalyzer {
    * @param rotateGrids A {@link Grid}-eket el kell-e forgatni analizálás előtt.
    * @param grids Az állapotot alkotó {@link Grid}(-ek).
    */
-  public static void analyze(int state, boolean rotateGrids, Grid... grids) {
+  public static void analyze(final int state, boolean rotateGrids, Grid... grids) {
     if (!ENABLED) {
       throw new IllegalStateException();
     }
     if (grids == null || grids.length == 0) {
       throw new IllegalArgumentException();
     }
-    if (analyzedStates.contains(state)) {
+    if (!analyzedStates.add(state)) {
       return;
     }
-    analyzedStates.add(state);
 
+    // Pillanatkép: a lezárt négyzetrács nem változhat, a többi itt lemásolódik
     final Grid grid;
     if (grids.length == 1 && grids[0].getSize() == SIZE) {
-      grid = grids[0];
+      grid = grids[0].isLocked() ? grids[0] : grids[0].cloneGrid();
     } else {
       grid = new Grid(SIZE);
       for (Grid g : grids) {
@@ -77,139 +87,358 @@ final class StateAnalyzer {
       }
     }
 
-    assert SIZE % 2 == 1;
-    final int center = (SIZE - 1) / 2;
-
-    CellType[][] cells = new CellType[SIZE][SIZE];
-    byte[][] items = grid.getItems();
+    Writer.executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        write(AnalyzedState.of(state, grid));
+      }
+    });
+  }
 
-    for (int y = 0; y < SIZE; y++) {
-      for (int x = 0; x < SIZE; x++) {
-        byte item = items[SIZE - y - 1][x];   // itt lentről felfelé mennek a sorok
-        switch (item) {
-          case Grid.ITEM_EMPTY:
-            if (cells[y][x] == null) {
-              cells[y][x] = CellType.Empty;
-            }
-            break;
-          case Grid.ITEM_SQUARE:
-            cells[y][x] = CellType.Square;
-            break;
-          case Grid.ITEM_SUN:
-          case Grid.ITEM_STAR:
-            CellType part = item == Grid.ITEM_SUN ? CellType.SunPart : CellType.StarPart;
-            for (int yt = y - 1; yt <= y + 1; yt++) {
-              for (int xt = x - 1; xt <= x + 1; xt++) {
-                cells[yt][xt] = part;
-              }
-            }
-            cells[y][x] = item == Grid.ITEM_SUN ? CellType.Sun : CellType.Star;
-            break;
-          default:
-            throw new AssertionError();
+  /**
+   * Várakozás az addig kért elemzések befejezésére.
+   * A virtuális gép leállásakor automatikusan meghívódik, így a sorban álló elemzések nem vesznek el.
+   */
+  public static void flush() {
+    try {
+      Writer.executor.submit(new Runnable() {
+        @Override
+        public void run() {
         }
+      }).get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException ex) {
+      Logger.getLogger(StateAnalyzer.class.getName()).log(Level.SEVERE, null, ex);
+    }
+  }
+
+  private static void write(AnalyzedState as) {
+    try {
+      String name = String.format("state%02d", as.getState());
+      File cwd = new File(".");
+      Path path = Paths.get(cwd.getCanonicalPath(), name + "." + EXTENSION);
+      writeFile(path, as.toText().getBytes(StandardCharsets.US_ASCII));
+      writeFile(Paths.get(cwd.getCanonicalPath(), name + "." + BINARY_EXTENSION), as.toBinary());
+      Logger.getLogger(StateAnalyzer.class.getName()).log(Level.INFO,
+              String.format("State analyzed: %d -> %s", as.getState(), path));
+    } catch (Exception ex) {
+      Logger.getLogger(StateAnalyzer.class.getName()).log(Level.SEVERE, null, ex);
+    }
+  }
+
+  /**
+   * Egy fájl kiírása egy ideiglenes fájlon keresztül, hogy félig megírt fájl ne maradhasson vissza.
+   * @param path A fájl elérési útja.
+   * @param data A fájl tartalma.
+   * @throws IOException Írási hiba.
+   */
+  static void writeFile(Path path, byte[] data) throws IOException {
+    Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+    try {
+      Files.write(tmp, data);
+      try {
+        Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException ex) {
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
       }
+    } finally {
+      Files.deleteIfExists(tmp);
     }
+  }
 
-    if (cells[center][center] == CellType.Empty) {
-      cells[center][center] = CellType.Center;
+  private StateAnalyzer() {
+  }
+
+  /**
+   * Az elemzés háttérszála (az első használatkor jön létre).
+   * Leálláskor a még sorban álló elemzések kiírására vár.
+   */
+  private static final class Writer {
+
+    static final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "StateAnalyzer writer");
+        t.setDaemon(true);
+        return t;
+      }
+    });
+
+    static {
+      Runtime.getRuntime().addShutdownHook(new Thread("StateAnalyzer flush") {
+        @Override
+        public void run() {
+          flush();
+        }
+      });
     }
+  }
 
-    Map<CellType, List<Coords>> typeCoords = new EnumMap<>(CellType.class);
-    typeCoords.put(CellType.Square, new ArrayList<Coords>(200));
-    typeCoords.put(CellType.Sun, new ArrayList<Coords>(10));
-    typeCoords.put(CellType.Star, new ArrayList<Coords>(10));
+  /**
+   * Egy elemzett állapot: a cellák típusa és a négyzetek, napok és csillagok koordinátái.
+   * Szöveges (pqs) és bináris (pqsb) formában is kiírható, a bináris forma visszaolvasható.
+   * <p>
+   * A bináris formátum (nagy végű): "PQSB", verzió (1 bájt), állapot (1 bájt), méret (2 bájt),
+   * a cellák típusa soronként fentről lefelé (cellánként 1 bájt), majd a négyzetek, napok és csillagok
+   * száma (2 bájt) és koordinátái (X és Y előjeles bájtként) típusonként.
+   */
+  static final class AnalyzedState {
 
-    try {
-      String name = String.format("state%02d.%s", state, EXTENSION);
-      File cwd = new File(".");
-      Path path = Paths.get(cwd.getCanonicalPath(), name);
-      try (BufferedWriter wr = Files.newBufferedWriter(path, Charset.forName("ASCII"));
-              PrintWriter pw = new PrintWriter(wr)) {
-        pw.printf("PQS %02d\n\n", state);
-
-        for (int y = 0; y < SIZE; y++) {
-          for (int x = 0; x < SIZE; x++) {
-            CellType type = cells[y][x];
-            pw.print(TYPE_CHARS.get(type));
-
-            List<Coords> coordsList = typeCoords.get(type);
-            if (coordsList != null) {
-              coordsList.add(new Coords(x - center, center - y));
-            }
+    private static final byte[] MAGIC = {'P', 'Q', 'S', 'B'};
+
+    private static final int VERSION = 1;
+
+    private final int state;
+
+    private final int size;
+
+    /**
+     * A cellák típusa soronként, fentről lefelé.
+     */
+    private final byte[] cells;
+
+    /**
+     * A felsorolt típusok koordinátái X1, Y1, X2, Y2, stb. sorrendben.
+     */
+    private final int[][] coords;
+
+    private AnalyzedState(int state, int size, byte[] cells, int[][] coords) {
+      this.state = state;
+      this.size = size;
+      this.cells = cells;
+      this.coords = coords;
+    }
+
+    /**
+     * Egy négyzetrács elemzése.
+     * @param state Az elemzési állapot azonosítója.
+     * @param grid A négyzetrács.
+     * @return Az elemzett állapot.
+     */
+    static AnalyzedState of(int state, Grid grid) {
+      int size = grid.getSize();
+      assert size % 2 == 1;
+      final int center = (size - 1) / 2;
+
+      byte[] cells = new byte[size * size];
+      for (int y = 0; y < size; y++) {
+        for (int x = 0; x < size; x++) {
+          byte item = grid.getItem(x, size - y - 1);   // itt lentről felfelé mennek a sorok
+          int i = y * size + x;
+          switch (item) {
+            case Grid.ITEM_EMPTY:
+              // Az előző napok és csillagok részei megmaradnak
+              break;
+            case Grid.ITEM_SQUARE:
+              cells[i] = SQUARE;
+              break;
+            case Grid.ITEM_SUN:
+            case Grid.ITEM_STAR:
+              byte part = item == Grid.ITEM_SUN ? SUN_PART : STAR_PART;
+              for (int yt = y - 1; yt <= y + 1; yt++) {
+                for (int xt = x - 1; xt <= x + 1; xt++) {
+                  cells[yt * size + xt] = part;
+                }
+              }
+              cells[i] = item == Grid.ITEM_SUN ? SUN : STAR;
+              break;
+            default:
+              throw new AssertionError();
           }
-          pw.print('\n');
         }
+      }
 
-        pw.print("\n");
-        for (CellType type : new CellType[]{CellType.Square, CellType.Sun, CellType.Star}) {
-          List<Coords> coordsList = typeCoords.get(type);
-          pw.printf("%c %03d", TYPE_CHARS.get(type), coordsList.size());
-          for (Coords coords : coordsList) {
-            pw.print(' ');
-            pw.print(coords.toString());
+      int ci = center * size + center;
+      if (cells[ci] == EMPTY) {
+        cells[ci] = CENTER;
+      }
+
+      int[] counts = new int[TYPE_CHARS.length];
+      for (byte c : cells) {
+        counts[c]++;
+      }
+      int[][] coords = new int[LISTED_TYPES.length][];
+      for (int t = 0; t < LISTED_TYPES.length; t++) {
+        coords[t] = new int[counts[LISTED_TYPES[t]] * 2];
+      }
+      int[] pos = new int[LISTED_TYPES.length];
+      for (int y = 0; y < size; y++) {
+        for (int x = 0; x < size; x++) {
+          int t = listedIndex(cells[y * size + x]);
+          if (t >= 0) {
+            coords[t][pos[t]++] = x - center;
+            coords[t][pos[t]++] = center - y;
           }
-          pw.print('\n');
         }
       }
-      Logger.getLogger(StateAnalyzer.class.getName()).log(Level.INFO,
-              String.format("State analyzed: %d -> %s", state, path));
-    } catch (Exception ex) {
-      Logger.getLogger(StateAnalyzer.class.getName()).log(Level.SEVERE, null, ex);
+      return new AnalyzedState(state, size, cells, coords);
     }
-  }
 
-  private StateAnalyzer() {
-  }
+    private static int listedIndex(byte type) {
+      for (int t = 0; t < LISTED_TYPES.length; t++) {
+        if (LISTED_TYPES[t] == type) {
+          return t;
+        }
+      }
+      return -1;
+    }
 
-  private enum CellType {
+    /**
+     * Egy bináris formában elmentett állapot beolvasása (memóriába leképezve).
+     * @param path A fájl elérési útja.
+     * @return A beolvasott állapot.
+     * @throws IOException Olvasási hiba, vagy a fájl nem megfelelő formátumú.
+     */
+    static AnalyzedState read(Path path) throws IOException {
+      try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+        MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        try {
+          for (byte m : MAGIC) {
+            if (buf.get() != m) {
+              throw new IOException("Not a PQSB file: " + path);
+            }
+          }
+          if (buf.get() != VERSION) {
+            throw new IOException("Unsupported PQSB version: " + path);
+          }
+          int state = buf.get() & 0xFF;
+          int size = buf.getShort() & 0xFFFF;
+          byte[] cells = new byte[size * size];
+          buf.get(cells);
+          for (byte c : cells) {
+            if (c < 0 || c >= TYPE_CHARS.length) {
+              throw new IOException("Invalid cell type: " + path);
+            }
+          }
+          int[][] coords = new int[LISTED_TYPES.length][];
+          for (int t = 0; t < coords.length; t++) {
+            int n = buf.getShort() & 0xFFFF;
+            coords[t] = new int[n * 2];
+            for (int i = 0; i < n * 2; i++) {
+              coords[t][i] = buf.get();
+            }
+          }
+          return new AnalyzedState(state, size, cells, coords);
+        } catch (java.nio.BufferUnderflowException ex) {
+          throw new IOException("Truncated PQSB file: " + path, ex);
+        }
+      }
+    }
 
-    Empty,
-    Center,
-    Square,
-    Sun,
-    SunPart,
-    Star,
-    StarPart
-  }
+    /**
+     * @return Az elemzési állapot azonosítója.
+     */
+    int getState() {
+      return state;
+    }
 
-  private static class Coords {
+    /**
+     * @return A négyzetrács mérete.
+     */
+    int getSize() {
+      return size;
+    }
 
-    private final int x;
+    /**
+     * @param x A cella oszlopa (balról).
+     * @param y A cella sora (fentről).
+     * @return A cella típusának jele (mint a szöveges formában).
+     */
+    char getCellChar(int x, int y) {
+      return TYPE_CHARS[cells[y * size + x]];
+    }
 
-    private final int y;
+    /**
+     * @return A négyzetek koordinátái X1, Y1, X2, Y2, stb. sorrendben. A tömb nem módosítható!
+     */
+    int[] getSquares() {
+      return coords[0];
+    }
 
-    Coords(int x, int y) {
-      this.x = x;
-      this.y = y;
+    /**
+     * @return A napok koordinátái X1, Y1, X2, Y2, stb. sorrendben. A tömb nem módosítható!
+     */
+    int[] getSuns() {
+      return coords[1];
     }
 
-    public int getX() {
-      return x;
+    /**
+     * @return A csillagok koordinátái X1, Y1, X2, Y2, stb. sorrendben. A tömb nem módosítható!
+     */
+    int[] getStars() {
+      return coords[2];
     }
 
-    public int getY() {
-      return y;
+    /**
+     * @return Az állapot szöveges (pqs) formában.
+     */
+    String toText() {
+      StringBuilder sb = new StringBuilder(size * (size + 1) + 2000);
+      sb.append("PQS ");
+      appendTwoDigits(sb, state);
+      sb.append("\n\n");
+      for (int y = 0; y < size; y++) {
+        for (int x = 0; x < size; x++) {
+          sb.append(getCellChar(x, y));
+        }
+        sb.append('\n');
+      }
+
+      sb.append('\n');
+      for (int t = 0; t < LISTED_TYPES.length; t++) {
+        int[] cs = coords[t];
+        int n = cs.length / 2;
+        sb.append(TYPE_CHARS[LISTED_TYPES[t]]).append(' ');
+        sb.append(n < 100 ? (n < 10 ? "00" : "0") : "").append(n);
+        for (int i = 0; i < cs.length; i += 2) {
+          sb.append(' ');
+          appendCoord(sb, cs[i]);
+          sb.append(',');
+          appendCoord(sb, cs[i + 1]);
+        }
+        sb.append('\n');
+      }
+      return sb.toString();
     }
 
-    private static void coordString(StringBuilder sb, int value) {
-      int absValue = value < 0 ? -value : value;
-      assert absValue < 100;
+    /**
+     * @return Az állapot bináris (pqsb) formában.
+     */
+    byte[] toBinary() {
+      int len = MAGIC.length + 4 + cells.length;
+      for (int[] cs : coords) {
+        len += 2 + cs.length;
+      }
+      ByteBuffer buf = ByteBuffer.allocate(len);
+      buf.put(MAGIC);
+      buf.put((byte) VERSION);
+      buf.put((byte) state);
+      buf.putShort((short) size);
+      buf.put(cells);
+      for (int[] cs : coords) {
+        buf.putShort((short) (cs.length / 2));
+        for (int c : cs) {
+          buf.put((byte) c);
+        }
+      }
+      assert !buf.hasRemaining();
+      return buf.array();
+    }
 
-      sb.append(value < 0 ? '-' : '+');
-      if (absValue < 10) {
+    private static void appendTwoDigits(StringBuilder sb, int value) {
+      if (value < 10) {
         sb.append('0');
       }
-      sb.append(absValue);
+      sb.append(value);
     }
 
-    @Override
-    public String toString() {
-      StringBuilder sb = new StringBuilder(10);
-      coordString(sb, x);
-      sb.append(',');
-      coordString(sb, y);
-      return sb.toString();
+    private static void appendCoord(StringBuilder sb, int value) {
+      int absValue = value < 0 ? -value : value;
+      assert absValue < 100;
+
+      sb.append(value < 0 ? '-' : '+');
+      appendTwoDigits(sb, absValue);
     }
   }
 }
@@ -0,0 +1,356 @@
+package hu.akusius.palenque.animation.rendering;
+
+/**
+ * Egy lépés előre felépített jelenete.
+ * A lépésekhez tartozó négyzetrácsok egyszer, az első használatkor jönnek létre, utána már nem változnak
+ * (le vannak zárva), így a képkockánként csak a százaléktól függő transzformációkat kell kiszámolni.
+ * A származtatott négyzetrácsok a {@link GridCache}-en keresztül készülnek, így az azonos tartalmúak
+ * a lépések között is közösek.
+ * A négyzetrácsok sorrendje lépésenként rögzített, ezt a {@link FrameRenderer} megfelelő metódusai használják.
+ * @author Bujdosó Ákos
+ */
+final class StepScene {
+
+  private static final StepScene[] scenes = buildScenes();
+
+  /**
+   * A megadott lépés jelenetének lekérdezése.
+   * @param step A lépés száma (0-21).
+   * @return A lépés előre felépített jelenete.
+   */
+  static StepScene forStep(int step) {
+    return scenes[step];
+  }
+
+  private final int step;
+
+  private final Grid[] grids;
+
+  private StepScene(int step, Grid... grids) {
+    this.step = step;
+    this.grids = grids;
+    for (Grid grid : grids) {
+      grid.lock();
+    }
+  }
+
+  /**
+   * @return A lépés száma.
+   */
+  int getStep() {
+    return step;
+  }
+
+  /**
+   * @param index A négyzetrács indexe a jeleneten belül.
+   * @return A megadott indexű (lezárt) négyzetrács.
+   */
+  Grid getGrid(int index) {
+    return grids[index];
+  }
+
+  /**
+   * @return A jelenetet alkotó négyzetrácsok száma.
+   */
+  int getGridCount() {
+    return grids.length;
+  }
+
+  private static StepScene[] buildScenes() {
+    StepScene[] ss = new StepScene[22];
+    buildStep_0_6(ss);
+    buildStep_7_8(ss);
+    buildStep_9(ss);
+    buildStep_10(ss);
+    buildStep_11_16(ss);
+    buildStep_17(ss);
+    buildStep_18_19(ss);
+    buildStep_20_21(ss);
+    for (int step = 0; step < ss.length; step++) {
+      assert ss[step] != null && ss[step].step == step;
+    }
+    return ss;
+  }
+
+  /**
+   * 0: [alap]; 1-3: [forgatott megtartással, forgatott]; 4-5: [háromszor forgatott]; 6: [nyolcszorozott]
+   */
+  private static void buildStep_0_6(StepScene[] ss) {
+    Grid grid = new Grid(51);
+    grid.addTriplets(new int[]{-5, 6, -5, -4, 4, -4, -10, 1, 9, 1, -16, 17, 6, 20, 20, 20, 20, 5, -16, -23});
+    grid.addItem(Grid.ITEM_SUN, -11, -20);
+    grid.addItem(Grid.ITEM_STAR, 20, -2);
+
+    grid = GridCache.intern(grid);
+    ss[0] = new StepScene(0, grid);
+    ss[1] = new StepScene(1, grid, grid);
+    for (int step = 2; step <= 3; step++) {
+      ss[step] = new StepScene(step, GridCache.rotate(grid, step - 1, true), GridCache.rotate(grid, step - 1, false));
+    }
+
+    Grid gr3 = GridCache.rotate(grid, 3, true);
+    ss[4] = new StepScene(4, gr3);
+    ss[5] = new StepScene(5, gr3);
+
+    ss[6] = new StepScene(6, GridCache.octuple(grid));
+  }
+
+  /**
+   * 7-8: [g11, g12, g2]
+   */
+  private static void buildStep_7_8(StepScene[] ss) {
+    Grid g11 = new Grid(15, 17, 17);
+    g11.addItems(Grid.ITEM_SQUARE, new int[]{
+      16, 16, 17, 16, 18, 16, 22, 16, 23, 16, 24, 16,
+      16, 17, 16, 18, 16, 22, 16, 23, 16, 24, 19, 20, 20, 20, 21, 20, 20, 19, 20, 21
+    });
+    g11.addItems(Grid.ITEM_SUN, new int[]{20, 11, 11, 20});
+    Grid g12 = new Grid(5, 5, 5);
+    g12.addItems(Grid.ITEM_SQUARE, new int[]{
+      5, 7, 5, 6, 5, 5, 5, 4, 5, 3, 7, 5, 6, 5, 4, 5, 3, 5, 4, 4, 4, 3, 3, 4
+    });
+
+    Grid g2 = new Grid(15, 15, 0);
+    g2.addItems(Grid.ITEM_SQUARE, new int[]{
+      19, 6, 20, 6, 21, 6, 20, 5, 20, 4,
+      19, -6, 20, -6, 21, -6, 20, -5, 20, -4,
+      9, -2, 9, -1, 9, 0, 9, 1, 9, 2,
+      10, -2, 10, -1, 10, 0, 10, 1, 10, 2
+    });
+    g2.addItems(Grid.ITEM_STAR, new int[]{20, 2, 20, -2});
+
+    ss[7] = new StepScene(7, g11, g12, g2);
+    ss[8] = new StepScene(8, g11, g12, g2);
+  }
+
+  /**
+   * 9: [g1, g2]
+   */
+  private static void buildStep_9(StepScene[] ss) {
+    Grid g1 = new Grid(39, 0, 0);
+    g1.addItems(Grid.ITEM_SQUARE, new int[]{
+      2, 1, 2, 2, 2, 3, 3, 1, 3, 2, 3, 3, 4, 0, 4, 1, 4, 2, 4, 3, 5, 0, 5, 1, 5, 2, 5, 3,
+      2, -1, 2, -2, 2, -3, 3, -1, 3, -2, 3, -3, 4, -1, 4, -2, 4, -3, 5, -1, 5, -2, 5, -3,
+      15, 4, 15, 5, 15, 6, 14, 6, 16, 6,
+      15, -4, 15, -5, 15, -6, 14, -6, 16, -6
+    });
+    g1.addItems(Grid.ITEM_STAR, new int[]{15, 2, 15, -2});
+    g1.addItems(Grid.ITEM_SUN, new int[]{18, 9, 18, -9});
+    g1.rotate(3, true);
+
+    Grid g2 = new Grid(9, 0, 0);
+    g2.addItems(Grid.ITEM_SQUARE, new int[]{
+      0, 0, 0, 1, 0, -1, -1, 0, 1, 0,
+      -4, 4, -4, 3, -4, 2, -4, -2, -4, -3, -4, -4,
+      -3, -4, -2, -4, 2, -4, 3, -4, 4, -4
+    });
+    g2.setCenter(18, 18);
+
+    ss[9] = new StepScene(9, g1, g2);
+  }
+
+  /**
+   * 10: [g1, g2, g3]
+   */
+  private static void buildStep_10(StepScene[] ss) {
+    Grid g1 = new Grid(3, 2, 2);
+    g1.addItems(Grid.ITEM_SQUARE, new int[]{
+      1, 2, 1, 3, 2, 1, 2, 2, 2, 3, 3, 1, 3, 2, 3, 3
+    });
+
+    Grid g2 = new Grid(7, 4, 0);
+    g2.addItems(Grid.ITEM_SQUARE, new int[]{
+      4, -3, 4, -2, 4, -1, 4, 0, 4, 1, 4, 2, 4, 3,
+      5, -3, 5, -2, 5, -1, 5, 0, 5, 1, 5, 2, 5, 3
+    });
+    g2.setCenter(0, 0);
+
+    Grid g3 = new Grid(21, 10, 0);
+    g3.addItems(Grid.ITEM_SQUARE, new int[]{
+      15, 4, 15, 5, 15, 6, 14, 6, 16, 6,
+      15, -4, 15, -5, 15, -6, 14, -6, 16, -6
+    });
+    g3.addItems(Grid.ITEM_STAR, new int[]{15, 2, 15, -2});
+    g3.addItems(Grid.ITEM_SUN, new int[]{18, 9, 18, -9});
+    g3.setCenter(-4, 0);
+
+    ss[10] = new StepScene(10, g1, g2, g3);
+  }
+
+  /**
+   * Mindegyik lépésben a 0. elem a középső nap.
+   * 11: [g1, g2h, g3];
+   * 12: [g1, g2h felső, g2v jobb, g2h alsó, g2v bal, belső felső, belső többi];
+   * 13: [g1, g2h felső, g2v jobb, g2h alsó, g2v bal, gb1, gb2];
+   * 14: [g1, gt, g2h alsó, g2v bal, gb1, gb2];
+   * 15: [g1, gt, g2v bal, gb1, gb2];
+   * 16: [g1, gt, gb]
+   */
+  private static void buildStep_11_16(StepScene[] ss) {
+    Grid g1 = new Grid(3, 0, 0);
+    g1.addItem(Grid.ITEM_SUN, 0, 0);
+    g1.setCenter(9, 9);
+
+    Grid g2h = new Grid(13, 0, 0);
+    g2h.addItems(Grid.ITEM_SQUARE, new int[]{
+      -4, 0, -5, 0, -6, -1, -6, 0, -6, 1,
+      4, 0, 5, 0, 6, -1, 6, 0, 6, 1
+    });
+    g2h.addItems(Grid.ITEM_STAR, new int[]{-2, 0, 2, 0});
+    Grid g2v = GridCache.rotate(g2h, 1, false);
+
+    Grid g2hBottom = GridCache.move(g2h, 0, -12);
+    Grid g2vLeft = GridCache.move(g2v, -12, 0);
+    Grid g2hTop6 = GridCache.move(g2h, 0, 6);
+
+    // 11
+    Grid g3 = new Grid(7, 0, 0);
+    g3.addItems(Grid.ITEM_SQUARE, new int[]{
+      2, 1, 2, 0, 2, -1, 2, -2, 2, -3,
+      3, 1, 3, 0, 3, -1, 3, -2, 3, -3
+    });
+    g3.rotate(3, true);
+    ss[11] = new StepScene(11, g1, GridCache.move(g2h, 0, 12), g3);
+
+    // 12
+    Grid gi1 = new Grid(7, 0, 0);
+    gi1.addItems(Grid.ITEM_SQUARE, new int[]{
+      -3, 2, -2, 2, -1, 2, 0, 2, 1, 2, 2, 2, 3, 2,
+      -3, 3, -2, 3, -1, 3, 0, 3, 1, 3, 2, 3, 3, 3
+    });
+    gi1.setCenter(0, -2);
+
+    Grid gi2 = new Grid(7, 0, 0);
+    gi2.addItems(Grid.ITEM_SQUARE, new int[]{
+      2, 1, 2, 0, 2, -1, 2, -2, 2, -3,
+      3, 1, 3, 0, 3, -1, 3, -2, 3, -3
+    });
+    gi2.rotate(1, true);
+    gi2.addItems(Grid.ITEM_SQUARE, new int[]{
+      -2, 1, -2, 0, -2, -1,
+      -3, 1, -3, 0, -3, -1,});
+    ss[12] = new StepScene(12, g1, GridCache.move(g2h, 0, 3), GridCache.move(g2v, 12, 0), g2hBottom, g2vLeft, gi1, gi2);
+
+    // 13
+    Grid gb1 = new Grid(5, 0, 0);
+    gb1.addItems(Grid.ITEM_SQUARE, new int[]{
+      1, -2, 1, -1, 1, 0, 1, 1, 1, 2,
+      2, -2, 2, -1, 2, 0, 2, 1, 2, 2
+    });
+    gb1.setCenter(-1, -1);
+
+    Grid gb2 = new Grid(5, 0, 0);
+    gb2.addItems(Grid.ITEM_SQUARE, new int[]{
+      -2, -1, -1, -1, 0, -1, 1, -1, 2, -1,
+      -2, -2, -1, -2, 0, -2, 1, -2, 2, -2
+    });
+    gb2.rotate(2, true);
+    gb2.setCenter(-1, -1);
+    ss[13] = new StepScene(13, g1, g2hTop6, GridCache.move(g2v, 3, 0), g2hBottom, g2vLeft, gb1, gb2);
+
+    // 14
+    Grid gt21 = GridCache.merge(new Grid(21), g2hTop6);
+    Grid gt = GridCache.rotate(gt21, 1, true);
+
+    gb1 = new Grid(5, 0, 0);
+    gb1.addItems(Grid.ITEM_SQUARE, new int[]{
+      -2, -1, -1, -1, 0, -1, 1, -1, 2, -1,
+      -2, 0, -1, 0, 0, 0, 1, 0, 2, 0
+    });
+    gb1.setCenter(-1, -1);
+
+    gb2 = new Grid(5, 0, 0);
+    gb2.addItems(Grid.ITEM_SQUARE, new int[]{
+      -2, -1, -1, -1, 1, -1, 2, -1,
+      -2, 0, -1, 0, 0, 0, 1, 0, 2, 0,
+      -2, 1, -1, 1, 0, 1, 1, 1, 2, 1
+    });
+    gb2.setCenter(-1, 0);
+    ss[14] = new StepScene(14, g1, gt, GridCache.move(g2h, 0, -3), g2vLeft, gb1, gb2);
+
+    // 15
+    gt = GridCache.rotate(gt21, 2, true);
+
+    gb1 = new Grid(3, 0, 0);
+    gb1.addItems(Grid.ITEM_SQUARE, new int[]{
+      -1, -1, 0, -1,
+      -1, 0, 0, 0,
+      -1, 1, 0, 1
+    });
+    gb1.setCenter(-1, 0);
+
+    Grid gb = new Grid(3, 0, 0);
+    gb.addItems(Grid.ITEM_SQUARE, new int[]{
+      -1, -1, 0, -1, 1, -1,
+      -1, 0, 0, 0, 1, 0,
+      -1, 1, 0, 1, 1, 1
+    });
+    ss[15] = new StepScene(15, g1, gt, GridCache.move(g2v, -3, 0), gb1, gb);
+
+    // 16
+    gt = GridCache.rotate(gt21, 3, true);
+    ss[16] = new StepScene(16, g1, gt, gb);
+  }
+
+  /**
+   * 17: [g1, g2]
+   */
+  private static void buildStep_17(StepScene[] ss) {
+    Grid g1 = new Grid(11);
+    g1.addItems(Grid.ITEM_SQUARE, new int[]{
+      -1, 0, 0, 0, 1, 0, 2, 0,
+      0, -2, 0, -1, 0, 1
+    });
+    g1.addItem(Grid.ITEM_SUN, -3, 3);
+    g1.addItems(Grid.ITEM_STAR, new int[]{0, -4, 4, 0});
+    g1.setCenter(-6, 6);
+
+    Grid g2 = new Grid(21);
+    g2.merge(g1);
+    g2.rotate(1, false);
+    g2.rotate(2, true);
+    g2.addItems(Grid.ITEM_SQUARE, new int[]{
+      -1, -1, 0, -1, 1, -1,
+      -1, 0, 0, 0, 1, 0,
+      -1, 1, 0, 1, 1, 1
+    });
+
+    ss[17] = new StepScene(17, g1, g2);
+  }
+
+  /**
+   * 18: [g1, g2]; 19: [g1]
+   */
+  private static void buildStep_18_19(StepScene[] ss) {
+    Grid g1 = new Grid(11);
+    g1.addItem(Grid.ITEM_SUN, -3, 3);
+    g1.addItems(Grid.ITEM_STAR, new int[]{0, -4, 4, 0});
+    g1.setCenter(-6, 6);
+
+    Grid g2 = new Grid(5);
+    g2.addItems(Grid.ITEM_SQUARE, new int[]{
+      -1, 0, 0, 0, 1, 0, 2, 0,
+      0, -2, 0, -1, 0, 1
+    });
+    g2.setCenter(-6, 6);
+
+    ss[18] = new StepScene(18, g1, g2);
+    ss[19] = new StepScene(19, g1);
+  }
+
+  /**
+   * 20-21: [g1, g2]
+   */
+  private static void buildStep_20_21(StepScene[] ss) {
+    Grid g1 = new Grid(3);
+    g1.addItem(Grid.ITEM_SUN, 0, 0);
+    g1.setCenter(-9, 9);
+
+    Grid g2 = new Grid(3);
+    g2.addItem(Grid.ITEM_STAR, 0, 0);
+    g2.setCenter(4, 0);
+
+    ss[20] = new StepScene(20, g1, g2);
+    ss[21] = new StepScene(21, g1, g2);
+  }
+}
@@ -0,0 +1,208 @@
+package hu.akusius.palenque.animation.rendering;
+
+import hu.akusius.palenque.animation.util.IoUtils;
+import hu.akusius.palenque.animation.util.PngWriter;
+import java.awt.geom.PathIterator;
+import java.awt.image.BufferedImage;
+import java.io.*;
+
+/**
+ * SVG kimenet.
+ * A rajzolási műveletek azonnal a kimenetre kerülnek; az azonos stílusú vonalak egy útvonalat alkotnak,
+ * a képek PNG formátumban, beágyazva jelennek meg.
+ * @author Bujdosó Ákos
+ */
+public final class SvgWriter extends VectorSink {
+
+  /**
+   * Ennyi karakter után kerül ki a puffer a kimenetre.
+   */
+  private static final int FLUSH_SIZE = 8192;
+
+  /**
+   * Egy útvonalon belül ennyi karakter után kezdődik új sor.
+   */
+  private static final int LINE_LENGTH = 100;
+
+  private final Writer writer;
+
+  private final StringBuilder sb = new StringBuilder(FLUSH_SIZE + 256);
+
+  private int lineStart;
+
+  /**
+   * Létrehozás. A fejléc azonnal kiíródik.
+   * @param out A kimenet. A lezáráskor ez is lezárul.
+   * @param width A rajzlap szélessége.
+   * @param height A rajzlap magassága.
+   * @throws IOException Hiba az írás közben.
+   */
+  public SvgWriter(OutputStream out, int width, int height) throws IOException {
+    super(width, height);
+    this.writer = new OutputStreamWriter(out, "UTF-8");
+    sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+    sb.append("<svg xmlns=\"http://www.w3.org/2000/svg\" xmlns:xlink=\"http://www.w3.org/1999/xlink\" version=\"1.1\"");
+    sb.append(" width=\"").append(width).append("\" height=\"").append(height).append('"');
+    sb.append(" viewBox=\"0 0 ").append(width).append(' ').append(height).append("\">\n");
+    sb.append("<g fill=\"none\" stroke-linecap=\"square\" stroke-miterlimit=\"10\">\n");
+    flush();
+  }
+
+  @Override
+  void beginPath(int argb, float lineWidth) throws IOException {
+    sb.append("<path");
+    appendColor("stroke", argb);
+    if (lineWidth != 1f) {
+      sb.append(" stroke-width=\"");
+      appendNumber(sb, lineWidth);
+      sb.append('"');
+    }
+    sb.append(" d=\"");
+    lineStart = sb.length();
+  }
+
+  @Override
+  void moveTo(double x, double y) throws IOException {
+    wrap();
+    sb.append('M');
+    appendPoint(x, y);
+  }
+
+  @Override
+  void lineTo(double x, double y) throws IOException {
+    sb.append('L');
+    appendPoint(x, y);
+  }
+
+  @Override
+  void endPath() throws IOException {
+    sb.append("\"/>\n");
+    flushIfFull();
+  }
+
+  @Override
+  void writeFill(int argb, PathIterator path) throws IOException {
+    sb.append("<path");
+    appendColor("fill", argb);
+    if (path.getWindingRule() == PathIterator.WIND_EVEN_ODD) {
+      sb.append(" fill-rule=\"evenodd\"");
+    }
+    sb.append(" d=\"");
+    lineStart = sb.length();
+    double[] c = new double[6];
+    while (!path.isDone()) {
+      switch (path.currentSegment(c)) {
+        case PathIterator.SEG_MOVETO:
+          wrap();
+          sb.append('M');
+          appendPoint(c[0], c[1]);
+          break;
+        case PathIterator.SEG_LINETO:
+          sb.append('L');
+          appendPoint(c[0], c[1]);
+          break;
+        case PathIterator.SEG_QUADTO:
+          sb.append('Q');
+          appendPoint(c[0], c[1]);
+          sb.append(' ');
+          appendPoint(c[2], c[3]);
+          break;
+        case PathIterator.SEG_CUBICTO:
+          sb.append('C');
+          appendPoint(c[0], c[1]);
+          sb.append(' ');
+          appendPoint(c[2], c[3]);
+          sb.append(' ');
+          appendPoint(c[4], c[5]);
+          break;
+        case PathIterator.SEG_CLOSE:
+          sb.append('Z');
+          break;
+      }
+      path.next();
+    }
+    sb.append("\"/>\n");
+    flushIfFull();
+  }
+
+  @Override
+  void writeImage(BufferedImage image, float alpha, double x, double y, double w, double h) throws IOException {
+    ByteArrayOutputStream png = new ByteArrayOutputStream();
+    new PngWriter().write(image, png);
+
+    sb.append("<image");
+    appendAttribute("x", x);
+    appendAttribute("y", y);
+    appendAttribute("width", w);
+    appendAttribute("height", h);
+    if (alpha < 1f) {
+      appendAttribute("opacity", alpha);
+    }
+    sb.append(" preserveAspectRatio=\"none\" xlink:href=\"data:image/png;base64,");
+    flush();
+    writer.write(IoUtils.encodeBase64(png.toByteArray()));
+    sb.append("\"/>\n");
+    flushIfFull();
+  }
+
+  @Override
+  void finish() throws IOException {
+    sb.append("</g>\n</svg>\n");
+    flush();
+    writer.flush();
+  }
+
+  @Override
+  void release() throws IOException {
+    writer.close();
+  }
+
+  private void appendPoint(double x, double y) {
+    appendNumber(sb, x);
+    sb.append(' ');
+    appendNumber(sb, y);
+  }
+
+  private void appendAttribute(String name, double value) {
+    sb.append(' ').append(name).append("=\"");
+    appendNumber(sb, value);
+    sb.append('"');
+  }
+
+  private void appendColor(String attr, int argb) {
+    sb.append(' ').append(attr).append("=\"#");
+    String hex = Integer.toHexString(argb & 0xffffff);
+    for (int i = hex.length(); i < 6; i++) {
+      sb.append('0');
+    }
+    sb.append(hex).append('"');
+    int a = argb >>> 24;
+    if (a != 255) {
+      appendAttribute(attr + "-opacity", a / 255.0);
+    }
+  }
+
+  /**
+   * Új sor kezdése a hosszú útvonalakon belül.
+   */
+  private void wrap() throws IOException {
+    if (sb.length() - lineStart >= LINE_LENGTH) {
+      sb.append('\n');
+      if (sb.length() >= FLUSH_SIZE) {
+        flush();
+      }
+      lineStart = sb.length();
+    }
+  }
+
+  private void flushIfFull() throws IOException {
+    if (sb.length() >= FLUSH_SIZE) {
+      flush();
+    }
+  }
+
+  private void flush() throws IOException {
+    writer.append(sb);
+    sb.setLength(0);
+  }
+}
@@ -1,6 +1,5 @@
 package hu.akusius.palenque.animation.rendering;
 
-import java.awt.Dimension;
 import org.other.Matrix;
 
 /**
@@ -11,28 +10,6 @@ public final class Transformer {
 
   public static final double CELL_SIZE = 1;
 
-  public static final double defaultFL = 59;
-
-  private static double FL = defaultFL;
-
-  /**
-   * Az FL igazítása, hogy egyenlő nagyságúak legyenek a négyzetek (1-es zoomnál).
-   * @param dim Az új méret. {@code null} esetén visszaállítja az eredeti FL-t.
-   */
-  public static void adjustFL(Dimension dim) {
-    if (dim == null) {
-      FL = defaultFL;
-      return;
-    }
-    int size = Math.min(dim.width, dim.height);
-    double fact = Math.round(size / (defaultFL + 1.0));
-    FL = size / fact - 1.0;
-  }
-
-  public static double getCurrentFL() {
-    return FL;
-  }
-
   /**
    * A megadott cella közepét adja vissza.
    * @param x A cella X koordinátája.
@@ -105,39 +82,35 @@ public final class Transformer {
   /**
    * A megadott pont (vektor) perspektivikus projekciója.
    * @param point A projektálandó pont (vektor).
-   * @param zoom A nagyítás mértéke.
-   * @param dim A megjelenítés dimenziói.
+   * @param vp A nézet (FL, nagyítás, dimenziók).
    * @return A perspektivikus projekció eredménye, vagy {@code null}, ha nem képezhető le az adott pont.
    */
-  public static int[] project(double[] point, double zoom, Dimension dim) {
+  public static int[] project(double[] point, Viewport vp) {
     assert point.length == 3;
-    assert zoom != 0;
-
-    double near = FL / zoom;
+    double near = vp.getNear();
     if (point[2] > near) {
       return null;
     }
     double fact = 1.0 / (near - point[2] + 1.0);  // kamera 1.0 távolságra van near-től
-    fact *= Math.min(dim.width, dim.height);
+    fact *= vp.getSize();
 
-    double x = dim.width / 2.0 + fact * point[0];
-    double y = dim.height / 2.0 - fact * point[1];
+    double x = vp.getWidth() / 2.0 + fact * point[0];
+    double y = vp.getHeight() / 2.0 - fact * point[1];
     return new int[]{(int) (x + .5), (int) (y + .5)};
   }
 
   /**
    * A megadott pontok perspektivikus projekciója 3D-ban.
    * @param points A projektálandó pontok.
-   * @param zoom A nagyítás mértéke.
-   * @param dim A megjelenítés dimenziói.
+   * @param vp A nézet (FL, nagyítás, dimenziók).
    * @return A perspektivikus projekció eredménye, vagy {@code null}, ha nem képezhető le valamelyik pont.
    */
-  public static int[][] project(double[][] points, double zoom, Dimension dim) {
+  public static int[][] project(double[][] points, Viewport vp) {
     int[][] r = new int[points.length][2];
     for (int i = 0; i < points.length; i++) {
       double[] p = points[i];
       assert p.length == 3;
-      int[] c = project(p, zoom, dim);
+      int[] c = project(p, vp);
       if (c == null) {
         return null;
       }
@@ -152,16 +125,15 @@ public final class Transformer {
    * @param x A cella X koordinátája.
    * @param y A cella Y koordinátája.
    * @param transMatrix A transzformációs mátrix (vagy {@code null}, ha nincs szükség transzformálásra).
-   * @param zoom A nagyítás mértéke.
-   * @param dim A megjelenítés dimenziói.
+   * @param vp A nézet (FL, nagyítás, dimenziók).
    * @return A cellát alkotó 4 pont tömbje (BF, JF, JA, BA sorrendben) vagy {@code null}, ha a cella nem (teljesen) látható.
    */
-  public static int[][] project(int x, int y, Matrix transMatrix, double zoom, Dimension dim) {
+  public static int[][] project(int x, int y, Matrix transMatrix, Viewport vp) {
     double[][] points = getPoints(x, y);
     if (transMatrix != null) {
       points = transform(points, transMatrix);
     }
-    return project(points, zoom, dim);
+    return project(points, vp);
   }
 
   /**
@@ -171,33 +143,29 @@ public final class Transformer {
    * @param x2 A cella másik sarkának X koordinátája.
    * @param y2 A cella másik sarkának Y koordinátája.
    * @param transMatrix A transzformációs mátrix (vagy {@code null}, ha nincs szükség transzformálásra).
-   * @param zoom A nagyítás mértéke.
-   * @param dim A megjelenítés dimenziói.
+   * @param vp A nézet (FL, nagyítás, dimenziók).
    * @return A cellatéglalapot alkotó 4 pont tömbje (BF, JF, JA, BA sorrendben) vagy {@code null}, ha a cella nem látható.
    */
-  public static int[][] project(int x1, int y1, int x2, int y2, Matrix transMatrix, double zoom, Dimension dim) {
+  public static int[][] project(int x1, int y1, int x2, int y2, Matrix transMatrix, Viewport vp) {
     double[][] points = getPoints(x1, y1, x2, y2);
     if (transMatrix != null) {
       points = transform(points, transMatrix);
     }
-    return project(points, zoom, dim);
+    return project(points, vp);
   }
 
   /**
    * A megadott vonal perspektivikus projekciója.
    * Ha a vonal egyik vége a kamera mögött van, akkor automatikusan csonkolja a vonalat.
    * @param points A vonal két végpontjának koordinátái.
-   * @param zoom A nagyítás mértéke.
-   * @param dim A megjelenítés dimenziói.
+   * @param vp A nézet (FL, nagyítás, dimenziók).
    * @return A perspektivikus projekció eredménye, vagy {@code null}, ha a vonal egyáltalán nem látható.
    */
-  public static int[][] projectLine(double[][] points, double zoom, Dimension dim) {
+  public static int[][] projectLine(double[][] points, Viewport vp) {
     assert points.length == 2;
     assert points[0].length == 3;
     assert points[1].length == 3;
-    assert zoom != 0;
-
-    double near = FL / zoom;
+    double near = vp.getNear();
     double z1 = points[0][2];
     double z2 = points[1][2];
 
@@ -211,7 +179,7 @@ public final class Transformer {
       ps[0][1] = points[1][1] + fact * (points[0][1] - points[1][1]);
       ps[0][2] = near;
       ps[1] = points[1];
-      return project(ps, zoom, dim);
+      return project(ps, vp);
     }
     if (z2 > near) {
       double fact = (near - z1) / (z2 - z1);
@@ -220,9 +188,145 @@ public final class Transformer {
       ps[1][0] = points[0][0] + fact * (points[1][0] - points[0][0]);
       ps[1][1] = points[0][1] + fact * (points[1][1] - points[0][1]);
       ps[1][2] = near;
-      return project(ps, zoom, dim);
+      return project(ps, vp);
+    }
+    return project(points, vp);
+  }
+
+  /*
+   * Pufferes változatok: a pontok X, Y, Z sorrendben egymás után következnek egy lapos double[] tömbben,
+   * a projektált koordináták X, Y sorrendben egy lapos int[] tömbben. Ezek nem foglalnak memóriát.
+   */
+
+  /**
+   * A megadott cellatéglalapot ábrázoló téglalap pontjainak beírása BF, JF, JA, BA sorrendben.
+   * @param x1 A cella egyik sarkának X koordinátája.
+   * @param y1 A cella egyik sarkának Y koordinátája.
+   * @param x2 A cella másik sarkának X koordinátája.
+   * @param y2 A cella másik sarkának Y koordinátája.
+   * @param dst A céltömb (legalább 12 elem az eltolástól).
+   * @param dstOff Az első pont X koordinátájának indexe a céltömbben.
+   */
+  public static void getPoints(int x1, int y1, int x2, int y2, double[] dst, int dstOff) {
+    double l = Math.min(x1, x2) - .5;
+    double r = Math.max(x1, x2) + .5;
+    double t = Math.max(y1, y2) + .5;
+    double b = Math.min(y1, y2) - .5;
+    setPoint(dst, dstOff, l, t, 0.0d);
+    setPoint(dst, dstOff + 3, r, t, 0.0d);
+    setPoint(dst, dstOff + 6, r, b, 0.0d);
+    setPoint(dst, dstOff + 9, l, b, 0.0d);
+  }
+
+  /**
+   * Egy pont beírása a megadott helyre.
+   * @param dst A céltömb.
+   * @param dstOff A pont X koordinátájának indexe a céltömbben.
+   * @param x A pont X koordinátája.
+   * @param y A pont Y koordinátája.
+   * @param z A pont Z koordinátája.
+   */
+  public static void setPoint(double[] dst, int dstOff, double x, double y, double z) {
+    dst[dstOff] = x;
+    dst[dstOff + 1] = y;
+    dst[dstOff + 2] = z;
+  }
+
+  /**
+   * A megadott pontok transzformálása. A forrás és a cél lehet ugyanaz a tömb (ugyanazzal az eltolással).
+   * @param src A transzformálandó pontok tömbje.
+   * @param srcOff Az első pont X koordinátájának indexe a forrásban.
+   * @param dst A transzformált pontok tömbje.
+   * @param dstOff Az első pont X koordinátájának indexe a célban.
+   * @param count A pontok száma.
+   * @param transMatrix A transzformációs mátrix (vagy {@code null}, ha nincs szükség transzformálásra).
+   */
+  public static void transform(double[] src, int srcOff, double[] dst, int dstOff, int count, Matrix transMatrix) {
+    if (transMatrix == null) {
+      if (src != dst || srcOff != dstOff) {
+        System.arraycopy(src, srcOff, dst, dstOff, count * 3);
+      }
+      return;
+    }
+    transMatrix.transformPoints(src, srcOff, dst, dstOff, count);
+  }
+
+  /**
+   * A megadott pontok perspektivikus projekciója.
+   * @param src A projektálandó pontok tömbje.
+   * @param srcOff Az első pont X koordinátájának indexe a forrásban.
+   * @param dst A projektált koordináták tömbje (X, Y párok).
+   * @param dstOff Az első pont X koordinátájának indexe a célban.
+   * @param count A pontok száma.
+   * @param vp A nézet (FL, nagyítás, dimenziók).
+   * @return {@code true}, ha az összes pont leképezhető; {@code false} esetén a cél tartalma határozatlan.
+   */
+  public static boolean project(double[] src, int srcOff, int[] dst, int dstOff, int count, Viewport vp) {
+    double near = vp.getNear();
+    int size = vp.getSize();
+    double hw = vp.getWidth() / 2.0;
+    double hh = vp.getHeight() / 2.0;
+    for (int i = 0, si = srcOff, di = dstOff; i < count; i++, si += 3, di += 2) {
+      double z = src[si + 2];
+      if (z > near) {
+        return false;
+      }
+      double fact = 1.0 / (near - z + 1.0);  // kamera 1.0 távolságra van near-től
+      fact *= size;
+      dst[di] = (int) (hw + fact * src[si] + .5);
+      dst[di + 1] = (int) (hh - fact * src[si + 1] + .5);
+    }
+    return true;
+  }
+
+  /**
+   * A megadott pontok transzformálása és perspektivikus projekciója.
+   * @param src A pontok tömbje.
+   * @param srcOff Az első pont X koordinátájának indexe a forrásban.
+   * @param work Munkatömb a transzformált pontoknak (legalább {@code 3 * count} elem).
+   * @param dst A projektált koordináták tömbje (X, Y párok).
+   * @param dstOff Az első pont X koordinátájának indexe a célban.
+   * @param count A pontok száma.
+   * @param transMatrix A transzformációs mátrix (vagy {@code null}, ha nincs szükség transzformálásra).
+   * @param vp A nézet (FL, nagyítás, dimenziók).
+   * @return {@code true}, ha az összes pont leképezhető.
+   */
+  public static boolean transformProject(double[] src, int srcOff, double[] work, int[] dst, int dstOff, int count,
+          Matrix transMatrix, Viewport vp) {
+    transform(src, srcOff, work, 0, count, transMatrix);
+    return project(work, 0, dst, dstOff, count, vp);
+  }
+
+  /**
+   * A megadott vonal perspektivikus projekciója.
+   * Ha a vonal egyik vége a kamera mögött van, akkor a vonalat a helyén csonkolja (a forrást módosítja!).
+   * @param points A vonal két (már transzformált) végpontjának koordinátái.
+   * @param off Az első végpont X koordinátájának indexe.
+   * @param dst A projektált koordináták tömbje (X1, Y1, X2, Y2).
+   * @param dstOff Az első végpont X koordinátájának indexe a célban.
+   * @param vp A nézet (FL, nagyítás, dimenziók).
+   * @return {@code true}, ha a vonal (legalább részben) látható.
+   */
+  public static boolean projectLine(double[] points, int off, int[] dst, int dstOff, Viewport vp) {
+    double near = vp.getNear();
+    double z1 = points[off + 2];
+    double z2 = points[off + 5];
+
+    if (z1 > near && z2 > near) {
+      return false;
+    }
+    if (z1 > near) {
+      double fact = (near - z2) / (z1 - z2);
+      points[off] = points[off + 3] + fact * (points[off] - points[off + 3]);
+      points[off + 1] = points[off + 4] + fact * (points[off + 1] - points[off + 4]);
+      points[off + 2] = near;
+    } else if (z2 > near) {
+      double fact = (near - z1) / (z2 - z1);
+      points[off + 3] = points[off] + fact * (points[off + 3] - points[off]);
+      points[off + 4] = points[off + 1] + fact * (points[off + 4] - points[off + 1]);
+      points[off + 5] = near;
     }
-    return project(points, zoom, dim);
+    return project(points, off, dst, dstOff, 2, vp);
   }
 
   private Transformer() {
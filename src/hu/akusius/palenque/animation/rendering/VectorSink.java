@@ -0,0 +1,289 @@
+package hu.akusius.palenque.animation.rendering;
+
+import java.awt.Shape;
+import java.awt.geom.PathIterator;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Vektoros kimenet (pl. SVG, PDF), amelybe a renderelők {@link LineSink}-ként közvetlenül rajzolnak
+ * (egy képpont vastag vonalakkal); a háttérhez és a feliratokhoz alakzatok is kitölthetők.
+ * Az egymás után következő, azonos stílusú vonalszakaszokat egyetlen útvonalba vonja össze,
+ * a közös végpontú szakaszokat pedig töréspontként fűzi egymás után.
+ * Az írás közben keletkező első hibát eltárolja, és a lezáráskor dobja tovább
+ * (a {@link LineSink} műveletei nem dobhatnak ellenőrzött kivételt).
+ * Nem szálbiztos.
+ * @author Bujdosó Ákos
+ */
+public abstract class VectorSink implements LineSink, Closeable {
+
+  private final int width;
+
+  private final int height;
+
+  /**
+   * Van-e nyitott (még le nem zárt) útvonal.
+   */
+  private boolean pathOpen;
+
+  private int pathColor;
+
+  private float pathWidth;
+
+  private double lastX, lastY;
+
+  private IOException error;
+
+  private boolean closed;
+
+  /**
+   * A {@link LineSink} műveletek színe és átlátszósága.
+   */
+  private int color = 0xff000000;
+
+  private float alpha = 1f;
+
+  /**
+   * Létrehozás.
+   * @param width A rajzlap szélessége.
+   * @param height A rajzlap magassága.
+   */
+  VectorSink(int width, int height) {
+    if (width <= 0 || height <= 0) {
+      throw new IllegalArgumentException();
+    }
+    this.width = width;
+    this.height = height;
+  }
+
+  /**
+   * @return A rajzlap szélessége.
+   */
+  public final int getWidth() {
+    return width;
+  }
+
+  /**
+   * @return A rajzlap magassága.
+   */
+  public final int getHeight() {
+    return height;
+  }
+
+  @Override
+  public final void setColor(int argb) {
+    color = argb;
+  }
+
+  @Override
+  public final int getColor() {
+    return color;
+  }
+
+  @Override
+  public final void setAlpha(float alpha) {
+    this.alpha = alpha;
+  }
+
+  @Override
+  public final float getAlpha() {
+    return alpha;
+  }
+
+  private int getEffectiveColor() {
+    return Math.round((color >>> 24) * alpha) << 24 | (color & 0xffffff);
+  }
+
+  @Override
+  public final void drawLine(int x1, int y1, int x2, int y2) {
+    int argb = getEffectiveColor();
+    if ((argb >>> 24) != 0) {
+      line(argb, 1f, x1, y1, x2, y2);
+    }
+  }
+
+  @Override
+  public final void drawPolyline(int[] xs, int[] ys, int n) {
+    int argb = getEffectiveColor();
+    if ((argb >>> 24) != 0) {
+      for (int i = 1; i < n; i++) {
+        line(argb, 1f, xs[i - 1], ys[i - 1], xs[i], ys[i]);
+      }
+    }
+  }
+
+  @Override
+  public final void drawSegments(int[] coords, int count) {
+    int argb = getEffectiveColor();
+    if ((argb >>> 24) != 0) {
+      for (int i = 0, ci = 0; i < count; i++, ci += 4) {
+        line(argb, 1f, coords[ci], coords[ci + 1], coords[ci + 2], coords[ci + 3]);
+      }
+    }
+  }
+
+  @Override
+  public final void drawImage(BufferedImage image, int sw, int sh, int x, int y, int w, int h) {
+    if (sw <= 0 || sh <= 0 || w <= 0 || h <= 0) {
+      return;
+    }
+    if (sw != image.getWidth() || sh != image.getHeight()) {
+      image = image.getSubimage(0, 0, sw, sh);
+    }
+    image(image, alpha, x, y, w, h);
+  }
+
+  /**
+   * Egy alakzat kitöltése a beállított színnel és átlátszósággal.
+   * @param shape Az alakzat (a kép koordinátáiban).
+   */
+  public final void fill(Shape shape) {
+    int argb = getEffectiveColor();
+    if ((argb >>> 24) != 0) {
+      fill(argb, shape.getPathIterator(null));
+    }
+  }
+
+  /**
+   * Egy vonalszakasz.
+   * @param argb A szín (az átlátszósággal együtt).
+   * @param lineWidth A vonalvastagság.
+   */
+  private void line(int argb, float lineWidth, double x1, double y1, double x2, double y2) {
+    if (error != null || closed) {
+      return;
+    }
+    try {
+      if (pathOpen && (argb != pathColor || lineWidth != pathWidth)) {
+        endPath();
+        pathOpen = false;
+      }
+      if (!pathOpen) {
+        beginPath(argb, lineWidth);
+        pathOpen = true;
+        pathColor = argb;
+        pathWidth = lineWidth;
+        moveTo(x1, y1);
+      } else if (x1 != lastX || y1 != lastY) {
+        moveTo(x1, y1);
+      }
+      lineTo(x2, y2);
+      lastX = x2;
+      lastY = y2;
+    } catch (IOException ex) {
+      error = ex;
+    }
+  }
+
+  /**
+   * Egy alakzat kitöltése.
+   * @param argb A szín (az átlátszósággal együtt).
+   * @param path Az alakzat (már transzformált) útvonala.
+   */
+  private void fill(int argb, PathIterator path) {
+    if (error != null || closed) {
+      return;
+    }
+    try {
+      flushPath();
+      writeFill(argb, path);
+    } catch (IOException ex) {
+      error = ex;
+    }
+  }
+
+  /**
+   * Egy kép kirajzolása. A kép tartalma a hívás után már módosulhat.
+   * @param image A kép.
+   * @param alpha Az átlátszóság (0-1).
+   * @param x A bal felső sarok X koordinátája.
+   * @param y A bal felső sarok Y koordinátája.
+   * @param w A kirajzolt szélesség.
+   * @param h A kirajzolt magasság.
+   */
+  private void image(BufferedImage image, float alpha, double x, double y, double w, double h) {
+    if (error != null || closed) {
+      return;
+    }
+    try {
+      flushPath();
+      writeImage(image, alpha, x, y, w, h);
+    } catch (IOException ex) {
+      error = ex;
+    }
+  }
+
+  /**
+   * A kimenet lezárása.
+   * @throws IOException Az írás közben keletkezett (első) hiba.
+   */
+  @Override
+  public final void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      if (error == null) {
+        flushPath();
+        finish();
+      }
+    } catch (IOException ex) {
+      error = ex;
+    } finally {
+      release();
+    }
+    if (error != null) {
+      throw error;
+    }
+  }
+
+  private void flushPath() throws IOException {
+    if (pathOpen) {
+      endPath();
+      pathOpen = false;
+    }
+  }
+
+  abstract void beginPath(int argb, float lineWidth) throws IOException;
+
+  abstract void moveTo(double x, double y) throws IOException;
+
+  abstract void lineTo(double x, double y) throws IOException;
+
+  abstract void endPath() throws IOException;
+
+  abstract void writeFill(int argb, PathIterator path) throws IOException;
+
+  abstract void writeImage(BufferedImage image, float alpha, double x, double y, double w, double h) throws IOException;
+
+  /**
+   * A kimenet befejezése (hibátlan írás esetén).
+   */
+  abstract void finish() throws IOException;
+
+  /**
+   * Az erőforrások felszabadítása (mindig meghívódik).
+   */
+  abstract void release() throws IOException;
+
+  /**
+   * Egy szám tömör formában (legfeljebb két tizedesjeggyel).
+   */
+  static void appendNumber(StringBuilder sb, double v) {
+    long r = Math.round(v * 100.0);
+    if (r < 0) {
+      sb.append('-');
+      r = -r;
+    }
+    sb.append(r / 100);
+    int frac = (int) (r % 100);
+    if (frac != 0) {
+      sb.append('.').append(frac / 10);
+      if (frac % 10 != 0) {
+        sb.append(frac % 10);
+      }
+    }
+  }
+}
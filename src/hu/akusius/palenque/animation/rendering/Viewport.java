@@ -0,0 +1,143 @@
+package hu.akusius.palenque.animation.rendering;
+
+import java.awt.Dimension;
+
+/**
+ * A kirajzolás nézete: a fókusztávolság (FL), a nagyítás és a megjelenítés dimenziói.
+ * A perspektivikus projekcióhoz szükséges összes adatot tartalmazza, így a kirajzolás nem függ globális állapottól,
+ * és egyszerre több szálon is végezhető.
+ * Az objektum nem módosítható.
+ * @author Bujdosó Ákos
+ */
+public final class Viewport {
+
+  /**
+   * Az alapértelmezett fókusztávolság.
+   */
+  public static final double DEFAULT_FL = 59;
+
+  /**
+   * Az FL igazítása, hogy egyenlő nagyságúak legyenek a négyzetek (1-es zoomnál).
+   * @param dim A megjelenítés dimenziói.
+   * @return Az adott mérethez igazított FL.
+   */
+  public static double adjustedFL(Dimension dim) {
+    int size = Math.min(dim.width, dim.height);
+    double fact = Math.max(1.0, Math.round(size / (DEFAULT_FL + 1.0)));
+    return size / fact - 1.0;
+  }
+
+  private final double fl;
+
+  private final double zoom;
+
+  private final int width;
+
+  private final int height;
+
+  /**
+   * Új nézet a megadott méretekhez igazított FL-lel.
+   * @param dim A megjelenítés dimenziói.
+   * @param zoom A nagyítás mértéke.
+   */
+  public Viewport(Dimension dim, double zoom) {
+    this(adjustedFL(dim), dim, zoom);
+  }
+
+  /**
+   * Új nézet.
+   * @param fl A fókusztávolság.
+   * @param dim A megjelenítés dimenziói.
+   * @param zoom A nagyítás mértéke.
+   */
+  public Viewport(double fl, Dimension dim, double zoom) {
+    if (zoom <= 0 || fl <= 0 || dim.width <= 0 || dim.height <= 0) {
+      throw new IllegalArgumentException();
+    }
+    this.fl = fl;
+    this.zoom = zoom;
+    this.width = dim.width;
+    this.height = dim.height;
+  }
+
+  /**
+   * @return A fókusztávolság.
+   */
+  public double getFL() {
+    return fl;
+  }
+
+  /**
+   * @return A nagyítás mértéke.
+   */
+  public double getZoom() {
+    return zoom;
+  }
+
+  /**
+   * @return A megjelenítés szélessége.
+   */
+  public int getWidth() {
+    return width;
+  }
+
+  /**
+   * @return A megjelenítés magassága.
+   */
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * @return A megjelenítés dimenziói (új példány).
+   */
+  public Dimension getDimension() {
+    return new Dimension(width, height);
+  }
+
+  /**
+   * @return A közeli vágósík Z koordinátája: az ennél távolabbi (nagyobb Z-jű) pontok nem képezhetők le.
+   */
+  public double getNear() {
+    return fl / zoom;
+  }
+
+  /**
+   * @return A megjelenítés kisebbik mérete, ehhez skálázzuk a projekciót.
+   */
+  public int getSize() {
+    return Math.min(width, height);
+  }
+
+  @Override
+  public int hashCode() {
+    int hash = 7;
+    long bits = Double.doubleToLongBits(this.fl);
+    hash = 37 * hash + (int) (bits ^ (bits >>> 32));
+    bits = Double.doubleToLongBits(this.zoom);
+    hash = 37 * hash + (int) (bits ^ (bits >>> 32));
+    hash = 37 * hash + this.width;
+    hash = 37 * hash + this.height;
+    return hash;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (obj == null) {
+      return false;
+    }
+    if (getClass() != obj.getClass()) {
+      return false;
+    }
+    final Viewport other = (Viewport) obj;
+    return Double.doubleToLongBits(this.fl) == Double.doubleToLongBits(other.fl)
+            && Double.doubleToLongBits(this.zoom) == Double.doubleToLongBits(other.zoom)
+            && this.width == other.width
+            && this.height == other.height;
+  }
+
+  @Override
+  public String toString() {
+    return "Viewport{" + "fl=" + fl + ", zoom=" + zoom + ", width=" + width + ", height=" + height + '}';
+  }
+}
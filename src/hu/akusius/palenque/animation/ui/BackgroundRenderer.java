@@ -0,0 +1,217 @@
+package hu.akusius.palenque.animation.ui;
+
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Háttérszálon, kettős pufferrel végzett kirajzolás.
+ * A kért pillanatképeket egy külön szál rajzolja ki a hátsó képbe, majd kész állapotban felcseréli az elsővel;
+ * az EDT csak a legutóbb elkészült (első) képet másolja ki.
+ * Ha a kirajzolás közben újabb kérés érkezik, akkor a köztes kérések kimaradnak, mindig csak a legutolsó készül el.
+ * Gyorstár használata esetén a tárban már meglévő képek nem készülnek el újra, a kész képek közül pedig csak azok
+ * kerülnek a tárba, amelyek később még szükségesek lehetnek ({@link FrameCache#isWorthStoring(FrameSnapshot)}).
+ * A tárba került kép nem módosítható, ezért az kikerül a pufferek közül; a többi kirajzolás a hátsó képet használja újra.
+ * @author Bujdosó Ákos
+ */
+final class BackgroundRenderer {
+
+  /**
+   * A pillanatkép tényleges kirajzolását végző objektum.
+   */
+  interface Painter {
+
+    /**
+     * A pillanatkép kirajzolása.
+     * A háttérszálon hívódik, ezért csak a pillanatképet és szálbiztos objektumokat használhat.
+     * @param g A kirajzolás célja.
+     * @param snapshot A kirajzolandó pillanatkép.
+     */
+    void paint(Graphics2D g, FrameSnapshot snapshot);
+  }
+
+  private final Painter painter;
+
+  private final Runnable completed;
+
+  private final FrameCache cache;
+
+  /**
+   * A kirajzolásra váró (legutóbb kért) pillanatkép.
+   */
+  private FrameSnapshot pending;
+
+  private GraphicsConfiguration pendingConfig;
+
+  private Thread thread;
+
+  /**
+   * A felcserélt képekhez és a kész pillanatképhez tartozó zár.
+   */
+  private final Object bufferLock = new Object();
+
+  /**
+   * A legutóbb elkészült kép.
+   */
+  private BufferedImage front;
+
+  /**
+   * A legutóbb elkészült kép pillanatképe.
+   */
+  private FrameSnapshot frontSnapshot;
+
+  /**
+   * A legutóbb elkészült kép a sajátunk-e (nem a gyorstárban lévő), azaz újra rajzolhatunk-e bele.
+   */
+  private boolean frontOwned;
+
+  /**
+   * A következő kirajzolás célja (csak a háttérszál használja).
+   */
+  private BufferedImage back;
+
+  /**
+   * Létrehozás.
+   * @param painter A kirajzolást végző objektum.
+   * @param completed Minden elkészült kép után a háttérszálon hívódik meg (pl. {@code repaint()}).
+   * @param cache A kész képek gyorstára (lehet {@code null}).
+   */
+  BackgroundRenderer(Painter painter, Runnable completed, FrameCache cache) {
+    if (painter == null || completed == null) {
+      throw new IllegalArgumentException();
+    }
+    this.painter = painter;
+    this.completed = completed;
+    this.cache = cache;
+  }
+
+  BackgroundRenderer(Painter painter, Runnable completed) {
+    this(painter, completed, null);
+  }
+
+  /**
+   * Kirajzolás kérése. Egy esetleges még el nem kezdett korábbi kérést lecserél.
+   * @param snapshot A kirajzolandó pillanatkép.
+   * @param gc A kompatibilis kép létrehozásához használt konfiguráció (lehet {@code null}).
+   */
+  synchronized void submit(FrameSnapshot snapshot, GraphicsConfiguration gc) {
+    if (snapshot == null) {
+      throw new IllegalArgumentException();
+    }
+    pending = snapshot;
+    pendingConfig = gc;
+    if (thread == null) {
+      thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          renderLoop();
+        }
+      }, "Display renderer");
+      thread.setDaemon(true);
+      thread.start();
+    } else {
+      notifyAll();
+    }
+  }
+
+  /**
+   * A legutóbb elkészült kép kirajzolása, ha a mérete megfelelő.
+   * @param g A kirajzolás célja.
+   * @param width Az elvárt szélesség.
+   * @param height Az elvárt magasság.
+   * @return A kirajzolt kép pillanatképe, vagy {@code null}, ha nem lett kirajzolva.
+   */
+  FrameSnapshot blit(Graphics g, int width, int height) {
+    synchronized (bufferLock) {
+      if (front == null || front.getWidth() != width || front.getHeight() != height) {
+        return null;
+      }
+      g.drawImage(front, 0, 0, null);
+      return frontSnapshot;
+    }
+  }
+
+  /**
+   * @return A legutóbb elkészült kép pillanatképe, vagy {@code null}, ha még nincs ilyen.
+   */
+  FrameSnapshot getFrontSnapshot() {
+    synchronized (bufferLock) {
+      return frontSnapshot;
+    }
+  }
+
+  private void renderLoop() {
+    while (true) {
+      FrameSnapshot snapshot;
+      GraphicsConfiguration gc;
+      synchronized (this) {
+        while (pending == null) {
+          try {
+            wait();
+          } catch (InterruptedException ex) {
+            thread = null;
+            return;
+          }
+        }
+        snapshot = pending;
+        gc = pendingConfig;
+        pending = null;
+        pendingConfig = null;
+      }
+
+      int width = snapshot.getWidth(), height = snapshot.getHeight();
+      if (width <= 0 || height <= 0) {
+        continue;
+      }
+      BufferedImage image = cache != null ? cache.get(snapshot) : null;
+      boolean owned = false;
+      if (image == null) {
+        image = back;
+        if (image == null || image.getWidth() != width || image.getHeight() != height) {
+          image = createImage(gc, width, height);
+        }
+
+        Graphics2D g = image.createGraphics();
+        try {
+          painter.paint(g, snapshot);
+        } catch (RuntimeException ex) {
+          Logger.getLogger(BackgroundRenderer.class.getName()).log(Level.SEVERE, null, ex);
+          continue;
+        } finally {
+          g.dispose();
+        }
+
+        if (cache != null && cache.isWorthStoring(snapshot)) {
+          // A tárba adott képbe többé nem rajzolhatunk
+          cache.put(snapshot, image);
+        } else {
+          owned = true;
+        }
+      }
+
+      // A hátsó kép a felhasznált helyett a korábbi első lesz (ha az a sajátunk)
+      BufferedImage reusable = image == back ? null : back;
+      synchronized (bufferLock) {
+        if (reusable == null && frontOwned) {
+          reusable = front;
+        }
+        front = image;
+        frontOwned = owned;
+        frontSnapshot = snapshot;
+      }
+      back = reusable;
+      completed.run();
+    }
+  }
+
+  static BufferedImage createImage(GraphicsConfiguration gc, int width, int height) {
+    if (gc != null) {
+      return gc.createCompatibleImage(width, height, Transparency.OPAQUE);
+    }
+    return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+  }
+}
@@ -3,15 +3,15 @@ package hu.akusius.palenque.animation.ui;
 import hu.akusius.palenque.animation.op.*;
 import hu.akusius.palenque.animation.rendering.FrameRenderer;
 import hu.akusius.palenque.animation.rendering.GridSystemRenderer;
-import hu.akusius.palenque.animation.rendering.Transformer;
+import hu.akusius.palenque.animation.rendering.LidRenderer;
+import hu.akusius.palenque.animation.rendering.VectorSink;
+import hu.akusius.palenque.animation.rendering.Viewport;
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
 import java.awt.image.BufferedImage;
-import java.beans.PropertyChangeEvent;
-import java.beans.PropertyChangeListener;
 import javax.swing.JPanel;
-import javax.swing.event.ChangeEvent;
-import javax.swing.event.ChangeListener;
 import org.other.Matrix;
 
 /**
@@ -36,42 +36,53 @@ public class DisplayPanel extends JPanel {
 
   private final ImageSource imageSource;
 
+  private final FrameScheduler frameScheduler;
+
+  private final GridSystemRenderer gridSystemRenderer = new GridSystemRenderer();
+
+  private final FrameCache frameCache;
+
+  private final BackgroundRenderer backgroundRenderer;
+
+  /**
+   * Lejátszás közben ennyi következő képkocka töltődik be előre.
+   */
+  private static final int PREFETCH_AHEAD = 8;
+
   public DisplayPanel(OperationManager operationManager) {
+    // A fedélkép betöltése a háttérben, hogy ne az első kirajzolásnál történjen
+    LidRenderer.preload();
+
     this.om = operationManager;
     this.dm = this.om.getDisplayManager();
-    this.dm.addChangeListener(new ChangeListener() {
-      @Override
-      public void stateChanged(ChangeEvent e) {
-        repaint();
-      }
-    });
     this.mm = this.om.getModeManager();
-    this.mm.addPropertyChangeListener(new PropertyChangeListener() {
-      @Override
-      public void propertyChange(PropertyChangeEvent evt) {
-        if (ModeManager.PROP_MODE.equals(evt.getPropertyName())) {
-          repaint();
-        }
-      }
-    });
     this.pm = this.om.getPlayManager();
     this.fs = pm.getFrameSlider();
-    this.fs.addPropertyChangeListener(new PropertyChangeListener() {
+
+    // A kirajzolás háttérszálon történik, a panel csak a kész képet másolja ki;
+    // a kész képek gyorstárba kerülnek, a várhatóan következők pedig előre elkészülnek
+    BackgroundRenderer.Painter painter = new BackgroundRenderer.Painter() {
       @Override
-      public void propertyChange(PropertyChangeEvent evt) {
-        if (PropSliderFrame.PROP_VALUE.equals(evt.getPropertyName())) {
-          repaint();
-        }
+      public void paint(Graphics2D g, FrameSnapshot snapshot) {
+        redraw(g, snapshot);
       }
-    });
-    this.om.getShowGridSystemToggle().addPropertyChangeListener(new PropertyChangeListener() {
+    };
+    this.frameCache = new FrameCache(painter);
+    this.backgroundRenderer = new BackgroundRenderer(painter, new Runnable() {
       @Override
-      public void propertyChange(PropertyChangeEvent evt) {
-        if (PropToggle.PROP_SELECTED.equals(evt.getPropertyName())) {
-          repaint();
-        }
+      public void run() {
+        repaint();
+      }
+    }, frameCache);
+
+    // A változások összevonva, ütemenként egy kirajzolást váltanak ki
+    this.frameScheduler = new FrameScheduler(new Runnable() {
+      @Override
+      public void run() {
+        requestRender();
       }
     });
+    this.frameScheduler.attach(this.om);
 
     this.mouseHandler = new MouseHandler();
     this.addMouseListener(mouseHandler);
@@ -100,53 +111,147 @@ public class DisplayPanel extends JPanel {
       public BufferedImage generateImage(int size) {
         BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
         Graphics2D graphics = (Graphics2D) image.getGraphics();
-        Dimension dim = new Dimension(size, size);
-        Transformer.adjustFL(dim);
-        redraw((Graphics2D) graphics.create(), dim);
-        Transformer.adjustFL(getSize());
+        redraw((Graphics2D) graphics.create(), new Dimension(size, size));
         return image;
       }
-    };
 
-    this.addComponentListener(new ComponentAdapter() {
       @Override
-      public void componentResized(ComponentEvent e) {
-        Transformer.adjustFL(getSize());
-        repaint();
+      public void renderImage(VectorSink sink, int size) {
+        redraw(sink, FrameSnapshot.capture(om, new Dimension(size, size)));
       }
-    });
+    };
   }
 
   ImageSource asImageSource() {
     return imageSource;
   }
 
+  /**
+   * @return A kirajzolásokat ütemező objektum (a számlálók lekérdezéséhez).
+   */
+  FrameScheduler getFrameScheduler() {
+    return frameScheduler;
+  }
+
+  /**
+   * @return A kirajzolt képkockák gyorstára (a statisztikák lekérdezéséhez).
+   */
+  FrameCache getFrameCache() {
+    return frameCache;
+  }
+
   @Override
   protected void paintComponent(Graphics g) {
-    redraw((Graphics2D) g, getSize());
+    Dimension d = getSize();
+    FrameSnapshot presented = backgroundRenderer.blit(g, d.width, d.height);
+    if (presented != null) {
+      pm.framePresented(presented.getFrameInfo().getFrameNum());
+    } else {
+      // Még nincs megfelelő méretű kész kép (pl. első megjelenítés, átméretezés): helyben rajzolunk,
+      // a következők pedig már a háttérben készülnek
+      FrameSnapshot snapshot = FrameSnapshot.capture(om, d);
+      BufferedImage cached = frameCache.get(snapshot);
+      if (cached != null) {
+        g.drawImage(cached, 0, 0, null);
+      } else {
+        redraw((Graphics2D) g, snapshot);
+      }
+      pm.framePresented(snapshot.getFrameInfo().getFrameNum());
+      backgroundRenderer.submit(snapshot, getGraphicsConfiguration());
+    }
+  }
+
+  /**
+   * Az aktuális állapot kirajzolásának kérése a háttérszálon.
+   */
+  private void requestRender() {
+    Dimension d = getSize();
+    if (d.width > 0 && d.height > 0) {
+      FrameSnapshot snapshot = FrameSnapshot.capture(om, d);
+      GraphicsConfiguration gc = getGraphicsConfiguration();
+      backgroundRenderer.submit(snapshot, gc);
+      frameCache.prefetch(snapshot, predictFrames(snapshot.getFrameInfo().getFrameNum()), gc);
+    }
+  }
+
+  /**
+   * A várhatóan következő képkockák meghatározása.
+   * Lejátszás közben a következő ütemekben várhatóan megjelenők (a lejátszás órája szerint),
+   * egyébként a szomszédosak és az ugrások céljai.
+   */
+  private int[] predictFrames(int frame) {
+    if (pm.getPlayingToggle().isSelected()) {
+      long interval = pm.getTickInterval();
+      int[] frames = new int[PREFETCH_AHEAD];
+      for (int i = 0; i < frames.length; i++) {
+        frames[i] = pm.predictFrame((i + 1) * interval);
+      }
+      return frames;
+    }
+    int[] skipSteps = PlayManager.getSkipSteps();
+    int[] frames = new int[2 + skipSteps.length * 2];
+    frames[0] = frame + 1;
+    frames[1] = frame - 1;
+    for (int i = 0; i < skipSteps.length; i++) {
+      frames[2 + i * 2] = frame + skipSteps[i];
+      frames[3 + i * 2] = frame - skipSteps[i];
+    }
+    return frames;
   }
 
   void redraw(Graphics2D g, Dimension d) {
+    redraw(g, FrameSnapshot.capture(om, d));
+  }
+
+  /**
+   * Egy pillanatkép kirajzolása. A háttérszálról is hívódik, ezért csak a pillanatképet használhatja.
+   */
+  private void redraw(Graphics2D g, FrameSnapshot snapshot) {
+    Dimension d = snapshot.getSize();
     g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 
     g.setColor(Color.WHITE);
     g.fillRect(0, 0, d.width, d.height);
 
-    Matrix cameraMatrix = dm.getCameraMatrix();
-    double zoom = dm.getZoom();
+    Matrix camera = snapshot.getCamera();
+    Viewport vp = new Viewport(d, snapshot.getZoom());
 
-    if (om.getShowGridSystemToggle().isSelected()) {
-      GridSystemRenderer.render(g, cameraMatrix, zoom, d);
+    if (snapshot.isShowGridSystem()) {
+      gridSystemRenderer.render(g, camera, vp);
     }
 
     g.setColor(Color.BLACK);
-    FrameRenderer.renderFrame(fs.getCurrentFrameInfo(), g, cameraMatrix, zoom, d);
+    FrameRenderer.renderFrame(snapshot.getFrameInfo(), g, camera, vp);
 
     if (FOOTER_TEXT != null) {
       drawFooterText(g, d, FOOTER_TEXT);
     }
   }
 
+  /**
+   * Egy pillanatkép kirajzolása közvetlenül vektoros kimenetbe (a {@link Graphics2D} nélkül).
+   */
+  private void redraw(VectorSink sink, FrameSnapshot snapshot) {
+    Dimension d = snapshot.getSize();
+
+    sink.setColor(Color.WHITE.getRGB());
+    sink.fill(new Rectangle(0, 0, d.width, d.height));
+
+    Matrix camera = snapshot.getCamera();
+    Viewport vp = new Viewport(d, snapshot.getZoom());
+
+    if (snapshot.isShowGridSystem()) {
+      gridSystemRenderer.render(sink, camera, vp);
+    }
+
+    sink.setColor(Color.BLACK.getRGB());
+    FrameRenderer.renderFrame(snapshot.getFrameInfo(), sink, camera, vp);
+
+    if (FOOTER_TEXT != null) {
+      drawFooterText(sink, d, FOOTER_TEXT);
+    }
+  }
+
   private static final Color footerColor = new Color(100, 100, 255, 65);
 
   private static Font footerFont;
@@ -166,6 +271,16 @@ public class DisplayPanel extends JPanel {
     g.drawString(footerText, d.width - width - 5, d.height - 5);
   }
 
+  private static void drawFooterText(VectorSink sink, Dimension d, String footerText) {
+    int fontSize = Math.min(d.height, d.width) / 30;
+    Font font = new Font(Font.DIALOG, Font.ITALIC, fontSize);
+    GlyphVector gv = font.createGlyphVector(new FontRenderContext(null, true, true), footerText);
+    int width = (int) Math.ceil(gv.getLogicalBounds().getWidth());
+
+    sink.setColor(footerColor.getRGB());
+    sink.fill(gv.getOutline(d.width - width - 5, d.height - 5));
+  }
+
   private final class MouseHandler extends MouseAdapter {
 
     private DraggingMode draggingMode = null;
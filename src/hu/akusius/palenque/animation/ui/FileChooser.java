@@ -13,24 +13,41 @@ public final class FileChooser extends JFileChooser {
 
   private static File currentDirectory = new File(".");
 
-  private final String extension;
+  private final String[] extensions;
 
   /**
    * Új példány létrehozása a megadott kiterjesztéssel.
    * @param ext A kezelendő kiterjesztés, vagy {@code null}, ha nincsen ilyen.
    */
   public FileChooser(String ext) {
+    this(ext != null ? new String[]{ext} : null);
+  }
+
+  /**
+   * Új példány létrehozása a megadott kiterjesztésekkel (mindegyikhez külön szűrővel).
+   * Ha a megadott fájlnévnek nincs ezek közül való kiterjesztése, akkor a kiválasztott szűrőé kerül rá.
+   * @param exts A kezelendő kiterjesztések, vagy {@code null}, ha nincsenek ilyenek.
+   */
+  public FileChooser(String[] exts) {
     super();
-    if (ext != null) {
-      if (ext.contains(".")) {
+    if (exts != null) {
+      if (exts.length == 0) {
         throw new IllegalArgumentException();
       }
-      this.extension = ext.toLowerCase();
+      this.extensions = new String[exts.length];
       this.setAcceptAllFileFilterUsed(false);
-      this.addChoosableFileFilter(new FileNameExtensionFilter(
-              String.format("%s (*.%s)", this.extension.toUpperCase(), this.extension), this.extension));
+      for (int i = 0; i < exts.length; i++) {
+        if (exts[i].contains(".")) {
+          throw new IllegalArgumentException();
+        }
+        String ext = exts[i].toLowerCase();
+        this.extensions[i] = ext;
+        this.addChoosableFileFilter(new FileNameExtensionFilter(
+                String.format("%s (*.%s)", ext.toUpperCase(), ext), ext));
+      }
+      this.setFileFilter(this.getChoosableFileFilters()[0]);
     } else {
-      this.extension = null;
+      this.extensions = null;
     }
 
     if (currentDirectory != null) {
@@ -38,11 +55,32 @@ public final class FileChooser extends JFileChooser {
     }
   }
 
+  /**
+   * @return A kiválasztott fájl kiterjesztése (kisbetűvel), vagy {@code null}, ha nincs kezelt kiterjesztése.
+   */
+  public String getSelectedExtension() {
+    File f = getSelectedFile();
+    if (f == null || extensions == null) {
+      return null;
+    }
+    String name = f.getName().toLowerCase();
+    for (String ext : extensions) {
+      if (name.endsWith("." + ext)) {
+        return ext;
+      }
+    }
+    return null;
+  }
+
   @Override
   public void approveSelection() {
     File f = getSelectedFile();
-    if (extension != null && !f.getName().toLowerCase().endsWith("." + extension)) {
-      f = new File(f.getAbsolutePath() + "." + extension);
+    if (extensions != null && getSelectedExtension() == null) {
+      String ext = extensions[0];
+      if (getFileFilter() instanceof FileNameExtensionFilter) {
+        ext = ((FileNameExtensionFilter) getFileFilter()).getExtensions()[0];
+      }
+      f = new File(f.getAbsolutePath() + "." + ext);
       setSelectedFile(f);
     }
 
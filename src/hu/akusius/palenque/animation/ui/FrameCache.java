@@ -0,0 +1,275 @@
+package hu.akusius.palenque.animation.ui;
+
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.image.BufferedImage;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A kirajzolt képkockák gyorstára előre betöltéssel.
+ * A képek kulcsa a pillanatkép (képkocka, kamera, nagyítás, méret, koordináta-rendszer).
+ * A tár mérete bájtban korlátos, a legrégebben használt képek kerülnek ki belőle.
+ * Az előre betöltést háttérszálak végzik; mindig csak a legutolsó kérés képkockái készülnek el,
+ * a korábbi, már nem kért képkockák kimaradnak.
+ * A tárolt képek nem módosíthatók.
+ * @author Bujdosó Ákos
+ */
+final class FrameCache {
+
+  private final BackgroundRenderer.Painter painter;
+
+  private final long maxBytes;
+
+  /**
+   * A tárolt képek a használat sorrendjében.
+   */
+  private final LinkedHashMap<FrameSnapshot, BufferedImage> images = new LinkedHashMap<>(64, 0.75f, true);
+
+  private long bytes = 0;
+
+  /**
+   * Az előre betöltésre váró (már ütemezett) pillanatképek.
+   */
+  private final Set<FrameSnapshot> queued = new HashSet<>();
+
+  /**
+   * A legutolsó előre betöltési kérés pillanatképei; csak ezek készülnek el.
+   */
+  private Set<FrameSnapshot> wanted = Collections.emptySet();
+
+  private ExecutorService executor;
+
+  private long hitCount;
+
+  private long missCount;
+
+  private long evictionCount;
+
+  private long prefetchCount;
+
+  /**
+   * Létrehozás.
+   * @param painter A kirajzolást végző objektum (több szálról is hívódhat).
+   * @param maxBytes A tárolt képek összméretének felső korlátja (bájt).
+   */
+  FrameCache(BackgroundRenderer.Painter painter, long maxBytes) {
+    if (painter == null || maxBytes <= 0) {
+      throw new IllegalArgumentException();
+    }
+    this.painter = painter;
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Létrehozás a rendelkezésre álló memória nyolcadának (de legfeljebb 256 MB-nak) megfelelő korláttal.
+   * @param painter A kirajzolást végző objektum (több szálról is hívódhat).
+   */
+  FrameCache(BackgroundRenderer.Painter painter) {
+    this(painter, Math.min(Runtime.getRuntime().maxMemory() / 8, 256L << 20));
+  }
+
+  /**
+   * Egy tárolt kép lekérdezése.
+   * @param snapshot A kép pillanatképe.
+   * @return A tárolt kép, vagy {@code null}, ha nincs a tárban.
+   */
+  synchronized BufferedImage get(FrameSnapshot snapshot) {
+    BufferedImage image = images.get(snapshot);
+    if (image != null) {
+      hitCount++;
+    } else {
+      missCount++;
+    }
+    return image;
+  }
+
+  /**
+   * @param snapshot A kép pillanatképe.
+   * @return Benne van-e a kép a tárban (a statisztikák és a használati sorrend módosítása nélkül).
+   */
+  synchronized boolean contains(FrameSnapshot snapshot) {
+    return images.containsKey(snapshot);
+  }
+
+  /**
+   * Egy kép tárolása. A képet utána már nem szabad módosítani.
+   * @param snapshot A kép pillanatképe.
+   * @param image A kép.
+   */
+  synchronized void put(FrameSnapshot snapshot, BufferedImage image) {
+    long size = getByteSize(image);
+    if (size > maxBytes) {
+      return;
+    }
+    BufferedImage old = images.put(snapshot, image);
+    if (old != null) {
+      bytes -= getByteSize(old);
+    }
+    bytes += size;
+
+    Iterator<BufferedImage> it = images.values().iterator();
+    while (bytes > maxBytes && it.hasNext()) {
+      BufferedImage evicted = it.next();
+      if (evicted == image) {
+        continue;
+      }
+      it.remove();
+      bytes -= getByteSize(evicted);
+      evictionCount++;
+    }
+  }
+
+  /**
+   * Érdemes-e tárolni egy megjelenített képet: csak akkor, ha később még szükség lehet rá.
+   * Ilyen az automatikus kamera szerinti kép (amelyet egy újabb lejátszás ugyanígy kér), és az előre betöltésre
+   * kért képkocka; a kézi kamera (forgatás, nagyítás) köztes képeit viszont később már nem kérik.
+   * @param snapshot A kép pillanatképe.
+   * @return Érdemes-e tárolni.
+   */
+  synchronized boolean isWorthStoring(FrameSnapshot snapshot) {
+    return snapshot.isAuto() || wanted.contains(snapshot);
+  }
+
+  /**
+   * A tár ürítése.
+   */
+  synchronized void clear() {
+    images.clear();
+    bytes = 0;
+  }
+
+  /**
+   * Képkockák előre betöltése a háttérben.
+   * A korábbi kérésből még el nem készült képkockák közül csak azok készülnek el, amelyek ebben is szerepelnek.
+   * @param snapshot Az aktuális pillanatkép.
+   * @param frames Az előre betöltendő képkockák (fontossági sorrendben).
+   * @param gc A kompatibilis kép létrehozásához használt konfiguráció (lehet {@code null}).
+   */
+  void prefetch(FrameSnapshot snapshot, int[] frames, final GraphicsConfiguration gc) {
+    List<FrameSnapshot> toRender = new ArrayList<>(frames.length);
+    synchronized (this) {
+      Set<FrameSnapshot> newWanted = new HashSet<>();
+      for (int frame : frames) {
+        FrameSnapshot s = snapshot.withFrame(frame);
+        if (images.containsKey(s) || !newWanted.add(s)) {
+          continue;
+        }
+        if (queued.add(s)) {
+          toRender.add(s);
+        }
+      }
+      wanted = newWanted;
+      if (!toRender.isEmpty() && executor == null) {
+        executor = createExecutor();
+      }
+    }
+
+    for (final FrameSnapshot s : toRender) {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          render(s, gc);
+        }
+      });
+    }
+  }
+
+  private void render(FrameSnapshot snapshot, GraphicsConfiguration gc) {
+    synchronized (this) {
+      queued.remove(snapshot);
+      if (!wanted.contains(snapshot) || images.containsKey(snapshot)) {
+        return;
+      }
+    }
+
+    BufferedImage image = BackgroundRenderer.createImage(gc, snapshot.getWidth(), snapshot.getHeight());
+    Graphics2D g = image.createGraphics();
+    try {
+      painter.paint(g, snapshot);
+    } catch (RuntimeException ex) {
+      Logger.getLogger(FrameCache.class.getName()).log(Level.SEVERE, null, ex);
+      return;
+    } finally {
+      g.dispose();
+    }
+
+    synchronized (this) {
+      prefetchCount++;
+      put(snapshot, image);
+    }
+  }
+
+  /**
+   * @return A találatok száma.
+   */
+  synchronized long getHitCount() {
+    return hitCount;
+  }
+
+  /**
+   * @return A sikertelen lekérdezések száma.
+   */
+  synchronized long getMissCount() {
+    return missCount;
+  }
+
+  /**
+   * @return A helyhiány miatt eltávolított képek száma.
+   */
+  synchronized long getEvictionCount() {
+    return evictionCount;
+  }
+
+  /**
+   * @return Az előre betöltéssel elkészült képek száma.
+   */
+  synchronized long getPrefetchCount() {
+    return prefetchCount;
+  }
+
+  /**
+   * @return A tárolt képek száma.
+   */
+  synchronized int getSize() {
+    return images.size();
+  }
+
+  /**
+   * @return A tárolt képek összmérete (bájt).
+   */
+  synchronized long getByteSize() {
+    return bytes;
+  }
+
+  /**
+   * @return A tárolt képek összméretének felső korlátja (bájt).
+   */
+  long getMaxByteSize() {
+    return maxBytes;
+  }
+
+  private static long getByteSize(BufferedImage image) {
+    return (long) image.getWidth() * image.getHeight() * 4;
+  }
+
+  private static ExecutorService createExecutor() {
+    // Egy processzor a megjelenítésé (EDT, háttérszál) marad
+    int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+      private int count = 0;
+
+      @Override
+      public synchronized Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "Frame prefetch " + (++count));
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+      }
+    });
+  }
+}
@@ -0,0 +1,184 @@
+package hu.akusius.palenque.animation.ui;
+
+import hu.akusius.palenque.animation.op.*;
+import hu.akusius.palenque.animation.util.IntValueListener;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import javax.swing.Timer;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+/**
+ * A kirajzolások ütemezése.
+ * A műveletkezelők változásai csak „piszkos” jelzőket állítanak be,
+ * a tényleges kirajzolás pedig ütemenként legfeljebb egyszer történik meg,
+ * így pl. egy lejátszási lépés (képkocka + kamera változás) egyetlen kirajzolást eredményez.
+ * Ha nincs teendő, akkor az időzítő leáll.
+ * @author Bujdosó Ákos
+ */
+final class FrameScheduler {
+
+  /**
+   * Az ütemek közötti idő (msec), kb. 60 Hz.
+   */
+  static final int TICK_DELAY = 16;
+
+  /**
+   * A kirajzolást kiváltó források.
+   */
+  enum Source {
+
+    /**
+     * Az aktuális képkocka.
+     */
+    Frame,
+    /**
+     * A megjelenítési beállítások (kamera, nagyítás).
+     */
+    Display,
+    /**
+     * A műveleti mód.
+     */
+    Mode,
+    /**
+     * A koordináta-rendszer megjelenítése.
+     */
+    GridSystem;
+
+    private final int mask = 1 << ordinal();
+  }
+
+  private final Runnable renderer;
+
+  private final Timer timer;
+
+  /**
+   * A kirajzolásra váró források bitmaszkja.
+   */
+  private int dirty;
+
+  private long requestCount;
+
+  private long renderCount;
+
+  /**
+   * Létrehozás egyedi {@link Timer}-rel, főleg tesztelési célból.
+   * @param renderer A kirajzolást végző rutin (ütemenként legfeljebb egyszer hívódik).
+   * @param timer Az egyedi {@link Timer} az ütemezéshez.
+   */
+  FrameScheduler(Runnable renderer, Timer timer) {
+    if (renderer == null || timer == null) {
+      throw new IllegalArgumentException();
+    }
+    this.renderer = renderer;
+    this.timer = timer;
+    this.timer.setRepeats(true);
+    this.timer.setCoalesce(true);
+    this.timer.addActionListener(new ActionListener() {
+      @Override
+      public void actionPerformed(ActionEvent e) {
+        tick();
+      }
+    });
+  }
+
+  FrameScheduler(Runnable renderer) {
+    this(renderer, new Timer(TICK_DELAY, null));
+  }
+
+  /**
+   * A műveletkezelő változásainak figyelése.
+   * @param om A figyelendő műveletkezelő.
+   */
+  void attach(OperationManager om) {
+    om.getDisplayManager().addChangeListener(new ChangeListener() {
+      @Override
+      public void stateChanged(ChangeEvent e) {
+        markDirty(Source.Display);
+      }
+    });
+    om.getModeManager().addPropertyChangeListener(new PropertyChangeListener() {
+      @Override
+      public void propertyChange(PropertyChangeEvent evt) {
+        if (ModeManager.PROP_MODE.equals(evt.getPropertyName())) {
+          markDirty(Source.Mode);
+        }
+      }
+    });
+    om.getPlayManager().getFrameSlider().addIntValueListener(new IntValueListener() {
+      @Override
+      public void valueChanged(Object source, int oldValue, int newValue) {
+        markDirty(Source.Frame);
+      }
+    });
+    om.getShowGridSystemToggle().addPropertyChangeListener(new PropertyChangeListener() {
+      @Override
+      public void propertyChange(PropertyChangeEvent evt) {
+        if (PropToggle.PROP_SELECTED.equals(evt.getPropertyName())) {
+          markDirty(Source.GridSystem);
+        }
+      }
+    });
+  }
+
+  /**
+   * Kirajzolás kérése a következő ütemben.
+   * @param source A kérést kiváltó forrás.
+   */
+  void markDirty(Source source) {
+    requestCount++;
+    dirty |= source.mask;
+    if (!timer.isRunning()) {
+      timer.start();
+    }
+  }
+
+  /**
+   * @param source A vizsgálandó forrás.
+   * @return Vár-e kirajzolásra az adott forrás.
+   */
+  boolean isDirty(Source source) {
+    return (dirty & source.mask) != 0;
+  }
+
+  /**
+   * @return Vár-e kirajzolásra valamelyik forrás.
+   */
+  boolean isDirty() {
+    return dirty != 0;
+  }
+
+  /**
+   * @return Az eddigi kirajzolási kérések száma.
+   */
+  long getRequestCount() {
+    return requestCount;
+  }
+
+  /**
+   * @return Az eddig ténylegesen elvégzett kirajzolások száma.
+   */
+  long getRenderCount() {
+    return renderCount;
+  }
+
+  /**
+   * @return Az összevont (külön kirajzolást nem eredményező) kérések száma.
+   */
+  long getCoalescedCount() {
+    return requestCount - renderCount - (dirty != 0 ? 1 : 0);
+  }
+
+  private void tick() {
+    if (dirty == 0) {
+      // Nincs teendő, a következő kérésig leállunk
+      timer.stop();
+      return;
+    }
+    dirty = 0;
+    renderCount++;
+    renderer.run();
+  }
+}
@@ -0,0 +1,157 @@
+package hu.akusius.palenque.animation.ui;
+
+import hu.akusius.palenque.animation.op.DisplayManager;
+import hu.akusius.palenque.animation.op.FrameInfo;
+import hu.akusius.palenque.animation.op.OperationManager;
+import java.awt.Dimension;
+import java.util.Arrays;
+import org.other.Matrix;
+
+/**
+ * A kirajzoláshoz szükséges állapot pillanatképe.
+ * Az EDT-n készül, utána nem módosul, így a kirajzolás bármely szálon elvégezhető vele.
+ * Két pillanatkép akkor egyenlő, ha ugyanazt a képet eredményezik (képkocka, kamera, nagyítás, méret, koordináta-rendszer),
+ * így a kirajzolt képek gyorstárának kulcsa is lehet.
+ * @author Bujdosó Ákos
+ */
+final class FrameSnapshot {
+
+  private final FrameInfo frameInfo;
+
+  private final Matrix camera;
+
+  /**
+   * A kameramátrix értékei (az összehasonlításhoz).
+   */
+  private final double[] cameraValues;
+
+  private final double zoom;
+
+  /**
+   * Az automatikus kamera szerinti-e a megjelenítés.
+   */
+  private final boolean auto;
+
+  private final boolean showGridSystem;
+
+  private final int width;
+
+  private final int height;
+
+  private final int hash;
+
+  private FrameSnapshot(FrameInfo frameInfo, Matrix camera, double zoom, boolean auto, boolean showGridSystem,
+          int width, int height) {
+    this.frameInfo = frameInfo;
+    this.camera = camera;
+    this.cameraValues = new double[16];
+    camera.get(cameraValues, 0);
+    this.zoom = zoom;
+    this.auto = auto;
+    this.showGridSystem = showGridSystem;
+    this.width = width;
+    this.height = height;
+
+    int h = frameInfo.getFrameNum();
+    h = 31 * h + Arrays.hashCode(cameraValues);
+    long z = Double.doubleToLongBits(zoom);
+    h = 31 * h + (int) (z ^ (z >>> 32));
+    h = 31 * h + (showGridSystem ? 1 : 0);
+    h = 31 * h + width;
+    h = 31 * h + height;
+    this.hash = h;
+  }
+
+  /**
+   * Pillanatkép készítése a műveletkezelő aktuális állapotáról.
+   * Csak az EDT-n hívható.
+   * @param om A műveletkezelő.
+   * @param size A kirajzolás mérete.
+   * @return A pillanatkép.
+   */
+  static FrameSnapshot capture(OperationManager om, Dimension size) {
+    DisplayManager dm = om.getDisplayManager();
+    Matrix camera = new Matrix();
+    dm.getCameraMatrix(camera);
+    return new FrameSnapshot(om.getPlayManager().getFrameSlider().getCurrentFrameInfo(), camera, dm.getZoom(),
+            dm.isAutoCamera(), om.getShowGridSystemToggle().isSelected(), size.width, size.height);
+  }
+
+  /**
+   * Pillanatkép egy másik képkockára, a többi beállítás változatlanul hagyásával.
+   * Automatikus kamera esetén a kamera és a nagyítás is az adott képkockáé lesz.
+   * @param frame A képkocka száma (a tartományon kívüli érték a legközelebbi érvényesre korlátozódik).
+   * @return Az új pillanatkép.
+   */
+  FrameSnapshot withFrame(int frame) {
+    frame = Math.min(Math.max(frame, 0), FrameInfo.getMaxFrameNum());
+    if (frame == frameInfo.getFrameNum()) {
+      return this;
+    }
+    FrameInfo fi = FrameInfo.getFrameInfo(frame);
+    if (auto) {
+      Matrix cam = new Matrix();
+      DisplayManager.getAutoCameraMatrix(frame, cam);
+      return new FrameSnapshot(fi, cam, DisplayManager.getAutoZoom(frame), true, showGridSystem, width, height);
+    } else {
+      return new FrameSnapshot(fi, camera, zoom, false, showGridSystem, width, height);
+    }
+  }
+
+  FrameInfo getFrameInfo() {
+    return frameInfo;
+  }
+
+  /**
+   * @return A kamera mátrixa. Nem módosítható!
+   */
+  Matrix getCamera() {
+    return camera;
+  }
+
+  double getZoom() {
+    return zoom;
+  }
+
+  boolean isAuto() {
+    return auto;
+  }
+
+  boolean isShowGridSystem() {
+    return showGridSystem;
+  }
+
+  int getWidth() {
+    return width;
+  }
+
+  int getHeight() {
+    return height;
+  }
+
+  Dimension getSize() {
+    return new Dimension(width, height);
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof FrameSnapshot)) {
+      return false;
+    }
+    FrameSnapshot other = (FrameSnapshot) obj;
+    return hash == other.hash
+            && frameInfo.getFrameNum() == other.frameInfo.getFrameNum()
+            && width == other.width && height == other.height
+            && showGridSystem == other.showGridSystem
+            && Double.doubleToLongBits(zoom) == Double.doubleToLongBits(other.zoom)
+            && Arrays.equals(cameraValues, other.cameraValues);
+  }
+}
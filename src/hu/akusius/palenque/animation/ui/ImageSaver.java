@@ -7,8 +7,12 @@ import java.awt.datatransfer.Transferable;
 import java.awt.datatransfer.UnsupportedFlavorException;
 import java.awt.event.*;
 import java.awt.image.BufferedImage;
+import hu.akusius.palenque.animation.rendering.PdfWriter;
+import hu.akusius.palenque.animation.rendering.SvgWriter;
+import hu.akusius.palenque.animation.rendering.VectorSink;
+import hu.akusius.palenque.animation.util.PngWriter;
 import java.io.*;
-import javax.imageio.ImageIO;
+import java.util.concurrent.ExecutionException;
 import javax.swing.*;
 
 /**
@@ -27,12 +31,19 @@ public final class ImageSaver {
 
   private final JButton btnClipboard;
 
+  private final JComboBox<String> compressionCombo;
+
+  /**
+   * A választható tömörítési szintek (a {@link #compressionCombo} elemeinek sorrendjében).
+   */
+  private static final int[] compressionLevels = new int[]{1, 6, 9};
+
   private ImageSource imageSource;
 
   private int suggestedSize;
 
   /**
-   * A képforrásból származó kép legenerálása és elmentése PNG formátumban.
+   * A képforrásból származó kép legenerálása és elmentése PNG, SVG vagy PDF formátumban.
    * @param imageSource A képet szolgáltató képforrás.
    * @param dialogParent A megjelenítendő dialógusok szülője.
    */
@@ -48,13 +59,19 @@ public final class ImageSaver {
   private ImageSaver(ImageSource is, DialogParent dialogParent) {
     this.dialogParent = dialogParent;
 
-    fcSave = new FileChooser("png");
+    fcSave = new FileChooser(new String[]{"png", "svg", "pdf"});
 
     JPanel pnlSpinner = new JPanel();
     sizeSpinner = new JSpinner(new SpinnerNumberModel(is.getSuggestedSize(), is.getMinSize(), is.getMaxSize(), 1));
     pnlSpinner.add(sizeSpinner);
     pnlSpinner.add(new JLabel("px"));
 
+    JPanel pnlCompression = new JPanel();
+    compressionCombo = new JComboBox<>(new String[]{"Fast", "Normal", "Best"});
+    compressionCombo.setSelectedIndex(1);
+    compressionCombo.setToolTipText("PNG compression");
+    pnlCompression.add(compressionCombo);
+
     btnClipboard = new JButton("Clipboard", IconFactory.readIcon("copy.png"));
     btnClipboard.setMnemonic(KeyEvent.VK_C);
     btnClipboard.addActionListener(new ActionListener() {
@@ -75,6 +92,11 @@ public final class ImageSaver {
     gbc = new GridBagConstraints();
     gbc.gridx = 0;
     gbc.gridy = 1;
+    pnlAccessory.add(pnlCompression, gbc);
+
+    gbc = new GridBagConstraints();
+    gbc.gridx = 0;
+    gbc.gridy = 2;
     pnlAccessory.add(btnClipboard, gbc);
 
     fcSave.setAccessory(pnlAccessory);
@@ -109,9 +131,49 @@ public final class ImageSaver {
     }
   }
 
-  private void saveImage(File dest, int size) throws Exception {
-    BufferedImage image = imageSource.generateImage(size);
-    ImageIO.write(image, "png", dest);
+  private void saveImage(final File dest, int size) throws Exception {
+    // A kép az EDT-n készül (az aktuális állapotból), a kódolás és az írás viszont a háttérben
+    final String ext = fcSave.getSelectedExtension();
+    final byte[] vector;
+    final BufferedImage image;
+    if ("svg".equals(ext) || "pdf".equals(ext)) {
+      // A vektoros kimenet közvetlenül a vonalakból készül, ez csak néhány ezredmásodperc
+      ByteArrayOutputStream data = new ByteArrayOutputStream();
+      try (VectorSink sink = "svg".equals(ext) ? new SvgWriter(data, size, size) : new PdfWriter(data, size, size)) {
+        imageSource.renderImage(sink, size);
+      }
+      vector = data.toByteArray();
+      image = null;
+    } else {
+      vector = null;
+      image = imageSource.generateImage(size);
+    }
+    final PngWriter writer = new PngWriter(compressionLevels[compressionCombo.getSelectedIndex()],
+            PngWriter.Filter.Adaptive, Runtime.getRuntime().availableProcessors());
+    new SwingWorker<Void, Void>() {
+      @Override
+      protected Void doInBackground() throws Exception {
+        if (vector != null) {
+          try (OutputStream out = new FileOutputStream(dest)) {
+            out.write(vector);
+          }
+        } else {
+          writer.write(image, dest);
+        }
+        return null;
+      }
+
+      @Override
+      protected void done() {
+        try {
+          get();
+        } catch (InterruptedException | ExecutionException ex) {
+          Throwable cause = ex instanceof ExecutionException ? ex.getCause() : ex;
+          JOptionPane.showMessageDialog(dialogParent.getComponent(),
+                  cause.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        }
+      }
+    }.execute();
   }
 
   private void copyImage(int size) throws Exception {
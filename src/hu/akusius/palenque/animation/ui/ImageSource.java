@@ -1,5 +1,6 @@
 package hu.akusius.palenque.animation.ui;
 
+import hu.akusius.palenque.animation.rendering.VectorSink;
 import java.awt.image.BufferedImage;
 
 /**
@@ -29,4 +30,11 @@ public interface ImageSource {
    * @return A legenerált kép.
    */
   BufferedImage generateImage(int size);
+
+  /**
+   * A kép kirajzolása vektoros kimenetbe a megadott mérettel.
+   * @param sink A vektoros kimenet (pl. SVG, PDF).
+   * @param size A kép mérete.
+   */
+  void renderImage(VectorSink sink, int size);
 }
@@ -1,6 +1,7 @@
 package hu.akusius.palenque.animation.ui;
 
 import hu.akusius.palenque.animation.op.*;
+import hu.akusius.palenque.animation.util.IntValueListener;
 import java.awt.Dimension;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
@@ -176,17 +177,16 @@ public class ToolbarPanel extends JPanel {
         }
       }
     });
-    prop.addPropertyChangeListener(new PropertyChangeListener() {
+    prop.addPropertyChangeListener(PropSlider.PROP_ENABLED, new PropertyChangeListener() {
       @Override
       public void propertyChange(PropertyChangeEvent evt) {
-        switch (evt.getPropertyName()) {
-          case PropSlider.PROP_ENABLED:
-            sl.setEnabled(prop.isEnabled());
-            break;
-          case PropSlider.PROP_VALUE:
-            sl.setValue(prop.getValue());
-            break;
-        }
+        sl.setEnabled(prop.isEnabled());
+      }
+    });
+    prop.addIntValueListener(new IntValueListener() {
+      @Override
+      public void valueChanged(Object source, int oldValue, int newValue) {
+        sl.setValue(newValue);
       }
     });
     return sl;
@@ -1,18 +1,21 @@
 package hu.akusius.palenque.animation.util;
 
+import java.util.Arrays;
 import java.util.EventObject;
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Támogatás az {@link EventListener} eseménykezelőkhöz.
  * Az osztály garantálja, hogy az eseménykezelők a regisztrálás sorrendjében hívódnak meg.
+ * Az eseménykezelőket egy módosításkor lecserélt tömbben tárolja, az eseményobjektum pedig csak akkor jön létre,
+ * ha van eseménykezelő; így a jelzés eseménykezelők nélkül semmilyen memóriafoglalással nem jár.
  * @param <T> Az eseményobjektum típusa.
  * @author Bujdosó Ákos
  */
 public class EventSupport<T extends EventObject> {
 
-  private final List<EventListener<T>> listeners = new CopyOnWriteArrayList<>();
+  private static final EventListener<?>[] EMPTY = new EventListener<?>[0];
+
+  private volatile EventListener<?>[] listeners = EMPTY;
 
   private final Object source;
 
@@ -28,22 +31,34 @@ public class EventSupport<T extends EventObject> {
    * Új eseménykezelő hozzáadása.
    * @param listener A hozzáadandó eseménykezelő.
    */
-  public void addEventListener(EventListener<T> listener) {
+  public synchronized void addEventListener(EventListener<T> listener) {
     if (listener == null) {
       return;
     }
-    listeners.add(listener);
+    EventListener<?>[] ls = listeners;
+    EventListener<?>[] nls = Arrays.copyOf(ls, ls.length + 1);
+    nls[ls.length] = listener;
+    listeners = nls;
   }
 
   /**
    * A megadott eseménykezelő eltávolítása.
    * @param listener Az eltávolítandó eseménykezelő.
    */
-  public void removeEventListener(EventListener<T> listener) {
+  public synchronized void removeEventListener(EventListener<T> listener) {
     if (listener == null) {
       return;
     }
-    listeners.remove(listener);
+    EventListener<?>[] ls = listeners;
+    for (int i = 0; i < ls.length; i++) {
+      if (ls[i].equals(listener)) {
+        EventListener<?>[] nls = new EventListener<?>[ls.length - 1];
+        System.arraycopy(ls, 0, nls, 0, i);
+        System.arraycopy(ls, i + 1, nls, i, ls.length - i - 1);
+        listeners = nls;
+        return;
+      }
+    }
   }
 
   /**
@@ -54,30 +69,19 @@ public class EventSupport<T extends EventObject> {
   public void fireEvent(T e) {
     assert e != null;
 
-    for (EventListener<T> listener : this.listeners) {
-      listener.notify(e);
-    }
-  }
-
-  @SuppressWarnings("unchecked")
-  private void fireEvent(LazyEventObject<T> le) {
-    for (EventListener<T> listener : this.listeners) {
-      listener.notify(le.getEventObject());
+    for (EventListener<?> listener : this.listeners) {
+      ((EventListener<T>) listener).notify(e);
     }
   }
 
   /**
    * Esemény jelzése külön paraméterek nélkül. Csak akkor használható, ha T {@link EventObject} típusú.
    */
+  @SuppressWarnings("unchecked")
   public void fireEvent() {
-    fireEvent(new LazyEventObject<>(new EventObjectCreator<T>() {
-
-      @Override
-      @SuppressWarnings("unchecked")
-      public T createEventObject() {
-        return (T) new EventObject(source);
-      }
-    }));
+    if (hasListeners()) {
+      fireEvent((T) new EventObject(source));
+    }
   }
 
   /**
@@ -85,14 +89,10 @@ public class EventSupport<T extends EventObject> {
    * @param param A paraméter.
    */
   @SuppressWarnings("unchecked")
-  public void fireEvent1(final Object param) {
-    fireEvent(new LazyEventObject<>(new EventObjectCreator<T>() {
-
-      @Override
-      public T createEventObject() {
-        return (T) new Event1<>(source, param);
-      }
-    }));
+  public void fireEvent1(Object param) {
+    if (hasListeners()) {
+      fireEvent((T) new Event1<>(source, param));
+    }
   }
 
   /**
@@ -101,44 +101,16 @@ public class EventSupport<T extends EventObject> {
    * @param param2 A második paraméter.
    */
   @SuppressWarnings("unchecked")
-  public void fireEvent2(final Object param1, final Object param2) {
-    fireEvent(new LazyEventObject<>(new EventObjectCreator<T>() {
-
-      @Override
-      public T createEventObject() {
-        return (T) new Event2<>(source, param1, param2);
-      }
-    }));
+  public void fireEvent2(Object param1, Object param2) {
+    if (hasListeners()) {
+      fireEvent((T) new Event2<>(source, param1, param2));
+    }
   }
 
   /**
    * @return Vannak-e eseménykezelők rákötve.
    */
   public boolean hasListeners() {
-    return listeners.size() > 0;
-  }
-
-  private interface EventObjectCreator<T> {
-
-    T createEventObject();
-  }
-
-  private static class LazyEventObject<T> {
-
-    private final EventObjectCreator<T> creator;
-
-    LazyEventObject(EventObjectCreator<T> creator) {
-      this.creator = creator;
-    }
-
-    private T eventObject = null;
-
-    T getEventObject() {
-      if (eventObject == null) {
-        eventObject = creator.createEventObject();
-      }
-
-      return eventObject;
-    }
+    return listeners.length > 0;
   }
 }
@@ -0,0 +1,19 @@
+package hu.akusius.palenque.animation.util;
+
+/**
+ * Eseménykezelő egy egész értékű tulajdonság változásához.
+ * A {@link java.beans.PropertyChangeListener}-rel szemben nem igényel eseményobjektumot és az értékek
+ * becsomagolását, így a gyakran (pl. lejátszás közben képkockánként) változó értékekhez való.
+ * @author Bujdosó Ákos
+ * @see IntValueSupport
+ */
+public interface IntValueListener extends java.util.EventListener {
+
+  /**
+   * Megváltozott az érték.
+   * @param source Az esemény forrása.
+   * @param oldValue A korábbi érték.
+   * @param newValue Az új érték.
+   */
+  void valueChanged(Object source, int oldValue, int newValue);
+}
@@ -0,0 +1,78 @@
+package hu.akusius.palenque.animation.util;
+
+/**
+ * Támogatás az {@link IntValueListener} eseménykezelőkhöz.
+ * Az eseménykezelőket egy tömbben tárolja, amelyet módosításkor lecserél (mint a
+ * {@link java.util.concurrent.CopyOnWriteArrayList}), így a jelzés semmilyen memóriafoglalással nem jár.
+ * Az eseménykezelők a regisztrálás sorrendjében hívódnak meg.
+ * @author Bujdosó Ákos
+ */
+public final class IntValueSupport {
+
+  private static final IntValueListener[] EMPTY = new IntValueListener[0];
+
+  private volatile IntValueListener[] listeners = EMPTY;
+
+  private final Object source;
+
+  /**
+   * Létrehozás.
+   * @param source Az események forrása.
+   */
+  public IntValueSupport(Object source) {
+    this.source = source;
+  }
+
+  /**
+   * Új eseménykezelő hozzáadása.
+   * @param listener A hozzáadandó eseménykezelő.
+   */
+  public synchronized void addIntValueListener(IntValueListener listener) {
+    if (listener == null) {
+      return;
+    }
+    IntValueListener[] ls = listeners;
+    IntValueListener[] nls = new IntValueListener[ls.length + 1];
+    System.arraycopy(ls, 0, nls, 0, ls.length);
+    nls[ls.length] = listener;
+    listeners = nls;
+  }
+
+  /**
+   * A megadott eseménykezelő eltávolítása (ha többször is hozzá lett adva, akkor csak egyszer).
+   * @param listener Az eltávolítandó eseménykezelő.
+   */
+  public synchronized void removeIntValueListener(IntValueListener listener) {
+    if (listener == null) {
+      return;
+    }
+    IntValueListener[] ls = listeners;
+    for (int i = 0; i < ls.length; i++) {
+      if (ls[i].equals(listener)) {
+        IntValueListener[] nls = new IntValueListener[ls.length - 1];
+        System.arraycopy(ls, 0, nls, 0, i);
+        System.arraycopy(ls, i + 1, nls, i, ls.length - i - 1);
+        listeners = nls;
+        return;
+      }
+    }
+  }
+
+  /**
+   * Az értékváltozás jelzése.
+   * @param oldValue A korábbi érték.
+   * @param newValue Az új érték.
+   */
+  public void fireValueChanged(int oldValue, int newValue) {
+    for (IntValueListener listener : listeners) {
+      listener.valueChanged(source, oldValue, newValue);
+    }
+  }
+
+  /**
+   * @return Vannak-e eseménykezelők rákötve.
+   */
+  public boolean hasListeners() {
+    return listeners.length > 0;
+  }
+}
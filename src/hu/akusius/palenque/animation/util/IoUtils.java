@@ -47,6 +47,36 @@ public class IoUtils {
     }
   }
 
+  private static final char[] BASE64_CHARS
+          = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+  /**
+   * Bájtok Base64 kódolása (RFC 4648, sortörések nélkül, kitöltéssel).
+   * @param data A kódolandó bájtok. Nem lehet {@code null}.
+   * @return A kódolt sztring.
+   */
+  public static String encodeBase64(byte[] data) {
+    char[] out = new char[(data.length + 2) / 3 * 4];
+    int o = 0;
+    int i = 0;
+    for (; i + 2 < data.length; i += 3) {
+      int v = (data[i] & 0xff) << 16 | (data[i + 1] & 0xff) << 8 | (data[i + 2] & 0xff);
+      out[o++] = BASE64_CHARS[v >>> 18];
+      out[o++] = BASE64_CHARS[(v >>> 12) & 0x3f];
+      out[o++] = BASE64_CHARS[(v >>> 6) & 0x3f];
+      out[o++] = BASE64_CHARS[v & 0x3f];
+    }
+    int rest = data.length - i;
+    if (rest > 0) {
+      int v = (data[i] & 0xff) << 16 | (rest == 2 ? (data[i + 1] & 0xff) << 8 : 0);
+      out[o++] = BASE64_CHARS[v >>> 18];
+      out[o++] = BASE64_CHARS[(v >>> 12) & 0x3f];
+      out[o++] = rest == 2 ? BASE64_CHARS[(v >>> 6) & 0x3f] : '=';
+      out[o++] = '=';
+    }
+    return new String(out);
+  }
+
   private IoUtils() {
   }
 }
@@ -0,0 +1,606 @@
+package hu.akusius.palenque.animation.util;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * PNG formátumú képek írása, elsősorban a (fehér alapon fekete vonalas) képkockákhoz.
+ * <p>
+ * A képpontok alapján a legkisebb megfelelő színtípust választja: szürkeárnyalatos (átlátszósággal vagy anélkül),
+ * palettás (legfeljebb 256 szín esetén), ill. truecolor (átlátszósággal vagy anélkül).
+ * A sorok szűrése és a tömörítés több szálon történik: a tömörítendő adat blokkokra oszlik,
+ * minden blokk külön tömörítődik, az előző blokk utolsó 32 KB-ja szótárként szolgál
+ * (így a tömörítés alig rosszabb, mint egy szálon), a blokkok pedig egyetlen deflate folyamként fűződnek össze.
+ * Az osztály szálbiztos.
+ * @author Bujdosó Ákos
+ */
+public final class PngWriter {
+
+  /**
+   * A sorok szűrése.
+   */
+  public enum Filter {
+
+    None, Sub, Up, Average, Paeth,
+    /**
+     * Soronként a legkisebb abszolút összeget adó szűrő (palettás képnél szűrés nélkül).
+     */
+    Adaptive
+  }
+
+  private static final byte[] SIGNATURE = new byte[]{(byte) 137, 80, 78, 71, 13, 10, 26, 10};
+
+  private static final int COLOR_GRAY = 0;
+
+  private static final int COLOR_RGB = 2;
+
+  private static final int COLOR_INDEXED = 3;
+
+  private static final int COLOR_GRAY_ALPHA = 4;
+
+  private static final int COLOR_RGBA = 6;
+
+  /**
+   * Egy tömörítési blokk minimális mérete.
+   */
+  private static final int BLOCK_SIZE = 1 << 17;
+
+  /**
+   * A deflate ablakmérete, egyben a blokkok szótárának mérete.
+   */
+  private static final int DICTIONARY_SIZE = 1 << 15;
+
+  private final int compressionLevel;
+
+  private final Filter filter;
+
+  private final int threads;
+
+  /**
+   * Létrehozás alapértelmezett tömörítéssel, adaptív szűréssel és a processzorok számának megfelelő szállal.
+   */
+  public PngWriter() {
+    this(Deflater.DEFAULT_COMPRESSION, Filter.Adaptive, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Létrehozás.
+   * @param compressionLevel A tömörítés mértéke (0-9, ill. {@link Deflater#DEFAULT_COMPRESSION}).
+   * @param filter A sorok szűrése.
+   * @param threads A használható szálak száma.
+   */
+  public PngWriter(int compressionLevel, Filter filter, int threads) {
+    if (compressionLevel < Deflater.DEFAULT_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+      throw new IllegalArgumentException("Invalid compression level: " + compressionLevel);
+    }
+    if (filter == null) {
+      throw new IllegalArgumentException();
+    }
+    if (threads < 1) {
+      throw new IllegalArgumentException("Invalid number of threads: " + threads);
+    }
+    this.compressionLevel = compressionLevel;
+    this.filter = filter;
+    this.threads = threads;
+  }
+
+  /**
+   * A kép kiírása egy fájlba.
+   * @param image A kép.
+   * @param file A cél fájl.
+   * @throws IOException Hiba az írás közben.
+   */
+  public void write(BufferedImage image, File file) throws IOException {
+    try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16)) {
+      write(image, out);
+    }
+  }
+
+  /**
+   * A kép kiírása egy folyamba. A folyam nem záródik le.
+   * @param image A kép.
+   * @param out A cél folyam.
+   * @throws IOException Hiba az írás közben.
+   */
+  public void write(BufferedImage image, OutputStream out) throws IOException {
+    final int width = image.getWidth();
+    final int height = image.getHeight();
+    final int[] pixels = getPixels(image);
+    final Format format = Format.analyze(pixels);
+    final int rowBytes = width * format.bytesPerPixel;
+    final int stride = rowBytes + 1;
+    final byte[] data = new byte[stride * height];
+
+    // A sorok szűrése sávonként
+    int bandNum = Math.max(1, Math.min(threads, height / 16));
+    List<Callable<Void>> filterTasks = new ArrayList<>(bandNum);
+    for (int i = 0; i < bandNum; i++) {
+      final int y0 = (int) ((long) height * i / bandNum);
+      final int y1 = (int) ((long) height * (i + 1) / bandNum);
+      filterTasks.add(new Callable<Void>() {
+        @Override
+        public Void call() {
+          filterRows(pixels, width, format, y0, y1, data);
+          return null;
+        }
+      });
+    }
+    runAll(filterTasks);
+
+    // A tömörítés blokkonként
+    final int blockSize = Math.max(BLOCK_SIZE, (data.length + threads - 1) / threads);
+    final int blockNum = Math.max(1, (data.length + blockSize - 1) / blockSize);
+    List<Callable<byte[]>> deflateTasks = new ArrayList<>(blockNum);
+    for (int i = 0; i < blockNum; i++) {
+      final int start = i * blockSize;
+      final int end = Math.min(data.length, start + blockSize);
+      final boolean last = i == blockNum - 1;
+      deflateTasks.add(new Callable<byte[]>() {
+        @Override
+        public byte[] call() {
+          return deflate(data, start, end, last);
+        }
+      });
+    }
+    List<byte[]> blocks = runAll(deflateTasks);
+
+    Adler32 adler = new Adler32();
+    adler.update(data, 0, data.length);
+    int checksum = (int) adler.getValue();
+
+    DataOutputStream dos = new DataOutputStream(out);
+    dos.write(SIGNATURE);
+
+    ByteArrayOutputStream ihdr = new ByteArrayOutputStream(13);
+    DataOutputStream hdos = new DataOutputStream(ihdr);
+    hdos.writeInt(width);
+    hdos.writeInt(height);
+    hdos.writeByte(8);
+    hdos.writeByte(format.colorType);
+    hdos.writeByte(0);
+    hdos.writeByte(0);
+    hdos.writeByte(0);
+    writeChunk(dos, "IHDR", ihdr.toByteArray());
+
+    if (format.colorType == COLOR_INDEXED) {
+      int[] palette = format.palette;
+      byte[] plte = new byte[palette.length * 3];
+      byte[] trns = new byte[palette.length];
+      for (int i = 0; i < palette.length; i++) {
+        plte[i * 3] = (byte) (palette[i] >> 16);
+        plte[i * 3 + 1] = (byte) (palette[i] >> 8);
+        plte[i * 3 + 2] = (byte) palette[i];
+        trns[i] = (byte) (palette[i] >>> 24);
+      }
+      writeChunk(dos, "PLTE", plte);
+      if (format.alpha) {
+        writeChunk(dos, "tRNS", trns);
+      }
+    }
+
+    // zlib fejléc az első, ellenőrzőösszeg az utolsó IDAT-ban
+    byte[] header = getZlibHeader(compressionLevel);
+    byte[] trailer = new byte[]{(byte) (checksum >>> 24), (byte) (checksum >>> 16), (byte) (checksum >>> 8), (byte) checksum};
+    for (int i = 0; i < blocks.size(); i++) {
+      writeChunk(dos, "IDAT",
+              i == 0 ? header : null,
+              blocks.get(i),
+              i == blocks.size() - 1 ? trailer : null);
+    }
+
+    writeChunk(dos, "IEND", new byte[0]);
+    dos.flush();
+  }
+
+  /**
+   * @return A kép képpontjai (nem előszorzott ARGB), sorfolytonosan.
+   */
+  private static int[] getPixels(BufferedImage image) {
+    int width = image.getWidth(), height = image.getHeight();
+    int type = image.getType();
+    WritableRaster raster = image.getRaster();
+    if ((type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_RGB)
+            && raster.getParent() == null
+            && raster.getDataBuffer() instanceof DataBufferInt
+            && raster.getSampleModel() instanceof SinglePixelPackedSampleModel
+            && ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride() == width) {
+      // Közvetlen hozzáférés (a gyakori eset)
+      DataBufferInt db = (DataBufferInt) raster.getDataBuffer();
+      if (db.getOffset() == 0 && db.getSize() == width * height) {
+        int[] src = db.getData();
+        if (type == BufferedImage.TYPE_INT_ARGB) {
+          return src;
+        }
+        int[] pixels = new int[src.length];
+        for (int i = 0; i < src.length; i++) {
+          pixels[i] = src[i] | 0xFF000000;
+        }
+        return pixels;
+      }
+    }
+    return image.getRGB(0, 0, width, height, null, 0, width);
+  }
+
+  /**
+   * A kimeneti színtípus és a hozzá tartozó adatok.
+   */
+  private static final class Format {
+
+    final int colorType;
+
+    final int bytesPerPixel;
+
+    final boolean alpha;
+
+    /**
+     * Palettás képnél a színek (ARGB), egyébként {@code null}.
+     */
+    final int[] palette;
+
+    /**
+     * Palettás képnél a színek indexei (nyílt címzésű hash tábla), egyébként {@code null}.
+     */
+    final ColorTable colorTable;
+
+    private Format(int colorType, int bytesPerPixel, boolean alpha, ColorTable colorTable) {
+      this.colorType = colorType;
+      this.bytesPerPixel = bytesPerPixel;
+      this.alpha = alpha;
+      this.colorTable = colorTable;
+      this.palette = colorTable != null ? colorTable.getColors() : null;
+    }
+
+    static Format analyze(int[] pixels) {
+      boolean gray = true;
+      boolean alpha = false;
+      ColorTable colors = new ColorTable();
+      for (int p : pixels) {
+        int a = p >>> 24, r = (p >> 16) & 0xFF, g = (p >> 8) & 0xFF, b = p & 0xFF;
+        if (a != 0xFF) {
+          alpha = true;
+        }
+        if (r != g || g != b) {
+          gray = false;
+        }
+        if (colors != null && colors.add(p) < 0) {
+          colors = null;
+        }
+        if (colors == null && !gray && alpha) {
+          // Már csak truecolor átlátszósággal lehet
+          break;
+        }
+      }
+
+      if (gray) {
+        return alpha ? new Format(COLOR_GRAY_ALPHA, 2, true, null) : new Format(COLOR_GRAY, 1, false, null);
+      } else if (colors != null) {
+        return new Format(COLOR_INDEXED, 1, alpha, colors);
+      } else {
+        return alpha ? new Format(COLOR_RGBA, 4, true, null) : new Format(COLOR_RGB, 3, false, null);
+      }
+    }
+
+    /**
+     * Egy sor képpontjainak átalakítása a színtípusnak megfelelő bájtokká.
+     */
+    void convertRow(int[] pixels, int offset, int width, byte[] dst) {
+      int j = 0;
+      switch (colorType) {
+        case COLOR_GRAY:
+          for (int x = 0; x < width; x++) {
+            dst[j++] = (byte) pixels[offset + x];
+          }
+          break;
+        case COLOR_GRAY_ALPHA:
+          for (int x = 0; x < width; x++) {
+            int p = pixels[offset + x];
+            dst[j++] = (byte) p;
+            dst[j++] = (byte) (p >>> 24);
+          }
+          break;
+        case COLOR_INDEXED:
+          for (int x = 0; x < width; x++) {
+            dst[j++] = (byte) colorTable.indexOf(pixels[offset + x]);
+          }
+          break;
+        case COLOR_RGB:
+          for (int x = 0; x < width; x++) {
+            int p = pixels[offset + x];
+            dst[j++] = (byte) (p >> 16);
+            dst[j++] = (byte) (p >> 8);
+            dst[j++] = (byte) p;
+          }
+          break;
+        default:
+          for (int x = 0; x < width; x++) {
+            int p = pixels[offset + x];
+            dst[j++] = (byte) (p >> 16);
+            dst[j++] = (byte) (p >> 8);
+            dst[j++] = (byte) p;
+            dst[j++] = (byte) (p >>> 24);
+          }
+      }
+    }
+  }
+
+  /**
+   * Legfeljebb 256 színt tároló, nyílt címzésű hash tábla.
+   */
+  private static final class ColorTable {
+
+    private static final int CAPACITY = 512;
+
+    private final int[] keys = new int[CAPACITY];
+
+    private final short[] indices = new short[CAPACITY];
+
+    private final int[] colors = new int[256];
+
+    private int size = 0;
+
+    ColorTable() {
+      Arrays.fill(indices, (short) -1);
+    }
+
+    /**
+     * @return A szín indexe, vagy -1, ha már nem fér el.
+     */
+    int add(int color) {
+      int slot = slot(color);
+      if (indices[slot] >= 0) {
+        return indices[slot];
+      }
+      if (size == colors.length) {
+        return -1;
+      }
+      keys[slot] = color;
+      indices[slot] = (short) size;
+      colors[size] = color;
+      return size++;
+    }
+
+    int indexOf(int color) {
+      return indices[slot(color)];
+    }
+
+    int[] getColors() {
+      return Arrays.copyOf(colors, size);
+    }
+
+    private int slot(int color) {
+      int slot = (color * 0x9E3779B1) >>> 23;
+      while (indices[slot] >= 0 && keys[slot] != color) {
+        slot = (slot + 1) & (CAPACITY - 1);
+      }
+      return slot;
+    }
+  }
+
+  private void filterRows(int[] pixels, int width, Format format, int y0, int y1, byte[] data) {
+    int bpp = format.bytesPerPixel;
+    int rowBytes = width * bpp;
+    int stride = rowBytes + 1;
+    byte[] prev = new byte[rowBytes];
+    byte[] cur = new byte[rowBytes];
+    byte[][] candidates = filter == Filter.Adaptive ? new byte[5][rowBytes] : null;
+    if (y0 > 0) {
+      format.convertRow(pixels, (y0 - 1) * width, width, prev);
+    }
+    Filter f = filter == Filter.Adaptive && format.colorType == COLOR_INDEXED ? Filter.None : filter;
+
+    for (int y = y0; y < y1; y++) {
+      format.convertRow(pixels, y * width, width, cur);
+      int off = y * stride;
+      if (f == Filter.Adaptive) {
+        long bestSum = Long.MAX_VALUE;
+        int best = 0;
+        for (int type = 0; type < 5; type++) {
+          byte[] c = candidates[type];
+          applyFilter(type, cur, y > 0 ? prev : null, bpp, c, 0);
+          long sum = 0;
+          for (int i = 0; i < rowBytes; i++) {
+            sum += Math.abs(c[i]);
+          }
+          if (sum < bestSum) {
+            bestSum = sum;
+            best = type;
+          }
+        }
+        data[off] = (byte) best;
+        System.arraycopy(candidates[best], 0, data, off + 1, rowBytes);
+      } else {
+        int type = f.ordinal();
+        data[off] = (byte) type;
+        applyFilter(type, cur, y > 0 ? prev : null, bpp, data, off + 1);
+      }
+      byte[] tmp = prev;
+      prev = cur;
+      cur = tmp;
+    }
+  }
+
+  /**
+   * Egy sor szűrése.
+   * @param type A szűrő típusa (0-4).
+   * @param cur Az aktuális sor.
+   * @param prev Az előző sor ({@code null} az első sornál).
+   * @param bpp A képpontonkénti bájtok száma.
+   * @param dst A cél tömb.
+   * @param off A cél tömbbeli kezdőpozíció.
+   */
+  private static void applyFilter(int type, byte[] cur, byte[] prev, int bpp, byte[] dst, int off) {
+    int n = cur.length;
+    switch (type) {
+      case 0:
+        System.arraycopy(cur, 0, dst, off, n);
+        break;
+      case 1:
+        for (int i = 0; i < n; i++) {
+          int left = i >= bpp ? cur[i - bpp] & 0xFF : 0;
+          dst[off + i] = (byte) (cur[i] - left);
+        }
+        break;
+      case 2:
+        for (int i = 0; i < n; i++) {
+          int up = prev != null ? prev[i] & 0xFF : 0;
+          dst[off + i] = (byte) (cur[i] - up);
+        }
+        break;
+      case 3:
+        for (int i = 0; i < n; i++) {
+          int left = i >= bpp ? cur[i - bpp] & 0xFF : 0;
+          int up = prev != null ? prev[i] & 0xFF : 0;
+          dst[off + i] = (byte) (cur[i] - ((left + up) >>> 1));
+        }
+        break;
+      default:
+        for (int i = 0; i < n; i++) {
+          int a = i >= bpp ? cur[i - bpp] & 0xFF : 0;
+          int b = prev != null ? prev[i] & 0xFF : 0;
+          int c = i >= bpp && prev != null ? prev[i - bpp] & 0xFF : 0;
+          int p = a + b - c;
+          int pa = Math.abs(p - a), pb = Math.abs(p - b), pc = Math.abs(p - c);
+          int pred = pa <= pb && pa <= pc ? a : pb <= pc ? b : c;
+          dst[off + i] = (byte) (cur[i] - pred);
+        }
+    }
+  }
+
+  /**
+   * Szálanként egy újrahasznosított (fejléc nélküli) tömörítő.
+   */
+  private static final ThreadLocal<Deflater> deflaters = new ThreadLocal<Deflater>() {
+    @Override
+    protected Deflater initialValue() {
+      return new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    }
+  };
+
+  /**
+   * Egy blokk tömörítése. A nem utolsó blokkok szinkronizáló ürítéssel zárulnak (bájthatáron),
+   * így a blokkok egyszerű összefűzése egyetlen érvényes deflate folyamot ad.
+   */
+  private byte[] deflate(byte[] data, int start, int end, boolean last) {
+    Deflater def = deflaters.get();
+    def.reset();
+    def.setLevel(compressionLevel);
+    if (start > 0) {
+      int dictStart = Math.max(0, start - DICTIONARY_SIZE);
+      def.setDictionary(data, dictStart, start - dictStart);
+    }
+    def.setInput(data, start, end - start);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream((end - start) / 4 + 64);
+    byte[] buf = new byte[1 << 16];
+    if (last) {
+      def.finish();
+      while (!def.finished()) {
+        int n = def.deflate(buf, 0, buf.length);
+        out.write(buf, 0, n);
+      }
+    } else {
+      int n;
+      do {
+        n = def.deflate(buf, 0, buf.length, Deflater.SYNC_FLUSH);
+        out.write(buf, 0, n);
+      } while (n == buf.length || !def.needsInput());
+    }
+    return out.toByteArray();
+  }
+
+  private static byte[] getZlibHeader(int level) {
+    int cmf = 0x78;
+    int flevel;
+    if (level == Deflater.DEFAULT_COMPRESSION || level == 6) {
+      flevel = 2;
+    } else if (level < 2) {
+      flevel = 0;
+    } else if (level < 6) {
+      flevel = 1;
+    } else {
+      flevel = 3;
+    }
+    int flg = flevel << 6;
+    flg += 31 - (cmf * 256 + flg) % 31;
+    return new byte[]{(byte) cmf, (byte) flg};
+  }
+
+  private static void writeChunk(DataOutputStream out, String type, byte[]... parts) throws IOException {
+    int length = 0;
+    for (byte[] part : parts) {
+      if (part != null) {
+        length += part.length;
+      }
+    }
+    byte[] typeBytes = type.getBytes("US-ASCII");
+    CRC32 crc = new CRC32();
+    crc.update(typeBytes);
+    out.writeInt(length);
+    out.write(typeBytes);
+    for (byte[] part : parts) {
+      if (part != null) {
+        crc.update(part);
+        out.write(part);
+      }
+    }
+    out.writeInt((int) crc.getValue());
+  }
+
+  /**
+   * A feladatok végrehajtása (egynél több feladat esetén a közös szálkészleten), és az eredmények begyűjtése.
+   */
+  private static <T> List<T> runAll(List<Callable<T>> tasks) throws IOException {
+    List<T> results = new ArrayList<>(tasks.size());
+    try {
+      if (tasks.size() == 1) {
+        results.add(tasks.get(0).call());
+        return results;
+      }
+      for (Future<T> future : Pool.executor.invokeAll(tasks)) {
+        results.add(future.get());
+      }
+      return results;
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new RuntimeException(cause);
+    } catch (RuntimeException ex) {
+      throw ex;
+    } catch (Exception ex) {
+      throw new RuntimeException(ex);
+    }
+  }
+
+  /**
+   * A párhuzamos kódoláshoz használt szálkészlet (az első használatkor jön létre).
+   */
+  private static final class Pool {
+
+    static final ExecutorService executor = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+              private int count = 0;
+
+              @Override
+              public synchronized Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "PNG encoder " + (++count));
+                t.setDaemon(true);
+                return t;
+              }
+            });
+  }
+}
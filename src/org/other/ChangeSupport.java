@@ -43,8 +43,7 @@
  */
 package org.other;
 
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Arrays;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 
@@ -57,9 +56,18 @@ import javax.swing.event.ChangeListener;
  */
 public final class ChangeSupport {
 
-  private final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+  private static final ChangeListener[] EMPTY = new ChangeListener[0];
 
-  private final Object source;
+  /**
+   * The listeners; the array is replaced (never modified) on every change,
+   * so firing needs neither locking nor an iterator.
+   */
+  private volatile ChangeListener[] listeners = EMPTY;
+
+  /**
+   * The event carries nothing but the source, so a single instance is reused.
+   */
+  private final ChangeEvent event;
 
   /**
    * Creates a new <code>ChangeSupport</code>
@@ -67,7 +75,7 @@ public final class ChangeSupport {
    * @param source the instance to be given as the source for events.
    */
   public ChangeSupport(Object source) {
-    this.source = source;
+    this.event = new ChangeEvent(source);
   }
 
   /**
@@ -78,11 +86,14 @@ public final class ChangeSupport {
    *
    * @param listener the <code>ChangeListener</code> to be added.
    */
-  public void addChangeListener(ChangeListener listener) {
+  public synchronized void addChangeListener(ChangeListener listener) {
     if (listener == null) {
       return;
     }
-    listeners.add(listener);
+    ChangeListener[] ls = listeners;
+    ChangeListener[] nls = Arrays.copyOf(ls, ls.length + 1);
+    nls[ls.length] = listener;
+    listeners = nls;
   }
 
   /**
@@ -94,21 +105,27 @@ public final class ChangeSupport {
    *
    * @param listener the <code>ChangeListener</code> to be removed.
    */
-  public void removeChangeListener(ChangeListener listener) {
+  public synchronized void removeChangeListener(ChangeListener listener) {
     if (listener == null) {
       return;
     }
-    listeners.remove(listener);
+    ChangeListener[] ls = listeners;
+    for (int i = 0; i < ls.length; i++) {
+      if (ls[i].equals(listener)) {
+        ChangeListener[] nls = new ChangeListener[ls.length - 1];
+        System.arraycopy(ls, 0, nls, 0, i);
+        System.arraycopy(ls, i + 1, nls, i, ls.length - i - 1);
+        listeners = nls;
+        return;
+      }
+    }
   }
 
   /**
    * Fires a change event to all registered listeners.
    */
   public void fireChange() {
-    if (listeners.isEmpty()) {
-      return;
-    }
-    fireChange(new ChangeEvent(source));
+    fireChange(event);
   }
 
   /**
@@ -132,6 +149,6 @@ public final class ChangeSupport {
    * false otherwise.
    */
   public boolean hasListeners() {
-    return !listeners.isEmpty();
+    return listeners.length > 0;
   }
 }
@@ -12,6 +12,15 @@ import java.util.Arrays;
  */
 public final class Matrix {
 
+  /**
+   * Axis constants for {@link #composeTRT}.
+   */
+  public static final int AXIS_X = 0;
+
+  public static final int AXIS_Y = 1;
+
+  public static final int AXIS_Z = 2;
+
   private final String notice = "Copyright 2001 Ken Perlin. All rights reserved.";
 
   private static double identity[] = new double[16];
@@ -28,8 +37,6 @@ public final class Matrix {
 
   private final double tmp[] = new double[16];
 
-  private final double tmp2[] = new double[16];
-
   /**
    * Default constructor.
    */
@@ -95,6 +102,47 @@ public final class Matrix {
     return m;
   }
 
+  /**
+   * Copies the matrix values into the given array (allocation-free version of {@link #get()}).
+   * @param dst destination array (at least 16 elements)
+   */
+  public void get(double dst[]) {
+    System.arraycopy(mMatrix, 0, dst, 0, 16);
+  }
+
+  /**
+   * Copies the matrix values into the given array at the given offset.
+   * @param dst destination array
+   * @param off index of the first value in the destination
+   */
+  public void get(double dst[], int off) {
+    System.arraycopy(mMatrix, 0, dst, off, 16);
+  }
+
+  /**
+   * Sets all matrix values from the given array (the counterpart of {@link #get(double[], int)}).
+   * @param src source array
+   * @param off index of the first value in the source
+   */
+  public void set(double src[], int off) {
+    System.arraycopy(src, off, mMatrix, 0, 16);
+  }
+
+  /**
+   * Checks whether the matrix values are the same as the given ones
+   * (same semantics as {@link #equals(Object)}).
+   * @param values matrix values (16 elements)
+   * @return true if all values are equal
+   */
+  public boolean hasValues(double values[]) {
+    for (int i = 0; i < 16; i++) {
+      if (Double.doubleToLongBits(mMatrix[i]) != Double.doubleToLongBits(values[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   /**
    * Sets the desired matrix to the identity matrix.
    * @param m the matrix to be modified
@@ -127,15 +175,18 @@ public final class Matrix {
   }
 
   private void preMultiply(double b[]) {
-    System.arraycopy(mMatrix, 0, tmp, 0, 16);
-    for (int i = 0; i < 4; i++) {
-      for (int j = 0; j < 4; j++) {
-        mMatrix[(i << 2) + j] = 0.0;
-        mMatrix[(i << 2) + j] += tmp[(i << 2) + 0] * b[(0 << 2) + j];
-        mMatrix[(i << 2) + j] += tmp[(i << 2) + 1] * b[(1 << 2) + j];
-        mMatrix[(i << 2) + j] += tmp[(i << 2) + 2] * b[(2 << 2) + j];
-        mMatrix[(i << 2) + j] += tmp[(i << 2) + 3] * b[(3 << 2) + j];
-      }
+    if (b == mMatrix) {
+      System.arraycopy(b, 0, tmp, 0, 16);
+      b = tmp;
+    }
+    // Row by row: each row of the result only depends on the same row of the object matrix
+    double[] m = mMatrix;
+    for (int i = 0; i < 16; i += 4) {
+      double t0 = m[i], t1 = m[i + 1], t2 = m[i + 2], t3 = m[i + 3];
+      m[i] = t0 * b[0] + t1 * b[4] + t2 * b[8] + t3 * b[12];
+      m[i + 1] = t0 * b[1] + t1 * b[5] + t2 * b[9] + t3 * b[13];
+      m[i + 2] = t0 * b[2] + t1 * b[6] + t2 * b[10] + t3 * b[14];
+      m[i + 3] = t0 * b[3] + t1 * b[7] + t2 * b[11] + t3 * b[15];
     }
   }
 
@@ -150,15 +201,18 @@ public final class Matrix {
   }
 
   private void postMultiply(double b[]) {
-    System.arraycopy(mMatrix, 0, tmp, 0, 16);
-    for (int i = 0; i < 4; i++) {
-      for (int j = 0; j < 4; j++) {
-        mMatrix[(i << 2) + j] = 0;
-        mMatrix[(i << 2) + j] += b[(i << 2) + 0] * tmp[(0 << 2) + j];
-        mMatrix[(i << 2) + j] += b[(i << 2) + 1] * tmp[(1 << 2) + j];
-        mMatrix[(i << 2) + j] += b[(i << 2) + 2] * tmp[(2 << 2) + j];
-        mMatrix[(i << 2) + j] += b[(i << 2) + 3] * tmp[(3 << 2) + j];
-      }
+    if (b == mMatrix) {
+      System.arraycopy(b, 0, tmp, 0, 16);
+      b = tmp;
+    }
+    // Column by column: each column of the result only depends on the same column of the object matrix
+    double[] m = mMatrix;
+    for (int j = 0; j < 4; j++) {
+      double t0 = m[j], t1 = m[4 + j], t2 = m[8 + j], t3 = m[12 + j];
+      m[j] = b[0] * t0 + b[1] * t1 + b[2] * t2 + b[3] * t3;
+      m[4 + j] = b[4] * t0 + b[5] * t1 + b[6] * t2 + b[7] * t3;
+      m[8 + j] = b[8] * t0 + b[9] * t1 + b[10] * t2 + b[11] * t3;
+      m[12 + j] = b[12] * t0 + b[13] * t1 + b[14] * t2 + b[15] * t3;
     }
   }
 
@@ -183,8 +237,11 @@ public final class Matrix {
    * @param z amount of translation along the z axis
    */
   public void translate(double x, double y, double z) {
-    makeTranslationMatrix(tmp2, x, y, z);
-    preMultiply(tmp2);
+    // Only the last column changes
+    double[] m = mMatrix;
+    for (int i = 0; i < 16; i += 4) {
+      m[i + 3] = m[i] * x + m[i + 1] * y + m[i + 2] * z + m[i + 3];
+    }
   }
 
   /**
@@ -192,8 +249,7 @@ public final class Matrix {
    * @param theta angle of rotation in radians
    */
   public void rotateX(double theta) {
-    makeRotationMatrix(tmp2, 1, 2, theta);
-    preMultiply(tmp2);
+    rotate(1, 2, theta);
   }
 
   /**
@@ -201,8 +257,7 @@ public final class Matrix {
    * @param theta angle of rotation in radians
    */
   public void rotateY(double theta) {
-    makeRotationMatrix(tmp2, 2, 0, theta);
-    preMultiply(tmp2);
+    rotate(2, 0, theta);
   }
 
   /**
@@ -210,8 +265,7 @@ public final class Matrix {
    * @param theta angle of rotation in radians
    */
   public void rotateZ(double theta) {
-    makeRotationMatrix(tmp2, 0, 1, theta);
-    preMultiply(tmp2);
+    rotate(0, 1, theta);
   }
 
   /**
@@ -239,8 +293,68 @@ public final class Matrix {
    * @param z scale factor along the z axis
    */
   public void scale(double x, double y, double z) {
-    makeScaleMatrix(tmp2, x, y, z);
-    preMultiply(tmp2);
+    double[] m = mMatrix;
+    for (int i = 0; i < 16; i += 4) {
+      m[i] *= x;
+      m[i + 1] *= y;
+      m[i + 2] *= z;
+    }
+  }
+
+  /**
+   * In-place version of premultiplying by the rotation matrix which rotates
+   * axis i towards axis j by theta: only columns i and j change.
+   */
+  private void rotate(int i, int j, double theta) {
+    double c = Math.cos(theta);
+    double s = Math.sin(theta);
+    double[] m = mMatrix;
+    for (int r = 0; r < 16; r += 4) {
+      double a = m[r + i];
+      double b = m[r + j];
+      // Keep the summation order of the general multiplication
+      if (i < j) {
+        m[r + i] = a * c + b * s;
+        m[r + j] = a * -s + b * c;
+      } else {
+        m[r + i] = b * s + a * c;
+        m[r + j] = b * c + a * -s;
+      }
+    }
+  }
+
+  /**
+   * Sets the object matrix to T1 * R * T2, i.e. translation by (x1, y1, z1),
+   * then rotation by theta about the given axis, then translation by (x2, y2, z2)
+   * (the same as identity(), translate(x1, y1, z1), rotateX/Y/Z(theta), translate(x2, y2, z2)).
+   * Typical use: rotating an object about an axis parallel to a coordinate axis.
+   * @param x1 1st translation along the x axis
+   * @param y1 1st translation along the y axis
+   * @param z1 1st translation along the z axis
+   * @param axis rotation axis: {@link #AXIS_X}, {@link #AXIS_Y} or {@link #AXIS_Z}
+   * @param theta angle of rotation in radians
+   * @param x2 2nd translation along the x axis
+   * @param y2 2nd translation along the y axis
+   * @param z2 2nd translation along the z axis
+   */
+  public void composeTRT(double x1, double y1, double z1, int axis, double theta, double x2, double y2, double z2) {
+    makeTranslationMatrix(mMatrix, x1, y1, z1);
+    switch (axis) {
+      case AXIS_X:
+        rotate(1, 2, theta);
+        break;
+      case AXIS_Y:
+        rotate(2, 0, theta);
+        break;
+      case AXIS_Z:
+        rotate(0, 1, theta);
+        break;
+      default:
+        throw new IllegalArgumentException("axis: " + axis);
+    }
+    if (x2 != 0.0 || y2 != 0.0 || z2 != 0.0) {
+      translate(x2, y2, z2);
+    }
   }
 
   //----- INVERTING A 4x4 THAT WAS CREATED BY TRANSLATIONS+ROTATIONS+SCALES
@@ -280,8 +394,45 @@ public final class Matrix {
   }
 
   public void transformPoint(double x, double y, double z, double v[]) {
-    for (int i = 0; i < 3; i++) {
-      v[i] = mMatrix[(i << 2) + 0] * x + mMatrix[(i << 2) + 1] * y + mMatrix[(i << 2) + 2] * z + mMatrix[(i << 2) + 3];
+    double[] m = mMatrix;
+    v[0] = m[0] * x + m[1] * y + m[2] * z + m[3];
+    v[1] = m[4] * x + m[5] * y + m[6] * z + m[7];
+    v[2] = m[8] * x + m[9] * y + m[10] * z + m[11];
+  }
+
+  /**
+   * Transforms several points stored as x, y, z triplets one after the other.
+   * The source and the destination can be the same array.
+   * @param src source points
+   * @param dst destination points
+   * @param count number of points
+   */
+  public void transformPoints(double[] src, double[] dst, int count) {
+    transformPoints(src, 0, dst, 0, count);
+  }
+
+  /**
+   * Transforms several points stored as x, y, z triplets one after the other.
+   * The source and the destination can be the same array with the same offset.
+   * @param src source points
+   * @param srcOff index of the x coordinate of the first source point
+   * @param dst destination points
+   * @param dstOff index of the x coordinate of the first destination point
+   * @param count number of points
+   */
+  public void transformPoints(double[] src, int srcOff, double[] dst, int dstOff, int count) {
+    double[] m = mMatrix;
+    double m00 = m[0], m01 = m[1], m02 = m[2], m03 = m[3];
+    double m10 = m[4], m11 = m[5], m12 = m[6], m13 = m[7];
+    double m20 = m[8], m21 = m[9], m22 = m[10], m23 = m[11];
+    int end = srcOff + count * 3;
+    for (int si = srcOff, di = dstOff; si < end; si += 3, di += 3) {
+      double x = src[si];
+      double y = src[si + 1];
+      double z = src[si + 2];
+      dst[di] = m00 * x + m01 * y + m02 * z + m03;
+      dst[di + 1] = m10 * x + m11 * y + m12 * z + m13;
+      dst[di + 2] = m20 * x + m21 * y + m22 * z + m23;
     }
   }
 
@@ -313,20 +464,6 @@ public final class Matrix {
     m[(2 << 2) + 3] = z;
   }
 
-  private static void makeRotationMatrix(double m[], int i, int j, double theta) {
-    identity(m);
-    m[(i << 2) + i] = m[(j << 2) + j] = Math.cos(theta);
-    m[(i << 2) + j] = -Math.sin(theta);
-    m[(j << 2) + i] = -m[(i << 2) + j];
-  }
-
-  private static void makeScaleMatrix(double m[], double x, double y, double z) {
-    identity(m);
-    m[(0 << 2) + 0] *= x;
-    m[(1 << 2) + 1] *= y;
-    m[(2 << 2) + 2] *= z;
-  }
-
   @Override
   public String toString() {
     int k = 0;
@@ -0,0 +1,65 @@
+package hu.akusius.palenque.animation.batch;
+
+import java.io.File;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.stream.ImageInputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.w3c.dom.Node;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Bujdosó Ákos
+ */
+public class AnimationExporterTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  public AnimationExporterTest() {
+  }
+
+  @Test
+  public void test1() throws Exception {
+    File out = new File(folder.getRoot(), "anim/test.gif");
+    AnimationExporter ae = new AnimationExporter(100, 6100, 500, 80, 20, 0, out, 3);
+    assertThat(ae.getFrameCount(), equalTo(13));
+    assertThat(ae.getFrameDelay(), equalTo(5));
+    ae.export();
+    assertThat(ae.getExportedFrames(), equalTo(13));
+    assertTrue(out.isFile());
+
+    ImageReader reader = ImageIO.getImageReadersByFormatName("gif").next();
+    try (ImageInputStream iis = ImageIO.createImageInputStream(out)) {
+      reader.setInput(iis);
+      assertThat(reader.getNumImages(true), equalTo(13));
+      for (int i = 0; i < 13; i++) {
+        assertThat(reader.getWidth(i), equalTo(80));
+        assertThat(reader.getHeight(i), equalTo(80));
+      }
+      IIOMetadata metadata = reader.getImageMetadata(0);
+      Node root = metadata.getAsTree("javax_imageio_gif_image_1.0");
+      boolean found = false;
+      for (Node n = root.getFirstChild(); n != null; n = n.getNextSibling()) {
+        if ("GraphicControlExtension".equals(n.getNodeName())) {
+          assertThat(n.getAttributes().getNamedItem("delayTime").getNodeValue(), equalTo("5"));
+          found = true;
+        }
+      }
+      assertTrue(found);
+    } finally {
+      reader.dispose();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void test2() {
+    new AnimationExporter(0, 100, 1, 100, 0, 0, folder.getRoot(), 1);
+  }
+}
@@ -0,0 +1,46 @@
+package hu.akusius.palenque.animation.batch;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import javax.imageio.ImageIO;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Bujdosó Ákos
+ */
+public class BatchRendererTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  public BatchRendererTest() {
+  }
+
+  @Test
+  public void test1() throws Exception {
+    File out = new File(folder.getRoot(), "frames");
+    BatchRenderer br = new BatchRenderer(100, 4100, 1000, 80, out, 2);
+    assertThat(br.getFrameCount(), equalTo(5));
+    br.render();
+    assertThat(br.getRenderedFrames(), equalTo(5));
+    for (int frame = 100; frame <= 4100; frame += 1000) {
+      File file = br.getFile(frame);
+      assertTrue(file.isFile());
+      BufferedImage image = ImageIO.read(file);
+      assertThat(image.getWidth(), equalTo(80));
+      assertThat(image.getHeight(), equalTo(80));
+    }
+    assertThat(out.list().length, equalTo(5));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void test2() {
+    new BatchRenderer(10, 5, 1, 100, folder.getRoot(), 1);
+  }
+}
@@ -1,6 +1,7 @@
 package hu.akusius.palenque.animation.op;
 
 import org.junit.Test;
+import org.other.Matrix;
 import util.EventTester;
 
 import static org.hamcrest.CoreMatchers.*;
@@ -59,4 +60,72 @@ public class DisplayManagerTest {
     et.clear();
   }
 
+  @Test
+  public void test2() {
+    // A foglalás nélküli lekérdezés ugyanazt adja
+    PlayManager pm = new PlayManager();
+    DisplayManager dm = new DisplayManager(pm);
+    Matrix cam = new Matrix();
+    for (int frame = 0; frame <= FrameInfo.getMaxFrameNum(); frame += 37) {
+      pm.getFrameSlider().setValue(frame);
+      dm.getCameraMatrix(cam);
+      assertThat(cam, equalTo(dm.getCameraMatrix()));
+    }
+
+    // Kézi forgatás az automatikus kamerából folytatódik
+    pm.getFrameSlider().setValue(FrameInfo.getMaxFrameNum() - 10);
+    Matrix auto = dm.getCameraMatrix();
+    dm.translate(1d, 0d);
+    dm.translate(-1d, 0d);
+    dm.getCameraMatrix(cam);
+    assertThat(cam.hasRotation(), equalTo(auto.hasRotation()));
+    for (int i = 0; i < 4; i++) {
+      for (int j = 0; j < 4; j++) {
+        assertEquals(auto.get(i, j), cam.get(i, j), 1e-12);
+      }
+    }
+    dm.rotate(.3d, 0d);
+    dm.getCameraMatrix(cam);
+    assertThat(cam, equalTo(dm.getCameraMatrix()));
+    assertThat(cam, not(equalTo(auto)));
+  }
+
+  @Test
+  public void test3() {
+    // Kézi nagyítás vagy az automatikus mód kikapcsolása után már nem az automatikus kamera érvényes
+    PlayManager pm = new PlayManager();
+    DisplayManager dm = new DisplayManager(pm);
+    PropSliderFrame fs = pm.getFrameSlider();
+
+    fs.setValue(1000);
+    assertTrue(dm.isAutoCamera());
+    Matrix auto = dm.getCameraMatrix();
+    dm.adjustZoom(1.5d);
+    assertFalse(dm.isAutoCamera());
+    Matrix cam = dm.getCameraMatrix();
+    for (int i = 0; i < 4; i++) {
+      for (int j = 0; j < 4; j++) {
+        assertEquals(auto.get(i, j), cam.get(i, j), 1e-12);
+      }
+    }
+    fs.setValue(2000);
+    assertFalse(dm.isAutoCamera());
+    assertThat(dm.getCameraMatrix(), equalTo(cam));
+
+    fs.setValue(500);
+    dm.getAutoToggle().setSelected(true);
+    assertTrue(dm.isAutoCamera());
+    assertThat(dm.getZoom(), not(equalTo(1.0)));
+    dm.resetZoom();
+    assertFalse(dm.isAutoCamera());
+    fs.setValue(3000);
+    assertFalse(dm.isAutoCamera());
+
+    dm.getAutoToggle().setSelected(true);
+    assertTrue(dm.isAutoCamera());
+    dm.getAutoToggle().setSelected(false);
+    assertFalse(dm.isAutoCamera());
+    fs.setValue(4000);
+    assertFalse(dm.isAutoCamera());
+  }
 }
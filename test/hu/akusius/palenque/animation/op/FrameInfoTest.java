@@ -90,4 +90,16 @@ public class FrameInfoTest {
     }
   }
 
+  @Test
+  public void test4() {
+    // Közös példányok, nincs foglalás
+    int maxFrameNum = FrameInfo.getMaxFrameNum();
+    for (int frame = 0; frame < maxFrameNum; frame++) {
+      FrameInfo fi = FrameInfo.getFrameInfo(frame);
+      assertThat(FrameInfo.getFrameInfo(frame), sameInstance(fi));
+      assertThat(FrameInfo.getFrameInfo(fi.getStepNum(), fi.getPercent()), sameInstance(fi));
+    }
+    assertThat(FrameInfo.getFrameInfo(maxFrameNum + 10), sameInstance(FrameInfo.getFrameInfo(maxFrameNum)));
+    assertThat(FrameInfo.getFrameInfo(-10), sameInstance(FrameInfo.getFrameInfo(0)));
+  }
 }
@@ -1,6 +1,11 @@
 package hu.akusius.palenque.animation.op;
 
 import java.awt.event.ActionEvent;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
 import javax.swing.Timer;
 import org.junit.Test;
 
@@ -56,6 +61,24 @@ public class PlayManagerTest {
     }
   }
 
+  private static final class TestClock extends PlayClock {
+
+    private long time = 0;
+
+    @Override
+    long nanoTime() {
+      return time;
+    }
+
+    public void advance(long msec) {
+      time += msec * 1000000L;
+    }
+
+    public void advanceNanos(long nanos) {
+      time += nanos;
+    }
+  }
+
   public PlayManagerTest() {
   }
 
@@ -372,4 +395,194 @@ public class PlayManagerTest {
     assertFalse(sf.isEnabled());
     assertTrue(frameSlider.isLastFrame());
   }
+
+  @Test
+  public void test7() {
+    TestTimer timer = new TestTimer();
+    TestClock clock = new TestClock();
+    PlayManager pm = new PlayManager(timer, clock);
+
+    PropSliderFrame fs = pm.getFrameSlider();
+    PropToggle playing = pm.getPlayingToggle();
+    PropSlider speed = pm.getSpeedSlider();
+
+    speed.setValue(3);
+    assertThat(pm.getFrameRate(), equalTo(320));
+
+    playing.setSelected(true);
+    assertThat(pm.getMeasuredFps(), equalTo(0.0));
+
+    // Pontos ütem
+    clock.advance(50);
+    timer.tick();
+    assertThat(fs.getValue(), equalTo(16));
+    assertThat(pm.getDroppedFrames(), equalTo(0L));
+
+    // Késve érkező ütem: képkockák maradnak ki, de a lejátszás nem lassul le
+    clock.advance(150);
+    timer.tick();
+    assertThat(fs.getValue(), equalTo(64));
+    assertThat(pm.getDroppedFrames(), equalTo(32L));
+
+    // Túl korai ütem: nincs léptetés
+    clock.advance(1);
+    timer.tick();
+    assertThat(fs.getValue(), equalTo(64));
+
+    // Ugrás után onnan folytatódik
+    fs.setValue(1000);
+    clock.advance(100);
+    timer.tick();
+    assertThat(fs.getValue(), equalTo(1032));
+
+    // Sebességváltás után az új sebességgel
+    speed.setValue(4);
+    clock.advance(100);
+    timer.tick();
+    assertThat(fs.getValue(), equalTo(1096));
+
+    // Mért sebesség: 1 másodpercnyi megjelenített képkocka után
+    for (int i = 0; i < 20; i++) {
+      clock.advance(50);
+      timer.tick();
+      pm.framePresented(fs.getValue());
+    }
+    assertTrue(pm.getMeasuredFps() > 0.0);
+    assertTrue(pm.getDispatchTime() >= 0.0);
+
+    playing.setSelected(false);
+    assertThat(pm.getMeasuredFps(), equalTo(0.0));
+  }
+
+  @Test
+  public void test8() {
+    TestTimer timer = new TestTimer();
+    TestClock clock = new TestClock();
+    PlayManager pm = new PlayManager(timer, clock);
+
+    PropSliderFrame fs = pm.getFrameSlider();
+    pm.getSpeedSlider().setValue(0);
+    assertThat(pm.getFrameRate(), equalTo(40));
+
+    final int[] events = new int[1];
+    pm.addPropertyChangeListener(PlayManager.PROP_DROPPED_FRAMES, new PropertyChangeListener() {
+      @Override
+      public void propertyChange(PropertyChangeEvent evt) {
+        events[0]++;
+      }
+    });
+    pm.getPlayingToggle().setSelected(true);
+
+    // Ütemenként 2 képkocka a várható, a kisebb ugrás nem kimaradás
+    for (int i = 0; i < 10; i++) {
+      clock.advance(50);
+      timer.tick();
+    }
+    assertThat(fs.getValue(), equalTo(20));
+    clock.advance(30);
+    timer.tick();
+    assertThat(fs.getValue(), equalTo(21));
+    assertThat(pm.getDroppedFrames(), equalTo(0L));
+    assertThat(events[0], equalTo(0));
+
+    // Késve érkező ütem: 8 képkockás ugrás, ebből 6 maradt ki
+    clock.advance(200);
+    timer.tick();
+    assertThat(fs.getValue(), equalTo(29));
+    assertThat(pm.getDroppedFrames(), equalTo(6L));
+    assertThat(events[0], equalTo(1));
+
+    // Ugrás után nem számít kimaradásnak
+    fs.setValue(2000);
+    clock.advance(50);
+    timer.tick();
+    assertThat(fs.getValue(), equalTo(2002));
+    assertThat(pm.getDroppedFrames(), equalTo(6L));
+  }
+
+  /**
+   * A mért sebesség és késleltetés a megjelenített képkockákból
+   */
+  @Test
+  public void test10() {
+    TestTimer timer = new TestTimer();
+    TestClock clock = new TestClock();
+    PlayManager pm = new PlayManager(timer, clock);
+    PropSliderFrame fs = pm.getFrameSlider();
+    pm.getSpeedSlider().setValue(3);
+    pm.getPlayingToggle().setSelected(true);
+
+    // Megjelenítés nélkül az ütemek nem számítanak
+    for (int i = 0; i < 40; i++) {
+      clock.advance(25);
+      timer.tick();
+    }
+    assertThat(pm.getMeasuredFps(), equalTo(0.0));
+
+    // Minden második ütem képkockája jelenik meg, 10 msec késéssel (60 msec-enként egy);
+    // az ismételt megjelenítés nem számít
+    for (int i = 0; i < 40; i++) {
+      clock.advance(25);
+      timer.tick();
+      if (i % 2 == 1) {
+        clock.advance(10);
+        pm.framePresented(fs.getValue());
+        pm.framePresented(fs.getValue());
+      }
+    }
+    assertEquals(1000.0 / 60, pm.getMeasuredFps(), 1.0);
+    assertEquals(10.0, pm.getRenderLatency(), 0.001);
+
+    // A korábbi képkocka megjelenítése nem módosítja a késleltetést
+    clock.advance(25);
+    timer.tick();
+    clock.advance(5);
+    pm.framePresented(fs.getValue() - 8);
+    assertEquals(10.0, pm.getRenderLatency(), 0.001);
+    pm.framePresented(fs.getValue());
+    assertEquals(5.0, pm.getRenderLatency(), 0.001);
+
+    pm.getPlayingToggle().setSelected(false);
+    assertThat(pm.getMeasuredFps(), equalTo(0.0));
+  }
+
+  /**
+   * Az előrejelzett képkockák előre betöltése szimulált lejátszás közben: a megjelenő képkockák a tárban vannak
+   */
+  @Test
+  public void test9() {
+    TestTimer timer = new TestTimer();
+    TestClock clock = new TestClock();
+    PlayManager pm = new PlayManager(timer, clock);
+    PropSliderFrame fs = pm.getFrameSlider();
+
+    // Az időzítő a névlegesnél lassabban és ingadozva ütemez
+    Random random = new Random(1);
+    for (int speed = 0; speed <= 4; speed++) {
+      pm.getSpeedSlider().setValue(speed);
+      fs.setValue(0);
+      pm.getPlayingToggle().setSelected(true);
+      assertThat(pm.predictFrame(0), equalTo(0));
+
+      Set<Integer> cache = new HashSet<>();
+      int ticks = 0, hits = 0;
+      for (int i = 0; i < 200 && pm.getPlayingToggle().isSelected(); i++) {
+        clock.advanceNanos(53000000L + random.nextInt(400000) - 200000);
+        timer.tick();
+        if (i >= 10) {
+          // A mért ütemidő beállása után
+          ticks++;
+          if (cache.contains(fs.getValue())) {
+            hits++;
+          }
+        }
+        for (int k = 1; k <= 8; k++) {
+          cache.add(pm.predictFrame(k * pm.getTickInterval()));
+        }
+      }
+      assertTrue("speed " + speed + ": " + hits + "/" + ticks, hits >= ticks * 9 / 10);
+      pm.getPlayingToggle().setSelected(false);
+      assertThat(pm.predictFrame(1000000000L), equalTo(fs.getValue()));
+    }
+  }
 }
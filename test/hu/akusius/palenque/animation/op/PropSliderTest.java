@@ -1,5 +1,6 @@
 package hu.akusius.palenque.animation.op;
 
+import hu.akusius.palenque.animation.util.IntValueListener;
 import org.junit.Test;
 import util.EventTester;
 
@@ -145,4 +146,53 @@ public class PropSliderTest {
     p.setValue(1);
     assertThat(p.getValue(), equalTo(1));
   }
+
+  @Test
+  public void test7() {
+    final PropSlider p = new PropSlider(1, 10, 5);
+    final StringBuilder sb = new StringBuilder();
+    IntValueListener l1 = new IntValueListener() {
+      @Override
+      public void valueChanged(Object source, int oldValue, int newValue) {
+        assertThat(source, sameInstance((Object) p));
+        sb.append("a").append(oldValue).append(newValue);
+      }
+    };
+    IntValueListener l2 = new IntValueListener() {
+      @Override
+      public void valueChanged(Object source, int oldValue, int newValue) {
+        sb.append("b").append(newValue);
+      }
+    };
+    p.addIntValueListener(l1);
+    p.addIntValueListener(l2);
+    p.addIntValueListener(null);
+
+    EventTester et = new EventTester();
+    p.addPropertyChangeListener(PropSlider.PROP_VALUE, et.propertyChangeListener);
+
+    p.setValue(3);
+    assertThat(sb.toString(), equalTo("a53b3"));
+    assertTrue(et.hadPropertyChange(PropSlider.PROP_VALUE, 5, 3));
+
+    // Változatlan érték: nincs jelzés
+    sb.setLength(0);
+    et.clear();
+    p.setValueInternal(3);
+    assertThat(sb.length(), equalTo(0));
+    assertFalse(et.hadAnyEvent());
+
+    p.removeIntValueListener(l1);
+    p.removePropertyChangeListener(PropSlider.PROP_VALUE, et.propertyChangeListener);
+    p.setValue(4);
+    assertThat(sb.toString(), equalTo("b4"));
+    assertFalse(et.hadAnyEvent());
+
+    // Csak az engedélyezettség figyelése
+    p.addPropertyChangeListener(PropSlider.PROP_ENABLED, et.propertyChangeListener);
+    p.setValue(6);
+    assertFalse(et.hadAnyEvent());
+    p.setEnabled(false);
+    assertTrue(et.hadPropertyChange(PropSlider.PROP_ENABLED, true, false));
+  }
 }
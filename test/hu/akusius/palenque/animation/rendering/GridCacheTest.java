@@ -0,0 +1,85 @@
+package hu.akusius.palenque.animation.rendering;
+
+import org.junit.Test;
+
+import static hu.akusius.palenque.animation.rendering.Grid.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Bujdosó Ákos
+ */
+public class GridCacheTest {
+
+  public GridCacheTest() {
+  }
+
+  private static Grid createGrid() {
+    Grid grid = new Grid(7, 1, 2);
+    grid.addTriplet(2, 2);
+    grid.addItem(ITEM_STAR, -1, 2);
+    return grid;
+  }
+
+  /**
+   * Tartalom szerinti azonosság
+   */
+  @Test
+  public void test1() {
+    Grid g1 = createGrid();
+    Grid g2 = createGrid();
+    assertThat(g1.contentEquals(g2), is(true));
+    assertThat(g1.contentHash(), is(g2.contentHash()));
+
+    g2.setCenter(0, 0);
+    assertThat(g1.contentEquals(g2), is(false));
+    g2.setCenter(1, 2);
+    g2.addItem(ITEM_SQUARE, -2, 2);
+    assertThat(g1.contentEquals(g2), is(false));
+
+    Grid i1 = GridCache.intern(g1);
+    assertThat(i1, sameInstance(g1));
+    assertThat(i1.isLocked(), is(true));
+    Grid g3 = createGrid();
+    assertThat(GridCache.intern(g3), sameInstance(g1));
+    // Csak az eltárolt példány lesz lezárva
+    assertThat(g3.isLocked(), is(false));
+  }
+
+  /**
+   * Műveletek eredményei
+   */
+  @Test
+  public void test2() {
+    Grid grid = createGrid();
+
+    Grid rotated = GridCache.rotate(grid, 3, true);
+    assertThat(rotated.isLocked(), is(true));
+    assertThat(GridCache.rotate(createGrid(), 3, true), sameInstance(rotated));
+    assertThat(GridCache.rotate(grid, 3, false), not(sameInstance(rotated)));
+    Grid expected = createGrid();
+    expected.rotate(3, true);
+    assertThat(rotated.contentEquals(expected), is(true));
+
+    Grid octupled = GridCache.octuple(grid);
+    assertThat(GridCache.octuple(createGrid()), sameInstance(octupled));
+    expected = createGrid();
+    expected.octuple();
+    assertThat(octupled.contentEquals(expected), is(true));
+
+    Grid moved = GridCache.move(grid, 3, 3);
+    assertThat(moved.getCenterX(), is(3));
+    assertThat(moved.getCenterY(), is(3));
+    assertThat(GridCache.move(moved, 3, 3), sameInstance(moved));
+    assertThat(GridCache.move(createGrid(), 3, 3), sameInstance(moved));
+
+    Grid merged = GridCache.merge(new Grid(21), moved);
+    assertThat(GridCache.merge(new Grid(21), GridCache.move(grid, 3, 3)), sameInstance(merged));
+    expected = new Grid(21);
+    expected.merge(moved);
+    assertThat(merged.contentEquals(expected), is(true));
+
+    assertThat(GridCache.size() <= GridCache.MAX_ENTRIES, is(true));
+  }
+}
@@ -0,0 +1,109 @@
+package hu.akusius.palenque.animation.rendering;
+
+import java.util.Arrays;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Bujdosó Ákos
+ */
+public class GridMeshTest {
+
+  public GridMeshTest() {
+  }
+
+  @Test
+  public void test1() {
+    Grid g = new Grid(5);
+    GridMesh mesh = GridMesh.of(g);
+    assertThat(mesh.getVertexCount(), equalTo(0));
+    assertThat(mesh.getLineCount(), equalTo(0));
+    assertThat(mesh.getSymbols().length, equalTo(0));
+
+    // Egy négyzet: 2 vízszintes és 2 függőleges vonal
+    g.addItem(Grid.ITEM_SQUARE, 0, 0);
+    mesh = GridMesh.of(g);
+    assertThat(mesh.getLineCount(), equalTo(4));
+    assertThat(mesh.getSymbolVertexCount(), equalTo(0));
+    assertArrayEquals(new double[]{
+      -.5, -.5, 0, .5, -.5, 0,
+      -.5, .5, 0, .5, .5, 0,
+      -.5, .5, 0, -.5, -.5, 0,
+      .5, .5, 0, .5, -.5, 0}, mesh.getVertices(), 0.0);
+
+    // Vízszintes hármas: a vízszintes vonalak összevonódnak
+    g.addTriplet(0, 0, true);
+    mesh = GridMesh.of(g);
+    assertThat(mesh.getLineCount(), equalTo(6));
+    assertArrayEquals(new double[]{-1.5, -.5, 0, 1.5, -.5, 0},
+            Arrays.copyOfRange(mesh.getVertices(), 0, 6), 0.0);
+  }
+
+  @Test
+  public void test2() {
+    Grid g = new Grid(7, 10, 20);
+    g.addItem(Grid.ITEM_STAR, 9, 19);
+    g.addItem(Grid.ITEM_SUN, 11, 21);
+    GridMesh mesh = GridMesh.of(g);
+    assertArrayEquals(new byte[]{Grid.ITEM_STAR, Grid.ITEM_SUN}, mesh.getSymbols());
+    assertThat(mesh.getSymbolVertexCount(), equalTo(GridMesh.STAR_VERTICES + GridMesh.SUN_VERTICES));
+    assertThat(mesh.getLineCount(), equalTo(0));
+    double[] vs = mesh.getVertices();
+    // A csillag 3x3-as téglalapjának BF sarka, majd a középső cella BF sarka
+    assertThat(vs[0], equalTo(7.5));
+    assertThat(vs[1], equalTo(20.5));
+    assertThat(vs[12], equalTo(8.5));
+    assertThat(vs[13], equalTo(19.5));
+    // A nap JA sarka
+    assertThat(vs[(GridMesh.STAR_VERTICES + 2) * 3], equalTo(12.5));
+    assertThat(vs[(GridMesh.STAR_VERTICES + 2) * 3 + 1], equalTo(19.5));
+  }
+
+  @Test
+  public void test3() {
+    Grid g = new Grid(5);
+    g.addTriplet(0, 0);
+    GridMesh mesh = GridMesh.of(g);
+    assertThat(GridMesh.of(g), sameInstance(mesh));
+
+    // Módosítás után újra kell építeni
+    g.setCenter(1, 1);
+    GridMesh mesh2 = GridMesh.of(g);
+    assertThat(mesh2, not(sameInstance(mesh)));
+    assertThat(mesh2.getVertices()[0], equalTo(mesh.getVertices()[0] + 1));
+
+    g.rotate(1, true);
+    assertThat(GridMesh.of(g), not(sameInstance(mesh2)));
+
+    // A lezárt négyzetrács hálója mindig ugyanaz
+    g.lock();
+    mesh = GridMesh.of(g);
+    assertThat(GridMesh.of(g), sameInstance(mesh));
+    assertThat(GridMesh.of(StepScene.forStep(12).getGrid(0)), sameInstance(GridMesh.of(StepScene.forStep(12).getGrid(0))));
+  }
+
+  /**
+   * Ritka és bitsíkos tárolás ugyanazt a hálót adja
+   */
+  @Test
+  public void test4() {
+    for (int step = 0; step < 22; step++) {
+      StepScene scene = StepScene.forStep(step);
+      for (int i = 0; i < scene.getGridCount(); i++) {
+        Grid g = scene.getGrid(i);
+        Grid sparse = new Grid(g.getSize(), g.getCenterX(), g.getCenterY(), true);
+        sparse.merge(g);
+        assertThat(sparse.isSparse(), is(true));
+        assertThat(sparse.contentEquals(g), is(true));
+        GridMesh m1 = GridMesh.of(g);
+        GridMesh m2 = GridMesh.of(sparse);
+        assertArrayEquals(m1.getVertices(), m2.getVertices(), 0.0);
+        assertArrayEquals(m1.getSymbols(), m2.getSymbols());
+        assertThat(m2.getLineCount(), equalTo(m1.getLineCount()));
+      }
+    }
+  }
+}
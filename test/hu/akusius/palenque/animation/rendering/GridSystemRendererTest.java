@@ -0,0 +1,91 @@
+package hu.akusius.palenque.animation.rendering;
+
+import hu.akusius.palenque.animation.op.DisplayManager;
+import java.awt.Dimension;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+import org.other.Matrix;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Bujdosó Ákos
+ */
+public class GridSystemRendererTest {
+
+  public GridSystemRendererTest() {
+  }
+
+  private static final Viewport vp = new Viewport(new Dimension(400, 300), 1.0);
+
+  private static Matrix camera(int frame) {
+    Matrix m = new Matrix();
+    DisplayManager.getAutoCameraMatrix(frame, m);
+    return m;
+  }
+
+  private static RecordingSink render(GridSystemRenderer renderer, Matrix camera) {
+    RecordingSink sink = new RecordingSink();
+    renderer.render(sink, camera, vp);
+    return sink;
+  }
+
+  /**
+   * Két váltakozó kamera egy példánnyal
+   */
+  @Test
+  public void test1() {
+    Matrix c1 = camera(100);
+    Matrix c2 = camera(2500);
+    RecordingSink r1 = render(new GridSystemRenderer(), c1);
+    RecordingSink r2 = render(new GridSystemRenderer(), c2);
+    assertThat(r1, not(equalTo(r2)));
+
+    GridSystemRenderer shared = new GridSystemRenderer();
+    for (int i = 0; i < 4; i++) {
+      assertThat(render(shared, c1), equalTo(r1));
+      assertThat(render(shared, c2), equalTo(r2));
+    }
+    assertThat(render(shared, null), equalTo(render(new GridSystemRenderer(), null)));
+
+    // Változatlan kamerához a tárolt projekció tartozik
+    GridSystemRenderer.Projection p = shared.getProjection(c1, vp);
+    assertThat(shared.getProjection(c1, vp), sameInstance(p));
+  }
+
+  /**
+   * Különböző kamerával rajzoló szálak nem írják felül egymás projekcióját
+   */
+  @Test
+  public void test2() throws Exception {
+    final GridSystemRenderer shared = new GridSystemRenderer();
+    final Matrix c1 = camera(100);
+    final Matrix c2 = camera(2500);
+    final RecordingSink r2 = render(new GridSystemRenderer(), c2);
+    GridSystemRenderer.Projection p1 = shared.getProjection(c1, vp);
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<Boolean> f = executor.submit(new Callable<Boolean>() {
+        @Override
+        public Boolean call() {
+          boolean ok = true;
+          for (int i = 0; i < 20; i++) {
+            ok &= render(shared, c2).equals(r2);
+          }
+          return ok;
+        }
+      });
+      assertThat(f.get(), is(true));
+    } finally {
+      executor.shutdown();
+    }
+    assertThat(shared.getProjection(c1, vp), sameInstance(p1));
+  }
+
+}
@@ -1,5 +1,6 @@
 package hu.akusius.palenque.animation.rendering;
 
+import java.util.Random;
 import org.junit.Test;
 
 import static hu.akusius.palenque.animation.rendering.Grid.*;
@@ -268,4 +269,149 @@ public class GridTest {
       {ITEM_SQUARE, ITEM_SQUARE, ITEM_SQUARE}
     }), grid.getItems());
   }
+
+  @Test
+  public void test8() {
+    Grid grid = new Grid(3, 5, 7);
+    grid.addItem(ITEM_SQUARE, 4, 6);
+    assertFalse(grid.isLocked());
+    assertThat(grid.lock(), sameInstance(grid));
+    assertTrue(grid.isLocked());
+
+    try {
+      grid.addItem(ITEM_SQUARE, 5, 7);
+      fail();
+    } catch (IllegalStateException ex) {
+    }
+    try {
+      grid.setCenter(0, 0);
+      fail();
+    } catch (IllegalStateException ex) {
+    }
+    try {
+      grid.rotate(1, true);
+      fail();
+    } catch (IllegalStateException ex) {
+    }
+    assertThat(grid.getCenterX(), equalTo(5));
+    assertThat(grid.getCenterY(), equalTo(7));
+
+    Grid gc = grid.cloneGrid(-1, 2);
+    assertFalse(gc.isLocked());
+    assertThat(gc.getCenterX(), equalTo(-1));
+    assertThat(gc.getCenterY(), equalTo(2));
+    assertArrayEquals(grid.getItems(), gc.getItems());
+    gc.addItem(ITEM_SQUARE, -1, 2);
+    assertThat(grid.getItems()[1][1], equalTo(ITEM_EMPTY));
+  }
+
+  /**
+   * A bitmátrix transzponálása
+   */
+  @Test
+  public void test9() {
+    Random rnd = new Random(9);
+    long[] a = new long[64];
+    long[] orig = new long[64];
+    for (int i = 0; i < 64; i++) {
+      a[i] = orig[i] = rnd.nextLong();
+    }
+    PackedGridStorage.transpose64(a);
+    for (int i = 0; i < 64; i++) {
+      for (int j = 0; j < 64; j++) {
+        assertThat(a[i] >>> j & 1L, equalTo(orig[j] >>> i & 1L));
+      }
+    }
+  }
+
+  /**
+   * Több szóból álló sorok
+   */
+  @Test
+  public void test10() {
+    Grid grid = new Grid(131);
+    grid.addItem(ITEM_SQUARE, 60, 10);
+    grid.addItem(ITEM_STAR, -64, 3);
+    grid.addItem(ITEM_SUN, 1, 64);
+
+    Grid rotated = grid.cloneGrid();
+    rotated.rotate(1, false);
+    assertThat(rotated.getItem(10 + 65, -60 + 65), equalTo(ITEM_SQUARE));
+    assertThat(rotated.getItem(3 + 65, 64 + 65), equalTo(ITEM_STAR));
+    assertThat(rotated.getItem(64 + 65, -1 + 65), equalTo(ITEM_SUN));
+    assertThat(rotated.getItem(60 + 65, 10 + 65), equalTo(ITEM_EMPTY));
+
+    Grid octupled = grid.cloneGrid();
+    octupled.octuple();
+    int count = 0;
+    byte[][] items = octupled.getItems();
+    for (byte[] row : items) {
+      for (byte b : row) {
+        if (b != ITEM_EMPTY) {
+          count++;
+        }
+      }
+    }
+    assertThat(count, equalTo(3 * 8));
+    assertThat(octupled.getItem(-60 + 65, 10 + 65), equalTo(ITEM_SQUARE));
+    assertThat(octupled.getItem(64 + 65, -3 + 65), equalTo(ITEM_STAR));
+
+    Grid merged = new Grid(135, 1, -1);
+    merged.merge(octupled);
+    merged.merge(grid);
+    for (int iy = 0; iy < 131; iy++) {
+      for (int ix = 0; ix < 131; ix++) {
+        assertThat(merged.getItem(ix + 1, iy + 3), equalTo(items[iy][ix]));
+      }
+    }
+  }
+
+  /**
+   * Ritka és bitsíkos tárolás (több szóból álló sorokkal) ugyanazt adja
+   */
+  @Test
+  public void test11() {
+    Random rnd = new Random(11);
+    for (int size : new int[]{5, 51, 65, 131}) {
+      int ci = (size - 1) / 2;
+      for (int it = 0; it < 20; it++) {
+        Grid packed = new Grid(size, 0, 0, false);
+        Grid sparse = new Grid(size, 0, 0, true);
+        // Csak négyzetek, hogy a forgatott elemek ne ütközzenek
+        for (int k = 0; k < size; k++) {
+          int x = rnd.nextInt(size) - ci, y = rnd.nextInt(size) - ci;
+          packed.addItem(ITEM_SQUARE, x, y);
+          sparse.addItem(ITEM_SQUARE, x, y);
+        }
+        assertThat(sparse.contentEquals(packed), is(true));
+        assertThat(sparse.contentHash(), is(packed.contentHash()));
+
+        switch (it % 4) {
+          case 0:
+            packed.rotate(1 + it % 3, false);
+            sparse.rotate(1 + it % 3, false);
+            break;
+          case 1:
+            packed.rotate(1 + it % 3, true);
+            sparse.rotate(1 + it % 3, true);
+            break;
+          case 2:
+            packed.octuple();
+            sparse.octuple();
+            break;
+          default:
+            Grid big = new Grid(size + 10, 2, -3, true);
+            big.merge(packed);
+            big.merge(sparse);
+            Grid big2 = new Grid(size + 10, 2, -3, false);
+            big2.merge(sparse);
+            packed = big2;
+            sparse = big;
+        }
+        assertArrayEquals(packed.getItems(), sparse.getItems());
+        assertThat(packed.getItemCount(), is(sparse.getItemCount()));
+        assertThat(sparse.cloneGrid().contentEquals(packed), is(true));
+      }
+    }
+  }
 }
@@ -0,0 +1,79 @@
+package hu.akusius.palenque.animation.rendering;
+
+import hu.akusius.palenque.animation.op.DisplayManager;
+import hu.akusius.palenque.animation.op.FrameInfo;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import org.junit.Test;
+import org.other.Matrix;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Bujdosó Ákos
+ */
+public class LidImageTest {
+
+  public LidImageTest() {
+  }
+
+  @Test
+  public void test1() {
+    // Mipmap szintek
+    LidImage lid = LidImage.get();
+    assertThat(lid.getLevelCount() > 1, is(true));
+    for (int i = 1; i < lid.getLevelCount(); i++) {
+      assertThat(lid.getLevel(i).getWidth(), equalTo(lid.getWidth() >> i));
+      assertThat(lid.getLevel(i).getHeight(), equalTo(lid.getHeight() >> i));
+    }
+    assertThat(lid.getLevelFor(lid.getWidth() * 2, lid.getHeight() * 2), equalTo(0));
+    assertThat(lid.getLevelFor(lid.getWidth() / 2, lid.getHeight() / 2), equalTo(1));
+    assertThat(lid.getLevelFor(lid.getWidth() / 2 + 1, lid.getHeight() / 2), equalTo(0));
+    assertThat(lid.getLevelFor(1, 1), equalTo(lid.getLevelCount() - 1));
+  }
+
+  @Test
+  public void test2() {
+    // Kicsinyített változatok tárolása
+    LidImage lid = LidImage.get();
+    BufferedImage image = lid.getScaled(123, 209);
+    double step = Math.pow(2.0, 1.0 / LidImage.SCALE_STEPS);
+    assertThat(Math.abs(Math.log(image.getWidth() / 123.0)) <= Math.log(step) / 2 + 0.01, is(true));
+    assertThat(Math.abs(Math.log(image.getHeight() / 209.0)) <= Math.log(step) / 2 + 0.01, is(true));
+    assertThat(lid.getScaled(123, 209), sameInstance(image));
+    assertThat(lid.getScaled(image.getWidth(), image.getHeight()), sameInstance(image));
+
+    for (int i = 0; i < 20; i++) {
+      lid.getScaled(20 + 20 * i, 34 + 34 * i);
+    }
+    assertThat(lid.getScaled(123, 209), not(sameInstance(image)));
+
+    assertThat(lid.getScaled(5000, 5000), nullValue());
+  }
+
+  @Test
+  public void test3() {
+    // Az automatikus kamera egymást követő képkockáinál (folyamatos nagyítás) a tárolt változatok használhatók
+    LidImage lid = LidImage.get();
+    Dimension dim = new Dimension(800, 600);
+    Matrix camera = new Matrix();
+    CountingSink sink = new CountingSink();
+    int frames = 0;
+    int misses = lid.getScaledMisses();
+    for (int frame = 0; frame < FrameInfo.getFrameInfo(0).getStepLength(); frame++) {
+      FrameInfo fi = FrameInfo.getFrameInfo(frame);
+      if (fi.getStepNum() != 0 || fi.getPercent() >= 90.0) {
+        continue;
+      }
+      DisplayManager.getAutoCameraMatrix(frame, camera);
+      FrameRenderer.renderFrame(fi, sink, camera, new Viewport(dim, DisplayManager.getAutoZoom(frame)));
+      frames++;
+    }
+    assertThat(frames > 1000, is(true));
+    assertThat(sink.getImageCount(), is((long) frames));
+    misses = lid.getScaledMisses() - misses;
+    assertThat(misses > 0 && misses * 20 < frames, is(true));
+  }
+}
@@ -0,0 +1,77 @@
+package hu.akusius.palenque.animation.rendering;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import org.junit.Test;
+import org.other.Matrix;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Bujdosó Ákos
+ */
+public class LidTextureMapperTest {
+
+  public LidTextureMapperTest() {
+  }
+
+  private static int countDrawn(Matrix m, int size, double zoom) {
+    BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+    Graphics2D g = image.createGraphics();
+    g.setColor(Color.WHITE);
+    g.fillRect(0, 0, size, size);
+    LidRenderer.render(m, g, new Viewport(new Dimension(size, size), zoom));
+    g.dispose();
+    int count = 0;
+    for (int y = 0; y < size; y++) {
+      for (int x = 0; x < size; x++) {
+        if ((image.getRGB(x, y) & 0xFFFFFF) != 0xFFFFFF) {
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
+  @Test
+  public void test1() {
+    // A forgatott kép is megjelenik
+    Matrix m = new Matrix();
+    Matrix.identity(m);
+    m.rotateY(0.5);
+    m.rotateX(0.6);
+    assertThat(m.hasRotation(), is(true));
+    assertThat(countDrawn(m, 300, 1.0) > 1000, is(true));
+
+    // Élből nézve nem látszik
+    Matrix.identity(m);
+    m.rotateX(Math.PI / 2);
+    assertThat(countDrawn(m, 300, 1.0), equalTo(0));
+
+    // Hátulról nézve is látszik (tükrözve)
+    Matrix.identity(m);
+    m.rotateY(Math.PI);
+    assertThat(countDrawn(m, 300, 1.0) > 1000, is(true));
+  }
+
+  @Test
+  public void test2() {
+    // A közeli vágósíkot metsző (részben a kamera mögötti) kép
+    Matrix m = new Matrix();
+    for (int i = 0; i < 16; i++) {
+      Matrix.identity(m);
+      m.rotateX(1.0 + i * 0.05);
+      m.rotateZ(i * 0.4);
+      int count = countDrawn(m, 200, 6.0);
+      assertThat(count >= 0, is(true));
+    }
+
+    Matrix.identity(m);
+    m.rotateX(1.3);
+    assertThat(countDrawn(m, 200, 6.0) > 0, is(true));
+  }
+}
@@ -0,0 +1,151 @@
+package hu.akusius.palenque.animation.rendering;
+
+import hu.akusius.palenque.animation.op.DisplayManager;
+import hu.akusius.palenque.animation.op.FrameInfo;
+import java.awt.AlphaComposite;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import org.junit.Test;
+import org.other.Matrix;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Bujdosó Ákos
+ */
+public class LineSinkTest {
+
+  public LineSinkTest() {
+  }
+
+  /**
+   * Rögzítés, visszajátszás és számlálás
+   */
+  @Test
+  public void test1() {
+    Dimension dim = new Dimension(300, 300);
+    Viewport vp = new Viewport(dim, 1.0);
+    Matrix camera = new Matrix();
+    int mfn = FrameInfo.getMaxFrameNum();
+    for (int frame = 0; frame <= mfn; frame += 97) {
+      DisplayManager.getAutoCameraMatrix(frame, camera);
+      FrameInfo fi = FrameInfo.getFrameInfo(frame);
+
+      CountingSink counting = new CountingSink();
+      counting.setAlpha(0.7f);
+      FrameRenderer.renderFrame(fi, counting, camera, vp);
+      // Az átlátszóság visszaáll
+      assertThat(counting.getAlpha(), is(0.7f));
+
+      RecordingSink rec1 = new RecordingSink();
+      FrameRenderer.renderFrame(fi, rec1, camera, vp);
+      RecordingSink rec2 = new RecordingSink();
+      FrameRenderer.renderFrame(fi, rec2, camera, vp);
+      assertThat(rec1, equalTo(rec2));
+      assertThat(rec1.hashCode(), is(rec2.hashCode()));
+
+      // A visszajátszás ugyanazt eredményezi
+      CountingSink replayed = new CountingSink();
+      replayed.setAlpha(0.7f);
+      rec1.replay(replayed);
+      assertThat(replayed.getLineCount(), is(counting.getLineCount()));
+      assertThat(replayed.getImageCount(), is(counting.getImageCount()));
+      RecordingSink rec3 = new RecordingSink();
+      rec1.replay(rec3);
+      assertThat(rec3, equalTo(rec1));
+
+      assertThat(counting.getLineCount() + counting.getImageCount() > 0, is(true));
+    }
+
+    RecordingSink a = new RecordingSink();
+    a.drawLine(0, 0, 1, 1);
+    RecordingSink b = new RecordingSink();
+    b.drawLine(0, 0, 1, 2);
+    assertThat(a.equals(b), is(false));
+    b.clear();
+    assertThat(b.getSize(), is(0));
+  }
+
+  /**
+   * Raszterizálás
+   */
+  @Test
+  public void test2() {
+    RasterSink sink = new RasterSink(10, 10);
+    sink.clear(0xffffffff);
+    int[] px = sink.getPixels();
+
+    // Vízszintes vonal, a képből kilógva
+    sink.setColor(0xff000000);
+    sink.drawLine(-5, 2, 20, 2);
+    for (int x = 0; x < 10; x++) {
+      assertThat(px[2 * 10 + x], is(0xff000000));
+    }
+    assertThat(px[3 * 10], is(0xffffffff));
+
+    // Átló, mindkét végpont benne
+    sink.setColor(0xffff0000);
+    sink.drawLine(0, 0, 9, 9);
+    for (int i = 0; i < 10; i++) {
+      assertThat(px[i * 10 + i], is(0xffff0000));
+    }
+
+    // Teljesen kívül eső vonal
+    sink.setColor(0xff00ff00);
+    sink.drawLine(-5, -5, -1, 20);
+    sink.drawLine(11, 0, 11, 9);
+    for (int p : px) {
+      assertThat(p, not(0xff00ff00));
+    }
+
+    // Félig átlátszó töröttvonal: a közös pont sem sötétedik jobban
+    sink.clear(0xffffffff);
+    sink.setColor(0xff000000);
+    sink.setAlpha(0.5f);
+    sink.drawPolyline(new int[]{1, 5, 5}, new int[]{7, 7, 9}, 3);
+    assertThat(px[7 * 10 + 3], is(px[7 * 10 + 5]));
+    assertThat(px[7 * 10 + 5], is(px[8 * 10 + 5]));
+    int gray = px[7 * 10 + 5] & 0xff;
+    assertThat(gray > 120 && gray < 135, is(true));
+
+    // Kép nagyítva
+    BufferedImage image = new BufferedImage(2, 2, BufferedImage.TYPE_INT_RGB);
+    image.setRGB(0, 0, 0x112233);
+    image.setRGB(1, 1, 0x445566);
+    sink.setAlpha(1f);
+    sink.drawImage(image, 2, 2, 0, 0, 4, 4);
+    assertThat(px[0], is(0xff112233));
+    assertThat(px[10 + 1], is(0xff112233));
+    assertThat(px[3 * 10 + 3], is(0xff445566));
+    assertThat(px[3 * 10], is(0xff000000));
+    assertThat(sink.toImage().getRGB(3, 3), is(0xff445566));
+  }
+
+  /**
+   * A Graphics2D adapter
+   */
+  @Test
+  public void test3() {
+    BufferedImage image = new BufferedImage(50, 50, BufferedImage.TYPE_INT_RGB);
+    Graphics2D g = image.createGraphics();
+    Graphics2DSink sink = new Graphics2DSink(g);
+    sink.setColor(0x80ff0000);
+    assertThat(sink.getColor(), is(0x80ff0000));
+    assertThat(g.getColor().getRGB(), is(0x80ff0000));
+    sink.setAlpha(0.25f);
+    assertThat(((AlphaComposite) g.getComposite()).getAlpha(), is(0.25f));
+    assertThat(sink.getAlpha(), is(0.25f));
+
+    sink.setAlpha(1f);
+    sink.setColor(0xffffffff);
+    sink.drawSegments(new int[]{0, 0, 49, 0, 0, 49, 49, 49}, 2);
+    assertThat(image.getRGB(25, 0), is(0xffffffff));
+    assertThat(image.getRGB(25, 49), is(0xffffffff));
+    assertThat(image.getRGB(25, 25), is(0xff000000));
+    g.dispose();
+  }
+
+}
@@ -0,0 +1,122 @@
+package hu.akusius.palenque.animation.rendering;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.Test;
+
+import static hu.akusius.palenque.animation.rendering.Grid.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Bujdosó Ákos
+ */
+public class StateAnalyzerTest {
+
+  public StateAnalyzerTest() {
+  }
+
+  private static Grid createGrid() {
+    Grid grid = new Grid(StateAnalyzer.SIZE);
+    grid.addTriplet(2, 2);
+    grid.addItem(ITEM_SQUARE, -25, 25);
+    grid.addItem(ITEM_SUN, 3, -4);
+    grid.addItem(ITEM_STAR, -10, 10);
+    return grid;
+  }
+
+  /**
+   * Szöveges forma
+   */
+  @Test
+  public void test1() {
+    StateAnalyzer.AnalyzedState as = StateAnalyzer.AnalyzedState.of(6, createGrid());
+    String[] lines = as.toText().split("\n", -1);
+    assertThat(lines[0], is("PQS 06"));
+    assertThat(lines[1], is(""));
+    for (int y = 0; y < StateAnalyzer.SIZE; y++) {
+      assertThat(lines[2 + y].length(), is(StateAnalyzer.SIZE));
+    }
+    assertThat(lines[2 + StateAnalyzer.SIZE], is(""));
+
+    // A közép üres, a nap és a csillag környezete a részük
+    assertThat(as.getCellChar(25, 25), is('x'));
+    assertThat(as.getCellChar(28, 29), is('S'));
+    assertThat(as.getCellChar(27, 30), is('s'));
+    assertThat(as.getCellChar(15, 15), is('R'));
+    assertThat(as.getCellChar(16, 14), is('r'));
+    assertThat(as.getCellChar(0, 0), is('Q'));
+
+    assertThat(lines[3 + StateAnalyzer.SIZE], startsWith(String.format("Q %03d -25,+25 ", as.getSquares().length / 2)));
+    assertThat(lines[4 + StateAnalyzer.SIZE], is("S 001 +03,-04"));
+    assertThat(lines[5 + StateAnalyzer.SIZE], is("R 001 -10,+10"));
+    assertArrayEquals(as.getSuns(), new int[]{3, -4});
+  }
+
+  /**
+   * Bináris forma visszaolvasása
+   */
+  @Test
+  public void test2() throws IOException {
+    StateAnalyzer.AnalyzedState as = StateAnalyzer.AnalyzedState.of(12, createGrid());
+    Path path = Files.createTempFile("state", "." + StateAnalyzer.BINARY_EXTENSION);
+    try {
+      Files.write(path, as.toBinary());
+      StateAnalyzer.AnalyzedState read = StateAnalyzer.AnalyzedState.read(path);
+      assertThat(read.getState(), is(12));
+      assertThat(read.getSize(), is(StateAnalyzer.SIZE));
+      assertArrayEquals(read.getSquares(), as.getSquares());
+      assertArrayEquals(read.getStars(), as.getStars());
+      assertThat(read.toText(), equalTo(as.toText()));
+
+      // Hibás fájl
+      byte[] data = as.toBinary();
+      Files.write(path, Arrays.copyOf(data, data.length - 1));
+      try {
+        StateAnalyzer.AnalyzedState.read(path);
+        fail();
+      } catch (IOException ex) {
+      }
+      data[0] = 'X';
+      Files.write(path, data);
+      try {
+        StateAnalyzer.AnalyzedState.read(path);
+        fail();
+      } catch (IOException ex) {
+      }
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  /**
+   * Fájl írása ideiglenes fájlon keresztül
+   */
+  @Test
+  public void test3() throws IOException {
+    Path dir = Files.createTempDirectory("states");
+    Path path = dir.resolve("state01." + StateAnalyzer.EXTENSION);
+    try {
+      StateAnalyzer.writeFile(path, new byte[]{1, 2, 3});
+      StateAnalyzer.writeFile(path, new byte[]{4, 5});
+      assertArrayEquals(Files.readAllBytes(path), new byte[]{4, 5});
+      // Csak a végleges fájl marad meg
+      try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+        int count = 0;
+        for (Path p : ds) {
+          assertThat(p, equalTo(path));
+          count++;
+        }
+        assertThat(count, is(1));
+      }
+    } finally {
+      Files.deleteIfExists(path);
+      Files.delete(dir);
+    }
+  }
+
+}
@@ -0,0 +1,29 @@
+package hu.akusius.palenque.animation.rendering;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Bujdosó Ákos
+ */
+public class StepSceneTest {
+
+  public StepSceneTest() {
+  }
+
+  @Test
+  public void test1() {
+    for (int step = 0; step <= 21; step++) {
+      StepScene scene = StepScene.forStep(step);
+      assertThat(scene.getStep(), equalTo(step));
+      assertThat(StepScene.forStep(step), sameInstance(scene));
+      assertTrue(scene.getGridCount() > 0);
+      for (int i = 0; i < scene.getGridCount(); i++) {
+        assertTrue(scene.getGrid(i).isLocked());
+      }
+    }
+  }
+}
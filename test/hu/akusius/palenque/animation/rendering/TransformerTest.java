@@ -0,0 +1,90 @@
+package hu.akusius.palenque.animation.rendering;
+
+import java.awt.Dimension;
+import org.junit.Test;
+import org.other.Matrix;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Bujdosó Ákos
+ */
+public class TransformerTest {
+
+  public TransformerTest() {
+  }
+
+  private static Matrix createMatrix() {
+    Matrix m = new Matrix();
+    Matrix.identity(m);
+    m.translate(0.5, -2, 30);
+    m.rotateX(0.7);
+    m.rotateZ(-0.3);
+    return m;
+  }
+
+  @Test
+  public void test1() {
+    // A pufferes változatok ugyanazt adják, mint a tömbösek
+    Matrix m = createMatrix();
+    Viewport vp = new Viewport(new Dimension(300, 200), 1.3);
+
+    double[][] points = Transformer.getPoints(-3, 2, 4, -1);
+    double[] buf = new double[4 * 3];
+    Transformer.getPoints(-3, 2, 4, -1, buf, 0);
+    for (int i = 0; i < 4; i++) {
+      assertArrayEquals(points[i], new double[]{buf[i * 3], buf[i * 3 + 1], buf[i * 3 + 2]}, 0.0);
+    }
+
+    double[][] tps = Transformer.transform(points, m);
+    double[] tbuf = new double[2 + 4 * 3];
+    Transformer.transform(buf, 0, tbuf, 2, 4, m);
+    for (int i = 0; i < 4; i++) {
+      assertArrayEquals(tps[i], new double[]{tbuf[2 + i * 3], tbuf[2 + i * 3 + 1], tbuf[2 + i * 3 + 2]}, 0.0);
+    }
+
+    int[][] ps = Transformer.project(tps, vp);
+    assertThat(ps, notNullValue());
+    int[] pbuf = new int[4 * 2];
+    assertTrue(Transformer.transformProject(buf, 0, new double[4 * 3], pbuf, 0, 4, m, vp));
+    for (int i = 0; i < 4; i++) {
+      assertThat(pbuf[i * 2], equalTo(ps[i][0]));
+      assertThat(pbuf[i * 2 + 1], equalTo(ps[i][1]));
+    }
+  }
+
+  @Test
+  public void test2() {
+    // Vonal csonkolása
+    Viewport vp = new Viewport(Viewport.DEFAULT_FL, new Dimension(200, 200), 1.0);
+    double near = vp.getNear();
+    double[][] line = {{-1, 2, near - 10}, {3, -1, near + 10}};
+    int[][] ps = Transformer.projectLine(line, vp);
+
+    double[] buf = {-1, 2, near - 10, 3, -1, near + 10};
+    int[] cs = new int[4];
+    assertTrue(Transformer.projectLine(buf, 0, cs, 0, vp));
+    assertThat(buf[5], equalTo(near));
+    assertArrayEquals(new int[]{ps[0][0], ps[0][1], ps[1][0], ps[1][1]}, cs);
+
+    double[] behind = {0, 0, near + 1, 1, 1, near + 2};
+    assertFalse(Transformer.projectLine(behind, 0, cs, 0, vp));
+    assertFalse(Transformer.project(behind, 0, cs, 0, 1, vp));
+
+    // Nagyobb nagyításnál közelebb van a vágósík
+    Viewport vp2 = new Viewport(Viewport.DEFAULT_FL, new Dimension(200, 200), 2.0);
+    assertTrue(Transformer.project(new double[]{0, 0, near / 2 - 1}, 0, cs, 0, 1, vp2));
+    assertFalse(Transformer.project(new double[]{0, 0, near / 2 + 1}, 0, cs, 0, 1, vp2));
+  }
+
+  @Test
+  public void test3() {
+    // A régi (globális) FL igazítással megegyező értékek
+    assertThat(Viewport.adjustedFL(new Dimension(300, 300)), equalTo(59.0));
+    assertThat(Viewport.adjustedFL(new Dimension(600, 400)), equalTo(400.0 / 7.0 - 1.0));
+    assertThat(new Viewport(new Dimension(300, 200), 1.5), equalTo(new Viewport(new Dimension(300, 200), 1.5)));
+    assertThat(new Viewport(new Dimension(300, 200), 1.5), not(equalTo(new Viewport(new Dimension(300, 201), 1.5))));
+  }
+}
@@ -0,0 +1,119 @@
+package hu.akusius.palenque.animation.rendering;
+
+import hu.akusius.palenque.animation.op.DisplayManager;
+import hu.akusius.palenque.animation.op.FrameInfo;
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.Test;
+import org.other.Matrix;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Bujdosó Ákos
+ */
+public class VectorSinkTest {
+
+  public VectorSinkTest() {
+  }
+
+  private static int count(String s, String part) {
+    int n = 0;
+    for (int i = s.indexOf(part); i >= 0; i = s.indexOf(part, i + 1)) {
+      n++;
+    }
+    return n;
+  }
+
+  /**
+   * Az azonos stílusú szakaszok összevonása, kitöltés
+   * @throws IOException
+   */
+  @Test
+  public void test1() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (SvgWriter sink = new SvgWriter(out, 100, 50)) {
+      sink.setColor(0xffffffff);
+      sink.fill(new Rectangle(0, 0, 100, 50));
+
+      sink.setColor(0xff000000);
+      sink.drawLine(0, 0, 10, 10);
+      sink.drawLine(10, 10, 20, 0);
+      sink.drawPolyline(new int[]{30, 40, 50}, new int[]{0, 10, 0}, 3);
+
+      sink.setAlpha(0.5f);
+      sink.drawLine(0, 20, 100, 20);
+      sink.setAlpha(1f);
+
+      sink.drawSegments(new int[]{10, 5, 15, 5}, 1);
+
+      // A teljesen átlátszó rajzolás kimarad
+      sink.setAlpha(0f);
+      sink.drawLine(0, 40, 100, 40);
+      sink.fill(new Rectangle(0, 0, 10, 10));
+    }
+
+    String svg = out.toString("UTF-8");
+    assertThat(svg, containsString("viewBox=\"0 0 100 50\""));
+    assertThat(count(svg, "<path"), is(4));
+    assertThat(svg, containsString("fill=\"#ffffff\" d=\"M0 0L100 0L100 50L0 50"));
+    assertThat(svg, containsString("d=\"M0 0L10 10L20 0M30 0L40 10L50 0\""));
+    assertThat(svg, containsString("stroke-opacity=\"0.5\" d=\"M0 20L100 20\""));
+    assertThat(svg, containsString("d=\"M10 5L15 5\""));
+    assertThat(svg.trim(), endsWith("</svg>"));
+  }
+
+  /**
+   * Képkockák kirajzolása SVG és PDF formátumban
+   * @throws IOException
+   */
+  @Test
+  public void test2() throws IOException {
+    Dimension dim = new Dimension(400, 400);
+    Matrix camera = new Matrix();
+    Pattern objPattern = Pattern.compile("(\\d+) 0 obj");
+
+    for (int frame : new int[]{0, 1200, 2500, FrameInfo.getMaxFrameNum()}) {
+      DisplayManager.getAutoCameraMatrix(frame, camera);
+      double zoom = DisplayManager.getAutoZoom(frame);
+      FrameInfo fi = FrameInfo.getFrameInfo(frame);
+
+      ByteArrayOutputStream svgOut = new ByteArrayOutputStream();
+      try (SvgWriter sink = new SvgWriter(svgOut, dim.width, dim.height)) {
+        FrameRenderer.renderFrame(fi, sink, camera, new Viewport(dim, zoom));
+      }
+      String svg = svgOut.toString("UTF-8");
+      // Az első képkocka csak a fedélkép
+      assertThat(svg, containsString(frame == 0 ? "<image" : "<path"));
+      assertThat(svg.trim(), endsWith("</svg>"));
+
+      ByteArrayOutputStream pdfOut = new ByteArrayOutputStream();
+      try (PdfWriter sink = new PdfWriter(pdfOut, dim.width, dim.height)) {
+        FrameRenderer.renderFrame(fi, sink, camera, new Viewport(dim, zoom));
+      }
+      String pdf = pdfOut.toString("ISO-8859-1");
+      assertThat(pdf, startsWith("%PDF-1.4"));
+      assertThat(pdf, endsWith("%%EOF\n"));
+
+      // A hivatkozási tábla minden bejegyzése a megfelelő objektumra mutat
+      int xref = Integer.parseInt(pdf.substring(pdf.lastIndexOf("startxref") + 10, pdf.lastIndexOf("%%EOF")).trim());
+      assertThat(pdf.substring(xref), startsWith("xref\n"));
+      String[] lines = pdf.substring(xref).split("\n");
+      int size = Integer.parseInt(lines[1].split(" ")[1]);
+      assertTrue(size >= 5);
+      for (int i = 1; i < size; i++) {
+        int offset = Integer.parseInt(lines[2 + i].substring(0, 10));
+        Matcher m = objPattern.matcher(pdf.substring(offset, offset + 20));
+        assertTrue(m.lookingAt());
+        assertThat(Integer.parseInt(m.group(1)), is(i));
+      }
+    }
+  }
+
+}
@@ -0,0 +1,176 @@
+package hu.akusius.palenque.animation.ui;
+
+import hu.akusius.palenque.animation.op.*;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Bujdosó Ákos
+ */
+public class BackgroundRendererTest {
+
+  private static final int SIZE = 20;
+
+  public BackgroundRendererTest() {
+  }
+
+  private static int colorOf(FrameSnapshot snapshot) {
+    return 0xff000000 | snapshot.getFrameInfo().getFrameNum() * 1000;
+  }
+
+  /**
+   * A kész kép egy képpontja (a befejezéskor hívva a háttérszálon).
+   */
+  private static int frontPixel(BackgroundRenderer br, int x, int y) {
+    BufferedImage image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+    Graphics2D g = image.createGraphics();
+    assertThat(br.blit(g, SIZE, SIZE), notNullValue());
+    g.dispose();
+    return image.getRGB(x, y);
+  }
+
+  private static void await(Semaphore semaphore, int permits) throws InterruptedException {
+    assertTrue(semaphore.tryAcquire(permits, 5, TimeUnit.SECONDS));
+  }
+
+  /**
+   * Rajzolás közben érkező kérések: csak a legutolsó készül el
+   */
+  @Test
+  public void test1() throws InterruptedException {
+    OperationManager om = new OperationManager();
+    FrameSnapshot s = FrameSnapshot.capture(om, new Dimension(SIZE, SIZE));
+
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final List<FrameSnapshot> painted = Collections.synchronizedList(new ArrayList<FrameSnapshot>());
+    BackgroundRenderer.Painter painter = new BackgroundRenderer.Painter() {
+      @Override
+      public void paint(Graphics2D g, FrameSnapshot snapshot) {
+        painted.add(snapshot);
+        g.setColor(new Color(colorOf(snapshot)));
+        g.fillRect(0, 0, SIZE, SIZE);
+        started.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException ex) {
+          throw new RuntimeException(ex);
+        }
+      }
+    };
+
+    final Semaphore completed = new Semaphore(0);
+    final List<String> errors = Collections.synchronizedList(new ArrayList<String>());
+    final BackgroundRenderer[] br = new BackgroundRenderer[1];
+    br[0] = new BackgroundRenderer(painter, new Runnable() {
+      @Override
+      public void run() {
+        // Az első kép mindig a hozzá tartozó pillanatkép szerinti
+        FrameSnapshot fs = br[0].getFrontSnapshot();
+        if (frontPixel(br[0], 0, 0) != colorOf(fs)) {
+          errors.add("front does not match its snapshot: " + fs.getFrameInfo().getFrameNum());
+        }
+        completed.release();
+      }
+    });
+
+    br[0].submit(s.withFrame(1), null);
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    assertThat(br[0].getFrontSnapshot(), nullValue());
+
+    // A rajzolás alatt érkezők közül csak a legutolsó marad meg
+    br[0].submit(s.withFrame(2), null);
+    br[0].submit(s.withFrame(3), null);
+    br[0].submit(s.withFrame(4), null);
+    release.countDown();
+    await(completed, 2);
+
+    assertThat(painted, equalTo(Arrays.asList(s.withFrame(1), s.withFrame(4))));
+    assertThat(br[0].getFrontSnapshot(), equalTo(s.withFrame(4)));
+    assertThat(errors, equalTo(Collections.<String>emptyList()));
+
+    // Eltérő méretnél nincs mit kirajzolni
+    Graphics2D g = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB).createGraphics();
+    assertThat(br[0].blit(g, SIZE + 1, SIZE), nullValue());
+    g.dispose();
+  }
+
+  /**
+   * Gyorstárral: csak a később még szükséges képek kerülnek a tárba, a többi a két puffert használja felváltva
+   */
+  @Test
+  public void test2() throws InterruptedException {
+    OperationManager om = new OperationManager();
+    FrameSnapshot auto = FrameSnapshot.capture(om, new Dimension(SIZE, SIZE));
+    om.getDisplayManager().rotate(0.1, 0.2);
+    FrameSnapshot manual = FrameSnapshot.capture(om, new Dimension(SIZE, SIZE));
+    assertTrue(auto.isAuto());
+    assertFalse(manual.isAuto());
+
+    // Törlés nélkül, a képkocka szerinti képpontot rajzolja: így látszik, melyik puffer került újra elő
+    final List<FrameSnapshot> painted = Collections.synchronizedList(new ArrayList<FrameSnapshot>());
+    BackgroundRenderer.Painter painter = new BackgroundRenderer.Painter() {
+      @Override
+      public void paint(Graphics2D g, FrameSnapshot snapshot) {
+        painted.add(snapshot);
+        g.setColor(Color.WHITE);
+        g.fillRect(snapshot.getFrameInfo().getFrameNum() % SIZE, 0, 1, 1);
+      }
+    };
+    FrameCache cache = new FrameCache(painter, 1 << 20);
+    final Semaphore completed = new Semaphore(0);
+    BackgroundRenderer br = new BackgroundRenderer(painter, new Runnable() {
+      @Override
+      public void run() {
+        completed.release();
+      }
+    }, cache);
+
+    // Kézi kamera: nem kerül a tárba
+    for (int i = 1; i <= 6; i++) {
+      br.submit(manual.withFrame(i), null);
+      await(completed, 1);
+    }
+    assertThat(cache.getSize(), equalTo(0));
+    assertThat(painted.size(), equalTo(6));
+    BufferedImage front = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+    Graphics2D g = front.createGraphics();
+    assertThat(br.blit(g, SIZE, SIZE), notNullValue());
+    g.dispose();
+    for (int i = 1; i <= 6; i++) {
+      // Két puffer felváltva: a 6. képben a 2. és 4. képkocka is benne van, a páratlanok nem
+      assertThat(front.getRGB(i, 0) == 0xffffffff, is(i % 2 == 0));
+    }
+
+    // Automatikus kamera: a tárba kerül, és onnan jelenik meg újra
+    br.submit(auto.withFrame(7), null);
+    await(completed, 1);
+    assertThat(cache.getSize(), equalTo(1));
+    assertTrue(cache.contains(auto.withFrame(7)));
+    br.submit(manual.withFrame(8), null);
+    await(completed, 1);
+    br.submit(auto.withFrame(7), null);
+    await(completed, 1);
+    assertThat(painted.size(), equalTo(8));
+    assertThat(br.getFrontSnapshot(), equalTo(auto.withFrame(7)));
+
+    // A tárolt kép nem módosult a későbbi kirajzolásoktól
+    BufferedImage stored = cache.get(auto.withFrame(7));
+    assertThat(stored.getRGB(7, 0), equalTo(0xffffffff));
+    assertThat(stored.getRGB(8, 0), equalTo(0xff000000));
+  }
+}
@@ -0,0 +1,123 @@
+package hu.akusius.palenque.animation.ui;
+
+import hu.akusius.palenque.animation.op.*;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Bujdosó Ákos
+ */
+public class FrameCacheTest {
+
+  private static final class CountingPainter implements BackgroundRenderer.Painter {
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public void paint(Graphics2D g, FrameSnapshot snapshot) {
+      count.incrementAndGet();
+    }
+  }
+
+  public FrameCacheTest() {
+  }
+
+  @Test
+  public void test1() {
+    OperationManager om = new OperationManager();
+    PropSliderFrame fs = om.getPlayManager().getFrameSlider();
+    Dimension d = new Dimension(10, 10);
+
+    FrameSnapshot s1 = FrameSnapshot.capture(om, d);
+    assertThat(FrameSnapshot.capture(om, d), equalTo(s1));
+    assertThat(FrameSnapshot.capture(om, d).hashCode(), equalTo(s1.hashCode()));
+    assertThat(FrameSnapshot.capture(om, new Dimension(10, 11)), not(equalTo(s1)));
+
+    fs.setValue(1000);
+    FrameSnapshot s2 = FrameSnapshot.capture(om, d);
+    assertThat(s2, not(equalTo(s1)));
+    assertTrue(s2.isAuto());
+    assertThat(s1.withFrame(1000), equalTo(s2));
+    assertThat(s2.withFrame(0), equalTo(s1));
+
+    // Kézi kamerával csak a képkocka változik
+    om.getDisplayManager().rotate(0.1, 0.2);
+    FrameSnapshot s3 = FrameSnapshot.capture(om, d);
+    assertFalse(s3.isAuto());
+    fs.setValue(2000);
+    assertThat(s3.withFrame(2000), equalTo(FrameSnapshot.capture(om, d)));
+  }
+
+  @Test
+  public void test2() {
+    OperationManager om = new OperationManager();
+    Dimension d = new Dimension(10, 10);
+    FrameSnapshot s = FrameSnapshot.capture(om, d);
+
+    // Három kép fér el
+    FrameCache cache = new FrameCache(new CountingPainter(), 3 * 10 * 10 * 4);
+    assertThat(cache.get(s), nullValue());
+    assertThat(cache.getMissCount(), equalTo(1L));
+
+    BufferedImage[] images = new BufferedImage[4];
+    for (int i = 0; i < images.length; i++) {
+      images[i] = new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB);
+    }
+    cache.put(s.withFrame(0), images[0]);
+    cache.put(s.withFrame(1), images[1]);
+    cache.put(s.withFrame(2), images[2]);
+    assertThat(cache.getSize(), equalTo(3));
+    assertThat(cache.getByteSize(), equalTo(1200L));
+
+    assertThat(cache.get(s.withFrame(0)), sameInstance(images[0]));
+    assertThat(cache.getHitCount(), equalTo(1L));
+
+    // A legrégebben használt (1) kerül ki
+    cache.put(s.withFrame(3), images[3]);
+    assertThat(cache.getSize(), equalTo(3));
+    assertThat(cache.getEvictionCount(), equalTo(1L));
+    assertFalse(cache.contains(s.withFrame(1)));
+    assertTrue(cache.contains(s.withFrame(0)));
+    assertTrue(cache.contains(s.withFrame(2)));
+    assertTrue(cache.contains(s.withFrame(3)));
+
+    // A korlátnál nagyobb kép nem kerül be
+    cache.put(FrameSnapshot.capture(om, new Dimension(100, 100)), new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB));
+    assertThat(cache.getSize(), equalTo(3));
+
+    cache.clear();
+    assertThat(cache.getSize(), equalTo(0));
+    assertThat(cache.getByteSize(), equalTo(0L));
+  }
+
+  @Test
+  public void test3() throws InterruptedException {
+    OperationManager om = new OperationManager();
+    FrameSnapshot s = FrameSnapshot.capture(om, new Dimension(10, 10));
+    CountingPainter painter = new CountingPainter();
+    FrameCache cache = new FrameCache(painter, 1 << 20);
+
+    int[] frames = new int[]{1, 2, 3, 3, 4};
+    cache.prefetch(s, frames, null);
+    for (int i = 0; i < 500 && cache.getPrefetchCount() < 4; i++) {
+      Thread.sleep(10);
+    }
+    assertThat(cache.getPrefetchCount(), equalTo(4L));
+    assertThat(painter.count.get(), equalTo(4));
+    for (int frame : frames) {
+      assertTrue(cache.contains(s.withFrame(frame)));
+    }
+
+    // A már tárolt képkockák nem készülnek el újra
+    cache.prefetch(s, frames, null);
+    Thread.sleep(50);
+    assertThat(painter.count.get(), equalTo(4));
+  }
+}
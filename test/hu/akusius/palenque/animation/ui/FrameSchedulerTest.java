@@ -0,0 +1,118 @@
+package hu.akusius.palenque.animation.ui;
+
+import hu.akusius.palenque.animation.op.*;
+import java.awt.event.ActionEvent;
+import javax.swing.Timer;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Bujdosó Ákos
+ */
+public class FrameSchedulerTest {
+
+  private static final class TestTimer extends Timer {
+
+    TestTimer() {
+      super(FrameScheduler.TICK_DELAY, null);
+    }
+
+    private boolean running = false;
+
+    @Override
+    public void stop() {
+      running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+      return running;
+    }
+
+    @Override
+    public void start() {
+      running = true;
+    }
+
+    public void tick() {
+      assert isRunning();
+      fireActionPerformed(new ActionEvent(this, 0, getActionCommand(), System.currentTimeMillis(), 0));
+    }
+  }
+
+  private static final class CountingRenderer implements Runnable {
+
+    private int count = 0;
+
+    @Override
+    public void run() {
+      count++;
+    }
+  }
+
+  public FrameSchedulerTest() {
+  }
+
+  @Test
+  public void test1() {
+    TestTimer timer = new TestTimer();
+    CountingRenderer renderer = new CountingRenderer();
+    FrameScheduler fs = new FrameScheduler(renderer, timer);
+
+    assertFalse(timer.isRunning());
+    assertFalse(fs.isDirty());
+
+    fs.markDirty(FrameScheduler.Source.Frame);
+    fs.markDirty(FrameScheduler.Source.Display);
+    fs.markDirty(FrameScheduler.Source.Frame);
+    assertTrue(timer.isRunning());
+    assertTrue(fs.isDirty(FrameScheduler.Source.Frame));
+    assertTrue(fs.isDirty(FrameScheduler.Source.Display));
+    assertFalse(fs.isDirty(FrameScheduler.Source.Mode));
+    assertThat(renderer.count, equalTo(0));
+    assertThat(fs.getCoalescedCount(), equalTo(2L));
+
+    timer.tick();
+    assertThat(renderer.count, equalTo(1));
+    assertFalse(fs.isDirty());
+    assertThat(fs.getRequestCount(), equalTo(3L));
+    assertThat(fs.getRenderCount(), equalTo(1L));
+    assertThat(fs.getCoalescedCount(), equalTo(2L));
+
+    // Üres ütemnél leáll az időzítő
+    assertTrue(timer.isRunning());
+    timer.tick();
+    assertThat(renderer.count, equalTo(1));
+    assertFalse(timer.isRunning());
+
+    fs.markDirty(FrameScheduler.Source.GridSystem);
+    assertTrue(timer.isRunning());
+    timer.tick();
+    assertThat(renderer.count, equalTo(2));
+    assertThat(fs.getCoalescedCount(), equalTo(2L));
+  }
+
+  @Test
+  public void test2() {
+    TestTimer timer = new TestTimer();
+    CountingRenderer renderer = new CountingRenderer();
+    FrameScheduler fs = new FrameScheduler(renderer, timer);
+    OperationManager om = new OperationManager();
+    fs.attach(om);
+
+    om.getPlayManager().getFrameSlider().setValue(100);
+    om.getDisplayManager().adjustZoom(1.5);
+    om.getShowGridSystemToggle().setSelected(!om.getShowGridSystemToggle().isSelected());
+    assertTrue(fs.isDirty(FrameScheduler.Source.Frame));
+    assertTrue(fs.isDirty(FrameScheduler.Source.Display));
+    assertTrue(fs.isDirty(FrameScheduler.Source.GridSystem));
+    assertTrue(fs.getRequestCount() >= 3);
+
+    timer.tick();
+    assertThat(renderer.count, equalTo(1));
+    assertThat(fs.getCoalescedCount(), equalTo(fs.getRequestCount() - 1));
+  }
+}
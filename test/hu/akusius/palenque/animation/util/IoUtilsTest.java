@@ -56,4 +56,18 @@ public class IoUtilsTest {
     byte[] iso88592 = s.getBytes("ISO-8859-2");
     assertThat(IoUtils.readStringFromInputStream(new ByteArrayInputStream(iso88592), "ISO-8859-2"), equalTo(s));
   }
+
+  /**
+   * encodeBase64 tesztelése
+   * @throws IOException
+   */
+  @Test
+  public void test2() throws IOException {
+    assertThat(IoUtils.encodeBase64(new byte[0]), equalTo(""));
+    assertThat(IoUtils.encodeBase64("f".getBytes("US-ASCII")), equalTo("Zg=="));
+    assertThat(IoUtils.encodeBase64("fo".getBytes("US-ASCII")), equalTo("Zm8="));
+    assertThat(IoUtils.encodeBase64("foo".getBytes("US-ASCII")), equalTo("Zm9v"));
+    assertThat(IoUtils.encodeBase64("foobar".getBytes("US-ASCII")), equalTo("Zm9vYmFy"));
+    assertThat(IoUtils.encodeBase64(new byte[]{(byte) 0xff, (byte) 0xfe, 0x00, 0x3e}), equalTo("//4APg=="));
+  }
 }
@@ -0,0 +1,131 @@
+package hu.akusius.palenque.animation.util;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+import javax.imageio.ImageIO;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Bujdosó Ákos
+ */
+public class PngWriterTest {
+
+  public PngWriterTest() {
+  }
+
+  private static BufferedImage createLineArt(int size, int type) {
+    BufferedImage image = new BufferedImage(size, size, type);
+    Graphics2D g = image.createGraphics();
+    g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+    g.setColor(Color.WHITE);
+    g.fillRect(0, 0, size, size);
+    g.setColor(Color.BLACK);
+    g.setStroke(new BasicStroke(1.3f));
+    for (int i = 0; i < size; i += 7) {
+      g.drawLine(i, 0, size - i, size);
+      g.drawOval(i / 2, i / 3, i / 2 + 1, i / 4 + 1);
+    }
+    g.dispose();
+    return image;
+  }
+
+  private static BufferedImage roundTrip(PngWriter writer, BufferedImage image) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    writer.write(image, out);
+    BufferedImage result = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+    assertThat(result, notNullValue());
+    assertThat(result.getWidth(), equalTo(image.getWidth()));
+    assertThat(result.getHeight(), equalTo(image.getHeight()));
+    return result;
+  }
+
+  private static void assertSameColors(BufferedImage expected, BufferedImage actual) {
+    for (int y = 0; y < expected.getHeight(); y++) {
+      for (int x = 0; x < expected.getWidth(); x++) {
+        assertThat(actual.getRGB(x, y), equalTo(expected.getRGB(x, y)));
+      }
+    }
+  }
+
+  @Test
+  public void test1() throws Exception {
+    // Szürkeárnyalatos (a beolvasás a nyers mintákat adja vissza)
+    BufferedImage image = createLineArt(300, BufferedImage.TYPE_INT_ARGB);
+    for (PngWriter.Filter filter : PngWriter.Filter.values()) {
+      for (int threads : new int[]{1, 4}) {
+        BufferedImage result = roundTrip(new PngWriter(6, filter, threads), image);
+        Raster raster = result.getRaster();
+        assertThat(raster.getNumBands(), equalTo(1));
+        for (int y = 0; y < image.getHeight(); y++) {
+          for (int x = 0; x < image.getWidth(); x++) {
+            assertThat(raster.getSample(x, y, 0), equalTo(image.getRGB(x, y) & 0xFF));
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void test2() throws Exception {
+    // Palettás (kevés szín) és truecolor, több blokkban, különböző tömörítéssel
+    Random random = new Random(1234);
+    BufferedImage indexed = new BufferedImage(400, 400, BufferedImage.TYPE_INT_RGB);
+    BufferedImage rgb = new BufferedImage(400, 400, BufferedImage.TYPE_INT_RGB);
+    int[] colors = new int[200];
+    for (int i = 0; i < colors.length; i++) {
+      colors[i] = random.nextInt(0x1000000);
+    }
+    for (int y = 0; y < 400; y++) {
+      for (int x = 0; x < 400; x++) {
+        indexed.setRGB(x, y, colors[(x / 3 + y / 5) % colors.length]);
+        rgb.setRGB(x, y, (x * 7 + y) << 8 | random.nextInt(4) | (y & 0xFF) << 16);
+      }
+    }
+    for (int level : new int[]{0, 1, 6, 9}) {
+      for (int threads : new int[]{1, 3, 8}) {
+        assertSameColors(indexed, roundTrip(new PngWriter(level, PngWriter.Filter.Adaptive, threads), indexed));
+        assertSameColors(rgb, roundTrip(new PngWriter(level, PngWriter.Filter.Paeth, threads), rgb));
+      }
+    }
+  }
+
+  @Test
+  public void test3() throws Exception {
+    // Átlátszóság: szürke és színes
+    BufferedImage gray = new BufferedImage(64, 64, BufferedImage.TYPE_INT_ARGB);
+    BufferedImage color = new BufferedImage(64, 64, BufferedImage.TYPE_INT_ARGB);
+    for (int y = 0; y < 64; y++) {
+      for (int x = 0; x < 64; x++) {
+        int v = (x * 4) & 0xFF;
+        gray.setRGB(x, y, (y * 4) << 24 | v << 16 | v << 8 | v);
+        color.setRGB(x, y, (y * 4) << 24 | (x * 4) << 16 | (x + y) << 8 | 50);
+      }
+    }
+    PngWriter writer = new PngWriter();
+    BufferedImage result = roundTrip(writer, gray);
+    assertThat(result.getRaster().getNumBands(), equalTo(2));
+    for (int y = 0; y < 64; y++) {
+      for (int x = 0; x < 64; x++) {
+        assertThat(result.getRaster().getSample(x, y, 0), equalTo(gray.getRGB(x, y) & 0xFF));
+        assertThat(result.getRaster().getSample(x, y, 1), equalTo(gray.getRGB(x, y) >>> 24));
+      }
+    }
+    assertSameColors(color, roundTrip(writer, color));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void test4() {
+    new PngWriter(10, PngWriter.Filter.None, 1);
+  }
+}
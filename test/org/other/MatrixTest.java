@@ -0,0 +1,137 @@
+package org.other;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Bujdosó Ákos
+ */
+public class MatrixTest {
+
+  public MatrixTest() {
+  }
+
+  private static Matrix translation(double x, double y, double z) {
+    Matrix m = new Matrix();
+    m.identity();
+    m.set(0, 3, x);
+    m.set(1, 3, y);
+    m.set(2, 3, z);
+    return m;
+  }
+
+  private static Matrix rotation(int i, int j, double theta) {
+    Matrix m = new Matrix();
+    m.identity();
+    m.set(i, i, Math.cos(theta));
+    m.set(j, j, Math.cos(theta));
+    m.set(i, j, -Math.sin(theta));
+    m.set(j, i, Math.sin(theta));
+    return m;
+  }
+
+  private static Matrix multiply(Matrix a, Matrix b) {
+    Matrix r = new Matrix();
+    for (int i = 0; i < 4; i++) {
+      for (int j = 0; j < 4; j++) {
+        double d = 0.0;
+        for (int k = 0; k < 4; k++) {
+          d += a.get(i, k) * b.get(k, j);
+        }
+        r.set(i, j, d);
+      }
+    }
+    return r;
+  }
+
+  private static void assertMatrix(Matrix expected, Matrix actual) {
+    assertArrayEquals(expected.get(), actual.get(), 1e-12);
+  }
+
+  @Test
+  public void test1() {
+    // A gyors változatok az általános szorzással egyeznek meg
+    Matrix m = new Matrix();
+    m.identity();
+    Matrix e = new Matrix();
+    e.identity();
+
+    m.translate(1.5, -2, 3);
+    e = multiply(e, translation(1.5, -2, 3));
+    assertMatrix(e, m);
+
+    m.rotateX(0.3);
+    e = multiply(e, rotation(1, 2, 0.3));
+    assertMatrix(e, m);
+
+    m.rotateY(-1.1);
+    e = multiply(e, rotation(2, 0, -1.1));
+    assertMatrix(e, m);
+
+    m.rotateZ(2.2);
+    e = multiply(e, rotation(0, 1, 2.2));
+    assertMatrix(e, m);
+
+    Matrix t = translation(4, 5, 6);
+    Matrix pre = new Matrix();
+    pre.copy(m);
+    pre.preMultiply(t);
+    assertMatrix(multiply(e, t), pre);
+
+    Matrix post = new Matrix();
+    post.copy(m);
+    post.postMultiply(t);
+    assertMatrix(multiply(t, e), post);
+
+    // Önmagával szorzás
+    Matrix self = new Matrix();
+    self.copy(m);
+    self.postMultiply(self);
+    assertMatrix(multiply(e, e), self);
+  }
+
+  @Test
+  public void test2() {
+    Matrix m = new Matrix();
+    m.identity();
+    m.translate(0, 1.5, 0.0);
+    m.rotateX(0.7);
+    m.translate(0, 0.5, 0.0);
+
+    Matrix c = new Matrix();
+    c.composeTRT(0, 1.5, 0.0, Matrix.AXIS_X, 0.7, 0, 0.5, 0.0);
+    assertThat(c, equalTo(m));
+
+    m.identity();
+    m.translate(-9, 0, 0.0);
+    m.rotateY(0.2);
+    c.composeTRT(-9, 0, 0.0, Matrix.AXIS_Y, 0.2, 0, 0, 0);
+    assertThat(c, equalTo(m));
+  }
+
+  @Test
+  public void test3() {
+    Matrix m = new Matrix();
+    m.identity();
+    m.translate(1, 2, 3);
+    m.rotateZ(0.5);
+    m.rotateX(-0.25);
+
+    double[] src = {1, 2, 3, -4, 5.5, 0};
+    double[] dst = new double[6];
+    m.transformPoints(src, dst, 2);
+
+    double[] v = new double[3];
+    m.transformPoint(-4, 5.5, 0, v);
+    assertThat(dst[3], equalTo(v[0]));
+    assertThat(dst[4], equalTo(v[1]));
+    assertThat(dst[5], equalTo(v[2]));
+
+    // Helyben
+    m.transformPoints(src, src, 2);
+    assertArrayEquals(dst, src, 0.0);
+  }
+}